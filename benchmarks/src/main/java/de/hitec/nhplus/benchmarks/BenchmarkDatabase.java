@@ -0,0 +1,298 @@
+package de.hitec.nhplus.benchmarks;
+
+import de.hitec.nhplus.datastorage.ConnectionPool;
+import de.hitec.nhplus.datastorage.DatabaseProfile;
+import de.hitec.nhplus.datastorage.MigrationRunner;
+import de.hitec.nhplus.datastorage.NurseDao;
+import de.hitec.nhplus.datastorage.PatientDao;
+import de.hitec.nhplus.datastorage.TreatmentDao;
+import de.hitec.nhplus.datastorage.UserDao;
+import de.hitec.nhplus.model.User;
+import de.hitec.nhplus.utils.PasswordUtil;
+import de.hitec.nhplus.utils.SyntheticDataGenerator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic SQLite databases the DAO benchmarks run against.
+ * <p>
+ * A database is identified by its number of treatments, a multiple of 100; the numbers of patients, nurses and users
+ * are derived from it. The login benchmarks need far more users than that, so they run against databases that only
+ * hold a given number of users, see {@link #openUsers(int)}. The data is generated from a fixed seed by the {@link SyntheticDataGenerator}, so every
+ * database of a size has the same content. Generating the large databases takes a while, so they are kept in the directory given by the system
+ * property <code>nhplus.benchmark.dir</code>, by default <code>target/benchmark-db</code>, and reused by later runs
+ * and forks. A database whose generation did not complete is generated again.
+ */
+public final class BenchmarkDatabase {
+
+    private static final long SEED = 42;
+    private static final String[] SURNAMES = {"Müller", "Schmidt", "Schneider", "Fischer", "Weber", "Meyer",
+            "Wagner", "Becker", "Schulz", "Hoffmann", "Schäfer", "Koch", "Bauer", "Richter", "Klein", "Wolf"};
+    private static final String[] FIRST_NAMES = {"Anna", "Maria", "Ursula", "Monika", "Peter", "Michael", "Thomas",
+            "Andreas", "Sabine", "Petra", "Klaus", "Jürgen", "Heike", "Karin", "Stefan", "Frank"};
+
+    private final int treatments;
+    private final int users;
+    private final ConnectionPool connectionPool;
+
+    private BenchmarkDatabase(int treatments, int users, ConnectionPool connectionPool) {
+        this.treatments = treatments;
+        this.users = users;
+        this.connectionPool = connectionPool;
+    }
+
+    /**
+     * Opens the database with the given number of treatments with the interactive profile of the application,
+     * generating it first if it does not exist yet.
+     *
+     * @param treatments the number of treatments
+     * @return the opened database, which must be closed
+     * @throws SQLException if the database could not be generated or opened
+     */
+    public static BenchmarkDatabase open(int treatments) throws SQLException {
+        if (treatments < 100 || treatments % patientsFor(treatments) != 0) {
+            throw new IllegalArgumentException("treatments must be a multiple of 100");
+        }
+        Path file = resolve("nhplus-" + treatments + ".db");
+        if (!isComplete(file, "treatments", treatments)) {
+            generate(file, treatments);
+        }
+        return new BenchmarkDatabase(treatments, usersFor(treatments), openMigrated(file));
+    }
+
+    /**
+     * Opens the database holding only the given number of users, and no patients, nurses or treatments, with the
+     * interactive profile of the application, generating it first if it does not exist yet.
+     *
+     * @param users the number of users, at least 1
+     * @return the opened database, which must be closed
+     * @throws SQLException if the database could not be generated or opened
+     */
+    public static BenchmarkDatabase openUsers(int users) throws SQLException {
+        if (users < 1) {
+            throw new IllegalArgumentException("users must be at least 1");
+        }
+        Path file = resolve("nhplus-users-" + users + ".db");
+        if (!isComplete(file, "users", users)) {
+            generateUsers(file, users);
+        }
+        return new BenchmarkDatabase(0, users, openMigrated(file));
+    }
+
+    /**
+     * Getter Methods
+     */
+
+    public int getTreatments() {
+        return treatments;
+    }
+
+    public int getPatients() {
+        return patientsFor(this.treatments);
+    }
+
+    public int getNurses() {
+        return nursesFor(this.treatments);
+    }
+
+    public int getUsers() {
+        return users;
+    }
+
+    public ConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+
+    /**
+     * Returns the username of the user with the given number, counting from 0.
+     *
+     * @param user the number of the user
+     * @return the username
+     */
+    public static String username(int user) {
+        return "benutzer" + user;
+    }
+
+    /**
+     * Returns the password of the user with the given number, counting from 0.
+     *
+     * @param user the number of the user
+     * @return the plain text password
+     */
+    public static String password(int user) {
+        return "Passwort" + user;
+    }
+
+    /**
+     * Runs the given SQL on the writer connection, e.g. to remove the rows a write benchmark has added.
+     *
+     * @param sql the SQL to execute
+     * @throws SQLException if the SQL failed
+     */
+    public void execute(String sql) throws SQLException {
+        Connection connection = this.connectionPool.acquireWriteConnection();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        } finally {
+            this.connectionPool.releaseWriteConnection();
+        }
+    }
+
+    /**
+     * Returns the number in the first column of the first row of the given query.
+     *
+     * @param sql the query
+     * @return the number, 0 if the query returned no row
+     * @throws SQLException if the query failed
+     */
+    public long queryForLong(String sql) throws SQLException {
+        Connection connection = this.connectionPool.acquireReadConnection();
+        try (Statement statement = connection.createStatement(); ResultSet result = statement.executeQuery(sql)) {
+            return result.next() ? result.getLong(1) : 0L;
+        } finally {
+            this.connectionPool.releaseReadConnection(connection);
+        }
+    }
+
+    /**
+     * Closes all connections of the database.
+     */
+    public void close() {
+        this.connectionPool.close();
+    }
+
+    private static int patientsFor(int treatments) {
+        return Math.max(10, treatments / 100);
+    }
+
+    private static int nursesFor(int treatments) {
+        return Math.max(5, treatments / 1000);
+    }
+
+    private static int usersFor(int treatments) {
+        return Math.max(10, treatments / 1000);
+    }
+
+    private static Path resolve(String name) {
+        return Paths.get(System.getProperty("nhplus.benchmark.dir", "target/benchmark-db")).resolve(name);
+    }
+
+    private static ConnectionPool openMigrated(Path file) throws SQLException {
+        ConnectionPool pool = createPool(file, DatabaseProfile.INTERACTIVE);
+        // databases generated before the latest schema version get the migrations added since
+        MigrationRunner.migrate(pool);
+        return pool;
+    }
+
+    private static ConnectionPool createPool(Path file, DatabaseProfile profile) {
+        return new ConnectionPool("jdbc:sqlite:" + file.toAbsolutePath(),
+                profile.createConfiguration(false).toProperties(), profile.createConfiguration(true).toProperties(),
+                4, Duration.ofSeconds(60), Duration.ofSeconds(30));
+    }
+
+    /**
+     * @return true if the file exists and its generation has recorded the given number of rows in the given column of
+     * <code>benchmark_info</code>
+     */
+    private static boolean isComplete(Path file, String column, int rows) throws SQLException {
+        if (!Files.exists(file)) {
+            return false;
+        }
+        ConnectionPool pool = createPool(file, DatabaseProfile.INTERACTIVE);
+        try {
+            Connection connection = pool.acquireWriteConnection();
+            try (Statement statement = connection.createStatement();
+                 ResultSet result = statement.executeQuery("SELECT " + column + " FROM benchmark_info")) {
+                return result.next() && result.getInt(1) == rows;
+            } catch (SQLException exception) {
+                return false;
+            } finally {
+                pool.releaseWriteConnection();
+            }
+        } finally {
+            pool.close();
+        }
+    }
+
+    private static void generate(Path file, int treatments) throws SQLException {
+        deleteFiles(file);
+        System.out.println("Erzeuge " + file + " mit " + treatments + " Behandlungen");
+        ConnectionPool pool = createPool(file, DatabaseProfile.BULK_IMPORT);
+        try {
+            MigrationRunner.migrate(pool);
+            int patients = patientsFor(treatments);
+            System.out.println(new SyntheticDataGenerator(SEED, patients, nursesFor(treatments),
+                    treatments / patients, 3, LocalDate.of(2024, 12, 31))
+                    .generate(new NurseDao(pool), new PatientDao(pool), new TreatmentDao(pool)));
+
+            createUsers(pool, usersFor(treatments));
+            complete(pool, "treatments", treatments);
+        } finally {
+            pool.close();
+        }
+    }
+
+    private static void generateUsers(Path file, int users) throws SQLException {
+        deleteFiles(file);
+        System.out.println("Erzeuge " + file + " mit " + users + " Benutzern");
+        ConnectionPool pool = createPool(file, DatabaseProfile.BULK_IMPORT);
+        try {
+            MigrationRunner.migrate(pool);
+            createUsers(pool, users);
+            complete(pool, "users", users);
+        } finally {
+            pool.close();
+        }
+    }
+
+    private static void deleteFiles(Path file) throws SQLException {
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            for (String suffix : new String[]{"", "-wal", "-shm"}) {
+                Files.deleteIfExists(Paths.get(file + suffix));
+            }
+        } catch (IOException exception) {
+            throw new SQLException("Datenbank " + file + " konnte nicht angelegt werden", exception);
+        }
+    }
+
+    private static void createUsers(ConnectionPool pool, int count) throws SQLException {
+        Random random = new Random(SEED);
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            users.add(new User(0, pick(FIRST_NAMES, random), pick(SURNAMES, random), username(i),
+                    PasswordUtil.hashPassword(password(i)), i == 0 ? "admin" : "nurse"));
+        }
+        new UserDao(pool).createAll(users);
+    }
+
+    /**
+     * Analyzes the generated database and records in <code>benchmark_info</code> that its generation has completed.
+     */
+    private static void complete(ConnectionPool pool, String column, int rows) throws SQLException {
+        Connection connection = pool.acquireWriteConnection();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ANALYZE");
+            statement.execute("CREATE TABLE benchmark_info (" + column + " INTEGER NOT NULL)");
+            statement.execute("INSERT INTO benchmark_info (" + column + ") VALUES (" + rows + ")");
+        } finally {
+            pool.releaseWriteConnection();
+        }
+    }
+
+    private static String pick(String[] values, Random random) {
+        return values[random.nextInt(values.length)];
+    }
+}
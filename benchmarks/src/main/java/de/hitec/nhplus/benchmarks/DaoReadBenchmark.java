@@ -0,0 +1,110 @@
+package de.hitec.nhplus.benchmarks;
+
+import de.hitec.nhplus.datastorage.PatientDao;
+import de.hitec.nhplus.datastorage.SearchHit;
+import de.hitec.nhplus.datastorage.SortOrder;
+import de.hitec.nhplus.datastorage.TreatmentDao;
+import de.hitec.nhplus.datastorage.TreatmentFilter;
+import de.hitec.nhplus.model.Patient;
+import de.hitec.nhplus.model.Treatment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the reading DAO methods against synthetic databases of different sizes, see {@link BenchmarkDatabase}.
+ * <p>
+ * The DAOs are created without entity caches, so every invocation reads from SQLite. Keys are drawn at random from a
+ * fixed seed, so that the invocations do not always hit the same pages of the database file. The login is measured
+ * by the {@link LoginBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DaoReadBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int rows;
+
+    private BenchmarkDatabase database;
+    private TreatmentDao treatmentDao;
+    private PatientDao patientDao;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        this.database = BenchmarkDatabase.open(this.rows);
+        this.treatmentDao = new TreatmentDao(this.database.getConnectionPool());
+        this.patientDao = new PatientDao(this.database.getConnectionPool());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.database.close();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Treatment> treatmentReadAll() throws SQLException {
+        return this.treatmentDao.readAll();
+    }
+
+    @Benchmark
+    public List<Treatment> treatmentReadByPid(Keys keys) throws SQLException {
+        return this.treatmentDao.readTreatmentsByPid(keys.nextPid(this.database));
+    }
+
+    @Benchmark
+    public List<Treatment> treatmentReadPageWithNurseNames(Keys keys) throws SQLException {
+        return this.treatmentDao.readPageWithNurseNames(keys.nextTid(this.database), 100, SortOrder.ASCENDING);
+    }
+
+    @Benchmark
+    public List<SearchHit<Treatment>> treatmentSearch() throws SQLException {
+        return this.treatmentDao.search(TreatmentFilter.all(), "Rollator", 0, 100);
+    }
+
+    @Benchmark
+    public Treatment treatmentRead(Keys keys) throws SQLException {
+        return this.treatmentDao.read(keys.nextTid(this.database));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Patient> patientReadAll() throws SQLException {
+        return this.patientDao.readAll();
+    }
+
+    /**
+     * Random keys per benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Keys {
+        private final SplittableRandom random = new SplittableRandom(7);
+
+        long nextTid(BenchmarkDatabase database) {
+            return 1 + this.random.nextInt(database.getTreatments());
+        }
+
+        long nextPid(BenchmarkDatabase database) {
+            return 1 + this.random.nextInt(database.getPatients());
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package de.hitec.nhplus.benchmarks;
+
+import de.hitec.nhplus.datastorage.PatientDao;
+import de.hitec.nhplus.datastorage.TreatmentDao;
+import de.hitec.nhplus.model.Patient;
+import de.hitec.nhplus.model.Treatment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of creating and updating treatments and patients, one row per operation as the user
+ * interface does, against synthetic databases of different sizes, see {@link BenchmarkDatabase}.
+ * <p>
+ * Every write is a transaction of its own, so the results depend on how fast the disk syncs. The rows created during
+ * an iteration are deleted after it, so the database keeps its size over the iterations. Updates rewrite existing rows
+ * with their current values, either all columns or, as after an edit of a table cell, the one column that has been
+ * set.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DaoWriteBenchmark {
+
+    private static final int UPDATE_SAMPLE = 1000;
+
+    @Param({"1000", "100000", "1000000"})
+    private int rows;
+
+    private BenchmarkDatabase database;
+    private TreatmentDao treatmentDao;
+    private PatientDao patientDao;
+    private long lastTid;
+    private long lastPid;
+    private final List<Treatment> treatments = new ArrayList<>();
+    private final List<Patient> patients = new ArrayList<>();
+    private final SplittableRandom random = new SplittableRandom(11);
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        this.database = BenchmarkDatabase.open(this.rows);
+        this.treatmentDao = new TreatmentDao(this.database.getConnectionPool());
+        this.patientDao = new PatientDao(this.database.getConnectionPool());
+        this.lastTid = this.database.queryForLong("SELECT MAX(tid) FROM treatment");
+        this.lastPid = this.database.queryForLong("SELECT MAX(pid) FROM patient");
+        for (int i = 0; i < UPDATE_SAMPLE; i++) {
+            this.treatments.add(this.treatmentDao.read(1 + this.random.nextLong(this.lastTid)));
+            this.patients.add(this.patientDao.read(1 + this.random.nextLong(this.lastPid)));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteCreatedRows() throws SQLException {
+        this.database.execute("DELETE FROM treatment WHERE tid > " + this.lastTid);
+        this.database.execute("DELETE FROM patient WHERE pid > " + this.lastPid);
+        this.database.execute("DELETE FROM change_tombstone");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.database.close();
+    }
+
+    @Benchmark
+    public void treatmentCreate() throws SQLException {
+        this.treatmentDao.create(new Treatment(1 + this.random.nextLong(this.lastPid), LocalDate.of(2024, 1, 1),
+                LocalTime.of(8, 0), LocalTime.of(8, 30), "Waschen", "Benchmark", 1, Treatment.STATUS_ACTIVE,
+                null, null, null, null));
+    }
+
+    @Benchmark
+    public void treatmentUpdate() throws SQLException {
+        this.treatmentDao.update(this.treatments.get(this.random.nextInt(UPDATE_SAMPLE)));
+    }
+
+    @Benchmark
+    public void treatmentUpdateDescription() throws SQLException {
+        Treatment treatment = this.treatments.get(this.random.nextInt(UPDATE_SAMPLE));
+        treatment.setDescription(treatment.getDescription());
+        this.treatmentDao.update(treatment);
+    }
+
+    @Benchmark
+    public void patientCreate() throws SQLException {
+        this.patientDao.create(new Patient("Erika", "Mustermann", LocalDate.of(1940, 5, 17), "3", "101",
+                Patient.STATUS_ACTIVE, null, null, null, null));
+    }
+
+    @Benchmark
+    public void patientUpdate() throws SQLException {
+        this.patientDao.update(this.patients.get(this.random.nextInt(UPDATE_SAMPLE)));
+    }
+
+    @Benchmark
+    public void patientUpdateRoomNumber() throws SQLException {
+        Patient patient = this.patients.get(this.random.nextInt(UPDATE_SAMPLE));
+        patient.setRoomNumber(patient.getRoomNumber());
+        this.patientDao.update(patient);
+    }
+}
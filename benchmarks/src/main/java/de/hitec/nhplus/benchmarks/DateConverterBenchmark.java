@@ -0,0 +1,115 @@
+package de.hitec.nhplus.benchmarks;
+
+import de.hitec.nhplus.utils.DateConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link DateConverter} with its former implementation, which compiled the pattern on every call.
+ * <p>
+ * Every invocation converts a whole treatment row, i.e. one date and two times, taken round-robin from a set of
+ * different values so that the JIT cannot fold the conversion into a constant.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DateConverterBenchmark {
+
+    private static final int VALUES = 1024;
+
+    private final String[] dates = new String[VALUES];
+    private final String[] times = new String[VALUES];
+    private final LocalDate[] localDates = new LocalDate[VALUES];
+    private final LocalTime[] localTimes = new LocalTime[VALUES];
+    private int index;
+
+    @Setup
+    public void setUp() {
+        LocalDate date = LocalDate.of(2023, 1, 1);
+        LocalTime time = LocalTime.of(6, 0);
+        for (int i = 0; i < VALUES; i++) {
+            this.localDates[i] = date.plusDays(i);
+            this.localTimes[i] = time.plusMinutes(7L * i);
+            this.dates[i] = LegacyDateConverter.convertLocalDateToString(this.localDates[i]);
+            this.times[i] = LegacyDateConverter.convertLocalTimeToString(this.localTimes[i]);
+        }
+    }
+
+    @Benchmark
+    public Object parseRowLegacy() {
+        int i = next();
+        return new Object[]{LegacyDateConverter.convertStringToLocalDate(this.dates[i]),
+                LegacyDateConverter.convertStringToLocalTime(this.times[i]),
+                LegacyDateConverter.convertStringToLocalTime(this.times[VALUES - 1 - i])};
+    }
+
+    @Benchmark
+    public Object parseRow() {
+        int i = next();
+        return new Object[]{DateConverter.convertStringToLocalDate(this.dates[i]),
+                DateConverter.convertStringToLocalTime(this.times[i]),
+                DateConverter.convertStringToLocalTime(this.times[VALUES - 1 - i])};
+    }
+
+    @Benchmark
+    public Object formatRowLegacy() {
+        int i = next();
+        return new Object[]{LegacyDateConverter.convertLocalDateToString(this.localDates[i]),
+                LegacyDateConverter.convertLocalTimeToString(this.localTimes[i]),
+                LegacyDateConverter.convertLocalTimeToString(this.localTimes[VALUES - 1 - i])};
+    }
+
+    @Benchmark
+    public Object formatRow() {
+        int i = next();
+        return new Object[]{DateConverter.convertLocalDateToString(this.localDates[i]),
+                DateConverter.convertLocalTimeToString(this.localTimes[i]),
+                DateConverter.convertLocalTimeToString(this.localTimes[VALUES - 1 - i])};
+    }
+
+    private int next() {
+        this.index = (this.index + 1) & (VALUES - 1);
+        return this.index;
+    }
+
+    /**
+     * The implementation of {@link DateConverter} before the fixed-width codec, kept as the baseline.
+     */
+    static final class LegacyDateConverter {
+
+        private static final String DATE_FORMAT = "yyyy-MM-dd";
+        private static final String TIME_FORMAT = "HH:mm";
+
+        static LocalDate convertStringToLocalDate(String date) {
+            return LocalDate.parse(date, DateTimeFormatter.ofPattern(DATE_FORMAT));
+        }
+
+        static LocalTime convertStringToLocalTime(String time) {
+            return LocalTime.parse(time, DateTimeFormatter.ofPattern(TIME_FORMAT));
+        }
+
+        static String convertLocalDateToString(LocalDate date) {
+            return date.format(DateTimeFormatter.ofPattern(DATE_FORMAT));
+        }
+
+        static String convertLocalTimeToString(LocalTime time) {
+            return time.format(DateTimeFormatter.ofPattern(TIME_FORMAT));
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package de.hitec.nhplus.benchmarks;
+
+import de.hitec.nhplus.utils.DateConverter;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Checks that the hand-written codec of {@link DateConverter} yields exactly the results and exceptions of the
+ * formatters it stands in for, the patterns <code>yyyy-MM-dd</code> and <code>HH:mm</code>.
+ * <p>
+ * The values cover the edges of the fast path: every year from 0000 to 9999 with the first and the last days of
+ * every month, including days and months out of range and February 29, dates and their formatting outside the years
+ * 1 to 9999, digits other than ASCII ones, signs and other widths, every two-digit hour and minute including
+ * "24:00", and every minute of the day. Prints the differences and exits with status 1 if there are any.
+ */
+public final class DateConverterCheck {
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
+
+    private static final char[] FOREIGN_DIGITS = {'٢', '२', '２'};
+    private static final int MAX_REPORTED = 20;
+
+    private final List<String> differences = new ArrayList<>();
+    private int checked;
+
+    private DateConverterCheck() {
+    }
+
+    public static void main(String[] args) {
+        DateConverterCheck check = new DateConverterCheck();
+        check.parseDates();
+        check.parseTimes();
+        check.formatDates();
+        check.formatTimes();
+        System.out.printf("%d Werte geprüft, %d Abweichungen%n", check.checked, check.differences.size());
+        check.differences.stream().limit(MAX_REPORTED).forEach(System.out::println);
+        if (!check.differences.isEmpty()) {
+            System.exit(1);
+        }
+    }
+
+    private void parseDates() {
+        String[] days = {"00", "01", "28", "29", "30", "31", "32"};
+        for (int year = 0; year <= 9999; year++) {
+            for (int month = 0; month <= 13; month++) {
+                for (String day : days) {
+                    parseDate(String.format("%04d-%02d-%s", year, month, day));
+                }
+            }
+        }
+        String[] others = {null, "", "2024-2-29", "2024-02-9", "20240229", "2024/02/29", "+024-02-29", "-024-02-29",
+                " 024-02-29", "2024-02-29 ", "12024-02-29", "+12024-02-29", "-0001-12-31", "2024-0a-29"};
+        for (String date : others) {
+            parseDate(date);
+        }
+        for (String date : withForeignDigits("2024-02-29")) {
+            parseDate(date);
+        }
+    }
+
+    private void parseTimes() {
+        for (int hour = 0; hour <= 99; hour++) {
+            for (int minute = 0; minute <= 99; minute++) {
+                parseTime(String.format("%02d:%02d", hour, minute));
+            }
+        }
+        String[] others = {null, "", "24:00", "1:00", "12:5", "12-30", "1230", "+1:00", "12:30:00", " 12:30"};
+        for (String time : others) {
+            parseTime(time);
+        }
+        for (String time : withForeignDigits("12:34")) {
+            parseTime(time);
+        }
+    }
+
+    private void formatDates() {
+        formatDays(LocalDate.of(-1, 1, 1), LocalDate.of(2, 12, 31));
+        formatDays(LocalDate.of(1999, 1, 1), LocalDate.of(2030, 12, 31));
+        formatDays(LocalDate.of(9998, 1, 1), LocalDate.of(10001, 12, 31));
+        formatDate(LocalDate.MIN);
+        formatDate(LocalDate.MAX);
+    }
+
+    private void formatTimes() {
+        for (int minute = 0; minute < 24 * 60; minute++) {
+            formatTime(LocalTime.of(minute / 60, minute % 60));
+        }
+        formatTime(LocalTime.of(12, 30, 59, 999_999_999));
+        formatTime(LocalTime.MAX);
+    }
+
+    private void formatDays(LocalDate first, LocalDate last) {
+        for (LocalDate date = first; !date.isAfter(last); date = date.plusDays(1)) {
+            formatDate(date);
+        }
+    }
+
+    private void parseDate(String date) {
+        compare("convertStringToLocalDate", date, DateConverter::convertStringToLocalDate,
+                text -> LocalDate.parse(text, DATE_FORMATTER));
+    }
+
+    private void parseTime(String time) {
+        compare("convertStringToLocalTime", time, DateConverter::convertStringToLocalTime,
+                text -> LocalTime.parse(text, TIME_FORMATTER));
+    }
+
+    private void formatDate(LocalDate date) {
+        compare("convertLocalDateToString", date, DateConverter::convertLocalDateToString, DATE_FORMATTER::format);
+    }
+
+    private void formatTime(LocalTime time) {
+        compare("convertLocalTimeToString", time, DateConverter::convertLocalTimeToString, TIME_FORMATTER::format);
+    }
+
+    private <V> void compare(String method, V value, Function<V, ?> codec, Function<V, ?> formatter) {
+        this.checked++;
+        String actual = outcome(codec, value);
+        String expected = outcome(formatter, value);
+        if (!actual.equals(expected)) {
+            this.differences.add(method + "(" + value + "): " + actual + " statt " + expected);
+        }
+    }
+
+    private static <V> String outcome(Function<V, ?> function, V value) {
+        try {
+            return String.valueOf(function.apply(value));
+        } catch (RuntimeException exception) {
+            return exception.getClass().getName() + ": " + exception.getMessage();
+        }
+    }
+
+    private static List<String> withForeignDigits(String text) {
+        List<String> texts = new ArrayList<>();
+        for (char digit : FOREIGN_DIGITS) {
+            for (int i = 0; i < text.length(); i++) {
+                if (Character.isDigit(text.charAt(i))) {
+                    texts.add(text.substring(0, i) + digit + text.substring(i + 1));
+                }
+            }
+        }
+        return texts;
+    }
+}
@@ -0,0 +1,86 @@
+package de.hitec.nhplus.benchmarks;
+
+import de.hitec.nhplus.datastorage.UserDao;
+import de.hitec.nhplus.model.User;
+import de.hitec.nhplus.utils.CredentialService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of the login against user tables of different sizes, see
+ * {@link BenchmarkDatabase#openUsers(int)}.
+ * <p>
+ * The users are drawn at random from a fixed seed; half of the logins of {@link #userAuthenticateUnknown} use a
+ * username that does not exist, which has to take as long as a wrong password.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoginBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    private int users;
+
+    private BenchmarkDatabase database;
+    private UserDao userDao;
+    private CredentialService credentialService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        this.database = BenchmarkDatabase.openUsers(this.users);
+        this.userDao = new UserDao(this.database.getConnectionPool());
+        this.credentialService = new CredentialService(this.userDao);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.database.close();
+    }
+
+    @Benchmark
+    public User userFindByUsername(Keys keys) throws SQLException {
+        return this.userDao.findByUsername(BenchmarkDatabase.username(keys.nextUser(this.users)));
+    }
+
+    @Benchmark
+    public User userAuthenticate(Keys keys) throws SQLException {
+        int user = keys.nextUser(this.users);
+        return this.credentialService.authenticate(BenchmarkDatabase.username(user), BenchmarkDatabase.password(user));
+    }
+
+    @Benchmark
+    public User userAuthenticateUnknown(Keys keys) throws SQLException {
+        int user = keys.nextUser(2 * this.users);
+        return this.credentialService.authenticate(BenchmarkDatabase.username(user), BenchmarkDatabase.password(user));
+    }
+
+    /**
+     * Random users per benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Keys {
+        private final SplittableRandom random = new SplittableRandom(7);
+
+        int nextUser(int users) {
+            return this.random.nextInt(users);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package de.hitec.nhplus.benchmarks;
+
+import de.hitec.nhplus.datastorage.NurseDao;
+import de.hitec.nhplus.datastorage.PatientDao;
+import de.hitec.nhplus.datastorage.TreatmentDao;
+import de.hitec.nhplus.model.Nurse;
+import de.hitec.nhplus.model.Patient;
+import de.hitec.nhplus.model.Treatment;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reports the retained heap size per row of the model classes, measured with JOL on the rows the DAOs read from a
+ * synthetic database, see {@link BenchmarkDatabase}.
+ * <p>
+ * Every class is measured twice: as read, which is how rows are held by lists, caches and bulk jobs, and after the
+ * properties the columns of its table bind to have been requested, which is how the rows shown in a table are held.
+ * Treatments are also measured as read by the list query of the treatment table, with nurse names and without
+ * remarks.
+ * Objects shared between rows, e.g. cached times, are counted once. The size includes the slot of the row in the
+ * array holding the rows. Run with the number of treatments of the database as argument, by default 100000.
+ */
+public final class ModelFootprint {
+
+    private ModelFootprint() {
+    }
+
+    public static void main(String[] args) throws SQLException {
+        int treatments = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        BenchmarkDatabase database = BenchmarkDatabase.open(treatments);
+        try {
+            System.out.printf("%-12s %8s %16s %16s%n", "Klasse", "Zeilen", "Bytes/Zeile", "in Tabelle");
+            TreatmentDao treatmentDao = new TreatmentDao(database.getConnectionPool());
+            report("Treatment", treatmentDao.readAll(), ModelFootprint::bindTreatmentColumns);
+            report("  Liste", treatmentDao.readAllWithNurseNames(), ModelFootprint::bindTreatmentColumns);
+            report("Patient", new PatientDao(database.getConnectionPool()).readAll(), patient -> {
+                patient.pidProperty();
+                patient.firstNameProperty();
+                patient.surnameProperty();
+                patient.dateOfBirthProperty();
+                patient.careLevelProperty();
+                patient.roomNumberProperty();
+            });
+            report("Nurse", new NurseDao(database.getConnectionPool()).readAll(), nurse -> {
+                nurse.nidProperty();
+                nurse.firstNameProperty();
+                nurse.surnameProperty();
+                nurse.phoneNumberProperty();
+            });
+        } finally {
+            database.close();
+        }
+    }
+
+    private static void bindTreatmentColumns(Treatment treatment) {
+        treatment.tidProperty();
+        treatment.pidProperty();
+        treatment.dateProperty();
+        treatment.beginProperty();
+        treatment.endProperty();
+        treatment.descriptionProperty();
+        treatment.nurseNameProperty();
+    }
+
+    private static <T> void report(String name, List<T> rows, Consumer<T> bindColumns) {
+        double read = bytesPerRow(rows);
+        rows.forEach(bindColumns);
+        double shown = bytesPerRow(rows);
+        System.out.printf("%-12s %8d %16.1f %16.1f%n", name, rows.size(), read, shown);
+    }
+
+    private static double bytesPerRow(List<?> rows) {
+        return (double) GraphLayout.parseInstance((Object) rows.toArray()).totalSize() / rows.size();
+    }
+}
@@ -2,6 +2,10 @@ package de.hitec.nhplus;
 
 import de.hitec.nhplus.controller.LoginController;
 import de.hitec.nhplus.datastorage.ConnectionBuilder;
+import de.hitec.nhplus.datastorage.DaoFactory;
+import de.hitec.nhplus.datastorage.QueryMetrics;
+import de.hitec.nhplus.datastorage.RetentionPurgeJob;
+import de.hitec.nhplus.utils.QueryExecutor;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
@@ -15,13 +19,34 @@ import java.io.IOException;
 public class Main extends Application {
 
     private Stage primaryStage;
+    private RetentionPurgeJob retentionPurgeJob;
 
     @Override
     public void start(Stage primaryStage) {
         this.primaryStage = primaryStage;
+        if (!ConnectionBuilder.migrateSchema()) {
+            Platform.exit();
+            return;
+        }
+        ConnectionBuilder.checkPragmas();
+        if (!ConnectionBuilder.getProfile().isReadOnly()) {
+            this.retentionPurgeJob = RetentionPurgeJob.create(DaoFactory.getDaoFactory());
+            this.retentionPurgeJob.start();
+        }
         showLoginWindow();
     }
+
+    @Override
+    public void stop() {
+        if (this.retentionPurgeJob != null) {
+            this.retentionPurgeJob.stop();
+        }
+        QueryExecutor.shutdown();
+        QueryMetrics.logReport();
+        ConnectionBuilder.closeConnection();
+    }
     public void showLoginWindow() {
+        QueryMetrics.setScreen("Login");
         try {
             FXMLLoader loader = new FXMLLoader(Main.class.getResource("/de/hitec/nhplus/LoginView.fxml"));
             VBox pane2 = loader.load();
@@ -2,21 +2,22 @@ package de.hitec.nhplus.controller;
 
 import de.hitec.nhplus.datastorage.DaoFactory;
 import de.hitec.nhplus.datastorage.NurseDao;
+import de.hitec.nhplus.datastorage.SortOrder;
 import de.hitec.nhplus.model.Nurse;
 
 import de.hitec.nhplus.model.Patient;
+import de.hitec.nhplus.utils.ColumnBinding;
+import de.hitec.nhplus.utils.QueryExecutor;
 import de.hitec.nhplus.utils.Session;
+import de.hitec.nhplus.utils.TablePager;
 import javafx.beans.value.ChangeListener;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
-import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.control.cell.TextFieldTableCell;
 
 
-import java.sql.SQLException;
-import java.util.List;
 import java.util.Optional;
 
 
@@ -29,7 +30,7 @@ public class AllCaregiverController {
     @FXML
     private TableView<Nurse> tableView;
     @FXML
-    private TableColumn<Nurse, Long> columnNid;
+    private TableColumn<Nurse, Number> columnNid;
     @FXML
     private TableColumn<Nurse, String> columnFirstName;
     @FXML
@@ -56,32 +57,34 @@ public class AllCaregiverController {
 
     private final ObservableList<Nurse> nurses = FXCollections.observableArrayList();
     private NurseDao dao;
+    private TablePager<Nurse> pager;
 
     /**
      * When <code>initialize()</code> gets called, all fields are already initialized. For example from the FXMLLoader
      * after loading an FXML-File. At this point of the lifecycle of the Controller, the fields can be accessed and
      * configured.
      */
-    public void initialize() throws SQLException {
+    public void initialize() {
         this.dao = DaoFactory.getDaoFactory().createNurseDAO();
+        this.pager = new TablePager<>(this.tableView, this.nurses, Nurse::getNid, TablePager.DEFAULT_PAGE_SIZE);
         this.readAllAndShowInTableView();
 
 
-        this.columnNid.setCellValueFactory(new PropertyValueFactory<>("nid"));
+        ColumnBinding.bind(this.columnNid, Nurse::nidProperty);
 
-        this.columnFirstName.setCellValueFactory(new PropertyValueFactory<>("firstName"));
+        ColumnBinding.bind(this.columnFirstName, Nurse::firstNameProperty);
         this.columnFirstName.setCellFactory(TextFieldTableCell.forTableColumn());
         this.columnFirstName.setOnEditCommit(this::handleEditFirstname);
 
 
-        this.columnSurname.setCellValueFactory(new PropertyValueFactory<>("surname"));
+        ColumnBinding.bind(this.columnSurname, Nurse::surnameProperty);
         this.columnSurname.setCellFactory(TextFieldTableCell.forTableColumn());
 
 
         this.columnSurname.setOnEditCommit(this::handleEditSurname);
 
 
-        this.columnPhoneNumber.setCellValueFactory(new PropertyValueFactory<>("phoneNumber"));
+        ColumnBinding.bind(this.columnPhoneNumber, Nurse::phoneNumberProperty);
         this.columnPhoneNumber.setCellFactory(TextFieldTableCell.forTableColumn());
         this.columnPhoneNumber.setOnEditCommit(this::handleEditphoneNumber);
 
@@ -162,12 +165,8 @@ public class AllCaregiverController {
 
         nurse.setChangedBy(Session.getCurrentUsername());
 
-        try {
-            dao.update(nurse);
-        } catch (SQLException e) {
-            e.printStackTrace();
-
-        }
+        QueryExecutor.execute(() -> this.dao.update(nurse))
+                .thenRunAsync(this.pager::refresh, QueryExecutor.FX_THREAD);
 
     }
     /**
@@ -190,11 +189,8 @@ public class AllCaregiverController {
         // Set changedBy to current user
         setChangedBy();
 
-        try {
-            dao.update(nurse);
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        QueryExecutor.execute(() -> this.dao.update(nurse))
+                .thenRunAsync(this.pager::refresh, QueryExecutor.FX_THREAD);
     }
     /**
      * When a cell of the column with phoneN was changed, this method will be called, to persist the change.
@@ -215,11 +211,8 @@ public class AllCaregiverController {
         // Set changedBy to current user
         setChangedBy();
 
-        try {
-            dao.update(nurse);
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        QueryExecutor.execute(() -> this.dao.update(nurse))
+                .thenRunAsync(this.pager::refresh, QueryExecutor.FX_THREAD);
     }
 
 
@@ -229,24 +222,20 @@ public class AllCaregiverController {
      * @param event Event including the changed object and the change.
      */
     private void doUpdate(TableColumn.CellEditEvent<Nurse, String> event) {
-        try {
-            this.dao.update(event.getRowValue());
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
+        Nurse nurse = event.getRowValue();
+        QueryExecutor.execute(() -> this.dao.update(nurse))
+                .thenRunAsync(this.pager::refresh, QueryExecutor.FX_THREAD);
     }
 
     /**
-     * Reloads all nurses to the table by clearing the list of all nurses and filling it again by all persisted
-     * patients, delivered by {@link NurseDao}.
+     * Reloads the nurses to the table by clearing the list of all nurses and filling it again with the first page of
+     * persisted nurses, delivered by {@link NurseDao}. Further pages are loaded while the user scrolls. After writes,
+     * only the changed nurses are read again, see {@link TablePager#refresh()}.
      */
-    private void readAllAndShowInTableView() throws SQLException {
-        this.nurses.clear();
+    private void readAllAndShowInTableView() {
         this.dao = DaoFactory.getDaoFactory().createNurseDAO();
-
-        List<Nurse> result = this.dao.readAll();
-
-        this.nurses.addAll(result);
+        this.pager.show((afterKey, pageSize) -> this.dao.readPage(afterKey, pageSize, SortOrder.ASCENDING), this.dao,
+                nurse -> Nurse.STATUS_ACTIVE.equals(nurse.getStatus()));
     }
 
 
@@ -274,13 +263,9 @@ public class AllCaregiverController {
             setDeletedBy();
 
 
-            try {
-                DaoFactory.getDaoFactory().createNurseDAO().update(selectedItem); // speichert Soft-Delete
-                readAllAndShowInTableView();
-
-            } catch (SQLException exception) {
-                exception.printStackTrace();
-            }
+            NurseDao nurseDao = DaoFactory.getDaoFactory().createNurseDAO();
+            QueryExecutor.execute(() -> nurseDao.update(selectedItem)) // speichert Soft-Delete
+                    .thenRunAsync(this.pager::refresh, QueryExecutor.FX_THREAD);
 
 
         }
@@ -290,20 +275,16 @@ public class AllCaregiverController {
     /**
      * This method handles the events fired by the button to add a nurse. It collects the data from the
      * <code>TextField</code>s, creates an object of class <code>Nurse</code> of it and passes the object to
-     * {@link NurseDao} to persist the data.
+     * {@link NurseDao} to persist the data. The created nurse is inserted into the table without reading it again.
      */
     @FXML
-    public void handleAdd() throws SQLException {
+    public void handleAdd() {
         String surname = this.textFieldSurname.getText();
         String firstName = this.textFieldFirstName.getText();
         String phoneNumber = this.textFieldPhoneNumber.getText();
-        try {
-            this.dao.create(new Nurse(firstName, surname, phoneNumber, Nurse.STATUS_ACTIVE, null, null, null, null));
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
-
-        readAllAndShowInTableView();
+        Nurse nurse = new Nurse(firstName, surname, phoneNumber, Nurse.STATUS_ACTIVE, null, null, null, null);
+        QueryExecutor.submit(() -> this.dao.create(nurse))
+                .thenAcceptAsync(this.pager::insert, QueryExecutor.FX_THREAD);
 
         clearTextfields();
     }
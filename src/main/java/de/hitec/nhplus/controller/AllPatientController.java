@@ -2,9 +2,13 @@ package de.hitec.nhplus.controller;
 
 import de.hitec.nhplus.datastorage.DaoFactory;
 import de.hitec.nhplus.datastorage.PatientDao;
+import de.hitec.nhplus.datastorage.SortOrder;
 import de.hitec.nhplus.model.Nurse;
 import de.hitec.nhplus.model.Treatment;
+import de.hitec.nhplus.utils.ColumnBinding;
+import de.hitec.nhplus.utils.QueryExecutor;
 import de.hitec.nhplus.utils.Session;
+import de.hitec.nhplus.utils.TablePager;
 import javafx.application.Platform;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
@@ -12,13 +16,11 @@ import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
-import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.control.cell.TextFieldTableCell;
 import de.hitec.nhplus.model.Patient;
 import de.hitec.nhplus.utils.DateConverter;
 import de.hitec.nhplus.model.User;
 
-import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
@@ -35,7 +37,7 @@ public class AllPatientController {
     private TableView<Patient> tableView;
 
     @FXML
-    private TableColumn<Patient, Integer> columnId;
+    private TableColumn<Patient, Number> columnId;
 
     @FXML
     private TableColumn<Patient, String> columnFirstName;
@@ -78,6 +80,7 @@ public class AllPatientController {
 
     private final ObservableList<Patient> patients = FXCollections.observableArrayList();
     private PatientDao dao;
+    private TablePager<Patient> pager;
 
     /**
      * When <code>initialize()</code> gets called, all fields are already initialized. For example from the FXMLLoader
@@ -85,25 +88,26 @@ public class AllPatientController {
      * configured.
      */
     public void initialize() {
+        this.pager = new TablePager<>(this.tableView, this.patients, Patient::getPid, TablePager.DEFAULT_PAGE_SIZE);
         this.readAllAndShowInTableView();
 
-        this.columnId.setCellValueFactory(new PropertyValueFactory<>("pid"));
+        ColumnBinding.bind(this.columnId, Patient::pidProperty);
 
 
-        this.columnFirstName.setCellValueFactory(new PropertyValueFactory<>("firstName"));
+        ColumnBinding.bind(this.columnFirstName, Patient::firstNameProperty);
 
         this.columnFirstName.setCellFactory(TextFieldTableCell.forTableColumn());
 
-        this.columnSurname.setCellValueFactory(new PropertyValueFactory<>("surname"));
+        ColumnBinding.bind(this.columnSurname, Patient::surnameProperty);
         this.columnSurname.setCellFactory(TextFieldTableCell.forTableColumn());
 
-        this.columnDateOfBirth.setCellValueFactory(new PropertyValueFactory<>("dateOfBirth"));
+        ColumnBinding.bind(this.columnDateOfBirth, Patient::dateOfBirthProperty);
         this.columnDateOfBirth.setCellFactory(TextFieldTableCell.forTableColumn());
 
-        this.columnCareLevel.setCellValueFactory(new PropertyValueFactory<>("careLevel"));
+        ColumnBinding.bind(this.columnCareLevel, Patient::careLevelProperty);
         this.columnCareLevel.setCellFactory(TextFieldTableCell.forTableColumn());
 
-        this.columnRoomNumber.setCellValueFactory(new PropertyValueFactory<>("roomNumber"));
+        ColumnBinding.bind(this.columnRoomNumber, Patient::roomNumberProperty);
         this.columnRoomNumber.setCellFactory(TextFieldTableCell.forTableColumn());
 
 
@@ -301,25 +305,20 @@ public class AllPatientController {
      * @param event Event including the changed object and the change.
      */
     private void doUpdate(TableColumn.CellEditEvent<Patient, String> event) {
-        try {
-            this.dao.update(event.getRowValue());
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
+        Patient patient = event.getRowValue();
+        QueryExecutor.execute(() -> this.dao.update(patient))
+                .thenRunAsync(this.pager::refresh, QueryExecutor.FX_THREAD);
     }
 
     /**
-     * Reloads all patients to the table by clearing the list of all patients and filling it again by all persisted
-     * patients, delivered by {@link PatientDao}.
+     * Reloads the patients to the table by clearing the list of all patients and filling it again with the first page
+     * of persisted patients, delivered by {@link PatientDao}. Further pages are loaded while the user scrolls. After
+     * writes, only the changed patients are read again, see {@link TablePager#refresh()}.
      */
     private void readAllAndShowInTableView() {
-        this.patients.clear();
         this.dao = DaoFactory.getDaoFactory().createPatientDAO();
-        try {
-            this.patients.addAll(this.dao.readAll());
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
+        this.pager.show((afterKey, pageSize) -> this.dao.readPage(afterKey, pageSize, SortOrder.ASCENDING), this.dao,
+                patient -> Patient.STATUS_ACTIVE.equals(patient.getStatus()));
     }
 
     /**
@@ -345,12 +344,9 @@ public class AllPatientController {
         if (selectedItem != null) {
             System.out.println("mark for deletion aufgerufen");
             selectedItem.markForDeletion();
-            try {
-                DaoFactory.getDaoFactory().createPatientDAO().update(selectedItem);
-                readAllAndShowInTableView();
-            } catch (SQLException exception) {
-                exception.printStackTrace();
-            }
+            PatientDao patientDao = DaoFactory.getDaoFactory().createPatientDAO();
+            QueryExecutor.execute(() -> patientDao.update(selectedItem))
+                    .thenRunAsync(this.pager::refresh, QueryExecutor.FX_THREAD);
         }
 
     }
@@ -358,7 +354,7 @@ public class AllPatientController {
     /**
      * This method handles the events fired by the button to add a patient. It collects the data from the
      * <code>TextField</code>s, creates an object of class <code>Patient</code> of it and passes the object to
-     * {@link PatientDao} to persist the data.
+     * {@link PatientDao} to persist the data. The created patient is inserted into the table without reading it again.
      */
     @FXML
     public void handleAdd() {
@@ -369,14 +365,10 @@ public class AllPatientController {
         String careLevel = this.textFieldCareLevel.getText();
         String roomNumber = this.textFieldRoomNumber.getText();
 
-        try {
-            this.dao.create(
-                    new Patient(firstName, surname, date, careLevel, roomNumber, Patient.STATUS_ACTIVE, null, null,
-                            null, null));
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
-        readAllAndShowInTableView();
+        Patient patient = new Patient(firstName, surname, date, careLevel, roomNumber, Patient.STATUS_ACTIVE, null,
+                null, null, null);
+        QueryExecutor.submit(() -> this.dao.create(patient))
+                .thenAcceptAsync(this.pager::insert, QueryExecutor.FX_THREAD);
         clearTextfields();
     }
 
@@ -4,34 +4,54 @@ import de.hitec.nhplus.Main;
 import de.hitec.nhplus.datastorage.DaoFactory;
 import de.hitec.nhplus.datastorage.NurseDao;
 import de.hitec.nhplus.datastorage.PatientDao;
+import de.hitec.nhplus.datastorage.SearchHit;
+import de.hitec.nhplus.datastorage.SortOrder;
 import de.hitec.nhplus.datastorage.TreatmentDao;
+import de.hitec.nhplus.datastorage.TreatmentFilter;
 import de.hitec.nhplus.model.Nurse;
 import de.hitec.nhplus.model.Person;
+import de.hitec.nhplus.utils.ColumnBinding;
+import de.hitec.nhplus.utils.QueryExecutor;
 import de.hitec.nhplus.utils.Session;
+import de.hitec.nhplus.utils.TablePager;
+import javafx.animation.PauseTransition;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.value.ObservableValue;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.AnchorPane;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextFlow;
 import javafx.stage.Stage;
+import javafx.util.Duration;
+import javafx.util.StringConverter;
 import de.hitec.nhplus.model.Patient;
 import de.hitec.nhplus.model.Treatment;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.sql.SQLException;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The {@code AllTreatmentController} class manages the treatment overview view.
  * It handles displaying, filtering, adding, editing, and soft-deleting treatments,
  * as well as initializing UI elements like the ComboBox and TableView.
+ * <p>
+ * Treatments can be filtered by patient, nurse, date range and status. The filters are evaluated by the database,
+ * so that e.g. a shift view only loads today's treatments of one nurse. Typing into the search box restricts them
+ * further to the treatments whose description or remark contains the typed words, found by the full-text index and
+ * shown best match first with the matching words highlighted.
  */
 public class AllTreatmentController {
 
@@ -39,10 +59,10 @@ public class AllTreatmentController {
     private TableView<Treatment> tableView;
 
     @FXML
-    private TableColumn<Treatment, Integer> columnId;
+    private TableColumn<Treatment, Number> columnId;
 
     @FXML
-    private TableColumn<Treatment, Integer> columnPid;
+    private TableColumn<Treatment, Number> columnPid;
 
     @FXML
     private TableColumn<Treatment, String> columnDate;
@@ -59,6 +79,9 @@ public class AllTreatmentController {
     @FXML
     private TableColumn<Treatment, String> columnNurse;
 
+    @FXML
+    private TableColumn<Treatment, SearchHit<Treatment>> columnSnippet;
+
 
     @FXML
     private ComboBox<String> comboBoxPatientSelection;
@@ -66,11 +89,43 @@ public class AllTreatmentController {
     @FXML
     private Button buttonDelete;
 
+    @FXML
+    private ComboBox<Nurse> comboBoxNurseFilter;
+
+    @FXML
+    private DatePicker datePickerFrom;
+
+    @FXML
+    private DatePicker datePickerTo;
+
+    @FXML
+    private ComboBox<String> comboBoxStatusFilter;
+
+    @FXML
+    private TextField textFieldSearch;
+
+    private static final String STATUS_FILTER_ALL = "alle";
+    private static final String STATUS_FILTER_ACTIVE = "aktiv";
+    private static final String STATUS_FILTER_DELETED = "gelöscht";
 
     private final ObservableList<Treatment> treatments = FXCollections.observableArrayList();
     private TreatmentDao dao;
     private final ObservableList<String> patientSelection = FXCollections.observableArrayList();
-    private List<Patient> patientList;
+    private List<Patient> patientList = new ArrayList<>();
+    private TablePager<Treatment> pager;
+    private boolean adjustingFilter;
+    /**
+     * Snippet column value of the rows that are not search hits, shared by all of them.
+     */
+    private static final ObservableValue<SearchHit<Treatment>> NO_SEARCH_HIT =
+            new ReadOnlyObjectWrapper<SearchHit<Treatment>>().getReadOnlyProperty();
+
+    /**
+     * The hits of the search that is shown by their tids, empty while no search is shown. Every search fills a map of
+     * its own, so that pages of a superseded search read in the background do not show up in the next one.
+     */
+    private Map<Long, SearchHit<Treatment>> searchHits = Map.of();
+    private final PauseTransition searchDelay = new PauseTransition(Duration.millis(300));
 
     /**
      * Initializes the controller after the FXML has been loaded.
@@ -79,18 +134,21 @@ public class AllTreatmentController {
      */
 
     public void initialize() {
+        this.pager = new TablePager<>(this.tableView, this.treatments, Treatment::getTid, TablePager.DEFAULT_PAGE_SIZE);
         readAllAndShowInTableView();
         comboBoxPatientSelection.setItems(patientSelection);
         comboBoxPatientSelection.getSelectionModel().select(0);
 
-        this.columnId.setCellValueFactory(new PropertyValueFactory<>("tid"));
-        this.columnPid.setCellValueFactory(new PropertyValueFactory<>("pid"));
-        this.columnDate.setCellValueFactory(new PropertyValueFactory<>("date"));
-        this.columnBegin.setCellValueFactory(new PropertyValueFactory<>("begin"));
-        this.columnEnd.setCellValueFactory(new PropertyValueFactory<>("end"));
-        this.columnDescription.setCellValueFactory(new PropertyValueFactory<>("description"));
+        ColumnBinding.bind(this.columnId, Treatment::tidProperty);
+        ColumnBinding.bind(this.columnPid, Treatment::pidProperty);
+        ColumnBinding.bind(this.columnDate, Treatment::dateProperty);
+        ColumnBinding.bind(this.columnBegin, Treatment::beginProperty);
+        ColumnBinding.bind(this.columnEnd, Treatment::endProperty);
+        ColumnBinding.bind(this.columnDescription, Treatment::descriptionProperty);
         this.tableView.setItems(this.treatments);
-        this.columnNurse.setCellValueFactory(new PropertyValueFactory<>("nurseName"));
+        ColumnBinding.bind(this.columnNurse, Treatment::nurseNameProperty);
+        ColumnBinding.bind(this.columnSnippet, this::searchHitProperty);
+        this.columnSnippet.setCellFactory(column -> new SnippetCell());
 
 
         this.buttonDelete.setDisable(true);
@@ -99,6 +157,13 @@ public class AllTreatmentController {
                         newTreatment == null));
 
         this.createComboBoxData();
+        this.createFilterData();
+        this.searchDelay.setOnFinished(event -> handleFilter());
+        this.textFieldSearch.textProperty().addListener((observable, oldText, newText) -> {
+            if (!this.adjustingFilter) {
+                this.searchDelay.playFromStart();
+            }
+        });
 
         this.tableView.setOnMouseClicked(event -> {
             if (event.getClickCount() == 2 && tableView.getSelectionModel().getSelectedItem() != null) {
@@ -109,91 +174,201 @@ public class AllTreatmentController {
     }
 
     /**
-     * Loads all treatments from the database, assigns nurse names to each treatment,
-     * and populates the TableView with the result.
+     * Loads the first page of treatments together with their nurse names from the database
+     * and populates the TableView with it. Further pages are loaded while the user scrolls.
      */
     public void readAllAndShowInTableView() {
-        this.treatments.clear();
         this.dao = DaoFactory.getDaoFactory().createTreatmentDao();
-        try {
-            List<Treatment> allTreatments = dao.readAll();
-
-            NurseDao nurseDao = DaoFactory.getDaoFactory().createNurseDAO();
+        this.searchHits = Map.of();
+        TreatmentFilter filter = getFilter();
+        if (filter == null) {
+            this.pager.clear();
+            return;
+        }
+        String searchText = this.textFieldSearch.getText();
+        if (searchText != null && !searchText.isBlank()) {
+            showSearchHits(filter, searchText);
+            return;
+        }
+        this.columnSnippet.setVisible(false);
+        this.pager.show((afterKey, pageSize) -> this.dao.readPageWithNurseNames(filter, afterKey, pageSize,
+                SortOrder.ASCENDING), this.dao, filter::matches);
+    }
 
-            for (Treatment treatment : allTreatments) {
-                Nurse nurse = nurseDao.read((int) treatment.getNid());
-                if (nurse != null) {
-                    String nurseName = nurse.getSurname() + ", " + nurse.getFirstName();
-                    treatment.setNurseName(nurseName);
-                } else {
-                    treatment.setNurseName("Unbekannt");
-                }
+    /**
+     * Shows the treatments matching the filter whose description or remark contains the words of the search text,
+     * best match first, together with a snippet of the matching text. The hits are read page by page while the user
+     * scrolls; as they are ordered by rank and not by tid, the pages are read by offset, and refreshing reads them
+     * again from the first page.
+     *
+     * @param filter the conditions the treatments have to meet besides the search text
+     * @param text   the words to search for
+     */
+    private void showSearchHits(TreatmentFilter filter, String text) {
+        Map<Long, SearchHit<Treatment>> hitsByTid = new ConcurrentHashMap<>();
+        this.searchHits = hitsByTid;
+        this.columnSnippet.setVisible(true);
+        AtomicInteger loaded = new AtomicInteger();
+        this.pager.show((afterKey, pageSize) -> {
+            int offset = afterKey == null ? 0 : loaded.get();
+            List<SearchHit<Treatment>> hits = this.dao.search(filter, text, offset, pageSize);
+            loaded.set(offset + hits.size());
+            List<Treatment> page = new ArrayList<>(hits.size());
+            for (SearchHit<Treatment> hit : hits) {
+                hitsByTid.put(hit.getRow().getTid(), hit);
+                page.add(hit.getRow());
             }
+            return page;
+        });
+    }
 
-            this.treatments.addAll(allTreatments);
+    /**
+     * @param treatment a shown treatment
+     * @return the property of the search hit of the treatment, or an empty one if no search is shown
+     */
+    private ObservableValue<SearchHit<Treatment>> searchHitProperty(Treatment treatment) {
+        SearchHit<Treatment> hit = this.searchHits.get(treatment.getTid());
+        return hit != null ? hit.hitProperty() : NO_SEARCH_HIT;
+    }
 
-        } catch (SQLException exception) {
-            exception.printStackTrace();
+    /**
+     * Patches the shown treatments with the treatments that have been created, changed or deleted since they were
+     * loaded, instead of loading them again. Called after writes, also by the windows that edit treatments.
+     */
+    public void refreshChanges() {
+        this.pager.refresh();
+    }
+
+    /**
+     * Shows a treatment that has just been created by the window for new treatments, without reading the treatments
+     * again.
+     *
+     * @param treatment the created treatment, with its tid and nurse name set
+     */
+    public void showCreatedTreatment(Treatment treatment) {
+        this.pager.insert(treatment);
+    }
+
+    /**
+     * Builds the filter of the treatments from the selected patient and the filter controls.
+     *
+     * @return the filter, or {@code null} if no treatment can match, e.g. because the date range is empty
+     */
+    private TreatmentFilter getFilter() {
+        TreatmentFilter filter = TreatmentFilter.all();
+        String selectedPatient = this.comboBoxPatientSelection.getSelectionModel().getSelectedItem();
+        if (selectedPatient != null && !selectedPatient.equals("alle")) {
+            Patient patient = searchInList(selectedPatient);
+            if (patient == null) {
+                return null;
+            }
+            filter = filter.withPid(patient.getPid());
+        }
+        Nurse nurse = this.comboBoxNurseFilter.getValue();
+        if (nurse != null) {
+            filter = filter.withNid(nurse.getNid());
+        }
+        LocalDate from = this.datePickerFrom.getValue();
+        LocalDate to = this.datePickerTo.getValue();
+        if (from != null && to != null && from.isAfter(to)) {
+            return null;
+        }
+        filter = filter.withDateRange(from, to);
+        String status = this.comboBoxStatusFilter.getValue();
+        if (STATUS_FILTER_ACTIVE.equals(status)) {
+            filter = filter.withStatus(Treatment.STATUS_ACTIVE);
+        } else if (STATUS_FILTER_DELETED.equals(status)) {
+            filter = filter.withStatus(Treatment.STATUS_INACTIVE);
         }
+        return filter;
     }
 
     /**
-     * Loads all patients from the database and populates the ComboBox with their surnames.
+     * Loads all patients from the database in the background and populates the ComboBox with their surnames.
      * Includes an "all" option for displaying treatments from all patients.
      */
     private void createComboBoxData() {
         PatientDao dao = DaoFactory.getDaoFactory().createPatientDAO();
-        try {
-            patientList = dao.readAll();
+        this.patientSelection.add("alle");
+        QueryExecutor.submit(dao::readAll).thenAcceptAsync(patients -> {
+            this.patientList = patients;
+            patients.stream().map(Person::getSurname).forEach(patientSelection::add);
+        }, QueryExecutor.FX_THREAD);
+    }
 
-            this.patientSelection.add("alle");
-            patientList.stream().map(Person::getSurname).forEach(patientSelection::add);
+    /**
+     * Loads the nurses for the nurse filter in the background and fills the status filter.
+     */
+    private void createFilterData() {
+        this.adjustingFilter = true;
+        this.comboBoxStatusFilter.getItems().setAll(STATUS_FILTER_ALL, STATUS_FILTER_ACTIVE, STATUS_FILTER_DELETED);
+        this.comboBoxStatusFilter.setValue(STATUS_FILTER_ALL);
+        this.adjustingFilter = false;
+        this.comboBoxNurseFilter.setConverter(new StringConverter<>() {
+            @Override
+            public String toString(Nurse nurse) {
+                return (nurse == null) ? "" : nurse.getSurname() + ", " + nurse.getFirstName();
+            }
 
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
+            @Override
+            public Nurse fromString(String string) {
+                return null;
+            }
+        });
+        NurseDao nurseDao = DaoFactory.getDaoFactory().createNurseDAO();
+        QueryExecutor.submit(nurseDao::readAll).thenAcceptAsync(
+                nurses -> this.comboBoxNurseFilter.getItems().setAll(nurses), QueryExecutor.FX_THREAD);
     }
 
     /**
      * Filters the displayed treatments based on the selected patient in the ComboBox.
-     * If "all" is selected, all treatments are shown.
+     * If "all" is selected, the treatments of all patients are shown.
      * Otherwise, only treatments for the selected patient are displayed.
+     * Both are loaded page by page while the user scrolls.
      */
     @FXML
     public void handleComboBox() {
-        String selectedPatient = this.comboBoxPatientSelection.getSelectionModel().getSelectedItem();
-        this.treatments.clear();
-        this.dao = DaoFactory.getDaoFactory().createTreatmentDao();
-
-        try {
-            List<Treatment> filteredTreatments;
-            if (selectedPatient.equals("alle")) {
-                filteredTreatments = this.dao.readAll();
-            } else {
-                Patient patient = searchInList(selectedPatient);
-                if (patient != null) {
-                    filteredTreatments = this.dao.readTreatmentsByPid(patient.getPid());
-                } else {
-                    return;
-                }
-            }
+        readAllAndShowInTableView();
+    }
 
+    /**
+     * Reloads the treatments after the nurse, date or status filter or the search text has been changed.
+     */
+    @FXML
+    public void handleFilter() {
+        this.searchDelay.stop();
+        if (!this.adjustingFilter) {
+            readAllAndShowInTableView();
+        }
+    }
 
-            NurseDao nurseDao = DaoFactory.getDaoFactory().createNurseDAO();
-            for (Treatment treatment : filteredTreatments) {
-                Nurse nurse = nurseDao.read((int) treatment.getNid());
-                if (nurse != null) {
-                    String nurseName = nurse.getSurname() + ", " + nurse.getFirstName();
-                    treatment.setNurseName(nurseName);
-                } else {
-                    treatment.setNurseName("Unbekannt");
-                }
-            }
+    /**
+     * Restricts the treatments to today's date, e.g. for the view of the current shift.
+     */
+    @FXML
+    public void handleFilterToday() {
+        this.adjustingFilter = true;
+        this.datePickerFrom.setValue(LocalDate.now());
+        this.datePickerTo.setValue(LocalDate.now());
+        this.adjustingFilter = false;
+        readAllAndShowInTableView();
+    }
 
-            this.treatments.addAll(filteredTreatments);
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
+    /**
+     * Resets the nurse, date and status filter and the search, so that the treatments of all nurses, dates and
+     * statuses are shown.
+     */
+    @FXML
+    public void handleResetFilter() {
+        this.adjustingFilter = true;
+        this.searchDelay.stop();
+        this.textFieldSearch.clear();
+        this.comboBoxNurseFilter.setValue(null);
+        this.datePickerFrom.setValue(null);
+        this.datePickerTo.setValue(null);
+        this.comboBoxStatusFilter.setValue(STATUS_FILTER_ALL);
+        this.adjustingFilter = false;
+        readAllAndShowInTableView();
     }
 
     /**
@@ -235,15 +410,9 @@ public class AllTreatmentController {
             selectedItem.markForDeletion();
             Treatment treatment = tableView.getSelectionModel().getSelectedItem();
             treatment.setDeletedBy(Session.getCurrentUser().getUsername());
-            try {
-                DaoFactory.getDaoFactory().createTreatmentDao().update(selectedItem); // speichert Soft-Delete
-                readAllAndShowInTableView();
-
-            } catch (SQLException exception) {
-                exception.printStackTrace();
-            }
-
-            this.tableView.refresh();
+            TreatmentDao treatmentDao = DaoFactory.getDaoFactory().createTreatmentDao();
+            QueryExecutor.execute(() -> treatmentDao.update(selectedItem)) // speichert Soft-Delete
+                    .thenRunAsync(this::refreshChanges, QueryExecutor.FX_THREAD);
         }
     }
 
@@ -330,4 +499,28 @@ public class AllTreatmentController {
             exception.printStackTrace();
         }
     }
+
+    /**
+     * Shows the snippet of a search hit with the matching words in bold.
+     */
+    private static class SnippetCell extends TableCell<Treatment, SearchHit<Treatment>> {
+        @Override
+        protected void updateItem(SearchHit<Treatment> hit, boolean empty) {
+            super.updateItem(hit, empty);
+            if (empty || hit == null) {
+                setGraphic(null);
+                return;
+            }
+            TextFlow snippet = new TextFlow();
+            List<String> parts = hit.getSnippetParts();
+            for (int i = 0; i < parts.size(); i++) {
+                Text text = new Text(parts.get(i));
+                if (i % 2 == 1) {
+                    text.setStyle("-fx-font-weight: bold");
+                }
+                snippet.getChildren().add(text);
+            }
+            setGraphic(snippet);
+        }
+    }
 }
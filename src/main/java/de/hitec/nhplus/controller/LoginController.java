@@ -7,7 +7,8 @@ import javafx.fxml.FXMLLoader;
 import de.hitec.nhplus.datastorage.DaoFactory;
 import de.hitec.nhplus.datastorage.UserDao;
 import de.hitec.nhplus.model.User;
-import de.hitec.nhplus.utils.PasswordUtil;
+import de.hitec.nhplus.utils.CredentialService;
+import de.hitec.nhplus.utils.QueryExecutor;
 import javafx.fxml.FXML;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
@@ -16,8 +17,6 @@ import javafx.stage.Stage;
 import javafx.scene.layout.BorderPane;
 
 import java.io.IOException;
-import java.sql.SQLException;
-import java.util.List;
 
 /**
  * The {@code LoginController} class manages the login view and authentication logic.
@@ -36,7 +35,7 @@ public class LoginController {
 
     /**
      * Handles the login process when the login button is clicked.
-     * Validates input fields, checks the provided credentials against the database,
+     * Validates input fields, checks the provided credentials against the database in the background,
      * sets the current session user if authentication is successful, and opens the main window.
      * Displays appropriate messages in case of input errors or failed login.
      */
@@ -50,27 +49,32 @@ public class LoginController {
         }
 
 
-        try {
-            UserDao userDao = DaoFactory.getDaoFactory().createUserDAO();
-            List<User> users = userDao.readAll();
-
-
-            for (User user : users) {
-
-                if (user.getUsername().equals(inputUsername) && user.checkPassword(inputPassword)) {
-                    Session.setCurrentUser(user);
-                    messageLabel.setText("Login erfolgreich!");
-
-                    mainWindow();
-                    return;
-                }
-            }
+        UserDao userDao = DaoFactory.getDaoFactory().createUserDAO();
+        QueryExecutor.submit(() -> new CredentialService(userDao).authenticate(inputUsername, inputPassword))
+                .whenCompleteAsync(this::showLoginResult, QueryExecutor.FX_THREAD);
+    }
 
-            messageLabel.setText("Benutzername oder Passwort ist falsch.");
-        } catch (SQLException e) {
+    /**
+     * Sets the current session user and opens the main window if the authentication has succeeded, otherwise
+     * displays why the login failed.
+     *
+     * @param user    the authenticated user, or null if the credentials are wrong
+     * @param failure the failure of the database access, or null if it has succeeded
+     */
+    private void showLoginResult(User user, Throwable failure) {
+        if (failure != null) {
             messageLabel.setText("Fehler beim Zugriff auf die Datenbank.");
-            e.printStackTrace();
+            return;
         }
+        if (user != null) {
+            Session.setCurrentUser(user);
+            messageLabel.setText("Login erfolgreich!");
+
+            mainWindow();
+            return;
+        }
+
+        messageLabel.setText("Benutzername oder Passwort ist falsch.");
     }
 
     /**
@@ -1,15 +1,12 @@
 package de.hitec.nhplus.controller;
 
-import de.hitec.nhplus.datastorage.PatientDao;
-import de.hitec.nhplus.datastorage.TreatmentDao;
+import de.hitec.nhplus.datastorage.QueryMetrics;
 import de.hitec.nhplus.utils.Session;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
 import javafx.application.Platform;
 import javafx.scene.Scene;
 import de.hitec.nhplus.Main;
-import de.hitec.nhplus.datastorage.DaoFactory;
-import de.hitec.nhplus.datastorage.NurseDao;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
@@ -22,13 +19,13 @@ import javafx.util.Duration;
 
 import java.awt.*;
 import java.io.IOException;
-import java.sql.SQLException;
 
 /**
  * Controller class for the main application window.
  * <p>
  * Handles navigation between patient, nurse, and treatment views,
- * manages automatic logout on inactivity, and displays the currently logged-in user.
+ * manages automatic logout on inactivity, and displays the currently logged-in user. The view shown is passed to
+ * {@link QueryMetrics}, so that the cost of the database statements can be told apart per view.
  */
 
 
@@ -83,6 +80,7 @@ public class MainWindowController {
      */
     private void autoLogout() {
         Session.clear();
+        QueryMetrics.setScreen("Login");
 
         try {
             FXMLLoader loader = new FXMLLoader(Main.class.getResource("/de/hitec/nhplus/LoginView.fxml"));
@@ -97,60 +95,52 @@ public class MainWindowController {
     }
 
     /**
-     * Displays the patient overview and deletes expired patient records from the database beforehand.
+     * Displays the patient overview. Expired patient records are purged by the {@code RetentionPurgeJob}.
      *
      * @param event the ActionEvent triggered by the user interaction
      */
     @FXML
     private void handleShowAllPatient(ActionEvent event) {
+        QueryMetrics.setScreen("Patienten");
         try {
-            PatientDao patientDao = DaoFactory.getDaoFactory().createPatientDAO();
-            patientDao.deleteExpiredPatient();
             FXMLLoader loader = new FXMLLoader(Main.class.getResource("/de/hitec/nhplus/AllPatientView.fxml"));
 
             mainBorderPane.setCenter(loader.load());
-        } catch (IOException | SQLException exception) {
+        } catch (IOException exception) {
             exception.printStackTrace();
         }
     }
 
     /**
-     * Displays the treatment overview and deletes expired treatment records from the database beforehand.
+     * Displays the treatment overview. Expired treatment records are purged by the {@code RetentionPurgeJob}.
      *
      * @param event the ActionEvent triggered by the user interaction
      */
     @FXML
     private void handleShowAllTreatments(ActionEvent event) {
+        QueryMetrics.setScreen("Behandlungen");
         try {
-            TreatmentDao treatmentDao = DaoFactory.getDaoFactory().createTreatmentDao();
-            treatmentDao.deleteExpiredTreatments();
-
-
             FXMLLoader loader = new FXMLLoader(Main.class.getResource("/de/hitec/nhplus/AllTreatmentView.fxml"));
             mainBorderPane.setCenter(loader.load());
 
-        } catch (IOException | SQLException exception) {
+        } catch (IOException exception) {
             exception.printStackTrace();
         }
     }
 
     /**
-     * Displays the caregiver overview and deletes expired nurse records from the database beforehand.
+     * Displays the caregiver overview. Expired nurse records are purged by the {@code RetentionPurgeJob}.
      *
      * @param event the ActionEvent triggered by the user interaction
      */
     @FXML
     private void handleShowAllCaregiver(ActionEvent event) {
+        QueryMetrics.setScreen("Pflegekräfte");
         try {
-            // Vor dem Laden: veraltete Einträge prüfen und ggf. löschen
-            NurseDao nurseDao = DaoFactory.getDaoFactory().createNurseDAO();
-            nurseDao.deleteExpiredNurses(); // Diese Methode musst du wie unten beschrieben implementieren
-
-            // Jetzt die Übersicht laden
             FXMLLoader loader = new FXMLLoader(Main.class.getResource("/de/hitec/nhplus/AllCareGiverView.fxml"));
             mainBorderPane.setCenter(loader.load());
 
-        } catch (IOException | SQLException exception) {
+        } catch (IOException exception) {
             exception.printStackTrace();
         }
     }
@@ -163,6 +153,7 @@ public class MainWindowController {
     @FXML
     private void handleLogout(ActionEvent event) {
         Session.clear();
+        QueryMetrics.setScreen("Login");
 
         try {
             FXMLLoader loader = new FXMLLoader(Main.class.getResource("/de/hitec/nhplus/LoginView.fxml"));
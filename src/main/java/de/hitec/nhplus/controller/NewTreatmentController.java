@@ -7,6 +7,7 @@ import de.hitec.nhplus.model.Nurse;
 import de.hitec.nhplus.model.Patient;
 import de.hitec.nhplus.model.Treatment;
 import de.hitec.nhplus.utils.DateConverter;
+import de.hitec.nhplus.utils.QueryExecutor;
 import javafx.beans.value.ChangeListener;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -15,7 +16,6 @@ import javafx.scene.control.*;
 import javafx.stage.Stage;
 import javafx.util.StringConverter;
 
-import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
@@ -112,36 +112,34 @@ public class NewTreatmentController {
     }
 
     /**
-     * Loads all nurses from the database and populates the selection combo box.
+     * Loads all nurses from the database in the background and populates the selection combo box.
      * Configures the display of nurse names in "Last name, First name" format.
      */
     private void createComboBoxDataNurse() {
+        comboBoxNurseSelection.setItems(nurseSelection);
+        comboBoxNurseSelection.setConverter(new StringConverter<>() {
+            @Override
+            public String toString(Nurse nurse) {
+                return (nurse == null) ? "" : nurse.getSurname() + ", " + nurse.getFirstName();
+            }
+
+            @Override
+            public Nurse fromString(String string) {
+                return null;
+            }
+        });
+
         NurseDao dao = DaoFactory.getDaoFactory().createNurseDAO();
-        try {
-            nurseList = dao.readAll();
+        QueryExecutor.submit(dao::readAll).thenAcceptAsync(nurses -> {
+            nurseList = nurses;
             nurseSelection.setAll(nurseList);
-            comboBoxNurseSelection.setItems(nurseSelection);
-
-            comboBoxNurseSelection.setConverter(new StringConverter<>() {
-                @Override
-                public String toString(Nurse nurse) {
-                    return (nurse == null) ? "" : nurse.getSurname() + ", " + nurse.getFirstName();
-                }
-
-                @Override
-                public Nurse fromString(String string) {
-                    return null;
-                }
-            });
-
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        }, QueryExecutor.FX_THREAD);
     }
 
     /**
      * Triggered when the user confirms the treatment creation.
-     * Validates inputs, constructs a {@link Treatment} object, and stores it in the database.
+     * Validates inputs, constructs a {@link Treatment} object, and stores it in the database in the background.
+     * The created treatment is shown in the treatment table without reading it again once it has been stored.
      * Closes the window on success.
      */
 
@@ -162,24 +160,21 @@ public class NewTreatmentController {
         Treatment treatment =
                 new Treatment(patient.getPid(), date, begin, end, description, remarks, selectedNurse.getNid(),
                         Treatment.STATUS_ACTIVE, null, null, null, null);
+        treatment.setNurseName(selectedNurse.getSurname() + ", " + selectedNurse.getFirstName());
         createTreatment(treatment);
-
-        controller.readAllAndShowInTableView();
         stage.close();
     }
 
     /**
-     * Persists the given treatment object to the database using {@link TreatmentDao}.
+     * Persists the given treatment object to the database using {@link TreatmentDao} and shows the stored treatment
+     * with its tid set in the table of the parent controller.
      *
      * @param treatment the treatment object to store
      */
     private void createTreatment(Treatment treatment) {
         TreatmentDao dao = DaoFactory.getDaoFactory().createTreatmentDao();
-        try {
-            dao.create(treatment);
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
+        QueryExecutor.submit(() -> dao.create(treatment))
+                .thenAcceptAsync(controller::showCreatedTreatment, QueryExecutor.FX_THREAD);
     }
 
     /**
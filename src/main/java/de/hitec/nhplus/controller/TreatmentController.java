@@ -6,6 +6,7 @@ import de.hitec.nhplus.datastorage.PatientDao;
 import de.hitec.nhplus.datastorage.TreatmentDao;
 import de.hitec.nhplus.model.Nurse;
 import de.hitec.nhplus.model.Person;
+import de.hitec.nhplus.utils.QueryExecutor;
 import de.hitec.nhplus.utils.Session;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -17,7 +18,6 @@ import de.hitec.nhplus.model.Treatment;
 import de.hitec.nhplus.utils.DateConverter;
 import javafx.util.StringConverter;
 
-import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.List;
@@ -63,7 +63,8 @@ public class TreatmentController {
 
     /**
      * Initializes the controller with the given window, treatment, and parent controller.
-     * Loads patient data and displays all relevant information in the form.
+     * Displays the treatment in the form. The patient, the nurses and the remarks of the treatment, which the table
+     * does not read, are read in the background and shown when they have been read.
      *
      * @param controller the calling controller for refreshing the treatment table
      * @param stage      the current window (closed after editing is complete)
@@ -72,71 +73,87 @@ public class TreatmentController {
     public void initializeController(AllTreatmentController controller, Stage stage, Treatment treatment) {
         this.stage = stage;
         this.controller = controller;
+        this.treatment = treatment;
+        showData();
+
         PatientDao pDao = DaoFactory.getDaoFactory().createPatientDAO();
-        try {
-            this.patient = pDao.read((int) treatment.getPid());
-            this.treatment = treatment;
-            showData();
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
+        QueryExecutor.submit(() -> pDao.read((int) treatment.getPid()))
+                .thenAcceptAsync(this::showPatientData, QueryExecutor.FX_THREAD);
     }
 
     /**
-     * Displays patient information and treatment details in the form.
-     * Populates all input fields and sets the current nurse selection.
+     * Displays the name and the care level of the patient of the treatment.
+     *
+     * @param patient the patient of the treatment
      */
-    private void showData() {
+    private void showPatientData(Patient patient) {
+        this.patient = patient;
         this.labelPatientName.setText(patient.getSurname() + ", " + patient.getFirstName());
         this.labelCareLevel.setText(patient.getCareLevel());
+    }
+
+    /**
+     * Displays the treatment details in the form.
+     * Populates all input fields and loads the nurses to select the current one.
+     */
+    private void showData() {
         LocalDate date = DateConverter.convertStringToLocalDate(treatment.getDate());
         this.datePicker.setValue(date);
         this.textFieldBegin.setText(this.treatment.getBegin());
         this.textFieldEnd.setText(this.treatment.getEnd());
         this.textFieldDescription.setText(this.treatment.getDescription());
-        this.textAreaRemarks.setText(this.treatment.getRemarks());
+        this.loadRemarks();
 
 
         this.createComboBoxDataNurse();
+    }
 
-
-        this.comboBoxNurseSelection.setItems(nurseSelection);
-
-
-        for (Nurse nurse : nurseList) {
-            if (nurse.getNid() == treatment.getNid()) {
-                comboBoxNurseSelection.getSelectionModel().select(nurse);
-                break;
-            }
+    /**
+     * Loads the remarks of the treatment in the background if the table has not read them and fills them in when they
+     * have been read. The text area stays disabled until then, so that no input is overwritten.
+     */
+    private void loadRemarks() {
+        if (treatment.isRemarksLoaded()) {
+            this.textAreaRemarks.setText(this.treatment.getRemarks());
+            return;
         }
+        this.textAreaRemarks.setDisable(true);
+        TreatmentDao dao = DaoFactory.getDaoFactory().createTreatmentDao();
+        QueryExecutor.execute(() -> dao.loadRemarks(treatment)).thenRunAsync(() -> {
+            this.textAreaRemarks.setText(this.treatment.getRemarks());
+            this.textAreaRemarks.setDisable(false);
+        }, QueryExecutor.FX_THREAD);
     }
 
     /**
-     * Loads all available nurses from the database and populates the ComboBox.
-     * Uses a {@link StringConverter} to display nurse names in "Last name, First name" format.
+     * Loads all available nurses from the database in the background, populates the ComboBox and selects the nurse
+     * of the treatment. Uses a {@link StringConverter} to display nurse names in "Last name, First name" format.
      */
     private void createComboBoxDataNurse() {
-        NurseDao dao = DaoFactory.getDaoFactory().createNurseDAO();
-        try {
-            nurseList = dao.readAll();
-            nurseSelection.setAll(nurseList);
-            comboBoxNurseSelection.setItems(nurseSelection);
+        comboBoxNurseSelection.setItems(nurseSelection);
+        comboBoxNurseSelection.setConverter(new StringConverter<>() {
+            @Override
+            public String toString(Nurse nurse) {
+                return (nurse == null) ? "" : nurse.getSurname() + ", " + nurse.getFirstName();
+            }
 
-            comboBoxNurseSelection.setConverter(new StringConverter<>() {
-                @Override
-                public String toString(Nurse nurse) {
-                    return (nurse == null) ? "" : nurse.getSurname() + ", " + nurse.getFirstName();
-                }
+            @Override
+            public Nurse fromString(String string) {
+                return null;
+            }
+        });
 
-                @Override
-                public Nurse fromString(String string) {
-                    return null;
+        NurseDao dao = DaoFactory.getDaoFactory().createNurseDAO();
+        QueryExecutor.submit(dao::readAll).thenAcceptAsync(nurses -> {
+            nurseList = nurses;
+            nurseSelection.setAll(nurseList);
+            for (Nurse nurse : nurseList) {
+                if (nurse.getNid() == treatment.getNid()) {
+                    comboBoxNurseSelection.getSelectionModel().select(nurse);
+                    break;
                 }
-            });
-
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
+            }
+        }, QueryExecutor.FX_THREAD);
     }
 
     /**
@@ -159,8 +176,8 @@ public class TreatmentController {
 
     /**
      * Called when the user clicks the "Apply Changes" button.
-     * Validates inputs, updates the treatment object, saves changes to the database,
-     * and refreshes the parent controller's table view.
+     * Validates inputs, updates the treatment object, saves changes to the database in the background,
+     * and refreshes the parent controller's table view when they have been saved.
      */
     @FXML
     public void handleChange() {
@@ -183,21 +200,17 @@ public class TreatmentController {
         treatment.setNid(selectedNurse.getNid());
 
         doUpdate();
-
-        controller.readAllAndShowInTableView();
         stage.close();
     }
 
     /**
-     * Performs the update of the treatment entry in the database using {@link TreatmentDao}.
+     * Performs the update of the treatment entry in the database using {@link TreatmentDao} and refreshes the table of
+     * the parent controller afterwards.
      */
     private void doUpdate() {
         TreatmentDao dao = DaoFactory.getDaoFactory().createTreatmentDao();
-        try {
-            dao.update(treatment);
-        } catch (SQLException exception) {
-            exception.printStackTrace();
-        }
+        QueryExecutor.execute(() -> dao.update(treatment))
+                .thenRunAsync(controller::refreshChanges, QueryExecutor.FX_THREAD);
     }
 
 
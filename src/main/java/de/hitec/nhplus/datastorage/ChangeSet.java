@@ -0,0 +1,89 @@
+package de.hitec.nhplus.datastorage;
+
+import java.util.List;
+
+/**
+ * Immutable result of {@link ChangeTracked#readChangesSince(long)}: the rows of a table that have been inserted or
+ * updated and the keys of the rows that have been deleted since a given change version.
+ * <p>
+ * The version is read before the changes, so it never claims more than the change set contains. The change set may
+ * contain changes after its version as well; applying them again with the next change set does no harm.
+ * <p>
+ * If the tombstones of the rows deleted since the given version have already been pruned, the changes cannot be
+ * read anymore. The change set is then {@link #isExpired() expired}: it is empty and the caller has to read all rows
+ * again, up to the version of the change set.
+ *
+ * @param <T> the type of the rows of the table
+ */
+public final class ChangeSet<T> {
+
+    private final long version;
+    private final List<T> changed;
+    private final List<Long> deletedKeys;
+    private final boolean expired;
+
+    /**
+     * @param version     The change version the change set reaches up to.
+     * @param changed     The inserted or updated rows, ordered by their keys.
+     * @param deletedKeys The keys of the deleted rows.
+     */
+    public ChangeSet(long version, List<T> changed, List<Long> deletedKeys) {
+        this(version, changed, deletedKeys, false);
+    }
+
+    private ChangeSet(long version, List<T> changed, List<Long> deletedKeys, boolean expired) {
+        this.version = version;
+        this.changed = List.copyOf(changed);
+        this.deletedKeys = List.copyOf(deletedKeys);
+        this.expired = expired;
+    }
+
+    /**
+     * Creates the change set of a version whose tombstones have already been pruned.
+     *
+     * @param version The current change version of the table.
+     * @param <T>     The type of the rows of the table.
+     * @return The expired change set.
+     */
+    public static <T> ChangeSet<T> expired(long version) {
+        return new ChangeSet<>(version, List.of(), List.of(), true);
+    }
+
+    /**
+     * @return true if no row has been changed or deleted
+     */
+    public boolean isEmpty() {
+        return !this.expired && this.changed.isEmpty() && this.deletedKeys.isEmpty();
+    }
+
+    /**
+     * @return true if the changes could not be read anymore and all rows have to be read again
+     */
+    public boolean isExpired() {
+        return expired;
+    }
+
+    /**
+     * Getter Methods
+     */
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<T> getChanged() {
+        return changed;
+    }
+
+    public List<Long> getDeletedKeys() {
+        return deletedKeys;
+    }
+
+    public String toString() {
+        if (this.expired) {
+            return "Änderungen bis Version " + this.version + ": abgelaufen";
+        }
+        return "Änderungen bis Version " + this.version + ": " + this.changed.size() + " geändert, " +
+                this.deletedKeys.size() + " gelöscht";
+    }
+}
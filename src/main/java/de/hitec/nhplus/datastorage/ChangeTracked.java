@@ -0,0 +1,44 @@
+package de.hitec.nhplus.datastorage;
+
+import java.sql.SQLException;
+
+/**
+ * Data access object whose table keeps a change version per row, so that views showing its rows can refresh by the
+ * changes since they have read them instead of reading all rows again.
+ * <p>
+ * Every insert, update and delete of a row increments the change version of the table, see {@link SchemaMigrations}.
+ * A view remembers the version it has read up to and asks for the {@link ChangeSet} since that version after writes.
+ *
+ * @param <T> the type of the rows of the table
+ */
+public interface ChangeTracked<T> {
+
+    /**
+     * Returns the current change version of the table. Read it before the rows it is meant to cover.
+     *
+     * @return the version of the last change, 0 if the table has never been changed
+     * @throws SQLException if a database access error occurs
+     */
+    long getChangeVersion() throws SQLException;
+
+    /**
+     * Reads the rows inserted or updated and the keys of the rows deleted after the given version. A row that has
+     * changed more than once is contained only once, in its current state.
+     *
+     * @param version the change version the caller has already seen
+     * @return the changes, together with the version they reach up to
+     * @throws SQLException if a database access error occurs
+     */
+    ChangeSet<T> readChangesSince(long version) throws SQLException;
+
+    /**
+     * Deletes the tombstones of the rows deleted before the last {@code keepVersions} changes of the table, so that
+     * they do not pile up. Reading the changes since an older version then returns an
+     * {@link ChangeSet#isExpired() expired} change set.
+     *
+     * @param keepVersions the number of the latest changes whose tombstones are kept
+     * @return the number of deleted tombstones
+     * @throws SQLException if a database access error occurs
+     */
+    int pruneTombstones(long keepVersions) throws SQLException;
+}
@@ -0,0 +1,124 @@
+package de.hitec.nhplus.datastorage;
+
+import de.hitec.nhplus.utils.DateConverter;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Indexes of the columns of one {@link ResultSet} by their labels, read once from its metadata.
+ * <p>
+ * Labels are compared case-insensitively; if two columns share a label, the first one wins. Columns that are not part
+ * of the result set have the index {@link #ABSENT}, and the static read methods return <code>null</code> or 0 for
+ * them. This way one {@link RowMapper.Factory} serves queries that select fewer columns, e.g. projections.
+ */
+public final class ColumnIndex {
+
+    /**
+     * Index of a column that is not part of the result set.
+     */
+    public static final int ABSENT = 0;
+
+    private final Map<String, Integer> indexes;
+
+    private ColumnIndex(Map<String, Integer> indexes) {
+        this.indexes = indexes;
+    }
+
+    /**
+     * Reads the column labels of the given result set.
+     *
+     * @param result the result set
+     * @return the indexes of its columns
+     * @throws SQLException if the metadata could not be read
+     */
+    public static ColumnIndex of(ResultSet result) throws SQLException {
+        ResultSetMetaData metaData = result.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        Map<String, Integer> indexes = new HashMap<>(columnCount * 2);
+        for (int column = 1; column <= columnCount; column++) {
+            indexes.putIfAbsent(metaData.getColumnLabel(column).toLowerCase(Locale.ROOT), column);
+        }
+        return new ColumnIndex(indexes);
+    }
+
+    /**
+     * @param label the label of the column
+     * @return the 1-based index of the column, or {@link #ABSENT}
+     */
+    public int indexOf(String label) {
+        return this.indexes.getOrDefault(label.toLowerCase(Locale.ROOT), ABSENT);
+    }
+
+    /**
+     * @return the value of the column, <code>null</code> if it is SQL NULL or absent
+     */
+    public static String getString(ResultSet result, int column) throws SQLException {
+        return column == ABSENT ? null : result.getString(column);
+    }
+
+    /**
+     * Reads a column with few distinct values, e.g. a status or a username, so that all rows share one instance of
+     * each value instead of a copy per row.
+     *
+     * @return the canonical instance of the value of the column, <code>null</code> if it is SQL NULL or absent
+     */
+    public static String getCode(ResultSet result, int column) throws SQLException {
+        String value = getString(result, column);
+        return value != null ? value.intern() : null;
+    }
+
+    /**
+     * @return the value of the column, 0 if it is SQL NULL or absent
+     */
+    public static long getLong(ResultSet result, int column) throws SQLException {
+        return column == ABSENT ? 0 : result.getLong(column);
+    }
+
+    /**
+     * @return the value of the column, 0 if it is SQL NULL or absent
+     */
+    public static double getDouble(ResultSet result, int column) throws SQLException {
+        return column == ABSENT ? 0 : result.getDouble(column);
+    }
+
+    /**
+     * Reads a column written with {@link java.sql.PreparedStatement#setDate}.
+     *
+     * @return the date of the column, <code>null</code> if it is SQL NULL or absent
+     */
+    public static LocalDate getDate(ResultSet result, int column) throws SQLException {
+        if (column == ABSENT) {
+            return null;
+        }
+        Date date = result.getDate(column);
+        return date != null ? date.toLocalDate() : null;
+    }
+
+    /**
+     * Reads a column holding a date as text in the format of the {@link DateConverter}.
+     *
+     * @return the date of the column, <code>null</code> if it is SQL NULL or absent
+     */
+    public static LocalDate getDateText(ResultSet result, int column) throws SQLException {
+        String date = getString(result, column);
+        return date != null ? DateConverter.convertStringToLocalDate(date) : null;
+    }
+
+    /**
+     * Reads a column holding a time as text in the format of the {@link DateConverter}.
+     *
+     * @return the time of the column, <code>null</code> if it is SQL NULL or absent
+     */
+    public static LocalTime getTimeText(ResultSet result, int column) throws SQLException {
+        String time = getString(result, column);
+        return time != null ? DateConverter.convertStringToLocalTime(time) : null;
+    }
+}
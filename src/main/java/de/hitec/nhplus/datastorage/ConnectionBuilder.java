@@ -1,59 +1,209 @@
 package de.hitec.nhplus.datastorage;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
-import org.sqlite.SQLiteConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
- * Utility class for managing the SQLite database connection.
+ * Utility class for managing the SQLite database connections.
  * <p>
- * Provides a singleton-style access to a shared database connection
- * and ensures that foreign key constraints are enforced.
+ * Provides a singleton-style access to a shared {@link ConnectionPool}. All connections are configured with the
+ * active {@link DatabaseProfile}, which can be chosen with the system property <code>nhplus.db.profile</code> or
+ * {@link #setProfile(DatabaseProfile)} and defaults to {@link DatabaseProfile#INTERACTIVE}. The pool size and the idle
+ * timeout can be configured with the system properties <code>nhplus.pool.maxReadConnections</code>,
+ * <code>nhplus.pool.idleTimeoutSeconds</code> and <code>nhplus.pool.acquireTimeoutSeconds</code>.
  */
 public class ConnectionBuilder {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionBuilder.class);
+
     private static final String DB_NAME = "nursingHome.db";
     private static final String URL = "jdbc:sqlite:db/" + DB_NAME;
 
-    private static Connection connection;
+    private static final int DEFAULT_MAX_READ_CONNECTIONS = 4;
+    private static final long DEFAULT_IDLE_TIMEOUT_SECONDS = 60;
+    private static final long DEFAULT_ACQUIRE_TIMEOUT_SECONDS = 30;
+
+    private static final String[] CHECKED_PRAGMAS =
+            {"journal_mode", "synchronous", "cache_size", "mmap_size", "temp_store", "busy_timeout", "foreign_keys"};
+
+    private static ConnectionPool connectionPool;
+    private static DatabaseProfile profile =
+            DatabaseProfile.fromName(System.getProperty("nhplus.db.profile", DatabaseProfile.INTERACTIVE.name()));
+
+    /**
+     * Returns the shared {@link ConnectionPool} of the SQLite database.
+     * <p>
+     * If the pool does not yet exist, it is initialized with the configuration of the active profile. Read
+     * connections are opened read-only.
+     *
+     * @return the shared {@link ConnectionPool} instance
+     */
+    synchronized public static ConnectionPool getConnectionPool() {
+        if (ConnectionBuilder.connectionPool == null) {
+            ConnectionBuilder.connectionPool = new ConnectionPool(URL,
+                    profile.createConfiguration(false).toProperties(),
+                    profile.createConfiguration(true).toProperties(),
+                    Integer.getInteger("nhplus.pool.maxReadConnections", DEFAULT_MAX_READ_CONNECTIONS),
+                    Duration.ofSeconds(Long.getLong("nhplus.pool.idleTimeoutSeconds", DEFAULT_IDLE_TIMEOUT_SECONDS)),
+                    Duration.ofSeconds(
+                            Long.getLong("nhplus.pool.acquireTimeoutSeconds", DEFAULT_ACQUIRE_TIMEOUT_SECONDS)));
+        }
+        return ConnectionBuilder.connectionPool;
+    }
 
     /**
-     * Returns a shared {@link Connection} instance to the SQLite database.
+     * Returns the writer {@link Connection} of the shared pool.
      * <p>
-     * If the connection does not yet exist, it is initialized with
-     * foreign key constraint enforcement enabled.
+     * The connection is returned without taking the write lock of the pool. It is meant for single-threaded tasks
+     * like setting up the database; data access objects get their connections from the pool instead.
      *
-     * @return the active {@link Connection} instance, or null if an error occurred
+     * @return the writer {@link Connection} instance, or null if an error occurred
      */
     synchronized public static Connection getConnection() {
         try {
-            if (ConnectionBuilder.connection == null) {
-                SQLiteConfig configuration = new SQLiteConfig();
-                configuration.enforceForeignKeys(true);
-                ConnectionBuilder.connection = DriverManager.getConnection(URL, configuration.toProperties());
+            return getConnectionPool().getWriteConnection();
+        } catch (SQLException exception) {
+            LOGGER.error("Verbindung zur Datenbank konnte nicht aufgebaut werden!", exception);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the profile the connections are configured with.
+     *
+     * @return the active {@link DatabaseProfile}
+     */
+    synchronized public static DatabaseProfile getProfile() {
+        return ConnectionBuilder.profile;
+    }
+
+    /**
+     * Switches to another configuration profile. An existing pool is closed, so that all following connections are
+     * opened with the new profile. DAOs created before the switch still refer to the closed pool and have to be
+     * created again by the {@link DaoFactory}.
+     *
+     * @param profile the profile to use from now on
+     */
+    synchronized public static void setProfile(DatabaseProfile profile) {
+        if (ConnectionBuilder.profile != profile) {
+            closeConnection();
+            ConnectionBuilder.profile = profile;
+        }
+    }
+
+    /**
+     * Startup step: applies the pending schema migrations with the {@link MigrationRunner}. With a read-only profile
+     * the schema cannot be changed, so only its version is logged.
+     *
+     * @return true if the schema is up to date, false if the migration failed
+     */
+    public static boolean migrateSchema() {
+        ConnectionPool pool = getConnectionPool();
+        try {
+            if (getProfile().isReadOnly()) {
+                LOGGER.info("Datenbankschema ist auf Version {}, Migrationen werden im Profil '{}' nicht angewendet",
+                        MigrationRunner.getCurrentVersion(pool.getWriteConnection()), getProfile().getProfileName());
+                return true;
             }
+            MigrationRunner.migrate(pool);
+            return true;
         } catch (SQLException exception) {
-            System.out.println("Verbindung zur Datenbank konnte nicht aufgebaut werden!");
-            exception.printStackTrace();
+            LOGGER.error("Datenbankschema konnte nicht migriert werden", exception);
+            return false;
         }
-        return ConnectionBuilder.connection;
     }
 
     /**
-     * Closes the current database connection if it exists.
-     * <p>
-     * After closing, the connection is set to null to allow for reinitialization.
+     * Reads the pragmas that are actually in effect on the given connection.
+     *
+     * @param connection the connection to inspect
+     * @return the pragma names with their current values, in a fixed order
+     * @throws SQLException if a pragma could not be read
      */
-    synchronized public static void closeConnection() {
+    public static Map<String, String> readEffectivePragmas(Connection connection) throws SQLException {
+        Map<String, String> pragmas = new LinkedHashMap<>();
+        try (Statement statement = connection.createStatement()) {
+            for (String pragma : CHECKED_PRAGMAS) {
+                try (ResultSet result = statement.executeQuery("PRAGMA " + pragma)) {
+                    pragmas.put(pragma, result.next() ? result.getString(1) : null);
+                }
+            }
+        }
+        return pragmas;
+    }
+
+    /**
+     * Startup check: logs the pragmas in effect on the writer connection and on a read connection and warns about
+     * every value that differs from the active profile, e.g. if the file system does not support WAL mode.
+     *
+     * @return true if all pragmas match the profile, false otherwise or if the check failed
+     */
+    public static boolean checkPragmas() {
+        DatabaseProfile activeProfile = getProfile();
+        ConnectionPool pool = getConnectionPool();
         try {
-            if (ConnectionBuilder.connection != null) {
-                ConnectionBuilder.connection.close();
-                ConnectionBuilder.connection = null;
+            Map<String, String> writerPragmas = readEffectivePragmas(pool.getWriteConnection());
+            Map<String, String> readerPragmas;
+            Connection readConnection = pool.acquireReadConnection();
+            try {
+                readerPragmas = readEffectivePragmas(readConnection);
+            } finally {
+                pool.releaseReadConnection(readConnection);
             }
+            LOGGER.info("Datenbankprofil '{}': Schreibverbindung {}, Leseverbindung {}", activeProfile.getProfileName(),
+                    writerPragmas, readerPragmas);
+            return matchesProfile(activeProfile, "Schreibverbindung", writerPragmas) &
+                    matchesProfile(activeProfile, "Leseverbindung", readerPragmas);
         } catch (SQLException exception) {
-            exception.printStackTrace();
+            LOGGER.error("Pragmas der Datenbank konnten nicht gelesen werden", exception);
+            return false;
+        }
+    }
+
+    /**
+     * Compares the effective pragmas of one connection with the values expected by the profile and logs a warning
+     * for every difference.
+     */
+    private static boolean matchesProfile(DatabaseProfile profile, String connectionName, Map<String, String> pragmas) {
+        Map<String, String> expected = new LinkedHashMap<>();
+        expected.put("journal_mode", "wal");
+        // SQLite reports synchronous and temp_store by their numeric value, which matches the enum order
+        expected.put("synchronous", Integer.toString(profile.getSynchronous().ordinal()));
+        expected.put("cache_size", Integer.toString(-profile.getCacheSizeKiB()));
+        expected.put("mmap_size", Long.toString(profile.getMmapSize()));
+        expected.put("temp_store", Integer.toString(profile.getTempStore().ordinal()));
+        expected.put("busy_timeout", Integer.toString(profile.getBusyTimeoutMillis()));
+        expected.put("foreign_keys", "1");
+
+        boolean matches = true;
+        for (Map.Entry<String, String> entry : expected.entrySet()) {
+            String actual = pragmas.get(entry.getKey());
+            if (!entry.getValue().equalsIgnoreCase(actual)) {
+                LOGGER.warn("{}: PRAGMA {} ist {}, erwartet wurde {}", connectionName, entry.getKey(), actual,
+                        entry.getValue());
+                matches = false;
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Closes the connection pool and all of its connections if it exists.
+     * <p>
+     * After closing, the pool is set to null to allow for reinitialization.
+     */
+    synchronized public static void closeConnection() {
+        if (ConnectionBuilder.connectionPool != null) {
+            ConnectionBuilder.connectionPool.close();
+            ConnectionBuilder.connectionPool = null;
         }
     }
 }
@@ -0,0 +1,414 @@
+package de.hitec.nhplus.datastorage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pool of JDBC connections to the SQLite database.
+ * <p>
+ * SQLite allows many concurrent readers but only one writer at a time. The pool therefore keeps a bounded set of
+ * read-only connections, each handed out to one caller at a time, and a single writer connection that is guarded by
+ * a lock, so that write operations are serialized while reads keep running on their own connections. Read
+ * connections that stay idle longer than the configured timeout are closed by a background eviction task.
+ */
+public class ConnectionPool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionPool.class);
+
+    private final String url;
+    private final Properties readProperties;
+    private final Properties writeProperties;
+    private final int maxReadConnections;
+    private final long idleTimeoutNanos;
+    private final long acquireTimeoutNanos;
+
+    private final ReentrantLock readLock = new ReentrantLock();
+    private final Condition readConnectionReleased = readLock.newCondition();
+    private final Deque<IdleConnection> idleReadConnections = new ArrayDeque<>();
+    private int openReadConnections;
+    private int activeReadConnections;
+    private long createdReadConnections;
+    private long evictedReadConnections;
+    private long readAcquisitions;
+    private long waitingReadAcquisitions;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    // guards opening and closing the writer, so that opening a read connection does not wait for a running write
+    private final Object writeConnectionInitLock = new Object();
+    private volatile Connection writeConnection;
+    // only incremented while holding the write lock
+    private volatile long writeAcquisitions;
+
+    private final ScheduledExecutorService evictionExecutor;
+    private volatile boolean closed;
+
+    /**
+     * Creates a pool for the given database. No connection is opened until it is requested.
+     *
+     * @param url                JDBC url of the database.
+     * @param readProperties     Connection properties for the read connections.
+     * @param writeProperties    Connection properties for the writer connection.
+     * @param maxReadConnections Maximum number of read connections that are open at the same time.
+     * @param idleTimeout        Time after which an unused read connection is closed.
+     * @param acquireTimeout     Maximum time a caller waits for a free read connection.
+     */
+    public ConnectionPool(String url, Properties readProperties, Properties writeProperties, int maxReadConnections,
+                          Duration idleTimeout, Duration acquireTimeout) {
+        if (maxReadConnections < 1) {
+            throw new IllegalArgumentException("maxReadConnections must be at least 1");
+        }
+        this.url = url;
+        this.readProperties = readProperties;
+        this.writeProperties = writeProperties;
+        this.maxReadConnections = maxReadConnections;
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.acquireTimeoutNanos = acquireTimeout.toNanos();
+
+        this.evictionExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "nhplus-connection-eviction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long evictionPeriod = Math.max(TimeUnit.SECONDS.toMillis(1), idleTimeout.toMillis() / 2);
+        this.evictionExecutor.scheduleWithFixedDelay(this::evictIdleConnections, evictionPeriod, evictionPeriod,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a read connection from the pool. An idle connection is reused if available, otherwise a new one is
+     * opened as long as the maximum pool size is not reached. If all connections are in use, the caller waits until
+     * one is released. Every borrowed connection must be given back with {@link #releaseReadConnection(Connection)}.
+     *
+     * @return A read-only connection, exclusively used by the caller until it is released.
+     * @throws SQLException If no connection could be opened or none became available in time.
+     */
+    public Connection acquireReadConnection() throws SQLException {
+        long deadline = System.nanoTime() + this.acquireTimeoutNanos;
+        this.readLock.lock();
+        try {
+            boolean waiting = false;
+            while (true) {
+                ensureOpen();
+                IdleConnection idle = this.idleReadConnections.pollFirst();
+                if (idle != null) {
+                    this.activeReadConnections++;
+                    this.readAcquisitions++;
+                    return idle.connection;
+                }
+                if (this.openReadConnections < this.maxReadConnections) {
+                    // reserve the slot, the connection itself is opened outside of the lock
+                    this.openReadConnections++;
+                    break;
+                }
+                if (!waiting) {
+                    waiting = true;
+                    this.waitingReadAcquisitions++;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new SQLException("Keine freie Lese-Verbindung innerhalb des Timeouts verfügbar.");
+                }
+                this.readConnectionReleased.awaitNanos(remaining);
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Warten auf eine Lese-Verbindung wurde unterbrochen.", exception);
+        } finally {
+            this.readLock.unlock();
+        }
+        return openReadConnection();
+    }
+
+    /**
+     * Gives a read connection back to the pool, so that it can be reused by other callers.
+     *
+     * @param connection Connection that was borrowed with {@link #acquireReadConnection()}.
+     */
+    public void releaseReadConnection(Connection connection) {
+        this.readLock.lock();
+        try {
+            this.activeReadConnections--;
+            if (this.closed) {
+                this.openReadConnections--;
+                closeQuietly(connection);
+                return;
+            }
+            this.idleReadConnections.addFirst(new IdleConnection(connection, System.nanoTime()));
+            this.readConnectionReleased.signal();
+        } finally {
+            this.readLock.unlock();
+        }
+    }
+
+    /**
+     * Acquires the single writer connection. The calling thread holds the write lock until it calls
+     * {@link #releaseWriteConnection()}; other writers wait in the meantime. The lock is reentrant, so a thread that
+     * already holds the writer may acquire it again.
+     *
+     * @return The writer connection.
+     * @throws SQLException If the writer connection could not be opened.
+     */
+    public Connection acquireWriteConnection() throws SQLException {
+        this.writeLock.lock();
+        try {
+            Connection connection = getWriteConnection();
+            this.writeAcquisitions++;
+            return connection;
+        } catch (SQLException | RuntimeException exception) {
+            this.writeLock.unlock();
+            throw exception;
+        }
+    }
+
+    /**
+     * Releases the write lock taken by {@link #acquireWriteConnection()}.
+     */
+    public void releaseWriteConnection() {
+        this.writeLock.unlock();
+    }
+
+    /**
+     * Returns the writer connection without taking the write lock, opening it on first use. This is only meant for
+     * single-threaded tasks like setting up the schema; regular data access has to use
+     * {@link #acquireWriteConnection()}.
+     *
+     * @return The writer connection.
+     * @throws SQLException If the writer connection could not be opened.
+     */
+    public Connection getWriteConnection() throws SQLException {
+        Connection connection = this.writeConnection;
+        if (connection != null) {
+            ensureOpen();
+            return connection;
+        }
+        synchronized (this.writeConnectionInitLock) {
+            ensureOpen();
+            if (this.writeConnection == null) {
+                this.writeConnection = DriverManager.getConnection(this.url, this.writeProperties);
+            }
+            return this.writeConnection;
+        }
+    }
+
+    /**
+     * Closes all read connections that were not used within the idle timeout.
+     */
+    public void evictIdleConnections() {
+        long now = System.nanoTime();
+        this.readLock.lock();
+        try {
+            Iterator<IdleConnection> iterator = this.idleReadConnections.descendingIterator();
+            while (iterator.hasNext()) {
+                IdleConnection idle = iterator.next();
+                if (now - idle.idleSince < this.idleTimeoutNanos) {
+                    // the deque is ordered by release time, all remaining connections are younger
+                    break;
+                }
+                iterator.remove();
+                this.openReadConnections--;
+                this.evictedReadConnections++;
+                closeQuietly(idle.connection);
+            }
+        } finally {
+            this.readLock.unlock();
+        }
+    }
+
+    /**
+     * Returns a snapshot of the current pool usage.
+     *
+     * @return Statistics of this pool.
+     */
+    public Statistics getStatistics() {
+        long writes = this.writeAcquisitions;
+        this.readLock.lock();
+        try {
+            return new Statistics(this.maxReadConnections, this.openReadConnections, this.activeReadConnections,
+                    this.idleReadConnections.size(), this.createdReadConnections, this.evictedReadConnections,
+                    this.readAcquisitions, this.waitingReadAcquisitions, writes);
+        } finally {
+            this.readLock.unlock();
+        }
+    }
+
+    /**
+     * Closes all idle read connections and the writer connection. Read connections that are still borrowed are
+     * closed as soon as they are released.
+     */
+    public void close() {
+        this.closed = true;
+        this.evictionExecutor.shutdownNow();
+        this.readLock.lock();
+        try {
+            for (IdleConnection idle : this.idleReadConnections) {
+                closeQuietly(idle.connection);
+                this.openReadConnections--;
+            }
+            this.idleReadConnections.clear();
+            this.readConnectionReleased.signalAll();
+        } finally {
+            this.readLock.unlock();
+        }
+        // wait for a running write before closing the writer under it
+        this.writeLock.lock();
+        try {
+            synchronized (this.writeConnectionInitLock) {
+                if (this.writeConnection != null) {
+                    closeQuietly(this.writeConnection);
+                    this.writeConnection = null;
+                }
+            }
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
+
+    /**
+     * Opens a new read connection for a slot that was reserved by {@link #acquireReadConnection()}. The writer is
+     * opened first, so that the database file exists before a read-only connection tries to open it. Opening it does
+     * not take the write lock, so the read connection does not wait for a running write.
+     */
+    private Connection openReadConnection() throws SQLException {
+        try {
+            getWriteConnection();
+            Connection connection = DriverManager.getConnection(this.url, this.readProperties);
+            this.readLock.lock();
+            try {
+                this.activeReadConnections++;
+                this.createdReadConnections++;
+                this.readAcquisitions++;
+            } finally {
+                this.readLock.unlock();
+            }
+            return connection;
+        } catch (SQLException | RuntimeException exception) {
+            this.readLock.lock();
+            try {
+                this.openReadConnections--;
+                this.readConnectionReleased.signal();
+            } finally {
+                this.readLock.unlock();
+            }
+            throw exception;
+        }
+    }
+
+    private void ensureOpen() throws SQLException {
+        if (this.closed) {
+            throw new SQLException("Der Verbindungspool wurde bereits geschlossen.");
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException exception) {
+            LOGGER.warn("Verbindung konnte nicht geschlossen werden", exception);
+        }
+    }
+
+    /**
+     * A read connection waiting in the pool together with the time it was released.
+     */
+    private static final class IdleConnection {
+        private final Connection connection;
+        private final long idleSince;
+
+        private IdleConnection(Connection connection, long idleSince) {
+            this.connection = connection;
+            this.idleSince = idleSince;
+        }
+    }
+
+    /**
+     * Immutable snapshot of the usage of a {@link ConnectionPool}.
+     */
+    public static final class Statistics {
+        private final int maxReadConnections;
+        private final int openReadConnections;
+        private final int activeReadConnections;
+        private final int idleReadConnections;
+        private final long createdReadConnections;
+        private final long evictedReadConnections;
+        private final long readAcquisitions;
+        private final long waitingReadAcquisitions;
+        private final long writeAcquisitions;
+
+        private Statistics(int maxReadConnections, int openReadConnections, int activeReadConnections,
+                           int idleReadConnections, long createdReadConnections, long evictedReadConnections,
+                           long readAcquisitions, long waitingReadAcquisitions, long writeAcquisitions) {
+            this.maxReadConnections = maxReadConnections;
+            this.openReadConnections = openReadConnections;
+            this.activeReadConnections = activeReadConnections;
+            this.idleReadConnections = idleReadConnections;
+            this.createdReadConnections = createdReadConnections;
+            this.evictedReadConnections = evictedReadConnections;
+            this.readAcquisitions = readAcquisitions;
+            this.waitingReadAcquisitions = waitingReadAcquisitions;
+            this.writeAcquisitions = writeAcquisitions;
+        }
+
+        /**
+         * Getter Methods
+         */
+
+        public int getMaxReadConnections() {
+            return maxReadConnections;
+        }
+
+        public int getOpenReadConnections() {
+            return openReadConnections;
+        }
+
+        public int getActiveReadConnections() {
+            return activeReadConnections;
+        }
+
+        public int getIdleReadConnections() {
+            return idleReadConnections;
+        }
+
+        public long getCreatedReadConnections() {
+            return createdReadConnections;
+        }
+
+        public long getEvictedReadConnections() {
+            return evictedReadConnections;
+        }
+
+        public long getReadAcquisitions() {
+            return readAcquisitions;
+        }
+
+        public long getWaitingReadAcquisitions() {
+            return waitingReadAcquisitions;
+        }
+
+        public long getWriteAcquisitions() {
+            return writeAcquisitions;
+        }
+
+        public String toString() {
+            return "Verbindungspool" + "\nLese-Verbindungen (max): " + this.maxReadConnections +
+                    "\nLese-Verbindungen offen: " + this.openReadConnections + "\nLese-Verbindungen aktiv: " +
+                    this.activeReadConnections + "\nLese-Verbindungen frei: " + this.idleReadConnections +
+                    "\nErzeugt: " + this.createdReadConnections + "\nEntfernt: " + this.evictedReadConnections +
+                    "\nLesezugriffe: " + this.readAcquisitions + "\nDavon wartend: " + this.waitingReadAcquisitions +
+                    "\nSchreibzugriffe: " + this.writeAcquisitions + "\n";
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package de.hitec.nhplus.datastorage;
 
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Generic Data Access Object (DAO) interface that defines standard CRUD operations
@@ -11,12 +13,35 @@ import java.util.List;
  */
 public interface Dao<T> {
     /**
-     * Persists the given entity into the database.
+     * Persists the given entity into the database and sets its generated primary key, so that it can be shown and
+     * edited without reading it again.
      *
      * @param t the entity to be created
+     * @return the given entity, with its primary key set
      * @throws SQLException if a database access error occurs
      */
-    void create(T t) throws SQLException;
+    T create(T t) throws SQLException;
+
+    /**
+     * Persists all given entities in a single transaction, sending them to the database in batches of a default
+     * chunk size. Either all entities are persisted or, if one of them fails, none.
+     *
+     * @param ts the entities to be created
+     * @return the generated primary keys, in the iteration order of {@code ts}
+     * @throws SQLException if a database access error occurs
+     */
+    List<Long> createAll(Collection<T> ts) throws SQLException;
+
+    /**
+     * Persists all given entities in a single transaction, sending them to the database in batches of the given
+     * chunk size. Either all entities are persisted or, if one of them fails, none.
+     *
+     * @param ts        the entities to be created
+     * @param chunkSize the maximum number of entities per batch
+     * @return the generated primary keys, in the iteration order of {@code ts}
+     * @throws SQLException if a database access error occurs
+     */
+    List<Long> createAll(Collection<T> ts, int chunkSize) throws SQLException;
 
     /**
      * Retrieves an entity by its unique identifier.
@@ -36,6 +61,40 @@ public interface Dao<T> {
      */
     List<T> readAll() throws SQLException;
 
+    /**
+     * Streams the entities that {@link #readAll()} returns, fetching rows in batches of a default fetch size.
+     *
+     * @return a lazy stream of the entities, which must be closed
+     * @throws SQLException if a database access error occurs
+     * @see #stream(int)
+     */
+    Stream<T> stream() throws SQLException;
+
+    /**
+     * Streams the entities that {@link #readAll()} returns. The rows are mapped one by one while the stream is
+     * consumed, so memory use does not grow with the size of the table. The stream holds a database connection
+     * until it is closed, so it must be closed, e.g. with try-with-resources. A database access error while the
+     * stream is consumed is thrown as an {@link UncheckedSQLException}.
+     *
+     * @param fetchSize the number of rows fetched from the database at once
+     * @return a lazy stream of the entities, which must be closed
+     * @throws SQLException if the query could not be started
+     */
+    Stream<T> stream(int fetchSize) throws SQLException;
+
+    /**
+     * Retrieves one page of the entities that {@link #readAll()} returns, ordered by their primary key. The next
+     * page is read by passing the key of the last entity of the previous page as {@code afterKey} (keyset
+     * pagination), so every page is found through the primary key index.
+     *
+     * @param afterKey  the primary key of the last entity of the previous page, or {@code null} for the first page
+     * @param pageSize  the maximum number of entities in the page
+     * @param sortOrder the order of the primary keys
+     * @return the entities of the page; a page with fewer than {@code pageSize} entities is the last one
+     * @throws SQLException if a database access error occurs
+     */
+    List<T> readPage(Long afterKey, int pageSize, SortOrder sortOrder) throws SQLException;
+
     /**
      * Updates the given entity in the database.
      *
@@ -44,6 +103,27 @@ public interface Dao<T> {
      */
     void update(T t) throws SQLException;
 
+    /**
+     * Updates all given entities in a single transaction, sending them to the database in batches of a default chunk
+     * size. Either all updates are applied or, if one of them fails, none.
+     *
+     * @param ts the entities with updated values
+     * @return the number of updated rows
+     * @throws SQLException if a database access error occurs
+     */
+    int updateAll(Collection<T> ts) throws SQLException;
+
+    /**
+     * Updates all given entities in a single transaction, sending them to the database in batches of the given chunk
+     * size. Either all updates are applied or, if one of them fails, none.
+     *
+     * @param ts        the entities with updated values
+     * @param chunkSize the maximum number of entities per batch
+     * @return the number of updated rows
+     * @throws SQLException if a database access error occurs
+     */
+    int updateAll(Collection<T> ts, int chunkSize) throws SQLException;
+
     /**
      * Permanently deletes the entity with the given ID from the database.
      *
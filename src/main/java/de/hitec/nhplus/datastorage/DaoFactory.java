@@ -1,14 +1,28 @@
 package de.hitec.nhplus.datastorage;
 
+import de.hitec.nhplus.model.Nurse;
+import de.hitec.nhplus.model.Patient;
+
 /**
- * Factory class for creating DAO instances with a shared database connection.
+ * Factory class for creating DAO instances backed by the shared connection pool.
+ * <p>
+ * Implements the Singleton pattern to ensure that only one instance of the factory exists. All DAOs borrow their
+ * connections from {@link ConnectionBuilder#getConnectionPool()}, so reads of different views can run in parallel
+ * while a write is in progress.
  * <p>
- * Implements the Singleton pattern to ensure that only one instance of the factory exists.
+ * Patients and nurses are read far more often than they change, so their DAOs read through an {@link EntityCache}
+ * per table that is shared by all DAOs the factory creates. The capacity of the caches can be configured with the
+ * system property <code>nhplus.entityCache.size</code>.
  */
 public class DaoFactory {
 
+    private static final int ENTITY_CACHE_SIZE = Integer.getInteger("nhplus.entityCache.size", 1000);
+
     private static DaoFactory instance;
 
+    private final EntityCache<Patient> patientCache = new EntityCache<>(Patient::getPid, ENTITY_CACHE_SIZE);
+    private final EntityCache<Nurse> nurseCache = new EntityCache<>(Nurse::getNid, ENTITY_CACHE_SIZE);
+
     /**
      * Private constructor to prevent instantiation from outside.
      * Use {@link #getDaoFactory()} to obtain the singleton instance.
@@ -31,38 +45,64 @@ public class DaoFactory {
     }
 
     /**
-     * Creates a new instance of {@link TreatmentDao} using a shared database connection.
+     * Creates a new instance of {@link TreatmentDao} using the shared connection pool.
      *
      * @return a new {@code TreatmentDao} instance
      */
     public TreatmentDao createTreatmentDao() {
-        return new TreatmentDao(ConnectionBuilder.getConnection());
+        return new TreatmentDao(ConnectionBuilder.getConnectionPool());
     }
 
     /**
-     * Creates a new instance of {@link PatientDao} using a shared database connection.
+     * Creates a new instance of {@link PatientDao} using the shared connection pool and the shared patient cache.
      *
      * @return a new {@code PatientDao} instance
      */
     public PatientDao createPatientDAO() {
-        return new PatientDao(ConnectionBuilder.getConnection());
+        return new PatientDao(ConnectionBuilder.getConnectionPool(), this.patientCache);
     }
 
     /**
-     * Creates a new instance of {@link NurseDao} using a shared database connection.
+     * Creates a new instance of {@link NurseDao} using the shared connection pool and the shared nurse cache.
      *
      * @return a new {@code NurseDao} instance
      */
     public NurseDao createNurseDAO() {
-        return new NurseDao(ConnectionBuilder.getConnection());
+        return new NurseDao(ConnectionBuilder.getConnectionPool(), this.nurseCache);
     }
 
     /**
-     * Creates a new instance of {@link UserDao} using a shared database connection.
+     * Creates a new instance of {@link UserDao} using the shared connection pool.
      *
      * @return a new {@code UserDao} instance
      */
     public UserDao createUserDAO() {
-        return new UserDao(ConnectionBuilder.getConnection());
+        return new UserDao(ConnectionBuilder.getConnectionPool());
+    }
+
+    /**
+     * Returns the hit, miss and eviction counters of the patient cache.
+     *
+     * @return the statistics of the patient cache
+     */
+    public EntityCache.Statistics getPatientCacheStatistics() {
+        return this.patientCache.getStatistics();
+    }
+
+    /**
+     * Returns the hit, miss and eviction counters of the nurse cache.
+     *
+     * @return the statistics of the nurse cache
+     */
+    public EntityCache.Statistics getNurseCacheStatistics() {
+        return this.nurseCache.getStatistics();
+    }
+
+    /**
+     * Empties the entity caches, e.g. after the database has been changed without the DAOs.
+     */
+    public void clearCaches() {
+        this.patientCache.invalidateAll();
+        this.nurseCache.invalidateAll();
     }
 }
\ No newline at end of file
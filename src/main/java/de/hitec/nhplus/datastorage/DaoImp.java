@@ -1,38 +1,138 @@
 package de.hitec.nhplus.datastorage;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Abstract base implementation of the {@link Dao} interface, providing common logic
  * for CRUD operations using JDBC. Subclasses must provide specific SQL statements and
- * mapping logic for converting {@link ResultSet} rows into domain objects.
+ * a {@link RowMapper.Factory} for converting {@link ResultSet} rows into domain objects.
+ * <p>
+ * Connections are borrowed from a {@link ConnectionPool} for the duration of a single operation: reads run on one
+ * of the pooled read connections, writes on the single writer connection. Statements are prepared through a
+ * {@link StatementCache} per connection, so the same SQL is compiled only once per connection. Bulk operations send
+ * their statements in JDBC batches inside one transaction, so SQLite syncs the database file once per call instead of
+ * once per row. Streams keep their read connection and a statement of their own until they are closed. Every
+ * statement is measured by {@link QueryMetrics}.
  *
  * @param <T> the type of the domain object this DAO handles
  */
 public abstract class DaoImp<T> implements Dao<T> {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(DaoImp.class);
+
+    private static final int STATEMENT_CACHE_SIZE = Integer.getInteger("nhplus.statementCache.size", 64);
+
+    /**
+     * Number of entities per batch of {@link #createAll(Collection)} and {@link #updateAll(Collection)}, configurable
+     * with the system property <code>nhplus.batch.chunkSize</code>.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = Integer.getInteger("nhplus.batch.chunkSize", 500);
+
+    /**
+     * Number of rows fetched at once by {@link #stream()}, configurable with the system property
+     * <code>nhplus.stream.fetchSize</code>.
+     */
+    public static final int DEFAULT_FETCH_SIZE = Integer.getInteger("nhplus.stream.fetchSize", 500);
+
+    /**
+     * Statement caches of all connections, shared by all DAO instances.
+     */
+    private static final Map<Connection, StatementCache> STATEMENT_CACHES = new IdentityHashMap<>();
+
+    /**
+     * Pool the DAO implementation borrows its JDBC connections from.
+     */
+    protected final ConnectionPool connectionPool;
+
     /**
-     * JDBC connection used by the DAO implementation.
+     * Cache of the entities read by {@link #read(long)} and {@link #readAll()}, or {@code null} if they are not cached.
      */
-    protected Connection connection;
+    private final EntityCache<T> entityCache;
 
     /**
-     * Constructs a DAO implementation with a given JDBC connection.
+     * Constructs a DAO implementation with a given connection pool.
      *
-     * @param connection the database connection to use
+     * @param connectionPool the pool to borrow database connections from
+     */
+    public DaoImp(ConnectionPool connectionPool) {
+        this(connectionPool, null);
+    }
+
+    /**
+     * Constructs a DAO implementation with a given connection pool that reads through the given cache. All writes
+     * through the DAO invalidate the entities they touch.
+     *
+     * @param connectionPool the pool to borrow database connections from
+     * @param entityCache    the cache shared by all DAOs of the table, or {@code null} for no caching
+     */
+    public DaoImp(ConnectionPool connectionPool, EntityCache<T> entityCache) {
+        this.connectionPool = connectionPool;
+        this.entityCache = entityCache;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The key is read with <code>last_insert_rowid()</code> on the connection that inserted the row, while it still
+     * holds the write lock, see {@link #createAll(Collection, int)}.
+     */
+    @Override
+    public T create(T t) throws SQLException {
+        try {
+            long key = withWriteConnection("create", connection -> {
+                int updateCount = getCreateStatement(connection, t).executeUpdate();
+                return getInsertedKeys(connection, new int[]{updateCount}).get(0);
+            });
+            setKey(t, key);
+            return t;
+        } finally {
+            if (this.entityCache != null) {
+                this.entityCache.invalidateAllList();
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
      */
-    public DaoImp(Connection connection) {
-        this.connection = connection;
+    @Override
+    public List<Long> createAll(Collection<T> ts) throws SQLException {
+        return createAll(ts, DEFAULT_CHUNK_SIZE);
     }
 
     /**
      * {@inheritDoc}
+     * <p>
+     * The keys are derived from <code>last_insert_rowid()</code> after each batch. This relies on the tables using
+     * their rowid as primary key and on the insert statements not setting it: while the write lock is held, nobody
+     * else inserts, so SQLite assigns consecutive keys to the rows of a batch.
      */
     @Override
-    public void create(T t) throws SQLException {
-        getCreateStatement(t).executeUpdate();
+    public List<Long> createAll(Collection<T> ts, int chunkSize) throws SQLException {
+        try {
+            return withWriteConnection("createAll", connection -> inTransaction(connection, () -> {
+                List<Long> keys = new ArrayList<>(ts.size());
+                executeInBatches(connection, ts, chunkSize, t -> getCreateStatement(connection, t),
+                        updateCounts -> keys.addAll(getInsertedKeys(connection, updateCounts)));
+                return keys;
+            }));
+        } finally {
+            invalidateCache();
+        }
     }
 
     /**
@@ -40,12 +140,25 @@ public abstract class DaoImp<T> implements Dao<T> {
      */
     @Override
     public T read(long key) throws SQLException {
-        T object = null;
-        ResultSet result = getReadByIDStatement(key).executeQuery();
-        if (result.next()) {
-            object = getInstanceFromResultSet(result);
+        if (this.entityCache == null) {
+            return readFromDatabase(key);
         }
-        return object;
+        T cached = this.entityCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        long version = this.entityCache.getVersion();
+        T t = readFromDatabase(key);
+        this.entityCache.put(t, version);
+        return t;
+    }
+
+    private T readFromDatabase(long key) throws SQLException {
+        return withReadConnection("read", connection -> {
+            try (ResultSet result = getReadByIDStatement(connection, key).executeQuery()) {
+                return result.next() ? getInstanceFromResultSet(result) : null;
+            }
+        });
     }
 
     /**
@@ -53,7 +166,56 @@ public abstract class DaoImp<T> implements Dao<T> {
      */
     @Override
     public List<T> readAll() throws SQLException {
-        return getListFromResultSet(getReadAllStatement().executeQuery());
+        if (this.entityCache == null) {
+            return readAllFromDatabase();
+        }
+        List<T> cached = this.entityCache.getAll();
+        if (cached != null) {
+            return cached;
+        }
+        long version = this.entityCache.getVersion();
+        List<T> all = readAllFromDatabase();
+        this.entityCache.putAll(all, version);
+        return all;
+    }
+
+    private List<T> readAllFromDatabase() throws SQLException {
+        return withReadConnection("readAll", connection -> {
+            try (ResultSet result = getReadAllStatement(connection).executeQuery()) {
+                return getListFromResultSet(result);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Stream<T> stream() throws SQLException {
+        return stream(DEFAULT_FETCH_SIZE);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Stream<T> stream(int fetchSize) throws SQLException {
+        return stream("stream", this::getStreamAllStatement, getRowMapperFactory(), fetchSize);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<T> readPage(Long afterKey, int pageSize, SortOrder sortOrder) throws SQLException {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("pageSize must be at least 1");
+        }
+        return withReadConnection("readPage", connection -> {
+            try (ResultSet result = getReadPageStatement(connection, afterKey, pageSize, sortOrder).executeQuery()) {
+                return getListFromResultSet(result);
+            }
+        });
     }
 
     /**
@@ -61,7 +223,55 @@ public abstract class DaoImp<T> implements Dao<T> {
      */
     @Override
     public void update(T t) throws SQLException {
-        getUpdateStatement(t).executeUpdate();
+        try {
+            withWriteConnection("update", connection -> getUpdateStatement(connection, t).executeUpdate());
+            updated(t);
+        } catch (SQLException | RuntimeException exception) {
+            updateFailed(t);
+            throw exception;
+        } finally {
+            if (this.entityCache != null) {
+                this.entityCache.invalidate(this.entityCache.keyOf(t));
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int updateAll(Collection<T> ts) throws SQLException {
+        return updateAll(ts, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int updateAll(Collection<T> ts, int chunkSize) throws SQLException {
+        try {
+            int count = withWriteConnection("updateAll", connection -> inTransaction(connection, () -> {
+                int[] updated = new int[1];
+                executeInBatches(connection, ts, chunkSize, t -> getUpdateStatement(connection, t),
+                        updateCounts -> {
+                            for (int updateCount : updateCounts) {
+                                updated[0] += Math.max(updateCount, 0);
+                            }
+                        });
+                return updated[0];
+            }));
+            for (T t : ts) {
+                updated(t);
+            }
+            return count;
+        } catch (SQLException | RuntimeException exception) {
+            for (T t : ts) {
+                updateFailed(t);
+            }
+            throw exception;
+        } finally {
+            invalidateCache();
+        }
     }
 
     /**
@@ -69,7 +279,11 @@ public abstract class DaoImp<T> implements Dao<T> {
      */
     @Override
     public void deleteById(long key) throws SQLException {
-        getDeleteStatement(key).executeUpdate();
+        try {
+            withWriteConnection("deleteById", connection -> getDeleteStatement(connection, key).executeUpdate());
+        } finally {
+            invalidateCache(key);
+        }
     }
 
     /**
@@ -77,9 +291,374 @@ public abstract class DaoImp<T> implements Dao<T> {
      */
     @Override
     public void deactivateById(long key) throws SQLException {
-        getDeactivateStatement(key).executeUpdate();
+        try {
+            withWriteConnection("deactivateById",
+                    connection -> getDeactivateStatement(connection, key).executeUpdate());
+        } finally {
+            invalidateCache(key);
+        }
+    }
+
+    /**
+     * Removes the entity with the given key from the entity cache, if there is one. Subclasses call this after
+     * writes of their own.
+     *
+     * @param key the primary key of the changed entity
+     */
+    protected void invalidateCache(long key) {
+        if (this.entityCache != null) {
+            this.entityCache.invalidate(key);
+        }
+    }
+
+    /**
+     * Empties the entity cache, if there is one. Subclasses call this after writes of their own that change more
+     * than one entity.
+     */
+    protected void invalidateCache() {
+        if (this.entityCache != null) {
+            this.entityCache.invalidateAll();
+        }
+    }
+
+    /**
+     * Reads the current change version of the given table, see {@link ChangeTracked#getChangeVersion()}.
+     *
+     * @param table the name of the change tracked table
+     * @return the version of the last change of the table
+     * @throws SQLException if a database access error occurs
+     */
+    protected long readChangeVersion(String table) throws SQLException {
+        return withReadConnection("getChangeVersion", connection -> readChangeVersion(connection, table));
+    }
+
+    /**
+     * Reads the changes of the given table since the given version, see {@link ChangeTracked#readChangesSince(long)}.
+     * The version, the changed rows and the tombstones of the deleted rows are read in one transaction, the version
+     * first, so that pruning the tombstones meanwhile cannot drop deletions from the change set. If the tombstones
+     * since the given version have already been pruned, the change set is expired.
+     *
+     * @param table      the name of the change tracked table
+     * @param changedSql the query of the rows with a change version above its only parameter, ordered by their keys
+     * @param factory    the factory of the row mapper of the query
+     * @param version    the change version the caller has already seen
+     * @param <R>        the type of the mapped rows
+     * @return the changes since the given version
+     * @throws SQLException if a database access error occurs
+     */
+    protected <R> ChangeSet<R> readChangesSince(String table, String changedSql, RowMapper.Factory<R> factory,
+                                                long version) throws SQLException {
+        final String SQL = "SELECT row_key FROM change_tombstone WHERE table_name = ? AND change_version > ? " +
+                "ORDER BY row_key";
+        return withReadConnection("readChangesSince", connection -> inTransaction(connection, () -> {
+            PreparedStatement versionStatement = prepareCachedStatement(connection,
+                    "SELECT version, pruned_version FROM change_counter WHERE table_name = ?");
+            versionStatement.setString(1, table);
+            long currentVersion;
+            long prunedVersion;
+            try (ResultSet result = versionStatement.executeQuery()) {
+                currentVersion = result.next() ? result.getLong(1) : 0L;
+                prunedVersion = currentVersion > 0 ? result.getLong(2) : 0L;
+            }
+            if (currentVersion == version) {
+                return new ChangeSet<>(version, List.of(), List.of());
+            }
+            if (version < prunedVersion) {
+                return ChangeSet.<R>expired(currentVersion);
+            }
+            List<R> changed;
+            PreparedStatement changedStatement = prepareCachedStatement(connection, changedSql);
+            changedStatement.setLong(1, version);
+            try (ResultSet result = changedStatement.executeQuery()) {
+                changed = mapAll(result, factory);
+            }
+            List<Long> deletedKeys = new ArrayList<>();
+            PreparedStatement deletedStatement = prepareCachedStatement(connection, SQL);
+            deletedStatement.setString(1, table);
+            deletedStatement.setLong(2, version);
+            try (ResultSet result = deletedStatement.executeQuery()) {
+                while (result.next()) {
+                    deletedKeys.add(result.getLong(1));
+                }
+            }
+            return new ChangeSet<>(currentVersion, changed, deletedKeys);
+        }));
+    }
+
+    /**
+     * Deletes the tombstones of the given table except those of its last changes, see
+     * {@link ChangeTracked#pruneTombstones(long)}, and records up to which version they have been deleted.
+     *
+     * @param table        the name of the change tracked table
+     * @param keepVersions the number of the latest changes whose tombstones are kept
+     * @return the number of deleted tombstones
+     * @throws SQLException if a database access error occurs
+     */
+    protected int pruneTombstones(String table, long keepVersions) throws SQLException {
+        if (keepVersions < 0) {
+            throw new IllegalArgumentException("keepVersions must not be negative");
+        }
+        return withWriteConnection("pruneTombstones", connection -> inTransaction(connection, () -> {
+            long prunedVersion = readChangeVersion(connection, table) - keepVersions;
+            if (prunedVersion <= 0) {
+                return 0;
+            }
+            PreparedStatement deleteStatement = prepareCachedStatement(connection,
+                    "DELETE FROM change_tombstone WHERE table_name = ? AND change_version <= ?");
+            deleteStatement.setString(1, table);
+            deleteStatement.setLong(2, prunedVersion);
+            int deleted = deleteStatement.executeUpdate();
+            PreparedStatement markStatement = prepareCachedStatement(connection,
+                    "UPDATE change_counter SET pruned_version = ? WHERE table_name = ? AND pruned_version < ?");
+            markStatement.setLong(1, prunedVersion);
+            markStatement.setString(2, table);
+            markStatement.setLong(3, prunedVersion);
+            markStatement.executeUpdate();
+            return deleted;
+        }));
+    }
+
+    private long readChangeVersion(Connection connection, String table) throws SQLException {
+        PreparedStatement statement = prepareCachedStatement(connection,
+                "SELECT version FROM change_counter WHERE table_name = ?");
+        statement.setString(1, table);
+        try (ResultSet result = statement.executeQuery()) {
+            return result.next() ? result.getLong(1) : 0L;
+        }
     }
 
+    /**
+     * Borrows a read connection from the pool, passes it to the given callback and returns the connection to the
+     * pool afterwards. Result sets must be consumed inside the callback. The callback is measured by
+     * {@link QueryMetrics} under the name of the DAO and the given statement; waiting for the connection is not.
+     *
+     * @param statement the name of the statement within the DAO, e.g. the name of the calling method
+     * @param callback  the work to do with the connection
+     * @param <R>       the type of the result of the callback
+     * @return the result of the callback
+     * @throws SQLException if a database access error occurs
+     */
+    protected <R> R withReadConnection(String statement, ConnectionCallback<R> callback) throws SQLException {
+        Connection connection = this.connectionPool.acquireReadConnection();
+        try {
+            return QueryMetrics.measure(statementName(statement), () -> callback.doInConnection(connection));
+        } finally {
+            this.connectionPool.releaseReadConnection(connection);
+        }
+    }
+
+    /**
+     * Acquires the writer connection of the pool, passes it to the given callback and releases the write lock
+     * afterwards. The callback is measured by {@link QueryMetrics} under the name of the DAO and the given statement;
+     * waiting for the write lock is not.
+     *
+     * @param statement the name of the statement within the DAO, e.g. the name of the calling method
+     * @param callback  the work to do with the connection
+     * @param <R>       the type of the result of the callback
+     * @return the result of the callback
+     * @throws SQLException if a database access error occurs
+     */
+    protected <R> R withWriteConnection(String statement, ConnectionCallback<R> callback) throws SQLException {
+        Connection connection = this.connectionPool.acquireWriteConnection();
+        try {
+            return QueryMetrics.measure(statementName(statement), () -> callback.doInConnection(connection));
+        } finally {
+            this.connectionPool.releaseWriteConnection();
+        }
+    }
+
+    /**
+     * Borrows a read connection from the pool and streams the rows of the query prepared on it. The statement is not
+     * taken from the statement cache, so that closing the stream can close it. The connection is returned to the pool
+     * and the statement is closed when the stream is closed or, at the latest, when its last row has been read.
+     * Only the execution of the query is measured by {@link QueryMetrics}, not the reading of the stream.
+     *
+     * @param statement the name of the statement within the DAO, e.g. the name of the calling method
+     * @param preparer  prepares the query on the borrowed connection and binds its parameters
+     * @param factory   the factory of the row mapper of the query
+     * @param fetchSize the number of rows fetched from the database at once
+     * @param <R>       the type of the mapped objects
+     * @return a lazy stream of the mapped rows, which must be closed
+     * @throws SQLException if the query could not be started
+     */
+    protected <R> Stream<R> stream(String statement, StatementPreparer preparer, RowMapper.Factory<R> factory,
+                                   int fetchSize) throws SQLException {
+        if (fetchSize < 1) {
+            throw new IllegalArgumentException("fetchSize must be at least 1");
+        }
+        Connection connection = this.connectionPool.acquireReadConnection();
+        PreparedStatement query = null;
+        try {
+            query = preparer.prepare(connection);
+            query.setFetchSize(fetchSize);
+            ResultSet result = QueryMetrics.measure(statementName(statement), query::executeQuery);
+            Cursor<R> cursor = new Cursor<>(connection, query, result, factory.create(ColumnIndex.of(result)));
+            return StreamSupport.stream(cursor, false).onClose(cursor::close);
+        } catch (SQLException | RuntimeException exception) {
+            if (query != null) {
+                query.close();
+            }
+            this.connectionPool.releaseReadConnection(connection);
+            throw exception;
+        }
+    }
+
+    private String statementName(String statement) {
+        return getClass().getSimpleName() + "." + statement;
+    }
+
+    /**
+     * Runs the given work in a transaction on the writer connection. The transaction is committed if the work
+     * succeeds and rolled back if it throws; afterwards the connection is back in autocommit mode.
+     *
+     * @param connection the writer connection, acquired with {@link #withWriteConnection(ConnectionCallback)}
+     * @param work       the work to do in the transaction
+     * @param <R>        the type of the result of the work
+     * @return the result of the work
+     * @throws SQLException if a database access error occurs
+     */
+    protected <R> R inTransaction(Connection connection, TransactionCallback<R> work) throws SQLException {
+        connection.setAutoCommit(false);
+        try {
+            R result = work.doInTransaction();
+            connection.commit();
+            return result;
+        } catch (SQLException | RuntimeException exception) {
+            connection.rollback();
+            throw exception;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Adds one statement per entity to a JDBC batch and executes the batch every {@code chunkSize} entities. If the
+     * statement factory hands out a different statement than the one of the current batch, the current batch is
+     * executed first. A batch that fails is cleared, so the cached statement can be used again.
+     */
+    private void executeInBatches(Connection connection, Collection<T> ts, int chunkSize,
+                                  StatementFactory<T> statementFactory, BatchListener listener) throws SQLException {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be at least 1");
+        }
+        PreparedStatement batch = null;
+        int batchSize = 0;
+        try {
+            for (T t : ts) {
+                PreparedStatement statement = statementFactory.prepare(t);
+                if (statement == null) {
+                    throw new SQLException("Statement für " + t + " konnte nicht erstellt werden");
+                }
+                if (batch != null && statement != batch && batchSize > 0) {
+                    listener.batchExecuted(batch.executeBatch());
+                    batchSize = 0;
+                }
+                batch = statement;
+                batch.addBatch();
+                batchSize++;
+                // executing the batch discards parameters that are already bound, so execute before the next entity
+                if (batchSize == chunkSize) {
+                    listener.batchExecuted(batch.executeBatch());
+                    batchSize = 0;
+                }
+            }
+            if (batchSize > 0) {
+                listener.batchExecuted(batch.executeBatch());
+            }
+        } catch (SQLException | RuntimeException exception) {
+            if (batch != null) {
+                batch.clearBatch();
+            }
+            throw exception;
+        }
+    }
+
+    /**
+     * Returns the keys of the rows inserted by the batch that has just been executed, see
+     * {@link #createAll(Collection, int)}.
+     */
+    private static List<Long> getInsertedKeys(Connection connection, int[] updateCounts) throws SQLException {
+        for (int updateCount : updateCounts) {
+            if (updateCount != 1) {
+                throw new SQLException("Eine Einfügeoperation des Batches hat " + updateCount + " Zeilen geändert");
+            }
+        }
+        long lastKey;
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("SELECT last_insert_rowid()")) {
+            result.next();
+            lastKey = result.getLong(1);
+        }
+        List<Long> keys = new ArrayList<>(updateCounts.length);
+        for (long key = lastKey - updateCounts.length + 1; key <= lastKey; key++) {
+            keys.add(key);
+        }
+        return keys;
+    }
+
+    /**
+     * Returns a prepared statement for the given SQL text from the statement cache of the connection. The statement
+     * belongs to the cache and must not be closed; its parameters are already cleared.
+     *
+     * @param connection the connection to prepare the statement on
+     * @param sql        the SQL text of the statement
+     * @return the prepared statement
+     * @throws SQLException if the statement could not be prepared
+     */
+    protected PreparedStatement prepareCachedStatement(Connection connection, String sql) throws SQLException {
+        StatementCache cache;
+        synchronized (STATEMENT_CACHES) {
+            cache = STATEMENT_CACHES.get(connection);
+            if (cache == null) {
+                removeCachesOfClosedConnections();
+                cache = new StatementCache(connection, STATEMENT_CACHE_SIZE);
+                STATEMENT_CACHES.put(connection, cache);
+            }
+        }
+        return cache.prepare(sql);
+    }
+
+    /**
+     * Returns the combined hit and miss counters of the statement caches of all open connections.
+     *
+     * @return the statement cache statistics
+     */
+    public static StatementCache.Statistics getStatementCacheStatistics() {
+        StatementCache.Statistics statistics = new StatementCache.Statistics(0, 0, 0, 0);
+        synchronized (STATEMENT_CACHES) {
+            for (StatementCache cache : STATEMENT_CACHES.values()) {
+                statistics = statistics.plus(cache.getStatistics());
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Drops the caches of connections that were closed by the pool in the meantime. This runs whenever a new
+     * connection shows up, which is rare, so the map never grows beyond the number of open connections by much.
+     */
+    private static void removeCachesOfClosedConnections() {
+        Iterator<Map.Entry<Connection, StatementCache>> iterator = STATEMENT_CACHES.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Connection, StatementCache> entry = iterator.next();
+            try {
+                if (entry.getKey().isClosed()) {
+                    entry.getValue().clear();
+                    iterator.remove();
+                }
+            } catch (SQLException exception) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the factory of the row mappers that map the rows read by the statements of this DAO.
+     *
+     * @return the row mapper factory
+     */
+    protected abstract RowMapper.Factory<T> getRowMapperFactory();
+
     /**
      * Maps a single row from the given {@link ResultSet} into a domain object.
      *
@@ -87,7 +666,9 @@ public abstract class DaoImp<T> implements Dao<T> {
      * @return the domain object corresponding to the current row
      * @throws SQLException if a database access error occurs
      */
-    protected abstract T getInstanceFromResultSet(ResultSet set) throws SQLException;
+    protected T getInstanceFromResultSet(ResultSet set) throws SQLException {
+        return getRowMapperFactory().create(ColumnIndex.of(set)).mapRow(set);
+    }
 
     /**
      * Maps all rows from the given {@link ResultSet} into a list of domain objects.
@@ -96,61 +677,253 @@ public abstract class DaoImp<T> implements Dao<T> {
      * @return a list of domain objects
      * @throws SQLException if a database access error occurs
      */
-    protected abstract ArrayList<T> getListFromResultSet(ResultSet set) throws SQLException;
+    protected ArrayList<T> getListFromResultSet(ResultSet set) throws SQLException {
+        return mapAll(set, getRowMapperFactory());
+    }
+
+    /**
+     * Maps all rows of the given {@link ResultSet} with a row mapper that is created once for its columns.
+     *
+     * @param set     the {@code ResultSet} containing multiple rows
+     * @param factory the factory of the row mapper
+     * @param <R>     the type of the mapped objects
+     * @return a list of the mapped objects
+     * @throws SQLException if a database access error occurs
+     */
+    protected static <R> ArrayList<R> mapAll(ResultSet set, RowMapper.Factory<R> factory) throws SQLException {
+        RowMapper<R> mapper = factory.create(ColumnIndex.of(set));
+        ArrayList<R> list = new ArrayList<>();
+        while (set.next()) {
+            list.add(mapper.mapRow(set));
+        }
+        return list;
+    }
 
     /**
      * Returns a prepared SQL statement for creating a new entity.
      *
-     * @param t the entity to be created
+     * @param connection the connection to prepare the statement on
+     * @param t          the entity to be created
      * @return the prepared statement
      */
-    protected abstract PreparedStatement getCreateStatement(T t);
+    protected abstract PreparedStatement getCreateStatement(Connection connection, T t);
+
+    /**
+     * Sets the primary key generated for a newly created entity.
+     *
+     * @param t   the created entity
+     * @param key the generated primary key
+     */
+    protected abstract void setKey(T t, long key);
 
     /**
      * Returns a prepared SQL statement for reading an entity by ID.
      *
-     * @param key the primary key of the entity
+     * @param connection the connection to prepare the statement on
+     * @param key        the primary key of the entity
      * @return the prepared statement
      */
-    protected abstract PreparedStatement getReadByIDStatement(long key);
+    protected abstract PreparedStatement getReadByIDStatement(Connection connection, long key);
 
     /**
      * Returns a prepared SQL statement for reading all entities.
      *
+     * @param connection the connection to prepare the statement on
+     * @return the prepared statement
+     */
+    protected abstract PreparedStatement getReadAllStatement(Connection connection);
+
+    /**
+     * Returns a new prepared SQL statement for streaming the entities that {@link #getReadAllStatement} reads. The
+     * statement must not be taken from the statement cache, because it is closed with the stream.
+     *
+     * @param connection the connection to prepare the statement on
+     * @return the prepared statement
+     * @throws SQLException if the statement could not be prepared
+     */
+    protected abstract PreparedStatement getStreamAllStatement(Connection connection) throws SQLException;
+
+    /**
+     * Returns a prepared SQL statement for reading one page of the entities that {@link #getReadAllStatement}
+     * reads, seeking by the primary key. See {@link SortOrder#seekFrom(Long)} for the key of the first page.
+     *
+     * @param connection the connection to prepare the statement on
+     * @param afterKey   the primary key of the last entity of the previous page, or {@code null} for the first page
+     * @param pageSize   the maximum number of rows
+     * @param sortOrder  the order of the primary keys
      * @return the prepared statement
      */
-    protected abstract PreparedStatement getReadAllStatement();
+    protected abstract PreparedStatement getReadPageStatement(Connection connection, Long afterKey, int pageSize,
+                                                              SortOrder sortOrder);
 
     /**
      * Returns a prepared SQL statement for updating an existing entity.
      *
-     * @param t the entity to be updated
+     * @param connection the connection to prepare the statement on
+     * @param t          the entity to be updated
      * @return the prepared statement
      */
-    protected abstract PreparedStatement getUpdateStatement(T t);
+    protected abstract PreparedStatement getUpdateStatement(Connection connection, T t);
+
+    /**
+     * Called after the changes of an entity have been written by {@link #update} or {@link #updateAll}, e.g. to forget
+     * the changed fields the update statement has been built for. Does nothing by default.
+     *
+     * @param t the updated entity
+     */
+    protected void updated(T t) {
+    }
+
+    /**
+     * Called if writing the changes of an entity by {@link #update} or {@link #updateAll} has failed, e.g. to record
+     * the changed fields the update statement has been built for again. Does nothing by default.
+     *
+     * @param t the entity that has not been updated
+     */
+    protected void updateFailed(T t) {
+    }
 
     /**
      * Returns a prepared SQL statement for deleting an entity by ID.
      *
-     * @param key the primary key of the entity
+     * @param connection the connection to prepare the statement on
+     * @param key        the primary key of the entity
      * @return the prepared statement
      */
-    protected abstract PreparedStatement getDeleteStatement(long key);
+    protected abstract PreparedStatement getDeleteStatement(Connection connection, long key);
 
     /**
      * Returns a prepared SQL statement for deactivating (soft-deleting) an entity by ID.
      *
-     * @param key the primary key of the entity
+     * @param connection the connection to prepare the statement on
+     * @param key        the primary key of the entity
      * @return the prepared statement
      */
-    protected abstract PreparedStatement getDeactivateStatement(long key);
+    protected abstract PreparedStatement getDeactivateStatement(Connection connection, long key);
 
     /**
      * Returns a prepared SQL statement for setting the deletion date of an entity.
      * Typically used in soft-delete scenarios to mark the deletion timestamp.
      *
-     * @param key the primary key of the entity
+     * @param connection the connection to prepare the statement on
+     * @param key        the primary key of the entity
      * @return the prepared statement
      */
-    protected abstract PreparedStatement setDeleteDateStatement(long key);
+    protected abstract PreparedStatement setDeleteDateStatement(Connection connection, long key);
+
+    /**
+     * Work that is done with a borrowed connection.
+     *
+     * @param <R> the type of the result
+     */
+    @FunctionalInterface
+    protected interface ConnectionCallback<R> {
+        /**
+         * Does the work with the given connection.
+         *
+         * @param connection the borrowed connection
+         * @return the result of the work
+         * @throws SQLException if a database access error occurs
+         */
+        R doInConnection(Connection connection) throws SQLException;
+    }
+
+    /**
+     * Work that is done inside a transaction.
+     *
+     * @param <R> the type of the result
+     */
+    @FunctionalInterface
+    protected interface TransactionCallback<R> {
+        /**
+         * Does the work.
+         *
+         * @return the result of the work
+         * @throws SQLException if a database access error occurs
+         */
+        R doInTransaction() throws SQLException;
+    }
+
+    /**
+     * Prepares a statement on a borrowed connection.
+     */
+    @FunctionalInterface
+    protected interface StatementPreparer {
+        /**
+         * Prepares the statement and binds its parameters.
+         *
+         * @param connection the borrowed connection
+         * @return the prepared statement
+         * @throws SQLException if a database access error occurs
+         */
+        PreparedStatement prepare(Connection connection) throws SQLException;
+    }
+
+    /**
+     * Forward-only cursor over an open result set, mapping one row per advance. Closing it closes the statement and
+     * returns the connection to the pool; it is closed automatically after the last row.
+     */
+    private final class Cursor<R> extends Spliterators.AbstractSpliterator<R> {
+        private final Connection connection;
+        private final PreparedStatement statement;
+        private final ResultSet result;
+        private final RowMapper<R> mapper;
+        private boolean closed;
+
+        Cursor(Connection connection, PreparedStatement statement, ResultSet result, RowMapper<R> mapper) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.connection = connection;
+            this.statement = statement;
+            this.result = result;
+            this.mapper = mapper;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super R> action) {
+            if (this.closed) {
+                return false;
+            }
+            try {
+                if (!this.result.next()) {
+                    close();
+                    return false;
+                }
+                action.accept(this.mapper.mapRow(this.result));
+                return true;
+            } catch (SQLException exception) {
+                close();
+                throw new UncheckedSQLException(exception);
+            }
+        }
+
+        void close() {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            try {
+                this.statement.close();
+            } catch (SQLException exception) {
+                LOGGER.warn("Abfrage konnte nicht geschlossen werden", exception);
+            } finally {
+                DaoImp.this.connectionPool.releaseReadConnection(this.connection);
+            }
+        }
+    }
+
+    /**
+     * Creates the statement of one entity of a batch.
+     */
+    @FunctionalInterface
+    private interface StatementFactory<T> {
+        PreparedStatement prepare(T t) throws SQLException;
+    }
+
+    /**
+     * Receives the update counts of every executed batch.
+     */
+    @FunctionalInterface
+    private interface BatchListener {
+        void batchExecuted(int[] updateCounts) throws SQLException;
+    }
 }
@@ -0,0 +1,125 @@
+package de.hitec.nhplus.datastorage;
+
+import org.sqlite.SQLiteConfig;
+
+/**
+ * Named SQLite configurations for the different kinds of workload of the application.
+ * <p>
+ * All profiles run the database in WAL journal mode, so that readers are not blocked while a treatment is saved.
+ * They differ in how durable commits are, how much memory SQLite may use for its page cache and memory mapped I/O,
+ * and how long a connection waits for a lock before failing.
+ */
+public enum DatabaseProfile {
+
+    /**
+     * Everyday use of the application: durable enough for WAL mode, moderate memory use, short lock waits.
+     */
+    INTERACTIVE("interactive", SQLiteConfig.SynchronousMode.NORMAL, 16 * 1024, 128L * 1024 * 1024,
+            SQLiteConfig.TempStore.MEMORY, 5_000, false),
+
+    /**
+     * Importing or generating large amounts of data: no fsync on commit, large cache, long lock waits. A crash
+     * during the import may lose the last transactions, so it should only be used for repeatable imports.
+     */
+    BULK_IMPORT("bulk-import", SQLiteConfig.SynchronousMode.OFF, 128 * 1024, 256L * 1024 * 1024,
+            SQLiteConfig.TempStore.MEMORY, 30_000, false),
+
+    /**
+     * Read-only reporting: large cache and memory map for long scans, writes are rejected. The database must have
+     * been opened in WAL mode by another profile before.
+     */
+    READ_ONLY_REPORTING("read-only reporting", SQLiteConfig.SynchronousMode.NORMAL, 64 * 1024, 512L * 1024 * 1024,
+            SQLiteConfig.TempStore.MEMORY, 10_000, true);
+
+    private final String profileName;
+    private final SQLiteConfig.SynchronousMode synchronous;
+    private final int cacheSizeKiB;
+    private final long mmapSize;
+    private final SQLiteConfig.TempStore tempStore;
+    private final int busyTimeoutMillis;
+    private final boolean readOnly;
+
+    DatabaseProfile(String profileName, SQLiteConfig.SynchronousMode synchronous, int cacheSizeKiB, long mmapSize,
+                    SQLiteConfig.TempStore tempStore, int busyTimeoutMillis, boolean readOnly) {
+        this.profileName = profileName;
+        this.synchronous = synchronous;
+        this.cacheSizeKiB = cacheSizeKiB;
+        this.mmapSize = mmapSize;
+        this.tempStore = tempStore;
+        this.busyTimeoutMillis = busyTimeoutMillis;
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * Returns the profile with the given name, e.g. <code>interactive</code>, <code>bulk-import</code> or
+     * <code>read-only reporting</code>. The enum constant names are accepted as well.
+     *
+     * @param name Name of the profile.
+     * @return The matching profile.
+     * @throws IllegalArgumentException If no profile has the given name.
+     */
+    public static DatabaseProfile fromName(String name) {
+        for (DatabaseProfile profile : values()) {
+            if (profile.profileName.equalsIgnoreCase(name.trim()) || profile.name().equalsIgnoreCase(name.trim())) {
+                return profile;
+            }
+        }
+        throw new IllegalArgumentException("Unbekanntes Datenbankprofil: " + name);
+    }
+
+    /**
+     * Creates the SQLite configuration of this profile.
+     *
+     * @param writer <code>true</code> for the writer connection, which also sets the journal mode of the database
+     *               file; <code>false</code> for a read connection, which is always opened read-only.
+     * @return The configuration for a new connection.
+     */
+    public SQLiteConfig createConfiguration(boolean writer) {
+        SQLiteConfig configuration = new SQLiteConfig();
+        configuration.enforceForeignKeys(true);
+        configuration.setSynchronous(this.synchronous);
+        configuration.setCacheSize(-this.cacheSizeKiB);
+        configuration.setPragma(SQLiteConfig.Pragma.MMAP_SIZE, Long.toString(this.mmapSize));
+        configuration.setTempStore(this.tempStore);
+        configuration.setBusyTimeout(this.busyTimeoutMillis);
+        if (writer && !this.readOnly) {
+            // the journal mode is stored in the database file, so it is enough to set it on the writer
+            configuration.setJournalMode(SQLiteConfig.JournalMode.WAL);
+        } else {
+            configuration.setReadOnly(true);
+        }
+        return configuration;
+    }
+
+    /**
+     * Getter Methods
+     */
+
+    public String getProfileName() {
+        return profileName;
+    }
+
+    public SQLiteConfig.SynchronousMode getSynchronous() {
+        return synchronous;
+    }
+
+    public int getCacheSizeKiB() {
+        return cacheSizeKiB;
+    }
+
+    public long getMmapSize() {
+        return mmapSize;
+    }
+
+    public SQLiteConfig.TempStore getTempStore() {
+        return tempStore;
+    }
+
+    public int getBusyTimeoutMillis() {
+        return busyTimeoutMillis;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+}
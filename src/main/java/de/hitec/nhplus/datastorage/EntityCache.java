@@ -0,0 +1,225 @@
+package de.hitec.nhplus.datastorage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * Bounded least-recently-used cache of entities by their primary key, shared by all DAO instances of one table.
+ * <p>
+ * Besides single entities, the cache keeps the result of the last <code>readAll()</code> as long as it does not
+ * exceed the capacity. Every write through a DAO invalidates the entities it touches, and bulk writes invalidate the
+ * whole cache. To keep a read from putting back an entity that a concurrent write has just invalidated, a reader takes
+ * a {@linkplain #getVersion() version} before it reads the database and passes it to the put methods; the put is
+ * dropped if the cache has been invalidated in the meantime.
+ * <p>
+ * The cache hands out the cached instances themselves, so all views show the same objects.
+ *
+ * @param <T> the type of the cached entities
+ */
+public class EntityCache<T> {
+
+    private final ToLongFunction<T> keyExtractor;
+    private final int capacity;
+    private final Map<Long, T> entities;
+    private List<T> all;
+    private long version;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param keyExtractor Returns the primary key of an entity.
+     * @param capacity     Maximum number of entities kept.
+     */
+    public EntityCache(ToLongFunction<T> keyExtractor, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        this.keyExtractor = keyExtractor;
+        this.capacity = capacity;
+        this.entities = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, T> eldest) {
+                if (size() > EntityCache.this.capacity) {
+                    EntityCache.this.evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return the version to pass to the put methods after reading the database
+     */
+    public synchronized long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * @param entity An entity of the cached type.
+     * @return The primary key of the entity.
+     */
+    public long keyOf(T entity) {
+        return this.keyExtractor.applyAsLong(entity);
+    }
+
+    /**
+     * Returns the cached entity with the given key and counts a hit or a miss.
+     *
+     * @param key Primary key of the entity.
+     * @return The cached entity, or <code>null</code> if it is not cached.
+     */
+    public synchronized T get(long key) {
+        T entity = this.entities.get(key);
+        if (entity != null) {
+            this.hits++;
+        } else {
+            this.misses++;
+        }
+        return entity;
+    }
+
+    /**
+     * Returns the cached result of <code>readAll()</code> and counts a hit or a miss.
+     *
+     * @return A copy of the cached list, or <code>null</code> if it is not cached.
+     */
+    public synchronized List<T> getAll() {
+        if (this.all != null) {
+            this.hits++;
+            return new ArrayList<>(this.all);
+        }
+        this.misses++;
+        return null;
+    }
+
+    /**
+     * Caches an entity that has been read from the database.
+     *
+     * @param entity  The entity.
+     * @param version The version taken before the database was read.
+     */
+    public synchronized void put(T entity, long version) {
+        if (entity != null && version == this.version) {
+            this.entities.put(this.keyExtractor.applyAsLong(entity), entity);
+        }
+    }
+
+    /**
+     * Caches the result of <code>readAll()</code> and the entities in it, if it fits into the cache.
+     *
+     * @param all     All entities as read from the database.
+     * @param version The version taken before the database was read.
+     */
+    public synchronized void putAll(Collection<T> all, long version) {
+        if (version != this.version || all.size() > this.capacity) {
+            return;
+        }
+        this.all = new ArrayList<>(all);
+        for (T entity : all) {
+            this.entities.put(this.keyExtractor.applyAsLong(entity), entity);
+        }
+    }
+
+    /**
+     * Removes the entity with the given key and the cached result of <code>readAll()</code>.
+     *
+     * @param key Primary key of the changed entity.
+     */
+    public synchronized void invalidate(long key) {
+        this.version++;
+        this.invalidations++;
+        this.entities.remove(key);
+        this.all = null;
+    }
+
+    /**
+     * Removes the cached result of <code>readAll()</code>, e.g. after a new entity has been created.
+     */
+    public synchronized void invalidateAllList() {
+        this.version++;
+        this.invalidations++;
+        this.all = null;
+    }
+
+    /**
+     * Empties the cache, e.g. after a bulk write.
+     */
+    public synchronized void invalidateAll() {
+        this.version++;
+        this.invalidations++;
+        this.entities.clear();
+        this.all = null;
+    }
+
+    /**
+     * Returns a snapshot of the usage of this cache.
+     *
+     * @return Statistics of this cache.
+     */
+    public synchronized Statistics getStatistics() {
+        return new Statistics(this.entities.size(), this.hits, this.misses, this.evictions, this.invalidations);
+    }
+
+    /**
+     * Immutable snapshot of the usage of an entity cache.
+     */
+    public static final class Statistics {
+        private final int size;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long invalidations;
+
+        Statistics(int size, long hits, long misses, long evictions, long invalidations) {
+            this.size = size;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.invalidations = invalidations;
+        }
+
+        /**
+         * Getter Methods
+         */
+
+        public int getSize() {
+            return size;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public long getInvalidations() {
+            return invalidations;
+        }
+
+        public double getHitRatio() {
+            long requests = this.hits + this.misses;
+            return requests == 0 ? 0.0 : (double) this.hits / requests;
+        }
+
+        public String toString() {
+            return "Entity-Cache" + "\nEinträge: " + this.size + "\nTreffer: " + this.hits + "\nFehlschläge: " +
+                    this.misses + "\nVerdrängt: " + this.evictions + "\nInvalidierungen: " + this.invalidations +
+                    "\nTrefferquote: " + String.format("%.1f %%", getHitRatio() * 100) + "\n";
+        }
+    }
+}
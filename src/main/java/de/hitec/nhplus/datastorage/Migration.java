@@ -0,0 +1,96 @@
+package de.hitec.nhplus.datastorage;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One step of the database schema, identified by its version number.
+ * <p>
+ * A migration consists of steps, usually SQL statements, that are executed in order and in one transaction by the
+ * {@link MigrationRunner}. Once a migration has been released, it must not be changed anymore; changes to the schema
+ * are made by adding a migration with a higher version to {@link SchemaMigrations}.
+ */
+public final class Migration {
+
+    private final int version;
+    private final String description;
+    private final List<Step> steps;
+
+    /**
+     * Creates a migration of SQL statements.
+     *
+     * @param version     Version of the schema after the migration has been applied, starting at 1.
+     * @param description Short description of the change, stored in the table <code>schema_version</code>.
+     * @param statements  SQL statements of the migration, executed in the given order.
+     */
+    public Migration(int version, String description, String... statements) {
+        this(version, description, toSteps(statements));
+    }
+
+    /**
+     * Creates a migration of steps that need more than fixed SQL, e.g. because they depend on the existing schema.
+     *
+     * @param version     Version of the schema after the migration has been applied, starting at 1.
+     * @param description Short description of the change, stored in the table <code>schema_version</code>.
+     * @param steps       Steps of the migration, executed in the given order; see {@link #sql(String)}.
+     */
+    public Migration(int version, String description, Step... steps) {
+        if (version < 1) {
+            throw new IllegalArgumentException("version must be at least 1");
+        }
+        this.version = version;
+        this.description = description;
+        this.steps = List.of(steps);
+    }
+
+    /**
+     * @param sql SQL statement
+     * @return a step executing the given statement
+     */
+    public static Step sql(String sql) {
+        return connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(sql);
+            }
+        };
+    }
+
+    private static Step[] toSteps(String[] statements) {
+        List<Step> steps = new ArrayList<>(statements.length);
+        for (String statement : statements) {
+            steps.add(sql(statement));
+        }
+        return steps.toArray(new Step[0]);
+    }
+
+    /**
+     * Getter Methods
+     */
+
+    public int getVersion() {
+        return version;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public List<Step> getSteps() {
+        return steps;
+    }
+
+    public String toString() {
+        return "Migration V" + this.version + ": " + this.description;
+    }
+
+    /**
+     * One step of a migration, executed on the connection of the transaction of the migration.
+     */
+    @FunctionalInterface
+    public interface Step {
+        void execute(Connection connection) throws SQLException;
+    }
+}
@@ -0,0 +1,122 @@
+package de.hitec.nhplus.datastorage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Brings the database schema up to date by applying the pending {@link SchemaMigrations}.
+ * <p>
+ * The versions that have been applied are recorded in the table <code>schema_version</code>. Every pending migration
+ * is applied in its own transaction together with its record, so a failing migration leaves the database at the
+ * previous version. Running the migrations again applies nothing, and no migration ever drops user data.
+ */
+public class MigrationRunner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MigrationRunner.class);
+
+    private static final String CREATE_VERSION_TABLE = "CREATE TABLE IF NOT EXISTS schema_version (" +
+            "version INTEGER PRIMARY KEY, description TEXT NOT NULL, applied_at TEXT NOT NULL)";
+
+    /**
+     * Applies all pending migrations on the writer connection of the given pool, holding its write lock.
+     *
+     * @param connectionPool the pool of the database to migrate
+     * @return the schema version of the database after the migration
+     * @throws SQLException if a migration failed
+     */
+    public static int migrate(ConnectionPool connectionPool) throws SQLException {
+        Connection connection = connectionPool.acquireWriteConnection();
+        try {
+            return migrate(connection, SchemaMigrations.all());
+        } finally {
+            connectionPool.releaseWriteConnection();
+        }
+    }
+
+    /**
+     * Applies all given migrations with a version above the current schema version of the database.
+     *
+     * @param connection a writable connection to the database, in autocommit mode
+     * @param migrations the migrations, ordered by strictly ascending versions
+     * @return the schema version of the database after the migration
+     * @throws SQLException if a migration failed
+     */
+    public static int migrate(Connection connection, List<Migration> migrations) throws SQLException {
+        checkOrder(migrations);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(CREATE_VERSION_TABLE);
+        }
+        int version = getCurrentVersion(connection);
+        for (Migration migration : migrations) {
+            if (migration.getVersion() > version) {
+                apply(connection, migration);
+                version = migration.getVersion();
+            }
+        }
+        LOGGER.info("Datenbankschema ist auf Version {}", version);
+        return version;
+    }
+
+    /**
+     * Returns the highest schema version recorded in the database.
+     *
+     * @param connection a connection to the database
+     * @return the schema version, 0 if no migration has been applied yet
+     * @throws SQLException if the version could not be read
+     */
+    public static int getCurrentVersion(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            try (ResultSet tables = statement.executeQuery(
+                    "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = 'schema_version'")) {
+                if (!tables.next()) {
+                    return 0;
+                }
+            }
+            try (ResultSet result = statement.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+                return result.next() ? result.getInt(1) : 0;
+            }
+        }
+    }
+
+    private static void apply(Connection connection, Migration migration) throws SQLException {
+        LOGGER.info("Wende {} an", migration);
+        connection.setAutoCommit(false);
+        try {
+            for (Migration.Step step : migration.getSteps()) {
+                step.execute(connection);
+            }
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO schema_version (version, description, applied_at) VALUES (?, ?, ?)")) {
+                statement.setInt(1, migration.getVersion());
+                statement.setString(2, migration.getDescription());
+                statement.setString(3, LocalDateTime.now().toString());
+                statement.executeUpdate();
+            }
+            connection.commit();
+        } catch (SQLException | RuntimeException exception) {
+            connection.rollback();
+            LOGGER.error("{} ist fehlgeschlagen", migration, exception);
+            throw exception;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private static void checkOrder(List<Migration> migrations) {
+        int previous = 0;
+        for (Migration migration : migrations) {
+            if (migration.getVersion() <= previous) {
+                throw new IllegalStateException("Migrationen sind nicht aufsteigend sortiert: " + migration);
+            }
+            previous = migration.getVersion();
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package de.hitec.nhplus.datastorage;
 
 import de.hitec.nhplus.model.Nurse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -8,29 +10,83 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 
 import java.time.LocalDate;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
-public class NurseDao extends DaoImp<Nurse> {
+public class NurseDao extends DaoImp<Nurse> implements RetentionPurgeable, ChangeTracked<Nurse> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NurseDao.class);
+
+    /**
+     * Updates of the changed columns of a nurse, see {@link Nurse#getDirtyFields()}.
+     */
+    private static final PartialUpdate<Nurse, Nurse.Field> UPDATE =
+            new PartialUpdate<Nurse, Nurse.Field>("nurse", "nid", Nurse.Field.class)
+                    .column(Nurse.Field.FIRST_NAME, "firstname", (s, i, n) -> s.setString(i, n.getFirstName()))
+                    .column(Nurse.Field.SURNAME, "surname", (s, i, n) -> s.setString(i, n.getSurname()))
+                    .column(Nurse.Field.PHONE_NUMBER, "phoneNumber", (s, i, n) -> s.setString(i, n.getPhoneNumber()))
+                    .column(Nurse.Field.STATUS, "status", (s, i, n) -> s.setString(i, n.getStatus()))
+                    .column(Nurse.Field.DELETION_DATE, "deletionDate",
+                            (s, i, n) -> PartialUpdate.setDate(s, i, n.getDeletionDate()))
+                    .column(Nurse.Field.ARCHIVE_DATE, "archiveDate",
+                            (s, i, n) -> PartialUpdate.setDate(s, i, n.getArchiveDate()))
+                    .column(Nurse.Field.CHANGED_BY, "changedBy", (s, i, n) -> s.setString(i, n.getChangedBy()))
+                    .column(Nurse.Field.DELETED_BY, "deletedBy", (s, i, n) -> s.setString(i, n.getDeletedBy()));
+
+    /**
+     * Maps the columns of the table <code>nurse</code> to an object of <code>Nurse</code>.
+     */
+    private static final RowMapper.Factory<Nurse> NURSE_MAPPER = columns -> {
+        int nid = columns.indexOf("nid");
+        int firstname = columns.indexOf("firstname");
+        int surname = columns.indexOf("surname");
+        int phoneNumber = columns.indexOf("phoneNumber");
+        int status = columns.indexOf("status");
+        int deletionDate = columns.indexOf("deletionDate");
+        int archiveDate = columns.indexOf("archiveDate");
+        int changedBy = columns.indexOf("changedBy");
+        int deletedBy = columns.indexOf("deletedBy");
+        return result -> new Nurse(
+                ColumnIndex.getLong(result, nid),
+                ColumnIndex.getString(result, firstname),
+                ColumnIndex.getString(result, surname),
+                ColumnIndex.getString(result, phoneNumber),
+                ColumnIndex.getCode(result, status),
+                ColumnIndex.getDate(result, deletionDate),
+                ColumnIndex.getDate(result, archiveDate),
+                ColumnIndex.getCode(result, changedBy),
+                ColumnIndex.getCode(result, deletedBy));
+    };
 
     /**
      * Implements the Interface <code>DaoImp</code>. Overrides methods to generate specific
      * <code>PreparedStatements</code>,
      * to execute the specific SQL Statements.
      */
-    public NurseDao(Connection connection) {
-        super(connection);
+    public NurseDao(ConnectionPool connectionPool) {
+        super(connectionPool);
+    }
+
+    /**
+     * Creates a <code>NurseDao</code> that reads nurses through the given cache.
+     *
+     * @param connectionPool Pool of <code>Connection</code>s to execute the SQL-statements.
+     * @param entityCache    Cache of the nurses by their nid, shared by all <code>NurseDao</code>s.
+     */
+    public NurseDao(ConnectionPool connectionPool, EntityCache<Nurse> entityCache) {
+        super(connectionPool, entityCache);
     }
 
     /**
      * Generates a <code>PreparedStatement</code> to persist the given object of <code>Nurse</code>.
      *
+     * @param connection Connection to prepare the statement on.
      * @param nurse Object of <code>nurse</code> to persist.
      * @return <code>PreparedStatement</code> to insert the given nurse.
      */
 
     @Override
-    protected PreparedStatement getCreateStatement(Nurse nurse) {
+    protected PreparedStatement getCreateStatement(Connection connection, Nurse nurse) {
         PreparedStatement preparedStatement = null;
         try {
 
@@ -38,7 +94,7 @@ public class NurseDao extends DaoImp<Nurse> {
                     "VALUES " +
                     "(?, ?, ?,?,?,?,?,?)";
 
-            preparedStatement = this.connection.prepareStatement(SQL);
+            preparedStatement = prepareCachedStatement(connection, SQL);
             preparedStatement.setString(1, nurse.getFirstName());
             preparedStatement.setString(2, nurse.getSurname());
             preparedStatement.setString(3, nurse.getPhoneNumber());
@@ -57,194 +113,171 @@ public class NurseDao extends DaoImp<Nurse> {
             preparedStatement.setString(8, nurse.getDeletedBy());
 
         } catch (SQLException exception) {
-            exception.printStackTrace();
+            LOGGER.error("Anweisung konnte nicht vorbereitet werden", exception);
         }
         return preparedStatement;
     }
 
+    /**
+     * Sets the nurse id (nid) generated for a newly created nurse.
+     *
+     * @param nurse Nurse that has been created.
+     * @param nid Generated nurse id (nid).
+     */
+    @Override
+    protected void setKey(Nurse nurse, long nid) {
+        nurse.setNid(nid);
+    }
+
     /**
      * Generates a <code>PreparedStatement</code> to query a nurse by a given nurse id (nid).
      *
+     * @param connection Connection to prepare the statement on.
      * @param nid Nurse id to query.
      * @return <code>PreparedStatement</code> to query the nurse.
      */
     @Override
-    protected PreparedStatement getReadByIDStatement(long nid) {
+    protected PreparedStatement getReadByIDStatement(Connection connection, long nid) {
         PreparedStatement preparedStatement = null;
         try {
             final String SQL = "SELECT * FROM nurse WHERE nid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            preparedStatement = prepareCachedStatement(connection, SQL);
             preparedStatement.setLong(1, nid);
         } catch (SQLException exception) {
-            exception.printStackTrace();
+            LOGGER.error("Anweisung konnte nicht vorbereitet werden", exception);
         }
         return preparedStatement;
     }
 
     /**
-     * Maps a <code>ResultSet</code> of one nurse to an object of <code>Nurse</code>.
+     * Returns the factory of the row mappers of the columns of the table <code>nurse</code>.
      *
-     * @param result ResultSet with a single row. Columns will be mapped to an object of class <code>Nurse</code>.
-     * @return Object of class <code>Nurse</code> with the data from the resultSet.
+     * @return Factory mapping rows to objects of class <code>Nurse</code>.
      */
     @Override
-    protected Nurse getInstanceFromResultSet(ResultSet result) throws SQLException {
-        LocalDate deletionDate = null;
-        if (result.getDate("deletionDate") != null) {
-            deletionDate = result.getDate("deletionDate").toLocalDate();
-        }
-
-        LocalDate archiveDate = null;
-        if (result.getDate("archiveDate") != null) {
-            archiveDate = result.getDate("archiveDate").toLocalDate();
-        }
-
-
-        return new Nurse(
-                result.getLong("nid"),
-                result.getString("firstname"),
-                result.getString("surname"),
-                result.getString("phoneNumber"),
-                result.getString("status"),
-                deletionDate,
-                archiveDate,
-                result.getString("changedBy"),
-                result.getString("deletedBy")
-        );
-
+    protected RowMapper.Factory<Nurse> getRowMapperFactory() {
+        return NURSE_MAPPER;
     }
 
+
     /**
      * Generates a <code>PreparedStatement</code> to query all nurses.
      *
+     * @param connection Connection to prepare the statement on.
      * @return <code>PreparedStatement</code> to query all nurses.
      */
     @Override
-    protected PreparedStatement getReadAllStatement() {
+    protected PreparedStatement getReadAllStatement(Connection connection) {
         PreparedStatement statement = null;
         try {
             final String SQL = "SELECT * FROM nurse WHERE status = ?";
-            statement = this.connection.prepareStatement(SQL);
+            statement = prepareCachedStatement(connection, SQL);
             statement.setString(1, Nurse.STATUS_ACTIVE);
         } catch (SQLException exception) {
-            exception.printStackTrace();
+            LOGGER.error("Anweisung konnte nicht vorbereitet werden", exception);
         }
         return statement;
     }
 
     /**
-     * Maps a <code>ResultSet</code> of all nurses to an <code>ArrayList</code> of <code>Nurse</code> objects.
+     * Generates a new <code>PreparedStatement</code> to stream all nurses, which is closed with the stream.
      *
-     * @param result ResultSet with all rows. The Columns will be mapped to objects of class <code>Nurse</code>.
-     * @return <code>ArrayList</code> with objects of class <code>Nurse</code> of all rows in the
-     * <code>ResultSet</code>.
+     * @param connection Connection to prepare the statement on.
+     * @return <code>PreparedStatement</code> to stream all nurses.
      */
     @Override
-    protected ArrayList<Nurse> getListFromResultSet(ResultSet result) throws SQLException {
-        ArrayList<Nurse> list = new ArrayList<>();
-        while (result.next()) {
-            // Konvertierung von java.sql.Date zu LocalDate (null-sicher)
-            LocalDate deletionDate = null;
-            java.sql.Date sqlDeletionDate = result.getDate("deletionDate");
-            if (sqlDeletionDate != null) {
-                deletionDate = sqlDeletionDate.toLocalDate();
-            }
-
-            LocalDate archiveDate = null;
-            java.sql.Date sqlArchiveDate = result.getDate("archiveDate");
-            if (sqlArchiveDate != null) {
-                archiveDate = sqlArchiveDate.toLocalDate();
-            }
-
-
-            Nurse nurse = new Nurse(
-                    result.getLong("nid"),
-                    result.getString("firstname"),
-                    result.getString("surname"),
-                    result.getString("phoneNumber"),
-                    result.getString("status"),
-                    deletionDate,
-                    archiveDate,
-                    result.getString("changedBy"),
-                    result.getString("deletedBy")
-            );
-
+    protected PreparedStatement getStreamAllStatement(Connection connection) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement("SELECT * FROM nurse WHERE status = ?");
+        statement.setString(1, Nurse.STATUS_ACTIVE);
+        return statement;
+    }
 
-            list.add(nurse);
+    /**
+     * Generates a <code>PreparedStatement</code> to query one page of nurses, ordered by their nid.
+     *
+     * @param connection Connection to prepare the statement on.
+     * @param afterKey   nid of the last nurse of the previous page, or <code>null</code> for the first page.
+     * @param pageSize   Maximum number of nurses in the page.
+     * @param sortOrder  Order of the nids.
+     * @return <code>PreparedStatement</code> to query one page of nurses.
+     */
+    @Override
+    protected PreparedStatement getReadPageStatement(Connection connection, Long afterKey, int pageSize,
+                                                     SortOrder sortOrder) {
+        PreparedStatement statement = null;
+        try {
+            final String SQL = "SELECT * FROM nurse WHERE status = ? AND nid " + sortOrder.getComparator() +
+                    " ? ORDER BY nid " + sortOrder.getKeyword() + " LIMIT ?";
+            statement = prepareCachedStatement(connection, SQL);
+            statement.setString(1, Nurse.STATUS_ACTIVE);
+            statement.setLong(2, sortOrder.seekFrom(afterKey));
+            statement.setInt(3, pageSize);
+        } catch (SQLException exception) {
+            LOGGER.error("Anweisung konnte nicht vorbereitet werden", exception);
         }
-        return list;
+        return statement;
     }
 
 
+
     /**
      * Generates a <code>PreparedStatement</code> to update the given nurse, identified
-     * by the id of the nurse (nid).
+     * by the id of the nurse (nid). Only the changed columns are written, or all of them if no change has been
+     * recorded.
      *
+     * @param connection Connection to prepare the statement on.
      * @param nurse Nurse object to update.
      * @return <code>PreparedStatement</code> to update the given nurse.
      */
     @Override
-    protected PreparedStatement getUpdateStatement(Nurse nurse) {
+    protected PreparedStatement getUpdateStatement(Connection connection, Nurse nurse) {
         PreparedStatement preparedStatement = null;
         try {
-            final String SQL =
-
-                    "UPDATE nurse SET " +
-                            "firstname = ?, " +
-                            "surname = ?, " +
-                            "phoneNumber = ?, " +
-                            "status = ?," +
-                            "deletionDate = ?, " +
-                            "archiveDate = ?, " +
-                            "changedBy = ?, " +
-                            "deletedBy = ? " +
-                            "WHERE nid = ?";
-
-            preparedStatement = this.connection.prepareStatement(SQL);
-            preparedStatement.setString(1, nurse.getFirstName());
-            preparedStatement.setString(2, nurse.getSurname());
-            preparedStatement.setString(3, nurse.getPhoneNumber());
-            preparedStatement.setString(4, nurse.getStatus());
-
-
-            if (nurse.getDeletionDate() != null) {
-                preparedStatement.setDate(5, java.sql.Date.valueOf(nurse.getDeletionDate()));
-            } else {
-                preparedStatement.setNull(5, java.sql.Types.DATE);
-            }
-
-            if (nurse.getArchiveDate() != null) {
-                preparedStatement.setDate(6, java.sql.Date.valueOf(nurse.getArchiveDate()));
-            } else {
-                preparedStatement.setNull(6, java.sql.Types.DATE);
-            }
-            preparedStatement.setString(7, nurse.getChangedBy());
-            preparedStatement.setString(8, nurse.getDeletedBy());
-
-            preparedStatement.setLong(9, nurse.getNid());
-
-
+            Set<Nurse.Field> fields = UPDATE.fieldsToWrite(nurse.takeDirtyFields());
+            preparedStatement = prepareCachedStatement(connection, UPDATE.getSql(fields));
+            UPDATE.bind(preparedStatement, fields, nurse, nurse.getNid());
         } catch (SQLException exception) {
-            exception.printStackTrace();
+            LOGGER.error("Anweisung konnte nicht vorbereitet werden", exception);
         }
         return preparedStatement;
     }
 
+    /**
+     * Forgets the changed fields of the given nurse, which have been written.
+     *
+     * @param nurse The updated nurse.
+     */
+    @Override
+    protected void updated(Nurse nurse) {
+        nurse.clearDirtyFields();
+    }
+
+    /**
+     * Records the fields of the given nurse as changed again, which could not be written.
+     *
+     * @param nurse The nurse that has not been updated.
+     */
+    @Override
+    protected void updateFailed(Nurse nurse) {
+        nurse.restoreDirtyFields();
+    }
+
     /**
      * Generates a <code>PreparedStatement</code> to delete a nurse with the given id.
      *
+     * @param connection Connection to prepare the statement on.
      * @param nid Id of the nurse to delete.
      * @return <code>PreparedStatement</code> to delete nurse with the given id.
      */
     @Override
-    protected PreparedStatement getDeleteStatement(long nid) {
+    protected PreparedStatement getDeleteStatement(Connection connection, long nid) {
         PreparedStatement preparedStatement = null;
         try {
             final String SQL = "DELETE FROM nurse WHERE nid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            preparedStatement = prepareCachedStatement(connection, SQL);
             preparedStatement.setLong(1, nid);
         } catch (SQLException exception) {
-            exception.printStackTrace();
+            LOGGER.error("Anweisung konnte nicht vorbereitet werden", exception);
         }
         return preparedStatement;
     }
@@ -253,18 +286,19 @@ public class NurseDao extends DaoImp<Nurse> {
      * Generates a <code>PreparedStatement</code> to mark a nurse as inactive.
      * This is a soft-deletion by setting the <code>active</code> column to 'i'.
      *
+     * @param connection Connection to prepare the statement on.
      * @param nid ID of the nurse to deactivate.
      * @return <code>PreparedStatement</code> to update the nurse's active status.
      */
     @Override
-    protected PreparedStatement getDeactivateStatement(long nid) {
+    protected PreparedStatement getDeactivateStatement(Connection connection, long nid) {
         PreparedStatement preparedStatement = null;
         try {
             final String SQL = "UPDATE nurse SET active = 'i' WHERE nid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            preparedStatement = prepareCachedStatement(connection, SQL);
             preparedStatement.setLong(1, nid);
         } catch (SQLException exception) {
-            exception.printStackTrace();
+            LOGGER.error("Anweisung konnte nicht vorbereitet werden", exception);
         }
         return preparedStatement;
     }
@@ -274,20 +308,21 @@ public class NurseDao extends DaoImp<Nurse> {
      * of a nurse identified by the given ID. The archive date is set to the current date,
      * the deletion date is set 10 years in the future.
      *
+     * @param connection Connection to prepare the statement on.
      * @param nid ID of the nurse to update.
      * @return <code>PreparedStatement</code> to update the deletion and archive dates.
      */
     @Override
-    protected PreparedStatement setDeleteDateStatement(long nid) {
+    protected PreparedStatement setDeleteDateStatement(Connection connection, long nid) {
         PreparedStatement preparedStatement = null;
         try {
             final String SQL = "UPDATE nurse SET deletionDate = ?, archiveDate = ? WHERE nid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            preparedStatement = prepareCachedStatement(connection, SQL);
             preparedStatement.setDate(1, java.sql.Date.valueOf(LocalDate.now().plusYears(10))); // Löschdatum
             preparedStatement.setDate(2, java.sql.Date.valueOf(LocalDate.now()));               // Archivdatum
             preparedStatement.setLong(3, nid);
         } catch (SQLException exception) {
-            exception.printStackTrace();
+            LOGGER.error("Anweisung konnte nicht vorbereitet werden", exception);
         }
         return preparedStatement;
     }
@@ -303,14 +338,95 @@ public class NurseDao extends DaoImp<Nurse> {
         final String SQL = "DELETE FROM nurse " + "WHERE deletionDate IS NOT NULL " + "AND deletionDate <= ? " +
                 "AND status != ?";  // Nur wenn NICHT aktiv
 
-        try (PreparedStatement stmt = this.connection.prepareStatement(SQL)) {
+        withWriteConnection("deleteExpiredNurses", connection -> {
+            PreparedStatement stmt = prepareCachedStatement(connection, SQL);
             stmt.setDate(1, java.sql.Date.valueOf(LocalDate.now()));
             stmt.setString(2, Nurse.STATUS_ACTIVE);
 
-            int deleted = stmt.executeUpdate();
+            return stmt.executeUpdate();
+        });
+        invalidateCache();
+    }
 
+    /**
+     * Permanently deletes at most <code>batchSize</code> nurses whose deletion date has passed and which are not
+     * active anymore.
+     *
+     * @param batchSize Maximum number of nurses to delete.
+     * @return Number of deleted nurses.
+     * @throws SQLException If an error occurs during SQL execution.
+     */
+    @Override
+    public int deleteExpiredBatch(int batchSize) throws SQLException {
+        final String SQL = "DELETE FROM nurse WHERE nid IN (SELECT nid FROM nurse " +
+                "WHERE deletionDate IS NOT NULL AND deletionDate <= ? AND status != ? LIMIT ?)";
+        int deleted = withWriteConnection("deleteExpiredBatch", connection -> {
+            PreparedStatement stmt = prepareCachedStatement(connection, SQL);
+            stmt.setDate(1, java.sql.Date.valueOf(LocalDate.now()));
+            stmt.setString(2, Nurse.STATUS_ACTIVE);
+            stmt.setInt(3, batchSize);
+            return stmt.executeUpdate();
+        });
+        if (deleted > 0) {
+            invalidateCache();
         }
+        return deleted;
     }
 
+    /**
+     * Counts the nurses whose deletion date has passed and which are not active anymore.
+     *
+     * @return Number of expired nurses.
+     * @throws SQLException If an error occurs during SQL execution.
+     */
+    @Override
+    public long countExpired() throws SQLException {
+        final String SQL = "SELECT COUNT(*) FROM nurse WHERE deletionDate IS NOT NULL AND deletionDate <= ? " +
+                "AND status != ?";
+        return withReadConnection("countExpired", connection -> {
+            PreparedStatement stmt = prepareCachedStatement(connection, SQL);
+            stmt.setDate(1, java.sql.Date.valueOf(LocalDate.now()));
+            stmt.setString(2, Nurse.STATUS_ACTIVE);
+            try (ResultSet result = stmt.executeQuery()) {
+                return result.next() ? result.getLong(1) : 0L;
+            }
+        });
+    }
+
+    /**
+     * Reads the current change version of the table <code>nurse</code>.
+     *
+     * @return Version of the last change of a nurse.
+     * @throws SQLException If an error occurs during SQL execution.
+     */
+    @Override
+    public long getChangeVersion() throws SQLException {
+        return readChangeVersion("nurse");
+    }
+
+    /**
+     * Reads the nurses inserted, updated or deleted after the given change version, including nurses that have
+     * been marked for deletion.
+     *
+     * @param version Change version that has already been read.
+     * @return The changed nurses and the nids of the deleted ones.
+     * @throws SQLException If an error occurs during SQL execution.
+     */
+    @Override
+    public ChangeSet<Nurse> readChangesSince(long version) throws SQLException {
+        final String SQL = "SELECT * FROM nurse WHERE change_version > ? ORDER BY nid";
+        return readChangesSince("nurse", SQL, NURSE_MAPPER, version);
+    }
 
+    /**
+     * Deletes the tombstones of the nurses deleted before the last changes of the table <code>nurse</code>.
+     *
+     * @param keepVersions Number of the latest changes whose tombstones are kept.
+     * @return The number of deleted tombstones.
+     * @throws SQLException If an error occurs during SQL execution.
+     */
+    @Override
+    public int pruneTombstones(long keepVersions) throws SQLException {
+        return pruneTombstones("nurse", keepVersions);
+    }
 }
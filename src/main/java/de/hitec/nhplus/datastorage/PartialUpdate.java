@@ -0,0 +1,140 @@
+package de.hitec.nhplus.datastorage;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * UPDATE statements of one table that only set the columns of the fields of an entity that have changed.
+ * <p>
+ * Every field of the entity is mapped to its column and to the code binding the value of the field. The SQL of a set of
+ * fields is built on first use and kept, so every shape is built once, and the statement cache prepares it only once
+ * per connection. The columns are set in the order of the fields, so equal sets always yield the same SQL.
+ *
+ * @param <T> the type of the entities
+ * @param <F> the type of the fields of the entities
+ */
+final class PartialUpdate<T, F extends Enum<F>> {
+
+    private final String table;
+    private final String keyColumn;
+    private final Class<F> fieldType;
+    private final Map<F, String> columns;
+    private final Map<F, Binder<T>> binders;
+    private final Map<Set<F>, String> statements = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the statements of the given table; every field must be mapped with {@link #column} before first use.
+     *
+     * @param table     the name of the table
+     * @param keyColumn the name of the primary key column the rows are identified by
+     * @param fieldType the type of the fields
+     */
+    PartialUpdate(String table, String keyColumn, Class<F> fieldType) {
+        this.table = table;
+        this.keyColumn = keyColumn;
+        this.fieldType = fieldType;
+        this.columns = new EnumMap<>(fieldType);
+        this.binders = new EnumMap<>(fieldType);
+    }
+
+    /**
+     * Maps a field to its column.
+     *
+     * @param field  the field
+     * @param column the name of the column
+     * @param binder binds the value of the field of an entity
+     * @return this object, to map the next field
+     */
+    PartialUpdate<T, F> column(F field, String column, Binder<T> binder) {
+        this.columns.put(field, column);
+        this.binders.put(field, binder);
+        return this;
+    }
+
+    /**
+     * Returns the fields to write for the given changed fields: all fields if no change has been recorded, e.g. for an
+     * entity that has been built instead of read, so that it is written in full as before.
+     *
+     * @param dirtyFields the fields changed since the entity has been read or written
+     * @return the fields to write
+     */
+    Set<F> fieldsToWrite(Set<F> dirtyFields) {
+        return dirtyFields.isEmpty() ? EnumSet.allOf(this.fieldType) : dirtyFields;
+    }
+
+    /**
+     * @param fields the fields to write, at least one
+     * @return the SQL of the UPDATE setting the columns of the fields of the row with a given key
+     */
+    String getSql(Set<F> fields) {
+        String sql = this.statements.get(fields);
+        if (sql == null) {
+            Set<F> key = Collections.unmodifiableSet(EnumSet.copyOf(fields));
+            sql = this.statements.computeIfAbsent(key, this::buildSql);
+        }
+        return sql;
+    }
+
+    /**
+     * Binds the values of the fields and the key to a statement prepared from {@link #getSql(Set)}.
+     *
+     * @param statement the statement
+     * @param fields    the fields the statement has been prepared for
+     * @param t         the entity
+     * @param key       the primary key of the entity
+     * @throws SQLException if a value could not be bound
+     */
+    void bind(PreparedStatement statement, Set<F> fields, T t, long key) throws SQLException {
+        int index = 1;
+        for (F field : EnumSet.copyOf(fields)) {
+            this.binders.get(field).bind(statement, index++, t);
+        }
+        statement.setLong(index, key);
+    }
+
+    /**
+     * Binds a date column written with {@link PreparedStatement#setDate}, setting SQL NULL for <code>null</code>.
+     */
+    static void setDate(PreparedStatement statement, int index, LocalDate date) throws SQLException {
+        if (date != null) {
+            statement.setDate(index, Date.valueOf(date));
+        } else {
+            statement.setNull(index, Types.DATE);
+        }
+    }
+
+    private String buildSql(Set<F> fields) {
+        if (fields.isEmpty()) {
+            throw new IllegalArgumentException("fields must not be empty");
+        }
+        StringBuilder sql = new StringBuilder("UPDATE ").append(this.table).append(" SET ");
+        for (F field : fields) {
+            String column = this.columns.get(field);
+            if (column == null) {
+                throw new IllegalStateException("field " + field + " is not mapped to a column");
+            }
+            sql.append(column).append(" = ?, ");
+        }
+        sql.setLength(sql.length() - 2);
+        return sql.append(" WHERE ").append(this.keyColumn).append(" = ?").toString();
+    }
+
+    /**
+     * Binds the value of a field of an entity to a parameter of a statement.
+     *
+     * @param <T> the type of the entities
+     */
+    @FunctionalInterface
+    interface Binder<T> {
+        void bind(PreparedStatement statement, int index, T t) throws SQLException;
+    }
+}
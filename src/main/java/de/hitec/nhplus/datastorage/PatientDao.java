@@ -2,35 +2,97 @@ package de.hitec.nhplus.datastorage;
 
 import de.hitec.nhplus.model.Nurse;
 import de.hitec.nhplus.model.Patient;
-import de.hitec.nhplus.utils.DateConverter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.sql.*;
 import java.time.LocalDate;
-import java.util.ArrayList;
+import java.util.Set;
 
 /**
  * Implements the Interface <code>DaoImp</code>. Overrides methods to generate specific <code>PreparedStatements</code>,
  * to execute the specific SQL Statements.
  */
-public class PatientDao extends DaoImp<Patient> {
+public class PatientDao extends DaoImp<Patient> implements RetentionPurgeable, ChangeTracked<Patient> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PatientDao.class);
+
+    /**
+     * Updates of the changed columns of a patient, see {@link Patient#getDirtyFields()}.
+     */
+    private static final PartialUpdate<Patient, Patient.Field> UPDATE =
+            new PartialUpdate<Patient, Patient.Field>("patient", "pid", Patient.Field.class)
+                    .column(Patient.Field.FIRST_NAME, "firstname", (s, i, p) -> s.setString(i, p.getFirstName()))
+                    .column(Patient.Field.SURNAME, "surname", (s, i, p) -> s.setString(i, p.getSurname()))
+                    .column(Patient.Field.DATE_OF_BIRTH, "dateOfBirth",
+                            (s, i, p) -> s.setString(i, p.getDateOfBirth()))
+                    .column(Patient.Field.CARE_LEVEL, "carelevel", (s, i, p) -> s.setString(i, p.getCareLevel()))
+                    .column(Patient.Field.ROOM_NUMBER, "roomnumber", (s, i, p) -> s.setString(i, p.getRoomNumber()))
+                    .column(Patient.Field.STATUS, "status", (s, i, p) -> s.setString(i, p.getStatus()))
+                    .column(Patient.Field.DELETION_DATE, "deletionDate",
+                            (s, i, p) -> PartialUpdate.setDate(s, i, p.getDeletionDate()))
+                    .column(Patient.Field.ARCHIVE_DATE, "archiveDate",
+                            (s, i, p) -> PartialUpdate.setDate(s, i, p.getArchiveDate()))
+                    .column(Patient.Field.CHANGED_BY, "changedBy", (s, i, p) -> s.setString(i, p.getChangedBy()))
+                    .column(Patient.Field.DELETED_BY, "deletedBy", (s, i, p) -> s.setString(i, p.getDeletedBy()));
 
     /**
-     * The constructor initiates an object of <code>PatientDao</code> and passes the connection to its super class.
+     * Maps the columns of the table <code>patient</code> to an object of <code>Patient</code>.
+     */
+    private static final RowMapper.Factory<Patient> PATIENT_MAPPER = columns -> {
+        int pid = columns.indexOf("pid");
+        int firstname = columns.indexOf("firstname");
+        int surname = columns.indexOf("surname");
+        int dateOfBirth = columns.indexOf("dateOfBirth");
+        int careLevel = columns.indexOf("carelevel");
+        int roomNumber = columns.indexOf("roomnumber");
+        int status = columns.indexOf("status");
+        int deletionDate = columns.indexOf("deletionDate");
+        int archiveDate = columns.indexOf("archiveDate");
+        int changedBy = columns.indexOf("changedBy");
+        int deletedBy = columns.indexOf("deletedBy");
+        return result -> new Patient(
+                ColumnIndex.getLong(result, pid),
+                ColumnIndex.getString(result, firstname),
+                ColumnIndex.getString(result, surname),
+                ColumnIndex.getDateText(result, dateOfBirth),
+                ColumnIndex.getCode(result, careLevel),
+                ColumnIndex.getString(result, roomNumber),
+                ColumnIndex.getCode(result, status),
+                ColumnIndex.getDate(result, deletionDate),
+                ColumnIndex.getDate(result, archiveDate),
+                ColumnIndex.getCode(result, changedBy),
+                ColumnIndex.getCode(result, deletedBy));
+    };
+
+    /**
+     * The constructor initiates an object of <code>PatientDao</code> and passes the connection pool to its super class.
      *
-     * @param connection Object of <code>Connection</code> to execute the SQL-statements.
+     * @param connectionPool Pool of <code>Connection</code>s to execute the SQL-statements.
      */
-    public PatientDao(Connection connection) {
-        super(connection);
+    public PatientDao(ConnectionPool connectionPool) {
+        super(connectionPool);
+    }
+
+    /**
+     * Creates a <code>PatientDao</code> that reads patients through the given cache.
+     *
+     * @param connectionPool Pool of <code>Connection</code>s to execute the SQL-statements.
+     * @param entityCache    Cache of the patients by their pid, shared by all <code>PatientDao</code>s.
+     */
+    public PatientDao(ConnectionPool connectionPool, EntityCache<Patient> entityCache) {
+        super(connectionPool, entityCache);
     }
 
     /**
      * Generates a <code>PreparedStatement</code> to persist the given object of <code>Patient</code>.
      *
+     * @param connection Connection to prepare the statement on.
      * @param patient Object of <code>Patient</code> to persist.
      * @return <code>PreparedStatement</code> to insert the given patient.
      */
     @Override
-    protected PreparedStatement getCreateStatement(Patient patient) {
+    protected PreparedStatement getCreateStatement(Connection connection, Patient patient) {
         PreparedStatement preparedStatement = null;
         try {
             final String SQL = "INSERT INTO patient (firstname, surname, dateOfBirth, carelevel, roomnumber, status," +
@@ -38,7 +100,7 @@ public class PatientDao extends DaoImp<Patient> {
                     "deletionDate, archiveDate, changedBy, deletedBy) " +
                     "VALUES (?, ?, ?, ?, ? ,? , ? , ? ,?,?)";
 
-            preparedStatement = this.connection.prepareStatement(SQL);
+            preparedStatement = prepareCachedStatement(connection, SQL);
             preparedStatement.setString(1, patient.getFirstName());
             preparedStatement.setString(2, patient.getSurname());
             preparedStatement.setString(3, patient.getDateOfBirth());
@@ -64,195 +126,170 @@ public class PatientDao extends DaoImp<Patient> {
             preparedStatement.setString(10, patient.getDeletedBy());
 
         } catch (SQLException exception) {
-            exception.printStackTrace();
+            LOGGER.error("Anweisung konnte nicht vorbereitet werden", exception);
         }
         return preparedStatement;
     }
 
+    /**
+     * Sets the patient id (pid) generated for a newly created patient.
+     *
+     * @param patient Patient that has been created.
+     * @param pid Generated patient id (pid).
+     */
+    @Override
+    protected void setKey(Patient patient, long pid) {
+        patient.setPid(pid);
+    }
+
     /**
      * Generates a <code>PreparedStatement</code> to query a patient by a given patient id (pid).
      *
+     * @param connection Connection to prepare the statement on.
      * @param pid Patient id to query.
      * @return <code>PreparedStatement</code> to query the patient.
      */
     @Override
-    protected PreparedStatement getReadByIDStatement(long pid) {
+    protected PreparedStatement getReadByIDStatement(Connection connection, long pid) {
         PreparedStatement preparedStatement = null;
         try {
             final String SQL = "SELECT * FROM patient WHERE pid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            preparedStatement = prepareCachedStatement(connection, SQL);
             preparedStatement.setLong(1, pid);
         } catch (SQLException exception) {
-            exception.printStackTrace();
+            LOGGER.error("Anweisung konnte nicht vorbereitet werden", exception);
         }
         return preparedStatement;
     }
 
     /**
-     * Maps a <code>ResultSet</code> of one patient to an object of <code>Patient</code>.
+     * Returns the factory of the row mappers of the columns of the table <code>patient</code>.
      *
-     * @param result ResultSet with a single row. Columns will be mapped to an object of class <code>Patient</code>.
-     * @return Object of class <code>Patient</code> with the data from the resultSet.
+     * @return Factory mapping rows to objects of class <code>Patient</code>.
      */
     @Override
-    protected Patient getInstanceFromResultSet(ResultSet result) throws SQLException {
-        LocalDate deletionDate = null;
-        if (result.getDate("deletionDate") != null) {
-            deletionDate = result.getDate("deletionDate").toLocalDate();
-        }
-
-        LocalDate archiveDate = null;
-        if (result.getDate("archiveDate") != null) {
-            archiveDate = result.getDate("archiveDate").toLocalDate();
-        }
-        return new Patient(result.getInt(1), result.getString("firstname"), result.getString("surname"),
-                DateConverter.convertStringToLocalDate(result.getString(4)), result.getString("careLevel"),
-
-                result.getString("roomnumber"), result.getString("status"),deletionDate,archiveDate,result.getString("changedBy"),
-                result.getString("deletedBy") );
-
+    protected RowMapper.Factory<Patient> getRowMapperFactory() {
+        return PATIENT_MAPPER;
     }
 
+
     /**
      * Generates a <code>PreparedStatement</code> to query all patients.
      *
+     * @param connection Connection to prepare the statement on.
      * @return <code>PreparedStatement</code> to query all patients.
      */
     @Override
-    protected PreparedStatement getReadAllStatement() {
+    protected PreparedStatement getReadAllStatement(Connection connection) {
         PreparedStatement statement = null;
         try {
             final String SQL = "SELECT * FROM patient WHERE status = ?";
-            statement = this.connection.prepareStatement(SQL);
+            statement = prepareCachedStatement(connection, SQL);
             statement.setString(1, Patient.STATUS_ACTIVE);
         } catch (SQLException exception) {
-            exception.printStackTrace();
+            LOGGER.error("Anweisung konnte nicht vorbereitet werden", exception);
         }
         return statement;
     }
 
     /**
-     * Maps a <code>ResultSet</code> of all patients to an <code>ArrayList</code> of <code>Patient</code> objects.
+     * Generates a new <code>PreparedStatement</code> to stream all patients, which is closed with the stream.
      *
-     * @param result ResultSet with all rows. The Columns will be mapped to objects of class <code>Patient</code>.
-     * @return <code>ArrayList</code> with objects of class <code>Patient</code> of all rows in the
-     * <code>ResultSet</code>.
+     * @param connection Connection to prepare the statement on.
+     * @return <code>PreparedStatement</code> to stream all patients.
      */
     @Override
-    protected ArrayList<Patient> getListFromResultSet(ResultSet result) throws SQLException {
-        ArrayList<Patient> list = new ArrayList<>();
-        while (result.next()) {
-            // Konvertierung von java.sql.Date zu LocalDate (null-sicher)
-            LocalDate deletionDate = null;
-            java.sql.Date sqlDeletionDate = result.getDate("deletionDate");
-            if (sqlDeletionDate != null) {
-                deletionDate = sqlDeletionDate.toLocalDate();
-            }
-
-            LocalDate archiveDate = null;
-            java.sql.Date sqlArchiveDate = result.getDate("archiveDate");
-            if (sqlArchiveDate != null) {
-                archiveDate = sqlArchiveDate.toLocalDate();
-            }
+    protected PreparedStatement getStreamAllStatement(Connection connection) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement("SELECT * FROM patient WHERE status = ?");
+        statement.setString(1, Patient.STATUS_ACTIVE);
+        return statement;
+    }
 
-            LocalDate date = DateConverter.convertStringToLocalDate(result.getString(4));
-
-
-            /*Patient patient =
-                    new Patient((result.getInt(1)),
-                            result.getString("firstname"),
-                            result.getString("surname"),
-                            DateConverter.convertStringToLocalDate(result.getString("dateOfBirth")),
-                            result.getString("careLevel"),
-                            result.getString("roomnumber"),
-                            result.getString("status"),
-                            deletionDate,archiveDate )
-                            result.getString("changedBy"),
-                            result.getString("deletedBy")
-            );*/
-            Patient patient = new Patient(
-                    result.getInt("pid"),
-                    result.getString("firstname"),
-                    result.getString("surname"),
-                    DateConverter.convertStringToLocalDate(result.getString("dateOfBirth")),
-                    result.getString("careLevel"),
-                    result.getString("roomnumber"),
-                    result.getString("status"),
-                    deletionDate,
-                    archiveDate,
-                    result.getString("changedBy"),
-                    result.getString("deletedBy")
-            );
-
-            list.add(patient);
+    /**
+     * Generates a <code>PreparedStatement</code> to query one page of patients, ordered by their pid.
+     *
+     * @param connection Connection to prepare the statement on.
+     * @param afterKey   pid of the last patient of the previous page, or <code>null</code> for the first page.
+     * @param pageSize   Maximum number of patients in the page.
+     * @param sortOrder  Order of the pids.
+     * @return <code>PreparedStatement</code> to query one page of patients.
+     */
+    @Override
+    protected PreparedStatement getReadPageStatement(Connection connection, Long afterKey, int pageSize,
+                                                     SortOrder sortOrder) {
+        PreparedStatement statement = null;
+        try {
+            final String SQL = "SELECT * FROM patient WHERE status = ? AND pid " + sortOrder.getComparator() +
+                    " ? ORDER BY pid " + sortOrder.getKeyword() + " LIMIT ?";
+            statement = prepareCachedStatement(connection, SQL);
+            statement.setString(1, Patient.STATUS_ACTIVE);
+            statement.setLong(2, sortOrder.seekFrom(afterKey));
+            statement.setInt(3, pageSize);
+        } catch (SQLException exception) {
+            LOGGER.error("Anweisung konnte nicht vorbereitet werden", exception);
         }
-        return list;
+        return statement;
     }
 
+
     /**
      * Generates a <code>PreparedStatement</code> to update the given patient, identified
-     * by the id of the patient (pid).
+     * by the id of the patient (pid). Only the changed columns are written, or all of them if no change has been
+     * recorded.
      *
+     * @param connection Connection to prepare the statement on.
      * @param patient Patient object to update.
      * @return <code>PreparedStatement</code> to update the given patient.
      */
     @Override
-    protected PreparedStatement getUpdateStatement(Patient patient) {
+    protected PreparedStatement getUpdateStatement(Connection connection, Patient patient) {
         PreparedStatement preparedStatement = null;
         try {
-            final String SQL = "UPDATE patient SET " + "firstname = ?, " + "surname = ?, " + "dateOfBirth = ?, " +
-
-                    "carelevel = ?, " + "roomnumber = ?, "+ "status = ?,"+"deletionDate = ?,"+"archiveDate= ? , changedBy = ?, deletedBy = ?" +
-
-                    "WHERE pid = ?";
-            /* +
-                    "assets = ? "*/
-            preparedStatement = this.connection.prepareStatement(SQL);
-            preparedStatement.setString(1, patient.getFirstName());
-            preparedStatement.setString(2, patient.getSurname());
-            preparedStatement.setString(3, patient.getDateOfBirth());
-            preparedStatement.setString(4, patient.getCareLevel());
-            preparedStatement.setString(5, patient.getRoomNumber());
-            preparedStatement.setString(6, patient.getStatus());
-
-
-            if (patient.getDeletionDate() != null) {
-                preparedStatement.setDate(7, java.sql.Date.valueOf(patient.getDeletionDate()));
-            } else {
-                preparedStatement.setNull(7, java.sql.Types.DATE);
-            }
-
-            if (patient.getArchiveDate() != null) {
-                preparedStatement.setDate(8, java.sql.Date.valueOf(patient.getArchiveDate()));
-            } else {
-                preparedStatement.setNull(8, java.sql.Types.DATE);
-            }
-            preparedStatement.setString(9, patient.getChangedBy());
-            preparedStatement.setString(10, patient.getDeletedBy());
-
-
-            preparedStatement.setLong(11, patient.getPid());
+            Set<Patient.Field> fields = UPDATE.fieldsToWrite(patient.takeDirtyFields());
+            preparedStatement = prepareCachedStatement(connection, UPDATE.getSql(fields));
+            UPDATE.bind(preparedStatement, fields, patient, patient.getPid());
         } catch (SQLException exception) {
-            exception.printStackTrace();
+            LOGGER.error("Anweisung konnte nicht vorbereitet werden", exception);
         }
         return preparedStatement;
     }
 
+    /**
+     * Forgets the changed fields of the given patient, which have been written.
+     *
+     * @param patient The updated patient.
+     */
+    @Override
+    protected void updated(Patient patient) {
+        patient.clearDirtyFields();
+    }
+
+    /**
+     * Records the fields of the given patient as changed again, which could not be written.
+     *
+     * @param patient The patient that has not been updated.
+     */
+    @Override
+    protected void updateFailed(Patient patient) {
+        patient.restoreDirtyFields();
+    }
+
     /**
      * Generates a <code>PreparedStatement</code> to delete a patient with the given id.
      *
+     * @param connection Connection to prepare the statement on.
      * @param pid Id of the patient to delete.
      * @return <code>PreparedStatement</code> to delete patient with the given id.
      */
     @Override
-    protected PreparedStatement getDeleteStatement(long pid) {
+    protected PreparedStatement getDeleteStatement(Connection connection, long pid) {
         PreparedStatement preparedStatement = null;
         try {
             final String SQL = "DELETE FROM patient WHERE pid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            preparedStatement = prepareCachedStatement(connection, SQL);
             preparedStatement.setLong(1, pid);
         } catch (SQLException exception) {
-            exception.printStackTrace();
+            LOGGER.error("Anweisung konnte nicht vorbereitet werden", exception);
         }
         return preparedStatement;
     }
@@ -261,18 +298,19 @@ public class PatientDao extends DaoImp<Patient> {
      * Generates a <code>PreparedStatement</code> to mark a patient as inactive.
      * This is a soft-deletion by setting the <code>active</code> column to 'i'.
      *
+     * @param connection Connection to prepare the statement on.
      * @param pid ID of the patient to deactivate.
      * @return <code>PreparedStatement</code> to update the patient's active status.
      */
     @Override
-    protected PreparedStatement getDeactivateStatement(long pid) {
+    protected PreparedStatement getDeactivateStatement(Connection connection, long pid) {
         PreparedStatement preparedStatement = null;
         try {
             final String SQL = "UPDATE patient SET active = 'i' WHERE pid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            preparedStatement = prepareCachedStatement(connection, SQL);
             preparedStatement.setLong(1, pid);
         } catch (SQLException exception) {
-            exception.printStackTrace();
+            LOGGER.error("Anweisung konnte nicht vorbereitet werden", exception);
         }
         return preparedStatement;
     }
@@ -282,20 +320,21 @@ public class PatientDao extends DaoImp<Patient> {
      * of a patient identified by the given ID. The archive date is set to the current date,
      * the deletion date is set 10 years in the future.
      *
+     * @param connection Connection to prepare the statement on.
      * @param pid ID of the patient to update.
      * @return <code>PreparedStatement</code> to update the deletion and archive dates.
      */
     @Override
-    protected PreparedStatement setDeleteDateStatement(long pid) {
+    protected PreparedStatement setDeleteDateStatement(Connection connection, long pid) {
         PreparedStatement preparedStatement = null;
         try {
             final String SQL = "UPDATE patient SET deletionDate = ?, archiveDate = ? WHERE pid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            preparedStatement = prepareCachedStatement(connection, SQL);
             preparedStatement.setDate(1, java.sql.Date.valueOf(LocalDate.now().plusYears(10))); // Löschdatum
             preparedStatement.setDate(2, java.sql.Date.valueOf(LocalDate.now()));               // Archivdatum
             preparedStatement.setLong(3, pid);
         } catch (SQLException exception) {
-            exception.printStackTrace();
+            LOGGER.error("Anweisung konnte nicht vorbereitet werden", exception);
         }
         return preparedStatement;
     }
@@ -311,14 +350,95 @@ public class PatientDao extends DaoImp<Patient> {
         final String SQL = "DELETE FROM patient " + "WHERE deletionDate IS NOT NULL " + "AND deletionDate <= ? " +
                 "AND status != ?";  // Nur wenn NICHT aktiv
 
-        try (PreparedStatement stmt = this.connection.prepareStatement(SQL)) {
+        withWriteConnection("deleteExpiredPatient", connection -> {
+            PreparedStatement stmt = prepareCachedStatement(connection, SQL);
             stmt.setDate(1, java.sql.Date.valueOf(LocalDate.now()));
             stmt.setString(2, Patient.STATUS_ACTIVE);
 
-            int deleted = stmt.executeUpdate();
+            return stmt.executeUpdate();
+        });
+        invalidateCache();
+    }
 
+    /**
+     * Permanently deletes at most <code>batchSize</code> patients whose deletion date has passed and which are not
+     * active anymore.
+     *
+     * @param batchSize Maximum number of patients to delete.
+     * @return Number of deleted patients.
+     * @throws SQLException If an error occurs during SQL execution.
+     */
+    @Override
+    public int deleteExpiredBatch(int batchSize) throws SQLException {
+        final String SQL = "DELETE FROM patient WHERE pid IN (SELECT pid FROM patient " +
+                "WHERE deletionDate IS NOT NULL AND deletionDate <= ? AND status != ? LIMIT ?)";
+        int deleted = withWriteConnection("deleteExpiredBatch", connection -> {
+            PreparedStatement stmt = prepareCachedStatement(connection, SQL);
+            stmt.setDate(1, java.sql.Date.valueOf(LocalDate.now()));
+            stmt.setString(2, Patient.STATUS_ACTIVE);
+            stmt.setInt(3, batchSize);
+            return stmt.executeUpdate();
+        });
+        if (deleted > 0) {
+            invalidateCache();
         }
+        return deleted;
+    }
+
+    /**
+     * Counts the patients whose deletion date has passed and which are not active anymore.
+     *
+     * @return Number of expired patients.
+     * @throws SQLException If an error occurs during SQL execution.
+     */
+    @Override
+    public long countExpired() throws SQLException {
+        final String SQL = "SELECT COUNT(*) FROM patient WHERE deletionDate IS NOT NULL AND deletionDate <= ? " +
+                "AND status != ?";
+        return withReadConnection("countExpired", connection -> {
+            PreparedStatement stmt = prepareCachedStatement(connection, SQL);
+            stmt.setDate(1, java.sql.Date.valueOf(LocalDate.now()));
+            stmt.setString(2, Patient.STATUS_ACTIVE);
+            try (ResultSet result = stmt.executeQuery()) {
+                return result.next() ? result.getLong(1) : 0L;
+            }
+        });
+    }
+
+    /**
+     * Reads the current change version of the table <code>patient</code>.
+     *
+     * @return Version of the last change of a patient.
+     * @throws SQLException If an error occurs during SQL execution.
+     */
+    @Override
+    public long getChangeVersion() throws SQLException {
+        return readChangeVersion("patient");
     }
 
+    /**
+     * Reads the patients inserted, updated or deleted after the given change version, including patients that have
+     * been marked for deletion.
+     *
+     * @param version Change version that has already been read.
+     * @return The changed patients and the pids of the deleted ones.
+     * @throws SQLException If an error occurs during SQL execution.
+     */
+    @Override
+    public ChangeSet<Patient> readChangesSince(long version) throws SQLException {
+        final String SQL = "SELECT * FROM patient WHERE change_version > ? ORDER BY pid";
+        return readChangesSince("patient", SQL, PATIENT_MAPPER, version);
+    }
 
+    /**
+     * Deletes the tombstones of the patients deleted before the last changes of the table <code>patient</code>.
+     *
+     * @param keepVersions Number of the latest changes whose tombstones are kept.
+     * @return The number of deleted tombstones.
+     * @throws SQLException If an error occurs during SQL execution.
+     */
+    @Override
+    public int pruneTombstones(long keepVersions) throws SQLException {
+        return pruneTombstones("patient", keepVersions);
+    }
 }
@@ -0,0 +1,337 @@
+package de.hitec.nhplus.datastorage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures the database statements of the DAOs, per screen of the application and statement.
+ * <p>
+ * For every pair of screen and statement, the number of executions and failures, the number of rows read or written
+ * and a latency histogram are recorded. Statements that take longer than the threshold of the slow query log are
+ * logged as warnings, failed statements as errors; {@link #logReport()} logs the statistics of all statements. The
+ * screen is set by the user interface with {@link #setScreen(String)}; work in the background is attributed to the
+ * screen it was started from with {@link #withScreen(String, SqlCall)}. The threshold can be configured with the
+ * system property <code>nhplus.query.slowMillis</code>, the measuring can be switched off with
+ * <code>nhplus.query.metrics=false</code>.
+ */
+public final class QueryMetrics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueryMetrics.class);
+
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("nhplus.query.metrics", "true"));
+    private static final long SLOW_QUERY_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(Long.getLong("nhplus.query.slowMillis", 100));
+
+    /**
+     * Screen that statements are attributed to if neither the current thread nor the user interface has set one.
+     */
+    public static final String UNKNOWN_SCREEN = "unbekannt";
+
+    /**
+     * Number of buckets of the latency histograms. Bucket <code>i</code> counts the executions that took less than
+     * <code>2^i</code> microseconds and not less than <code>2^(i-1)</code>; the last bucket counts all longer ones.
+     */
+    private static final int BUCKETS = 32;
+
+    private static final Map<String, Recorder> RECORDERS = new ConcurrentHashMap<>();
+    private static final ThreadLocal<String> THREAD_SCREEN = new ThreadLocal<>();
+    private static volatile String screen = UNKNOWN_SCREEN;
+
+    private QueryMetrics() {
+    }
+
+    /**
+     * Sets the screen the user is working with. Statements run afterwards are attributed to it, unless they run on a
+     * thread that has a screen of its own, see {@link #withScreen(String, SqlCall)}.
+     *
+     * @param screen the name of the screen
+     */
+    public static void setScreen(String screen) {
+        QueryMetrics.screen = screen;
+    }
+
+    /**
+     * Returns the screen the statements of the current thread are attributed to.
+     *
+     * @return the name of the screen
+     */
+    public static String getScreen() {
+        String threadScreen = THREAD_SCREEN.get();
+        return threadScreen != null ? threadScreen : QueryMetrics.screen;
+    }
+
+    /**
+     * Runs the given work with all its statements attributed to the given screen, e.g. on a background thread that
+     * has been started from that screen.
+     *
+     * @param screen the name of the screen
+     * @param call   the work to run
+     * @param <R>    the type of the result of the work
+     * @return the result of the work
+     * @throws SQLException if the work failed
+     */
+    public static <R> R withScreen(String screen, SqlCall<R> call) throws SQLException {
+        String previous = THREAD_SCREEN.get();
+        THREAD_SCREEN.set(screen);
+        try {
+            return call.call();
+        } finally {
+            if (previous != null) {
+                THREAD_SCREEN.set(previous);
+            } else {
+                THREAD_SCREEN.remove();
+            }
+        }
+    }
+
+    /**
+     * Runs the given statement and records its latency and its number of rows. The rows are counted from the result:
+     * the size of a collection or change set, the update count if it is an {@link Integer}, otherwise one row unless
+     * the result is <code>null</code>. A {@link ResultSet} counts as no rows, because it has not been read yet.
+     *
+     * @param statement the name of the statement, e.g. <code>TreatmentDao.readAll</code>
+     * @param call      runs the statement and, for queries, reads its result
+     * @param <R>       the type of the result
+     * @return the result of the statement
+     * @throws SQLException if the statement failed; the failure is recorded and logged without its stack trace
+     */
+    public static <R> R measure(String statement, SqlCall<R> call) throws SQLException {
+        if (!ENABLED) {
+            return call.call();
+        }
+        long start = System.nanoTime();
+        R result;
+        try {
+            result = call.call();
+        } catch (SQLException | RuntimeException exception) {
+            long nanos = System.nanoTime() - start;
+            String currentScreen = getScreen();
+            recorder(currentScreen, statement).record(nanos, 0, true);
+            LOGGER.error("Anweisung {} auf '{}' ist nach {} ms fehlgeschlagen: {}", statement, currentScreen,
+                    toMillis(nanos), exception.getMessage());
+            throw exception;
+        }
+        long nanos = System.nanoTime() - start;
+        long rows = countRows(result);
+        String currentScreen = getScreen();
+        recorder(currentScreen, statement).record(nanos, rows, false);
+        if (nanos >= SLOW_QUERY_NANOS) {
+            LOGGER.warn("Langsame Anweisung {} auf '{}': {} ms, {} Zeilen", statement, currentScreen, toMillis(nanos),
+                    rows);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the statistics of all statements that have been run since the start or the last {@link #reset()},
+     * ordered by their total time, longest first.
+     *
+     * @return the statistics per screen and statement
+     */
+    public static List<Statistics> getStatistics() {
+        List<Statistics> statistics = new ArrayList<>();
+        for (Recorder recorder : RECORDERS.values()) {
+            statistics.add(recorder.toStatistics());
+        }
+        statistics.sort(Comparator.comparingLong(Statistics::getTotalNanos).reversed());
+        return statistics;
+    }
+
+    /**
+     * Logs the statistics of all statements, e.g. when the application is closed.
+     */
+    public static void logReport() {
+        List<Statistics> statistics = getStatistics();
+        if (statistics.isEmpty()) {
+            return;
+        }
+        LOGGER.info("Laufzeiten der Datenbankanweisungen, Schwelle für langsame Anweisungen {} ms:",
+                toMillis(SLOW_QUERY_NANOS));
+        for (Statistics statement : statistics) {
+            LOGGER.info("{}", statement);
+        }
+    }
+
+    /**
+     * Discards all recorded statistics.
+     */
+    public static void reset() {
+        RECORDERS.clear();
+    }
+
+    private static Recorder recorder(String screen, String statement) {
+        return RECORDERS.computeIfAbsent(screen + '\n' + statement, key -> new Recorder(screen, statement));
+    }
+
+    private static long countRows(Object result) {
+        if (result instanceof Collection<?> collection) {
+            return collection.size();
+        }
+        if (result instanceof ChangeSet<?> changes) {
+            return changes.getChanged().size() + changes.getDeletedKeys().size();
+        }
+        if (result instanceof Integer updateCount) {
+            return updateCount;
+        }
+        return result == null || result instanceof ResultSet ? 0 : 1;
+    }
+
+    private static double toMillis(long nanos) {
+        return Math.round(nanos / 10_000.0) / 100.0;
+    }
+
+    /**
+     * Database work measured by {@link QueryMetrics}.
+     *
+     * @param <R> the type of the result
+     */
+    @FunctionalInterface
+    public interface SqlCall<R> {
+        /**
+         * @return the result of the work
+         * @throws SQLException if a database access error occurs
+         */
+        R call() throws SQLException;
+    }
+
+    /**
+     * Thread-safe counters of one pair of screen and statement.
+     */
+    private static final class Recorder {
+        private final String screen;
+        private final String statement;
+        private final LongAdder executions = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        Recorder(String screen, String statement) {
+            this.screen = screen;
+            this.statement = statement;
+        }
+
+        void record(long nanos, long rows, boolean failed) {
+            this.executions.increment();
+            if (failed) {
+                this.failures.increment();
+            }
+            this.rows.add(rows);
+            this.totalNanos.add(nanos);
+            this.maxNanos.accumulateAndGet(nanos, Math::max);
+            int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos / 1000));
+            this.histogram.incrementAndGet(bucket);
+        }
+
+        Statistics toStatistics() {
+            long[] buckets = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = this.histogram.get(i);
+            }
+            return new Statistics(this.screen, this.statement, this.executions.sum(), this.failures.sum(),
+                    this.rows.sum(), this.totalNanos.sum(), this.maxNanos.get(), buckets);
+        }
+    }
+
+    /**
+     * Immutable snapshot of the statistics of one statement on one screen.
+     */
+    public static final class Statistics {
+        private final String screen;
+        private final String statement;
+        private final long executions;
+        private final long failures;
+        private final long rows;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long[] histogram;
+
+        Statistics(String screen, String statement, long executions, long failures, long rows, long totalNanos,
+                   long maxNanos, long[] histogram) {
+            this.screen = screen;
+            this.statement = statement;
+            this.executions = executions;
+            this.failures = failures;
+            this.rows = rows;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.histogram = histogram;
+        }
+
+        /**
+         * Estimates a percentile of the latency from the histogram.
+         *
+         * @param percentile the percentile, between 0 and 100
+         * @return the upper bound of the histogram bucket the percentile falls into, in microseconds
+         */
+        public long getPercentileMicros(double percentile) {
+            long rank = (long) Math.ceil(this.executions * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < this.histogram.length; i++) {
+                seen += this.histogram[i];
+                if (seen >= rank && seen > 0) {
+                    return 1L << i;
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Getter Methods
+         */
+
+        public String getScreen() {
+            return screen;
+        }
+
+        public String getStatement() {
+            return statement;
+        }
+
+        public long getExecutions() {
+            return executions;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        public double getMeanMillis() {
+            return this.executions == 0 ? 0 : toMillis(this.totalNanos / this.executions);
+        }
+
+        public String toString() {
+            return this.screen + " | " + this.statement + ": " + this.executions + " Aufrufe, " + this.failures +
+                    " Fehler, " + this.rows + " Zeilen, Summe " + toMillis(this.totalNanos) + " ms, Mittel " +
+                    getMeanMillis() + " ms, p50 < " + toMillis(getPercentileMicros(50) * 1000) + " ms, p95 < " +
+                    toMillis(getPercentileMicros(95) * 1000) + " ms, p99 < " + toMillis(getPercentileMicros(99) * 1000) +
+                    " ms, max " + toMillis(this.maxNanos) + " ms";
+        }
+    }
+}
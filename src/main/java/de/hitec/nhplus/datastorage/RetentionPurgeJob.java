@@ -0,0 +1,226 @@
+package de.hitec.nhplus.datastorage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background job that permanently deletes soft-deleted rows whose deletion date has passed.
+ * <p>
+ * The job runs on its own daemon thread at a fixed cadence. Each run deletes the expired rows of every table in small
+ * batches, every batch in its own short transaction with a pause in between, so that the write lock is never held
+ * for long and the user interface can keep saving. A run stops after a maximum number of batches per table; rows that
+ * are left over are reported as backlog and purged by the next run.
+ * <p>
+ * Every deleted row leaves a tombstone for the views that refresh by change delta, see {@link ChangeTracked}. After
+ * purging a target that is change tracked, the job prunes its tombstones except those of the latest changes, so that
+ * they do not pile up; views that have read an older version read all rows again.
+ * <p>
+ * The cadence, the batch sizes and the number of changes whose tombstones are kept can be configured with the system
+ * properties <code>nhplus.retention.initialDelaySeconds</code>, <code>nhplus.retention.intervalMinutes</code>,
+ * <code>nhplus.retention.batchSize</code>, <code>nhplus.retention.maxBatchesPerRun</code>,
+ * <code>nhplus.retention.pauseMillis</code> and <code>nhplus.retention.keepChangeVersions</code>.
+ */
+public class RetentionPurgeJob {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RetentionPurgeJob.class);
+
+    private final Map<String, RetentionPurgeable> targets;
+    private final Duration initialDelay;
+    private final Duration interval;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final Duration pause;
+    private final long keepChangeVersions;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Creates a job. It does not run before {@link #start()} is called.
+     *
+     * @param targets          the DAOs to purge, by a name used in the report, purged in the given order
+     * @param initialDelay     the delay of the first run after {@link #start()}
+     * @param interval         the time between the start of two runs
+     * @param batchSize        the maximum number of rows deleted per transaction
+     * @param maxBatchesPerRun the maximum number of batches per target and run
+     * @param pause              the pause between two batches
+     * @param keepChangeVersions the number of the latest changes whose tombstones are kept
+     */
+    public RetentionPurgeJob(Map<String, RetentionPurgeable> targets, Duration initialDelay, Duration interval,
+                             int batchSize, int maxBatchesPerRun, Duration pause, long keepChangeVersions) {
+        if (batchSize < 1 || maxBatchesPerRun < 1) {
+            throw new IllegalArgumentException("batchSize and maxBatchesPerRun must be at least 1");
+        }
+        if (keepChangeVersions < 0) {
+            throw new IllegalArgumentException("keepChangeVersions must not be negative");
+        }
+        this.targets = Collections.unmodifiableMap(new LinkedHashMap<>(targets));
+        this.initialDelay = initialDelay;
+        this.interval = interval;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.pause = pause;
+        this.keepChangeVersions = keepChangeVersions;
+    }
+
+    /**
+     * Creates a job purging treatments, patients and nurses, configured by the system properties.
+     *
+     * @param daoFactory the factory creating the DAOs
+     * @return the new job
+     */
+    public static RetentionPurgeJob create(DaoFactory daoFactory) {
+        Map<String, RetentionPurgeable> targets = new LinkedHashMap<>();
+        targets.put("Behandlungen", daoFactory.createTreatmentDao());
+        targets.put("Patienten", daoFactory.createPatientDAO());
+        targets.put("Pflegekräfte", daoFactory.createNurseDAO());
+        return new RetentionPurgeJob(targets,
+                Duration.ofSeconds(Long.getLong("nhplus.retention.initialDelaySeconds", 30)),
+                Duration.ofMinutes(Long.getLong("nhplus.retention.intervalMinutes", 60)),
+                Integer.getInteger("nhplus.retention.batchSize", 500),
+                Integer.getInteger("nhplus.retention.maxBatchesPerRun", 100),
+                Duration.ofMillis(Long.getLong("nhplus.retention.pauseMillis", 50)),
+                Long.getLong("nhplus.retention.keepChangeVersions", 10_000));
+    }
+
+    /**
+     * Schedules the job at its cadence. Calling it again while the job is scheduled has no effect.
+     */
+    public synchronized void start() {
+        if (this.scheduler != null) {
+            return;
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "nhplus-retention-purge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::runSafely, this.initialDelay.toMillis(), this.interval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the job. A run in progress is interrupted after its current batch.
+     */
+    public synchronized void stop() {
+        if (this.scheduler != null) {
+            this.scheduler.shutdownNow();
+            this.scheduler = null;
+        }
+    }
+
+    /**
+     * Purges all targets once, in batches, prunes their tombstones and logs the report.
+     *
+     * @return the report of the run
+     * @throws SQLException if a batch failed; the batches before it stay purged
+     */
+    public Report runOnce() throws SQLException {
+        long start = System.nanoTime();
+        Map<String, Long> purged = new LinkedHashMap<>();
+        Map<String, Long> backlog = new LinkedHashMap<>();
+        Map<String, Long> tombstones = new LinkedHashMap<>();
+        for (Map.Entry<String, RetentionPurgeable> target : this.targets.entrySet()) {
+            long rows = 0;
+            int deleted = this.batchSize;
+            for (int batch = 0; batch < this.maxBatchesPerRun && deleted == this.batchSize; batch++) {
+                if (batch > 0 && !pause()) {
+                    break;
+                }
+                deleted = target.getValue().deleteExpiredBatch(this.batchSize);
+                rows += deleted;
+            }
+            purged.put(target.getKey(), rows);
+            backlog.put(target.getKey(), deleted < this.batchSize ? 0L : target.getValue().countExpired());
+            if (target.getValue() instanceof ChangeTracked<?> changeTracked) {
+                tombstones.put(target.getKey(), (long) changeTracked.pruneTombstones(this.keepChangeVersions));
+            }
+        }
+        Report report = new Report(purged, backlog, tombstones, Duration.ofNanos(System.nanoTime() - start));
+        if (report.getTotalPurged() > 0 || report.getTotalBacklog() > 0) {
+            LOGGER.info("Aufbewahrungsfristen: {}", report);
+        } else {
+            LOGGER.debug("Aufbewahrungsfristen: {}", report);
+        }
+        return report;
+    }
+
+    private void runSafely() {
+        try {
+            QueryMetrics.withScreen("Aufbewahrungsfristen", this::runOnce);
+        } catch (SQLException | RuntimeException exception) {
+            LOGGER.error("Abgelaufene Einträge konnten nicht gelöscht werden", exception);
+        }
+    }
+
+    /**
+     * @return false if the thread was interrupted during the pause
+     */
+    private boolean pause() {
+        try {
+            Thread.sleep(this.pause.toMillis());
+            return true;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Immutable result of one run of the job.
+     */
+    public static final class Report {
+        private final Map<String, Long> purged;
+        private final Map<String, Long> backlog;
+        private final Map<String, Long> tombstones;
+        private final Duration duration;
+
+        Report(Map<String, Long> purged, Map<String, Long> backlog, Map<String, Long> tombstones,
+               Duration duration) {
+            this.purged = Collections.unmodifiableMap(purged);
+            this.backlog = Collections.unmodifiableMap(backlog);
+            this.tombstones = Collections.unmodifiableMap(tombstones);
+            this.duration = duration;
+        }
+
+        /**
+         * Getter Methods
+         */
+
+        public Map<String, Long> getPurged() {
+            return purged;
+        }
+
+        public Map<String, Long> getBacklog() {
+            return backlog;
+        }
+
+        public Map<String, Long> getPrunedTombstones() {
+            return tombstones;
+        }
+
+        public Duration getDuration() {
+            return duration;
+        }
+
+        public long getTotalPurged() {
+            return this.purged.values().stream().mapToLong(Long::longValue).sum();
+        }
+
+        public long getTotalBacklog() {
+            return this.backlog.values().stream().mapToLong(Long::longValue).sum();
+        }
+
+        public String toString() {
+            return "Gelöscht: " + this.purged + ", verbleibend: " + this.backlog + ", Löschvermerke entfernt: " +
+                    this.tombstones + ", Dauer: " + this.duration.toMillis() + " ms";
+        }
+    }
+}
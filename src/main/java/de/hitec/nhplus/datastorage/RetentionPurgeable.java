@@ -0,0 +1,28 @@
+package de.hitec.nhplus.datastorage;
+
+import java.sql.SQLException;
+
+/**
+ * Data access object whose soft-deleted rows expire after their deletion date and are then purged for good by the
+ * {@link RetentionPurgeJob}.
+ */
+public interface RetentionPurgeable {
+
+    /**
+     * Permanently deletes at most {@code batchSize} rows whose deletion date has passed and which are not active
+     * anymore. The rows are deleted by a single statement, so the write lock is only held briefly.
+     *
+     * @param batchSize the maximum number of rows to delete
+     * @return the number of deleted rows; less than {@code batchSize} if no expired rows are left
+     * @throws SQLException if a database access error occurs
+     */
+    int deleteExpiredBatch(int batchSize) throws SQLException;
+
+    /**
+     * Counts the rows that {@link #deleteExpiredBatch(int)} would delete.
+     *
+     * @return the number of expired rows
+     * @throws SQLException if a database access error occurs
+     */
+    long countExpired() throws SQLException;
+}
@@ -0,0 +1,42 @@
+package de.hitec.nhplus.datastorage;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps the current row of a {@link ResultSet} to a domain object.
+ * <p>
+ * A row mapper is bound to the columns of one result set: its {@link Factory} looks up the indexes of the columns it
+ * reads once in the {@link ColumnIndex} of the result set, so that mapping a row reads every column by its index and
+ * never searches for a column by its name.
+ *
+ * @param <T> the type of the domain object
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+
+    /**
+     * Maps the current row of the result set the mapper was created for.
+     *
+     * @param result the result set, positioned on a row
+     * @return the domain object of the row
+     * @throws SQLException if a database access error occurs
+     */
+    T mapRow(ResultSet result) throws SQLException;
+
+    /**
+     * Creates the row mapper for the columns of a result set.
+     *
+     * @param <T> the type of the domain object
+     */
+    @FunctionalInterface
+    interface Factory<T> {
+        /**
+         * Resolves the columns the mapper reads and creates the mapper.
+         *
+         * @param columns the columns of the result set
+         * @return the row mapper bound to the columns
+         */
+        RowMapper<T> create(ColumnIndex columns);
+    }
+}
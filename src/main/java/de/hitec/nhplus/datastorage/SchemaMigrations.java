@@ -0,0 +1,222 @@
+package de.hitec.nhplus.datastorage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import static de.hitec.nhplus.datastorage.Migration.sql;
+
+/**
+ * All migrations of the database schema of the application, in the order of their versions.
+ * <p>
+ * Every statement must be safe to run on a database that was created before migrations existed: tables and indexes
+ * are created with <code>IF NOT EXISTS</code>, so that the baseline migration leaves the data of such a database
+ * untouched and only adds the columns its tables lack.
+ */
+public class SchemaMigrations {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SchemaMigrations.class);
+
+    private static final List<Migration> MIGRATIONS = List.of(
+            // tables created by versions of the application before the migrations lack the columns added since
+            new Migration(1, "Tabellen patient, nurse, user und treatment",
+                    sql("""
+                    CREATE TABLE IF NOT EXISTS patient (
+                        pid INTEGER PRIMARY KEY AUTOINCREMENT,
+                        firstname TEXT NOT NULL,
+                        surname TEXT NOT NULL,
+                        dateOfBirth TEXT NOT NULL,
+                        carelevel TEXT NOT NULL,
+                        roomnumber TEXT NOT NULL,
+                        status TEXT NOT NULL,
+                        deletionDate DATE,
+                        archiveDate DATE,
+                        changedBy TEXT,
+                        deletedBy TEXT
+                    )
+                    """),
+                    sql("""
+                    CREATE TABLE IF NOT EXISTS nurse (
+                        nid INTEGER PRIMARY KEY AUTOINCREMENT,
+                        firstname TEXT NOT NULL,
+                        surname TEXT NOT NULL,
+                        phonenumber TEXT NOT NULL,
+                        status TEXT NOT NULL,
+                        deletionDate DATE,
+                        archiveDate DATE,
+                        changedBy TEXT,
+                        deletedBy TEXT
+                    )
+                    """),
+                    sql("""
+                    CREATE TABLE IF NOT EXISTS user (
+                        firstname TEXT NOT NULL,
+                        surname TEXT NOT NULL,
+                        id INTEGER PRIMARY KEY AUTOINCREMENT,
+                        username TEXT UNIQUE NOT NULL,
+                        password_hash TEXT NOT NULL,
+                        role TEXT NOT NULL
+                    )
+                    """),
+                    sql("""
+                    CREATE TABLE IF NOT EXISTS treatment (
+                        tid INTEGER PRIMARY KEY AUTOINCREMENT,
+                        pid INTEGER NOT NULL,
+                        treatment_date TEXT NOT NULL,
+                        begin TEXT NOT NULL,
+                        end TEXT NOT NULL,
+                        description TEXT NOT NULL,
+                        remark TEXT NOT NULL,
+                        nid INTEGER NOT NULL,
+                        status TEXT NOT NULL,
+                        deletionDate DATE,
+                        archiveDate DATE,
+                        changedBy TEXT,
+                        deletedBy TEXT,
+                        FOREIGN KEY (pid) REFERENCES patient (pid) ON DELETE CASCADE,
+                        FOREIGN KEY (nid) REFERENCES nurse (nid) ON DELETE CASCADE
+                    )
+                    """),
+                    addMissingColumns("patient", "status TEXT NOT NULL DEFAULT 'a'", "deletionDate DATE",
+                            "archiveDate DATE", "changedBy TEXT", "deletedBy TEXT"),
+                    addMissingColumns("nurse", "status TEXT NOT NULL DEFAULT 'a'", "deletionDate DATE",
+                            "archiveDate DATE", "changedBy TEXT", "deletedBy TEXT"),
+                    addMissingColumns("user", "role TEXT NOT NULL DEFAULT 'nurse'"),
+                    addMissingColumns("treatment", "status TEXT NOT NULL DEFAULT 'a'", "deletionDate DATE",
+                            "archiveDate DATE", "changedBy TEXT", "deletedBy TEXT")),
+            // the unique constraint on user.username already comes with an index for UserDao.findByUsername
+            new Migration(2, "Indizes für Fremdschlüssel, Statusfilter und das Löschen abgelaufener Einträge",
+                    "CREATE INDEX IF NOT EXISTS idx_treatment_pid ON treatment (pid)",
+                    "CREATE INDEX IF NOT EXISTS idx_treatment_nid ON treatment (nid)",
+                    "CREATE INDEX IF NOT EXISTS idx_treatment_status_deletion ON treatment (status, deletionDate)",
+                    "CREATE INDEX IF NOT EXISTS idx_treatment_deletion ON treatment (deletionDate) " +
+                            "WHERE deletionDate IS NOT NULL",
+                    "CREATE INDEX IF NOT EXISTS idx_patient_status ON patient (status)",
+                    "CREATE INDEX IF NOT EXISTS idx_patient_deletion ON patient (deletionDate) " +
+                            "WHERE deletionDate IS NOT NULL",
+                    "CREATE INDEX IF NOT EXISTS idx_nurse_status ON nurse (status)",
+                    "CREATE INDEX IF NOT EXISTS idx_nurse_deletion ON nurse (deletionDate) " +
+                            "WHERE deletionDate IS NOT NULL"),
+            // idx_treatment_pid and idx_treatment_nid stay: they return the rows of one patient or nurse in tid
+            // order, so paging without a date range needs no sort
+            new Migration(3, "Zusammengesetzte Indizes für Behandlungsfilter nach Patient, Pflegekraft, Status und Datum",
+                    "CREATE INDEX IF NOT EXISTS idx_treatment_pid_date ON treatment (pid, treatment_date)",
+                    "CREATE INDEX IF NOT EXISTS idx_treatment_nid_date ON treatment (nid, treatment_date)",
+                    "CREATE INDEX IF NOT EXISTS idx_treatment_status_date ON treatment (status, treatment_date)",
+                    "CREATE INDEX IF NOT EXISTS idx_treatment_date ON treatment (treatment_date)"),
+            new Migration(4, "Änderungsversionen und Löschvermerke für patient, nurse und treatment",
+                    changeTracking("patient", "pid", "nurse", "nid", "treatment", "tid")),
+            // external content table: the index refers to the rows of treatment instead of storing the texts again;
+            // the update trigger only fires for the indexed columns, so stamping change versions does not reindex
+            new Migration(5, "Volltextindex über Kurzbeschreibung und Bemerkung der Behandlungen",
+                    "CREATE VIRTUAL TABLE IF NOT EXISTS treatment_fts USING fts5(description, remark, " +
+                            "content='treatment', content_rowid='tid', tokenize='unicode61 remove_diacritics 2')",
+                    "CREATE TRIGGER IF NOT EXISTS trg_treatment_fts_insert AFTER INSERT ON treatment BEGIN " +
+                            "INSERT INTO treatment_fts (rowid, description, remark) " +
+                            "VALUES (NEW.tid, NEW.description, NEW.remark); END",
+                    "CREATE TRIGGER IF NOT EXISTS trg_treatment_fts_delete AFTER DELETE ON treatment BEGIN " +
+                            "INSERT INTO treatment_fts (treatment_fts, rowid, description, remark) " +
+                            "VALUES ('delete', OLD.tid, OLD.description, OLD.remark); END",
+                    "CREATE TRIGGER IF NOT EXISTS trg_treatment_fts_update AFTER UPDATE OF description, remark " +
+                            "ON treatment BEGIN " +
+                            "INSERT INTO treatment_fts (treatment_fts, rowid, description, remark) " +
+                            "VALUES ('delete', OLD.tid, OLD.description, OLD.remark); " +
+                            "INSERT INTO treatment_fts (rowid, description, remark) " +
+                            "VALUES (NEW.tid, NEW.description, NEW.remark); END",
+                    "INSERT INTO treatment_fts (treatment_fts) VALUES ('rebuild')",
+                    // matches in the short description weigh twice as much as matches in the remark
+                    "INSERT INTO treatment_fts (treatment_fts, rank) VALUES ('rank', 'bm25(2.0, 1.0)')"),
+            // the tombstones up to this version have been deleted by the RetentionPurgeJob, so changes since an
+            // older version cannot be read anymore, see DaoImp.readChangesSince
+            new Migration(6, "Aufräumstand der Löschvermerke",
+                    "ALTER TABLE change_counter ADD COLUMN pruned_version INTEGER NOT NULL DEFAULT 0")
+    );
+
+    /**
+     * Builds the step adding the given columns to a table that lacks them, because it has been created by a version of
+     * the application before the columns existed. Existing rows get the default value of the column; columns that
+     * cannot be null need one. Columns the table already has are left as they are.
+     *
+     * @param table             The name of the table.
+     * @param columnDefinitions The definitions of the columns as in <code>CREATE TABLE</code>, starting with the name.
+     * @return The step.
+     */
+    private static Migration.Step addMissingColumns(String table, String... columnDefinitions) {
+        return connection -> {
+            Set<String> columns = new HashSet<>();
+            try (Statement statement = connection.createStatement();
+                 ResultSet result = statement.executeQuery("PRAGMA table_info(\"" + table + "\")")) {
+                while (result.next()) {
+                    columns.add(result.getString("name").toLowerCase(Locale.ROOT));
+                }
+            }
+            for (String definition : columnDefinitions) {
+                String column = definition.substring(0, definition.indexOf(' '));
+                if (!columns.contains(column.toLowerCase(Locale.ROOT))) {
+                    LOGGER.info("Ergänze fehlende Spalte {}.{}", table, column);
+                    try (Statement statement = connection.createStatement()) {
+                        statement.execute("ALTER TABLE \"" + table + "\" ADD COLUMN " + definition);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Builds the statements that track the changes of the given tables for {@link ChangeTracked} DAOs.
+     * <p>
+     * The table <code>change_counter</code> holds one counter per table. Triggers increment the counter on every
+     * insert, update and delete of a row and stamp the new value into the column <code>change_version</code> of the
+     * row, or into a tombstone in <code>change_tombstone</code> if the row was deleted. The update trigger only fires
+     * if the statement did not set <code>change_version</code> itself, so stamping a row does not trigger again.
+     *
+     * @param tablesAndKeys Pairs of a table name and the name of its primary key column.
+     * @return The statements, in the order they have to be executed.
+     */
+    private static String[] changeTracking(String... tablesAndKeys) {
+        List<String> statements = new ArrayList<>();
+        statements.add("CREATE TABLE IF NOT EXISTS change_counter (" +
+                "table_name TEXT PRIMARY KEY, version INTEGER NOT NULL)");
+        statements.add("CREATE TABLE IF NOT EXISTS change_tombstone (" +
+                "table_name TEXT NOT NULL, row_key INTEGER NOT NULL, change_version INTEGER NOT NULL, " +
+                "PRIMARY KEY (table_name, row_key))");
+        statements.add("CREATE INDEX IF NOT EXISTS idx_change_tombstone_version " +
+                "ON change_tombstone (table_name, change_version)");
+        for (int i = 0; i < tablesAndKeys.length; i += 2) {
+            String table = tablesAndKeys[i];
+            String key = tablesAndKeys[i + 1];
+            String increment = "UPDATE change_counter SET version = version + 1 WHERE table_name = '" + table + "'; ";
+            String current = "(SELECT version FROM change_counter WHERE table_name = '" + table + "')";
+            String stamp = "UPDATE " + table + " SET change_version = " + current + " WHERE " + key + " = NEW." +
+                    key + "; ";
+            statements.add("ALTER TABLE " + table + " ADD COLUMN change_version INTEGER NOT NULL DEFAULT 0");
+            statements.add("CREATE INDEX IF NOT EXISTS idx_" + table + "_change_version ON " + table +
+                    " (change_version)");
+            statements.add("INSERT OR IGNORE INTO change_counter (table_name, version) VALUES ('" + table + "', 0)");
+            statements.add("CREATE TRIGGER IF NOT EXISTS trg_" + table + "_change_insert AFTER INSERT ON " + table +
+                    " BEGIN " + increment + stamp + "END");
+            statements.add("CREATE TRIGGER IF NOT EXISTS trg_" + table + "_change_update AFTER UPDATE ON " + table +
+                    " WHEN NEW.change_version = OLD.change_version BEGIN " + increment + stamp + "END");
+            statements.add("CREATE TRIGGER IF NOT EXISTS trg_" + table + "_change_delete AFTER DELETE ON " + table +
+                    " BEGIN " + increment + "INSERT OR REPLACE INTO change_tombstone (table_name, row_key, " +
+                    "change_version) VALUES ('" + table + "', OLD." + key + ", " + current + "); END");
+        }
+        return statements.toArray(new String[0]);
+    }
+
+    /**
+     * Returns all migrations, ordered by their versions.
+     *
+     * @return unmodifiable list of the migrations
+     */
+    public static List<Migration> all() {
+        return MIGRATIONS;
+    }
+}
@@ -0,0 +1,100 @@
+package de.hitec.nhplus.datastorage;
+
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Immutable result row of a full-text search: the row that matched, an excerpt of its text with the matching terms
+ * highlighted, and the rank of the match.
+ * <p>
+ * The highlighted terms are enclosed in {@link #HIGHLIGHT_START} and {@link #HIGHLIGHT_END}, two control characters
+ * that do not occur in the texts, so that the user interface can render them in its own way, see
+ * {@link #getSnippetParts()}. Like the properties of the models, the property showing the hit in a table column is
+ * created when it is first requested, see {@link #hitProperty()}.
+ *
+ * @param <T> the type of the rows that are searched
+ */
+public final class SearchHit<T> {
+
+    /**
+     * Marks the start of a highlighted term in the snippet.
+     */
+    public static final char HIGHLIGHT_START = '\u0002';
+
+    /**
+     * Marks the end of a highlighted term in the snippet.
+     */
+    public static final char HIGHLIGHT_END = '\u0003';
+
+    private final T row;
+    private final String snippet;
+    private final double rank;
+    private ReadOnlyObjectWrapper<SearchHit<T>> hitProperty;
+
+    /**
+     * @param row     The row that matched.
+     * @param snippet The excerpt of the text of the row, with the matching terms highlighted.
+     * @param rank    The rank of the match, lower is better.
+     */
+    public SearchHit(T row, String snippet, double rank) {
+        this.row = row;
+        this.snippet = snippet == null ? "" : snippet;
+        this.rank = rank;
+    }
+
+    /**
+     * Splits the snippet at the highlight markers.
+     *
+     * @return the parts of the snippet without the markers; the parts with an odd index are highlighted
+     */
+    public List<String> getSnippetParts() {
+        List<String> parts = new ArrayList<>();
+        int start = 0;
+        boolean highlighted = false;
+        for (int i = 0; i < this.snippet.length(); i++) {
+            char c = this.snippet.charAt(i);
+            if (c == (highlighted ? HIGHLIGHT_END : HIGHLIGHT_START)) {
+                parts.add(this.snippet.substring(start, i));
+                start = i + 1;
+                highlighted = !highlighted;
+            }
+        }
+        parts.add(this.snippet.substring(start));
+        return parts;
+    }
+
+    /**
+     * @return a read-only property holding this hit, the same object on every call, e.g. to show the snippet in a
+     * table column
+     */
+    public ReadOnlyObjectProperty<SearchHit<T>> hitProperty() {
+        if (hitProperty == null) {
+            hitProperty = new ReadOnlyObjectWrapper<>(this);
+        }
+        return hitProperty.getReadOnlyProperty();
+    }
+
+    /**
+     * Getter Methods
+     */
+
+    public T getRow() {
+        return row;
+    }
+
+    public String getSnippet() {
+        return snippet;
+    }
+
+    public double getRank() {
+        return rank;
+    }
+
+    public String toString() {
+        return "Treffer mit Rang " + this.rank + ": " +
+                this.snippet.replace(HIGHLIGHT_START, '«').replace(HIGHLIGHT_END, '»');
+    }
+}
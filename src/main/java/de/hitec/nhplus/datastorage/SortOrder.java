@@ -0,0 +1,60 @@
+package de.hitec.nhplus.datastorage;
+
+/**
+ * Sort order of the primary key for paged reads with {@link Dao#readPage(Long, int, SortOrder)}.
+ * <p>
+ * Pages are read by keyset (seek) pagination: instead of skipping rows with <code>OFFSET</code>, every page starts
+ * right after the key of the last row of the previous page, so that SQLite can seek into the primary key index and
+ * reading a page takes the same time no matter how far the user has scrolled.
+ */
+public enum SortOrder {
+
+    /**
+     * Smallest key first.
+     */
+    ASCENDING("ASC", ">", Long.MIN_VALUE),
+
+    /**
+     * Largest key first.
+     */
+    DESCENDING("DESC", "<", Long.MAX_VALUE);
+
+    private final String keyword;
+    private final String comparator;
+    private final long startKey;
+
+    SortOrder(String keyword, String comparator, long startKey) {
+        this.keyword = keyword;
+        this.comparator = comparator;
+        this.startKey = startKey;
+    }
+
+    /**
+     * Returns the key to seek from. For the first page, when there is no previous key, a key before all other keys
+     * in this order is returned, so that the first and all following pages share one SQL statement.
+     *
+     * @param afterKey Key of the last row of the previous page, or <code>null</code> for the first page.
+     * @return Key the page starts after.
+     */
+    public long seekFrom(Long afterKey) {
+        return afterKey != null ? afterKey : this.startKey;
+    }
+
+    /**
+     * Getter Methods
+     */
+
+    /**
+     * @return SQL keyword of this order, <code>ASC</code> or <code>DESC</code>.
+     */
+    public String getKeyword() {
+        return keyword;
+    }
+
+    /**
+     * @return SQL comparison operator selecting the keys after a given key in this order.
+     */
+    public String getComparator() {
+        return comparator;
+    }
+}
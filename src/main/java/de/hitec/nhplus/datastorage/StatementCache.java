@@ -0,0 +1,167 @@
+package de.hitec.nhplus.datastorage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded least-recently-used cache of the prepared statements of one connection.
+ * <p>
+ * Preparing a statement makes SQLite compile the SQL text every time. The cache keeps compiled statements per SQL
+ * text and hands the same statement out again with its parameters cleared. Statements that fall out of the cache
+ * are closed, so that their native SQLite handles are freed. Cached statements belong to the cache and must not be
+ * closed by the caller; result sets obtained from them should be closed, which resets the statement.
+ * <p>
+ * A cache is bound to a single connection and, like the connection, is only used by one thread at a time.
+ */
+public class StatementCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StatementCache.class);
+
+    private final Connection connection;
+    private final int capacity;
+    private final Map<String, PreparedStatement> statements;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates an empty cache for the given connection.
+     *
+     * @param connection Connection the statements are prepared on.
+     * @param capacity   Maximum number of statements kept open.
+     */
+    public StatementCache(Connection connection, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        this.connection = connection;
+        this.capacity = capacity;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > StatementCache.this.capacity) {
+                    StatementCache.this.evictions++;
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the prepared statement for the given SQL text. A cached statement is reset by clearing its
+     * parameters; otherwise the statement is prepared and added to the cache.
+     *
+     * @param sql SQL text of the statement.
+     * @return Prepared statement ready for binding parameters.
+     * @throws SQLException If the statement could not be prepared.
+     */
+    public synchronized PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = this.statements.get(sql);
+        if (statement != null && !statement.isClosed()) {
+            this.hits++;
+            statement.clearParameters();
+            return statement;
+        }
+        this.misses++;
+        statement = this.connection.prepareStatement(sql);
+        this.statements.put(sql, statement);
+        return statement;
+    }
+
+    /**
+     * Closes all cached statements and empties the cache.
+     */
+    public synchronized void clear() {
+        List<PreparedStatement> cached = new ArrayList<>(this.statements.values());
+        this.statements.clear();
+        for (PreparedStatement statement : cached) {
+            closeQuietly(statement);
+        }
+    }
+
+    /**
+     * Returns a snapshot of the usage of this cache.
+     *
+     * @return Statistics of this cache.
+     */
+    public synchronized Statistics getStatistics() {
+        return new Statistics(this.statements.size(), this.hits, this.misses, this.evictions);
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException exception) {
+            LOGGER.warn("Anweisung konnte nicht geschlossen werden", exception);
+        }
+    }
+
+    /**
+     * Immutable snapshot of the usage of one or more statement caches.
+     */
+    public static final class Statistics {
+        private final int size;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+
+        Statistics(int size, long hits, long misses, long evictions) {
+            this.size = size;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+        }
+
+        /**
+         * Adds the numbers of the given statistics to these.
+         *
+         * @param other Statistics to add.
+         * @return The combined statistics.
+         */
+        public Statistics plus(Statistics other) {
+            return new Statistics(this.size + other.size, this.hits + other.hits, this.misses + other.misses,
+                    this.evictions + other.evictions);
+        }
+
+        /**
+         * Getter Methods
+         */
+
+        public int getSize() {
+            return size;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public double getHitRatio() {
+            long requests = this.hits + this.misses;
+            return requests == 0 ? 0.0 : (double) this.hits / requests;
+        }
+
+        public String toString() {
+            return "Statement-Cache" + "\nGeöffnete Statements: " + this.size + "\nTreffer: " + this.hits +
+                    "\nFehlschläge: " + this.misses + "\nVerdrängt: " + this.evictions + "\nTrefferquote: " +
+                    String.format("%.1f %%", getHitRatio() * 100) + "\n";
+        }
+    }
+}
@@ -3,43 +3,168 @@ package de.hitec.nhplus.datastorage;
 import de.hitec.nhplus.model.Nurse;
 import de.hitec.nhplus.model.Treatment;
 import de.hitec.nhplus.utils.DateConverter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.sql.*;
 import java.time.LocalDate;
-import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * Implements the Interface <code>DaoImp</code>. Overrides methods to generate specific <code>PreparedStatements</code>,
  * to execute the specific SQL Statements.
  */
-public class TreatmentDao extends DaoImp<Treatment> {
+public class TreatmentDao extends DaoImp<Treatment> implements RetentionPurgeable, ChangeTracked<Treatment> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TreatmentDao.class);
+
+    /**
+     * Updates of the changed columns of a treatment, see {@link Treatment#getDirtyFields()}. The patient of a
+     * treatment never changes, so <code>pid</code> is not written.
+     */
+    private static final PartialUpdate<Treatment, Treatment.Field> UPDATE =
+            new PartialUpdate<Treatment, Treatment.Field>("treatment", "tid", Treatment.Field.class)
+                    .column(Treatment.Field.DATE, "treatment_date", (s, i, t) -> s.setString(i, t.getDate()))
+                    .column(Treatment.Field.BEGIN, "begin", (s, i, t) -> s.setString(i, t.getBegin()))
+                    .column(Treatment.Field.END, "end", (s, i, t) -> s.setString(i, t.getEnd()))
+                    .column(Treatment.Field.DESCRIPTION, "description", (s, i, t) -> s.setString(i, t.getDescription()))
+                    .column(Treatment.Field.REMARKS, "remark", (s, i, t) -> s.setString(i, t.getRemarks()))
+                    .column(Treatment.Field.NID, "nid", (s, i, t) -> s.setLong(i, t.getNid()))
+                    .column(Treatment.Field.STATUS, "status", (s, i, t) -> s.setString(i, t.getStatus()))
+                    .column(Treatment.Field.DELETION_DATE, "deletionDate",
+                            (s, i, t) -> PartialUpdate.setDate(s, i, t.getDeletionDate()))
+                    .column(Treatment.Field.ARCHIVE_DATE, "archiveDate",
+                            (s, i, t) -> PartialUpdate.setDate(s, i, t.getArchiveDate()))
+                    .column(Treatment.Field.CHANGED_BY, "changedBy", (s, i, t) -> s.setString(i, t.getChangedBy()))
+                    .column(Treatment.Field.DELETED_BY, "deletedBy", (s, i, t) -> s.setString(i, t.getDeletedBy()));
+
+    /**
+     * Nurse name shown for treatments whose nurse does not exist anymore.
+     */
+    public static final String UNKNOWN_NURSE_NAME = "Unbekannt";
 
     /**
-     * The constructor initiates an object of <code>TreatmentDao</code> and passes the connection to its super class.
+     * Columns of the table <code>treatment</code> read for lists of treatments: all but the remark, which can be long
+     * and is only shown when a single treatment is opened. The remarks are loaded on demand by
+     * {@link #loadRemarks(Treatment)}.
+     */
+    private static final String LIST_COLUMNS = "treatment.tid, treatment.pid, treatment.treatment_date, " +
+            "treatment.begin, treatment.end, treatment.description, treatment.nid, treatment.status, " +
+            "treatment.deletionDate, treatment.archiveDate, treatment.changedBy, treatment.deletedBy";
+
+    /**
+     * The {@link #LIST_COLUMNS} and the name columns of the nurse, for a query joining <code>nurse</code>.
+     */
+    private static final String LIST_COLUMNS_WITH_NURSE_NAME = LIST_COLUMNS +
+            ", nurse.surname AS nurse_surname, nurse.firstname AS nurse_firstname";
+
+    /**
+     * Maps the columns of the table <code>treatment</code> to an object of <code>Treatment</code>. If the remark
+     * column is not selected, as by the list queries, the treatments are marked as read without their remarks.
+     */
+    private static final RowMapper.Factory<Treatment> TREATMENT_MAPPER = columns -> {
+        int tid = columns.indexOf("tid");
+        int pid = columns.indexOf("pid");
+        int date = columns.indexOf("treatment_date");
+        int begin = columns.indexOf("begin");
+        int end = columns.indexOf("end");
+        int description = columns.indexOf("description");
+        int remark = columns.indexOf("remark");
+        int nid = columns.indexOf("nid");
+        int status = columns.indexOf("status");
+        int deletionDate = columns.indexOf("deletionDate");
+        int archiveDate = columns.indexOf("archiveDate");
+        int changedBy = columns.indexOf("changedBy");
+        int deletedBy = columns.indexOf("deletedBy");
+        return result -> {
+            Treatment treatment = new Treatment(
+                    ColumnIndex.getLong(result, tid),
+                    ColumnIndex.getLong(result, pid),
+                    ColumnIndex.getDateText(result, date),
+                    ColumnIndex.getTimeText(result, begin),
+                    ColumnIndex.getTimeText(result, end),
+                    ColumnIndex.getString(result, description),
+                    ColumnIndex.getString(result, remark),
+                    ColumnIndex.getLong(result, nid),
+                    ColumnIndex.getCode(result, status),
+                    ColumnIndex.getDate(result, deletionDate),
+                    ColumnIndex.getDate(result, archiveDate),
+                    ColumnIndex.getCode(result, changedBy),
+                    ColumnIndex.getCode(result, deletedBy));
+            if (remark == ColumnIndex.ABSENT) {
+                treatment.unloadRemarks();
+            }
+            return treatment;
+        };
+    };
+
+    /**
+     * Maximum number of words of the snippets of {@link #search(TreatmentFilter, String, int, int)}.
+     */
+    private static final int SNIPPET_TOKENS = 12;
+
+    /**
+     * Maps the columns of the table <code>treatment</code> joined with the name columns <code>nurse_surname</code>
+     * and <code>nurse_firstname</code> to an object of <code>Treatment</code> with its nurse name set. Treatments
+     * without a matching nurse get the name {@value #UNKNOWN_NURSE_NAME}.
+     */
+    private static final RowMapper.Factory<Treatment> TREATMENT_WITH_NURSE_NAME_MAPPER = columns -> {
+        RowMapper<Treatment> treatmentMapper = TREATMENT_MAPPER.create(columns);
+        int nurseSurname = columns.indexOf("nurse_surname");
+        int nurseFirstname = columns.indexOf("nurse_firstname");
+        return result -> {
+            Treatment treatment = treatmentMapper.mapRow(result);
+            String surname = ColumnIndex.getString(result, nurseSurname);
+            if (surname != null) {
+                treatment.setNurseName(surname + ", " + ColumnIndex.getString(result, nurseFirstname));
+            } else {
+                treatment.setNurseName(UNKNOWN_NURSE_NAME);
+            }
+            return treatment;
+        };
+    };
+
+    /**
+     * Maps the columns of a full-text search, the columns of {@link #TREATMENT_WITH_NURSE_NAME_MAPPER} together with
+     * <code>search_snippet</code> and <code>search_rank</code>, to a {@link SearchHit}.
+     */
+    private static final RowMapper.Factory<SearchHit<Treatment>> SEARCH_HIT_MAPPER = columns -> {
+        RowMapper<Treatment> treatmentMapper = TREATMENT_WITH_NURSE_NAME_MAPPER.create(columns);
+        int snippet = columns.indexOf("search_snippet");
+        int rank = columns.indexOf("search_rank");
+        return result -> new SearchHit<>(treatmentMapper.mapRow(result), ColumnIndex.getString(result, snippet),
+                ColumnIndex.getDouble(result, rank));
+    };
+
+    /**
+     * The constructor initiates an object of <code>TreatmentDao</code> and passes the connection pool to its super class.
      *
-     * @param connection Object of <code>Connection</code> to execute the SQL-statements.
+     * @param connectionPool Pool of <code>Connection</code>s to execute the SQL-statements.
      */
-    public TreatmentDao(Connection connection) {
-        super(connection);
+    public TreatmentDao(ConnectionPool connectionPool) {
+        super(connectionPool);
     }
 
     /**
      * Generates a <code>PreparedStatement</code> to persist the given object of <code>Treatment</code>.
      *
+     * @param connection Connection to prepare the statement on.
      * @param treatment Object of <code>Treatment</code> to persist.
      * @return <code>PreparedStatement</code> to insert the given patient.
      */
     @Override
-    protected PreparedStatement getCreateStatement(Treatment treatment) {
+    protected PreparedStatement getCreateStatement(Connection connection, Treatment treatment) {
         PreparedStatement preparedStatement = null;
         try {
 
             final String SQL =
                     "INSERT INTO treatment (pid, treatment_date, begin, end, description, remark,nid,status," +
                             "deletionDate,archiveDate, changedBy, deletedBy ) " + "VALUES (?, ?, ?, ?, ?, ?,?,?,?,?,?,?)";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            preparedStatement = prepareCachedStatement(connection, SQL);
             preparedStatement.setLong(1, treatment.getPid());
             preparedStatement.setString(2, treatment.getDate());
             preparedStatement.setString(3, treatment.getBegin());
@@ -62,143 +187,123 @@ public class TreatmentDao extends DaoImp<Treatment> {
             preparedStatement.setString(12, treatment.getDeletedBy());
 
         } catch (SQLException exception) {
-            exception.printStackTrace();
+            LOGGER.error("Anweisung konnte nicht vorbereitet werden", exception);
         }
         return preparedStatement;
     }
 
+    /**
+     * Sets the treatment id (tid) generated for a newly created treatment.
+     *
+     * @param treatment Treatment that has been created.
+     * @param tid Generated treatment id (tid).
+     */
+    @Override
+    protected void setKey(Treatment treatment, long tid) {
+        treatment.setTid(tid);
+    }
+
     /**
      * Generates a <code>PreparedStatement</code> to query a treatment by a given treatment id (tid).
      *
+     * @param connection Connection to prepare the statement on.
      * @param tid Treatment id to query.
      * @return <code>PreparedStatement</code> to query the treatment.
      */
     @Override
-    protected PreparedStatement getReadByIDStatement(long tid) {
+    protected PreparedStatement getReadByIDStatement(Connection connection, long tid) {
         PreparedStatement preparedStatement = null;
         try {
             final String SQL = "SELECT * FROM treatment WHERE tid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            preparedStatement = prepareCachedStatement(connection, SQL);
             preparedStatement.setLong(1, tid);
         } catch (SQLException exception) {
-            exception.printStackTrace();
+            LOGGER.error("Anweisung konnte nicht vorbereitet werden", exception);
         }
         return preparedStatement;
     }
 
     /**
-     * Maps a <code>ResultSet</code> of one treatment to an object of <code>Treatment</code>.
+     * Returns the factory of the row mappers of the columns of the table <code>treatment</code>.
      *
-     * @param result ResultSet with a single row. Columns will be mapped to an object of class <code>Treatment</code>.
-     * @return Object of class <code>Treatment</code> with the data from the resultSet.
+     * @return Factory mapping rows to objects of class <code>Treatment</code>.
      */
     @Override
-    protected Treatment getInstanceFromResultSet(ResultSet result) throws SQLException {
-        LocalDate date = DateConverter.convertStringToLocalDate(result.getString(3));
-        LocalTime begin = DateConverter.convertStringToLocalTime(result.getString(4));
-        LocalTime end = DateConverter.convertStringToLocalTime(result.getString(5));
-        LocalDate deletionDate = null;
-        if (result.getDate("deletionDate") != null) {
-            deletionDate = result.getDate("deletionDate").toLocalDate();
-        }
-        LocalDate archiveDate = null;
-        if (result.getDate("archiveDate") != null) {
-            archiveDate = result.getDate("archiveDate").toLocalDate();
-        }
-        return new Treatment(result.getLong(1), result.getLong(2), date, begin, end, result.getString(6),
-                result.getString(7), result.getLong(8), result.getString("status"), deletionDate, archiveDate, result.getString("changedBy"),result.getString("deletedBy"));
+    protected RowMapper.Factory<Treatment> getRowMapperFactory() {
+        return TREATMENT_MAPPER;
     }
 
+
     /**
      * Generates a <code>PreparedStatement</code> to query all treatments.
      *
+     * @param connection Connection to prepare the statement on.
      * @return <code>PreparedStatement</code> to query all treatments.
      */
     @Override
-    protected PreparedStatement getReadAllStatement() {
+    protected PreparedStatement getReadAllStatement(Connection connection) {
         PreparedStatement statement = null;
         try {
             final String SQL = "SELECT * FROM treatment";
-            statement = this.connection.prepareStatement(SQL);
+            statement = prepareCachedStatement(connection, SQL);
         } catch (SQLException exception) {
-            exception.printStackTrace();
+            LOGGER.error("Anweisung konnte nicht vorbereitet werden", exception);
         }
         return statement;
     }
 
     /**
-     * Maps a <code>ResultSet</code> of all treatments to an <code>ArrayList</code> with objects of class
-     * <code>Treatment</code>.
+     * Generates a new <code>PreparedStatement</code> to stream all treatments, which is closed with the stream.
      *
-     * @param result ResultSet with all rows. The columns will be mapped to objects of class <code>Treatment</code>.
-     * @return <code>ArrayList</code> with objects of class <code>Treatment</code> of all rows in the
-     * <code>ResultSet</code>.
+     * @param connection Connection to prepare the statement on.
+     * @return <code>PreparedStatement</code> to stream all treatments.
      */
     @Override
-    protected ArrayList<Treatment> getListFromResultSet(ResultSet result) throws SQLException {
-        ArrayList<Treatment> list = new ArrayList<Treatment>();
-        while (result.next()) {
-            LocalDate date = DateConverter.convertStringToLocalDate(result.getString(3));
-            LocalTime begin = DateConverter.convertStringToLocalTime(result.getString(4));
-            LocalTime end = DateConverter.convertStringToLocalTime(result.getString(5));
-            LocalDate deletionDate = null;
-            java.sql.Date sqlDeletionDate = result.getDate("deletionDate");
-            if (sqlDeletionDate != null) {
-                deletionDate = sqlDeletionDate.toLocalDate();
-            }
+    protected PreparedStatement getStreamAllStatement(Connection connection) throws SQLException {
+        return connection.prepareStatement("SELECT * FROM treatment");
+    }
 
-            LocalDate archiveDate = null;
-            java.sql.Date sqlArchiveDate = result.getDate("archiveDate");
-            if (sqlArchiveDate != null) {
-                archiveDate = sqlArchiveDate.toLocalDate();
-            }
-            /*Treatment treatment =
-                    new Treatment(result.getLong(1),
-                            result.getLong(2),
-                            date, begin, end,
-                            result.getString(6),
-                            result.getString(7),
-                            result.getLong(8),
-                            result.getString("status"),
-                            deletionDate,
-                            archiveDate),
-                            result.getString("changedBy"),
-                            result.getString("deletedBy")
-            );*/
-            Treatment treatment = new Treatment(
-                    result.getLong("tid"),
-                    result.getLong("pid"),
-                    date,
-                    begin,
-                    end,
-                    result.getString("description"),
-                    result.getString("remark"),
-                    result.getLong("nid"),
-                    result.getString("status"),
-                    deletionDate,
-                    archiveDate,
-                    result.getString("changedBy"),
-                    result.getString("deletedBy")
-            );
-            list.add(treatment);
+    /**
+     * Generates a <code>PreparedStatement</code> to query one page of treatments, ordered by their tid.
+     *
+     * @param connection Connection to prepare the statement on.
+     * @param afterKey   tid of the last treatment of the previous page, or <code>null</code> for the first page.
+     * @param pageSize   Maximum number of treatments in the page.
+     * @param sortOrder  Order of the tids.
+     * @return <code>PreparedStatement</code> to query one page of treatments.
+     */
+    @Override
+    protected PreparedStatement getReadPageStatement(Connection connection, Long afterKey, int pageSize,
+                                                     SortOrder sortOrder) {
+        PreparedStatement statement = null;
+        try {
+            final String SQL = "SELECT * FROM treatment WHERE tid " + sortOrder.getComparator() +
+                    " ? ORDER BY tid " + sortOrder.getKeyword() + " LIMIT ?";
+            statement = prepareCachedStatement(connection, SQL);
+            statement.setLong(1, sortOrder.seekFrom(afterKey));
+            statement.setInt(2, pageSize);
+        } catch (SQLException exception) {
+            LOGGER.error("Anweisung konnte nicht vorbereitet werden", exception);
         }
-        return list;
+        return statement;
     }
 
+
     /**
      * Generates a <code>PreparedStatement</code> to query all treatments of a patient with a given patient id (pid).
      *
-     * @param pid Patient id to query all treatments referencing this id.
+     * @param connection Connection to prepare the statement on.
+     * @param pid        Patient id to query all treatments referencing this id.
      * @return <code>PreparedStatement</code> to query all treatments of the given patient id (pid).
      */
-    private PreparedStatement getReadAllTreatmentsOfOnePatientByPid(long pid) {
+    private PreparedStatement getReadAllTreatmentsOfOnePatientByPid(Connection connection, long pid) {
         PreparedStatement preparedStatement = null;
         try {
             final String SQL = "SELECT * FROM treatment WHERE pid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            preparedStatement = prepareCachedStatement(connection, SQL);
             preparedStatement.setLong(1, pid);
         } catch (SQLException exception) {
-            exception.printStackTrace();
+            LOGGER.error("Anweisung konnte nicht vorbereitet werden", exception);
         }
         return preparedStatement;
     }
@@ -212,84 +317,375 @@ public class TreatmentDao extends DaoImp<Treatment> {
      * <code>ResultSet</code>.
      */
     public List<Treatment> readTreatmentsByPid(long pid) throws SQLException {
-        ResultSet result = getReadAllTreatmentsOfOnePatientByPid(pid).executeQuery();
-        return getListFromResultSet(result);
+        return withReadConnection("readTreatmentsByPid", connection -> {
+            try (ResultSet result = getReadAllTreatmentsOfOnePatientByPid(connection, pid).executeQuery()) {
+                return getListFromResultSet(result);
+            }
+        });
+    }
+
+    /**
+     * Streams all treatments of a given patient id (pid), ordered by their tid. See {@link #stream(int)}.
+     *
+     * @param pid       Patient id to query all treatments referencing this id.
+     * @param fetchSize Number of rows fetched from the database at once.
+     * @return Lazy <code>Stream</code> of the treatments, which must be closed.
+     */
+    public Stream<Treatment> streamByPid(long pid, int fetchSize) throws SQLException {
+        return stream("streamByPid", connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "SELECT * FROM treatment WHERE pid = ? ORDER BY tid");
+            statement.setLong(1, pid);
+            return statement;
+        }, getRowMapperFactory(), fetchSize);
+    }
+
+    /**
+     * Streams all treatments done by a given nurse id (nid), ordered by their tid. See {@link #stream(int)}.
+     *
+     * @param nid       Nurse id to query all treatments referencing this id.
+     * @param fetchSize Number of rows fetched from the database at once.
+     * @return Lazy <code>Stream</code> of the treatments, which must be closed.
+     */
+    public Stream<Treatment> streamByNid(long nid, int fetchSize) throws SQLException {
+        return stream("streamByNid", connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "SELECT * FROM treatment WHERE nid = ? ORDER BY tid");
+            statement.setLong(1, nid);
+            return statement;
+        }, getRowMapperFactory(), fetchSize);
+    }
+
+    /**
+     * Streams all treatments with a date between the given dates, both inclusive, ordered by their date and begin.
+     * See {@link #stream(int)}.
+     *
+     * @param from      First date of the range.
+     * @param to        Last date of the range.
+     * @param fetchSize Number of rows fetched from the database at once.
+     * @return Lazy <code>Stream</code> of the treatments, which must be closed.
+     */
+    public Stream<Treatment> streamByDateRange(LocalDate from, LocalDate to, int fetchSize) throws SQLException {
+        return stream("streamByDateRange", connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "SELECT * FROM treatment WHERE treatment_date BETWEEN ? AND ? ORDER BY treatment_date, begin");
+            statement.setString(1, DateConverter.convertLocalDateToString(from));
+            statement.setString(2, DateConverter.convertLocalDateToString(to));
+            return statement;
+        }, getRowMapperFactory(), fetchSize);
+    }
+
+    /**
+     * Queries all treatments together with the name of the nurse that did the treatment. The names are resolved by
+     * a join in the same query, instead of reading every nurse separately.
+     *
+     * @return <code>List</code> with objects of class <code>Treatment</code>, each with its nurse name set.
+     */
+    public List<Treatment> readAllWithNurseNames() throws SQLException {
+        final String SQL = "SELECT " + LIST_COLUMNS_WITH_NURSE_NAME + " " +
+                "FROM treatment LEFT JOIN nurse ON nurse.nid = treatment.nid";
+        return withReadConnection("readAllWithNurseNames", connection -> {
+            try (ResultSet result = prepareCachedStatement(connection, SQL).executeQuery()) {
+                return mapAll(result, TREATMENT_WITH_NURSE_NAME_MAPPER);
+            }
+        });
+    }
+
+    /**
+     * Queries all treatments of a given patient id (pid) together with the name of the nurse that did the
+     * treatment, resolved by a join in the same query.
+     *
+     * @param pid Patient id to query all treatments referencing this id.
+     * @return <code>List</code> with objects of class <code>Treatment</code>, each with its nurse name set.
+     */
+    public List<Treatment> readTreatmentsByPidWithNurseNames(long pid) throws SQLException {
+        final String SQL = "SELECT " + LIST_COLUMNS_WITH_NURSE_NAME + " " +
+                "FROM treatment LEFT JOIN nurse ON nurse.nid = treatment.nid WHERE treatment.pid = ?";
+        return withReadConnection("readTreatmentsByPidWithNurseNames", connection -> {
+            PreparedStatement preparedStatement = prepareCachedStatement(connection, SQL);
+            preparedStatement.setLong(1, pid);
+            try (ResultSet result = preparedStatement.executeQuery()) {
+                return mapAll(result, TREATMENT_WITH_NURSE_NAME_MAPPER);
+            }
+        });
+    }
+
+    /**
+     * Queries one page of treatments together with the name of the nurse that did the treatment, ordered by their
+     * tid. See {@link #readPage(Long, int, SortOrder)}.
+     *
+     * @param afterKey  tid of the last treatment of the previous page, or <code>null</code> for the first page.
+     * @param pageSize  Maximum number of treatments in the page.
+     * @param sortOrder Order of the tids.
+     * @return <code>List</code> with objects of class <code>Treatment</code>, each with its nurse name set.
+     */
+    public List<Treatment> readPageWithNurseNames(Long afterKey, int pageSize, SortOrder sortOrder)
+            throws SQLException {
+        return readPageWithNurseNames(TreatmentFilter.all(), afterKey, pageSize, sortOrder);
+    }
+
+    /**
+     * Queries one page of the treatments of a given patient id (pid) together with the name of the nurse that did
+     * the treatment, ordered by their tid.
+     *
+     * @param pid       Patient id to query the treatments referencing this id.
+     * @param afterKey  tid of the last treatment of the previous page, or <code>null</code> for the first page.
+     * @param pageSize  Maximum number of treatments in the page.
+     * @param sortOrder Order of the tids.
+     * @return <code>List</code> with objects of class <code>Treatment</code>, each with its nurse name set.
+     */
+    public List<Treatment> readPageByPidWithNurseNames(long pid, Long afterKey, int pageSize, SortOrder sortOrder)
+            throws SQLException {
+        return readPageWithNurseNames(TreatmentFilter.all().withPid(pid), afterKey, pageSize, sortOrder);
+    }
+
+    /**
+     * Queries one page of the treatments matching the given filter together with the name of the nurse that did
+     * the treatment, ordered by their tid. The filter is evaluated by the database.
+     *
+     * @param filter    Conditions the treatments have to meet.
+     * @param afterKey  tid of the last treatment of the previous page, or <code>null</code> for the first page.
+     * @param pageSize  Maximum number of treatments in the page.
+     * @param sortOrder Order of the tids.
+     * @return <code>List</code> with objects of class <code>Treatment</code>, each with its nurse name set.
+     */
+    public List<Treatment> readPageWithNurseNames(TreatmentFilter filter, Long afterKey, int pageSize,
+                                                  SortOrder sortOrder) throws SQLException {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("pageSize must be at least 1");
+        }
+        List<Object> parameters = new ArrayList<>();
+        final String SQL = "SELECT " + LIST_COLUMNS_WITH_NURSE_NAME + " " +
+                "FROM treatment LEFT JOIN nurse ON nurse.nid = treatment.nid WHERE " +
+                getFilterConditions(filter, parameters) + "treatment.tid " + sortOrder.getComparator() +
+                " ? ORDER BY treatment.tid " + sortOrder.getKeyword() + " LIMIT ?";
+        parameters.add(sortOrder.seekFrom(afterKey));
+        parameters.add(pageSize);
+        return withReadConnection("readPageWithNurseNames", connection -> {
+            try (ResultSet result = bind(prepareCachedStatement(connection, SQL), parameters).executeQuery()) {
+                return mapAll(result, TREATMENT_WITH_NURSE_NAME_MAPPER);
+            }
+        });
+    }
+
+    /**
+     * Loads the remarks of a treatment read by one of the list queries, which do not read them. Does nothing if the
+     * remarks of the treatment are already loaded.
+     *
+     * @param treatment Treatment to load the remarks of.
+     * @throws SQLException If an error occurs during SQL execution.
+     */
+    public void loadRemarks(Treatment treatment) throws SQLException {
+        if (treatment.isRemarksLoaded()) {
+            return;
+        }
+        final String SQL = "SELECT remark FROM treatment WHERE tid = ?";
+        String remarks = withReadConnection("loadRemarks", connection -> {
+            PreparedStatement preparedStatement = prepareCachedStatement(connection, SQL);
+            preparedStatement.setLong(1, treatment.getTid());
+            try (ResultSet result = preparedStatement.executeQuery()) {
+                return result.next() ? result.getString(1) : null;
+            }
+        });
+        treatment.setLoadedRemarks(remarks);
+    }
+
+    /**
+     * Queries all treatments matching the given filter, ordered by their tid. The filter is evaluated by the
+     * database.
+     *
+     * @param filter Conditions the treatments have to meet.
+     * @return <code>List</code> with objects of class <code>Treatment</code> of the matching treatments.
+     */
+    public List<Treatment> readAll(TreatmentFilter filter) throws SQLException {
+        List<Object> parameters = new ArrayList<>();
+        final String SQL = "SELECT * FROM treatment WHERE " + getFilterConditions(filter, parameters) + "1 " +
+                "ORDER BY tid";
+        return withReadConnection("readAllFiltered", connection -> {
+            try (ResultSet result = bind(prepareCachedStatement(connection, SQL), parameters).executeQuery()) {
+                return getListFromResultSet(result);
+            }
+        });
     }
 
+    /**
+     * Searches the short descriptions and remarks of the treatments matching the given filter for the given text,
+     * using the full-text index <code>treatment_fts</code>. Every word of the text has to occur in the description or
+     * the remark, as a word or as the beginning of a word, ignoring case and diacritics. The treatments are ranked by
+     * relevance, matches in the description weighing more, and read together with the name of their nurse.
+     *
+     * @param filter   Conditions the treatments have to meet besides the text.
+     * @param text     The words to search for.
+     * @param offset   Number of hits of the previous pages to skip.
+     * @param pageSize Maximum number of hits in the page.
+     * @return <code>List</code> with the hits of the page, best first, each with a snippet of the matching text.
+     */
+    public List<SearchHit<Treatment>> search(TreatmentFilter filter, String text, int offset, int pageSize)
+            throws SQLException {
+        if (pageSize < 1 || offset < 0) {
+            throw new IllegalArgumentException("pageSize must be at least 1 and offset must not be negative");
+        }
+        String match = toMatchExpression(text);
+        if (match == null) {
+            return List.of();
+        }
+        List<Object> parameters = new ArrayList<>();
+        parameters.add(match);
+        final String SQL = "SELECT " + LIST_COLUMNS_WITH_NURSE_NAME + ", " +
+                "snippet(treatment_fts, -1, char(2), char(3), '…', " + SNIPPET_TOKENS + ") AS search_snippet, " +
+                "treatment_fts.rank AS search_rank FROM treatment_fts " +
+                "JOIN treatment ON treatment.tid = treatment_fts.rowid " +
+                "LEFT JOIN nurse ON nurse.nid = treatment.nid WHERE treatment_fts MATCH ? AND " +
+                getFilterConditions(filter, parameters) + "1 ORDER BY treatment_fts.rank, treatment.tid " +
+                "LIMIT ? OFFSET ?";
+        parameters.add(pageSize);
+        parameters.add(offset);
+        return withReadConnection("search", connection -> {
+            try (ResultSet result = bind(prepareCachedStatement(connection, SQL), parameters).executeQuery()) {
+                return mapAll(result, SEARCH_HIT_MAPPER);
+            }
+        });
+    }
+
+    /**
+     * Turns the text typed by the user into an FTS5 query: the text is split into words at every character that is
+     * neither a letter nor a digit, like the tokenizer of the index does, and every word becomes a quoted prefix
+     * query, so that words like <code>AND</code> or <code>NEAR</code> are not taken as operators.
+     *
+     * @param text The words to search for.
+     * @return The query, or <code>null</code> if the text has no words.
+     */
+    private static String toMatchExpression(String text) {
+        if (text == null) {
+            return null;
+        }
+        StringBuilder match = new StringBuilder();
+        for (String word : text.split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                match.append(match.isEmpty() ? "" : " ").append('"').append(word).append("\"*");
+            }
+        }
+        return match.isEmpty() ? null : match.toString();
+    }
+
+    /**
+     * Builds the conditions of the given filter, each followed by <code>AND</code>, and adds their parameters to the
+     * given list. The SQL only depends on which conditions are set, so every combination is prepared only once per
+     * connection by the statement cache.
+     *
+     * @param filter     Conditions the treatments have to meet.
+     * @param parameters List the parameters of the conditions are added to, in order.
+     * @return The conditions, or an empty string if the filter has none.
+     */
+    private static String getFilterConditions(TreatmentFilter filter, List<Object> parameters) {
+        StringBuilder conditions = new StringBuilder();
+        if (filter.getPid() != null) {
+            conditions.append("treatment.pid = ? AND ");
+            parameters.add(filter.getPid());
+        }
+        if (filter.getNid() != null) {
+            conditions.append("treatment.nid = ? AND ");
+            parameters.add(filter.getNid());
+        }
+        if (filter.getStatus() != null) {
+            conditions.append("treatment.status = ? AND ");
+            parameters.add(filter.getStatus());
+        }
+        if (filter.getFrom() != null) {
+            conditions.append("treatment.treatment_date >= ? AND ");
+            parameters.add(DateConverter.convertLocalDateToString(filter.getFrom()));
+        }
+        if (filter.getTo() != null) {
+            conditions.append("treatment.treatment_date <= ? AND ");
+            parameters.add(DateConverter.convertLocalDateToString(filter.getTo()));
+        }
+        return conditions.toString();
+    }
+
+    private static PreparedStatement bind(PreparedStatement statement, List<Object> parameters) throws SQLException {
+        for (int i = 0; i < parameters.size(); i++) {
+            statement.setObject(i + 1, parameters.get(i));
+        }
+        return statement;
+    }
+
+
     /**
      * Generates a <code>PreparedStatement</code> to update the given treatment, identified
-     * by the id of the treatment (tid).
+     * by the id of the treatment (tid). Only the changed columns are written, or all of them if no change has been
+     * recorded. The remark is only written if it has been loaded, so that updating a treatment read for a list does
+     * not clear it.
      *
+     * @param connection Connection to prepare the statement on.
      * @param treatment Treatment object to update.
      * @return <code>PreparedStatement</code> to update the given treatment.
      */
     @Override
-    protected PreparedStatement getUpdateStatement(Treatment treatment) {
+    protected PreparedStatement getUpdateStatement(Connection connection, Treatment treatment) {
         PreparedStatement preparedStatement = null;
         try {
-            final String SQL =
-                    "UPDATE treatment SET " + "pid = ?, " + "treatment_date = ?, " + "begin = ?, " + "end = ?, " +
-                            "description = ?, " + "remark = ?, " + "nid = ?," +"status = ?, "+"deletionDate = ?,"+
-                            "archiveDate=?, changedBy = ?, deletedBy = ?" + "WHERE tid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
-            preparedStatement.setLong(1, treatment.getPid());
-            preparedStatement.setString(2, treatment.getDate());
-            preparedStatement.setString(3, treatment.getBegin());
-            preparedStatement.setString(4, treatment.getEnd());
-            preparedStatement.setString(5, treatment.getDescription());
-            preparedStatement.setString(6, treatment.getRemarks());
-            preparedStatement.setLong(7, treatment.getNid());
-            preparedStatement.setString(8, treatment.getStatus());
-
-            if (treatment.getDeletionDate() != null) {
-                preparedStatement.setDate(9, java.sql.Date.valueOf(treatment.getDeletionDate()));
-            } else {
-                preparedStatement.setNull(9, java.sql.Types.DATE);
+            Set<Treatment.Field> fields = UPDATE.fieldsToWrite(treatment.takeDirtyFields());
+            if (!treatment.isRemarksLoaded()) {
+                fields = EnumSet.copyOf(fields);
+                fields.remove(Treatment.Field.REMARKS);
             }
-
-            if (treatment.getArchiveDate() != null) {
-                preparedStatement.setDate(10, java.sql.Date.valueOf(treatment.getArchiveDate()));
-            } else {
-                preparedStatement.setNull(10, java.sql.Types.DATE);
-            }
-            preparedStatement.setString(11, treatment.getChangedBy());
-            preparedStatement.setString(12, treatment.getDeletedBy());
-
-            preparedStatement.setLong(13, treatment.getTid()); // → WHERE tid = ?
+            preparedStatement = prepareCachedStatement(connection, UPDATE.getSql(fields));
+            UPDATE.bind(preparedStatement, fields, treatment, treatment.getTid());
         } catch (SQLException exception) {
-            exception.printStackTrace();
+            LOGGER.error("Anweisung konnte nicht vorbereitet werden", exception);
         }
         return preparedStatement;
     }
 
+    /**
+     * Forgets the changed fields of the given treatment, which have been written.
+     *
+     * @param treatment The updated treatment.
+     */
+    @Override
+    protected void updated(Treatment treatment) {
+        treatment.clearDirtyFields();
+    }
+
+    /**
+     * Records the fields of the given treatment as changed again, which could not be written.
+     *
+     * @param treatment The treatment that has not been updated.
+     */
+    @Override
+    protected void updateFailed(Treatment treatment) {
+        treatment.restoreDirtyFields();
+    }
+
     /**
      * Generates a <code>PreparedStatement</code> to delete a treatment with the given id.
      *
+     * @param connection Connection to prepare the statement on.
      * @param tid Id of the Treatment to delete.
      * @return <code>PreparedStatement</code> to delete treatment with the given id.
      */
     @Override
-    protected PreparedStatement getDeleteStatement(long tid) {
+    protected PreparedStatement getDeleteStatement(Connection connection, long tid) {
         PreparedStatement preparedStatement = null;
         try {
             final String SQL = "DELETE FROM treatment WHERE tid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            preparedStatement = prepareCachedStatement(connection, SQL);
             preparedStatement.setLong(1, tid);
         } catch (SQLException exception) {
-            exception.printStackTrace();
+            LOGGER.error("Anweisung konnte nicht vorbereitet werden", exception);
         }
         return preparedStatement;
     }
 
     @Override
-    protected PreparedStatement getDeactivateStatement(long tid) {
+    protected PreparedStatement getDeactivateStatement(Connection connection, long tid) {
         PreparedStatement preparedStatement = null;
         try {
             final String SQL = "UPDATE treatment SET active = 'i' WHERE tid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            preparedStatement = prepareCachedStatement(connection, SQL);
             preparedStatement.setLong(1, tid);
         } catch (SQLException exception) {
-            exception.printStackTrace();
+            LOGGER.error("Anweisung konnte nicht vorbereitet werden", exception);
         }
         return preparedStatement;
     }
@@ -299,20 +695,21 @@ public class TreatmentDao extends DaoImp<Treatment> {
      * The deletion date is set 10 years into the future,
      * while the archive date is set to the current date.
      *
+     * @param connection Connection to prepare the statement on.
      * @param tid ID of the treatment to update
      * @return the prepared statement to update the treatment dates
      */
     @Override
-    protected PreparedStatement setDeleteDateStatement(long tid) {
+    protected PreparedStatement setDeleteDateStatement(Connection connection, long tid) {
         PreparedStatement preparedStatement = null;
         try {
             final String SQL = "UPDATE treatment SET deletionDate = ?, archiveDate = ? WHERE tid = ?";
-            preparedStatement = this.connection.prepareStatement(SQL);
+            preparedStatement = prepareCachedStatement(connection, SQL);
             preparedStatement.setDate(1, java.sql.Date.valueOf(LocalDate.now().plusYears(10))); // deletion date
             preparedStatement.setDate(2, java.sql.Date.valueOf(LocalDate.now()));               // archive date
             preparedStatement.setLong(3, tid);
         } catch (SQLException exception) {
-            exception.printStackTrace();
+            LOGGER.error("Anweisung konnte nicht vorbereitet werden", exception);
         }
         return preparedStatement;
     }
@@ -326,17 +723,93 @@ public class TreatmentDao extends DaoImp<Treatment> {
      */
     public void deleteExpiredTreatments() throws SQLException {
         final String SQL = "DELETE FROM treatment WHERE deletionDate IS NOT NULL AND deletionDate <= ? AND status != ?";
-        try (PreparedStatement stmt = this.connection.prepareStatement(SQL)) {
+        withWriteConnection("deleteExpiredTreatments", connection -> {
+            PreparedStatement stmt = prepareCachedStatement(connection, SQL);
             stmt.setDate(1, java.sql.Date.valueOf(LocalDate.now()));
             stmt.setString(2, Treatment.STATUS_ACTIVE);
 
-            int deleted = stmt.executeUpdate();
-
-        }
+            return stmt.executeUpdate();
+        });
     }
 
+    /**
+     * Permanently deletes at most <code>batchSize</code> treatments whose deletion date has passed and which are not
+     * active anymore.
+     *
+     * @param batchSize Maximum number of treatments to delete.
+     * @return Number of deleted treatments.
+     * @throws SQLException If an error occurs during SQL execution.
+     */
+    @Override
+    public int deleteExpiredBatch(int batchSize) throws SQLException {
+        final String SQL = "DELETE FROM treatment WHERE tid IN (SELECT tid FROM treatment " +
+                "WHERE deletionDate IS NOT NULL AND deletionDate <= ? AND status != ? LIMIT ?)";
+        return withWriteConnection("deleteExpiredBatch", connection -> {
+            PreparedStatement stmt = prepareCachedStatement(connection, SQL);
+            stmt.setDate(1, java.sql.Date.valueOf(LocalDate.now()));
+            stmt.setString(2, Treatment.STATUS_ACTIVE);
+            stmt.setInt(3, batchSize);
+            return stmt.executeUpdate();
+        });
+    }
 
+    /**
+     * Counts the treatments whose deletion date has passed and which are not active anymore.
+     *
+     * @return Number of expired treatments.
+     * @throws SQLException If an error occurs during SQL execution.
+     */
+    @Override
+    public long countExpired() throws SQLException {
+        final String SQL = "SELECT COUNT(*) FROM treatment WHERE deletionDate IS NOT NULL AND deletionDate <= ? " +
+                "AND status != ?";
+        return withReadConnection("countExpired", connection -> {
+            PreparedStatement stmt = prepareCachedStatement(connection, SQL);
+            stmt.setDate(1, java.sql.Date.valueOf(LocalDate.now()));
+            stmt.setString(2, Treatment.STATUS_ACTIVE);
+            try (ResultSet result = stmt.executeQuery()) {
+                return result.next() ? result.getLong(1) : 0L;
+            }
+        });
+    }
 
+    /**
+     * Reads the current change version of the table <code>treatment</code>.
+     *
+     * @return Version of the last change of a treatment.
+     * @throws SQLException If an error occurs during SQL execution.
+     */
+    @Override
+    public long getChangeVersion() throws SQLException {
+        return readChangeVersion("treatment");
+    }
 
+    /**
+     * Reads the treatments inserted, updated or deleted after the given change version, together with the name of
+     * the nurse that did the treatment. The changed treatments are not filtered, so that a view can also remove the
+     * treatments that do not match its filter anymore.
+     *
+     * @param version Change version that has already been read.
+     * @return The changed treatments, each with its nurse name set, and the tids of the deleted ones.
+     * @throws SQLException If an error occurs during SQL execution.
+     */
+    @Override
+    public ChangeSet<Treatment> readChangesSince(long version) throws SQLException {
+        final String SQL = "SELECT " + LIST_COLUMNS_WITH_NURSE_NAME + " " +
+                "FROM treatment LEFT JOIN nurse ON nurse.nid = treatment.nid WHERE treatment.change_version > ? " +
+                "ORDER BY treatment.tid";
+        return readChangesSince("treatment", SQL, TREATMENT_WITH_NURSE_NAME_MAPPER, version);
+    }
 
-}
\ No newline at end of file
+    /**
+     * Deletes the tombstones of the treatments deleted before the last changes of the table <code>treatment</code>.
+     *
+     * @param keepVersions Number of the latest changes whose tombstones are kept.
+     * @return The number of deleted tombstones.
+     * @throws SQLException If an error occurs during SQL execution.
+     */
+    @Override
+    public int pruneTombstones(long keepVersions) throws SQLException {
+        return pruneTombstones("treatment", keepVersions);
+    }
+}
@@ -0,0 +1,128 @@
+package de.hitec.nhplus.datastorage;
+
+import de.hitec.nhplus.model.Treatment;
+import de.hitec.nhplus.utils.DateConverter;
+
+import java.time.LocalDate;
+
+/**
+ * Immutable set of conditions the treatments read by the {@link TreatmentDao} have to meet.
+ * <p>
+ * Every condition is optional; conditions that are set are combined with AND. The filter is evaluated by the
+ * database, so only the matching treatments are read. Start with {@link #all()} and add conditions with the
+ * <code>with</code> methods, each of which returns a new filter.
+ */
+public final class TreatmentFilter {
+
+    private static final TreatmentFilter ALL = new TreatmentFilter(null, null, null, null, null);
+
+    private final Long pid;
+    private final Long nid;
+    private final LocalDate from;
+    private final LocalDate to;
+    private final String status;
+
+    private TreatmentFilter(Long pid, Long nid, LocalDate from, LocalDate to, String status) {
+        this.pid = pid;
+        this.nid = nid;
+        this.from = from;
+        this.to = to;
+        this.status = status;
+    }
+
+    /**
+     * @return the filter without conditions, matching all treatments
+     */
+    public static TreatmentFilter all() {
+        return ALL;
+    }
+
+    /**
+     * @param pid Patient id the treatments must reference, or <code>null</code> for all patients.
+     * @return A copy of this filter with the given patient condition.
+     */
+    public TreatmentFilter withPid(Long pid) {
+        return new TreatmentFilter(pid, this.nid, this.from, this.to, this.status);
+    }
+
+    /**
+     * @param nid Nurse id the treatments must reference, or <code>null</code> for all nurses.
+     * @return A copy of this filter with the given nurse condition.
+     */
+    public TreatmentFilter withNid(Long nid) {
+        return new TreatmentFilter(this.pid, nid, this.from, this.to, this.status);
+    }
+
+    /**
+     * @param from First date of the treatments, inclusive, or <code>null</code> for no lower bound.
+     * @param to   Last date of the treatments, inclusive, or <code>null</code> for no upper bound.
+     * @return A copy of this filter with the given date range.
+     */
+    public TreatmentFilter withDateRange(LocalDate from, LocalDate to) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        return new TreatmentFilter(this.pid, this.nid, from, to, this.status);
+    }
+
+    /**
+     * @param status Status the treatments must have, or <code>null</code> for all statuses.
+     * @return A copy of this filter with the given status condition.
+     */
+    public TreatmentFilter withStatus(String status) {
+        return new TreatmentFilter(this.pid, this.nid, this.from, this.to, status);
+    }
+
+    /**
+     * Evaluates the filter for a treatment that has already been read, e.g. a changed treatment that a view has to
+     * add to or remove from the treatments it shows.
+     *
+     * @param treatment The treatment to check.
+     * @return true if the treatment meets all conditions of the filter.
+     */
+    public boolean matches(Treatment treatment) {
+        if (this.pid != null && this.pid != treatment.getPid()) {
+            return false;
+        }
+        if (this.nid != null && this.nid != treatment.getNid()) {
+            return false;
+        }
+        if (this.status != null && !this.status.equals(treatment.getStatus())) {
+            return false;
+        }
+        if (this.from == null && this.to == null) {
+            return true;
+        }
+        LocalDate date = DateConverter.convertStringToLocalDate(treatment.getDate());
+        return (this.from == null || !date.isBefore(this.from)) && (this.to == null || !date.isAfter(this.to));
+    }
+
+    /**
+     * Getter Methods
+     */
+
+    public Long getPid() {
+        return pid;
+    }
+
+    public Long getNid() {
+        return nid;
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String toString() {
+        return "Behandlungsfilter" + "\nPID: " + this.pid + "\nNID: " + this.nid + "\nVon: " + this.from +
+                "\nBis: " + this.to + "\nStatus: " + this.status + "\n";
+    }
+}
@@ -3,7 +3,6 @@ package de.hitec.nhplus.datastorage;
 import de.hitec.nhplus.model.User;
 
 import java.sql.*;
-import java.util.ArrayList;
 
 /**
  * Data Access Object (DAO) implementation for the {@link User} entity.
@@ -12,64 +11,55 @@ import java.util.ArrayList;
 
 public class UserDao extends DaoImp<User> {
     /**
-     * Constructs a {@code UserDao} with the given database connection.
-     *
-     * @param connection The database connection to be used for SQL operations.
+     * Maps the columns of the table {@code user} to a {@link User} object.
      */
-    public UserDao(Connection connection) {
-        super(connection);
-    }
+    private static final RowMapper.Factory<User> USER_MAPPER = columns -> {
+        int id = columns.indexOf("id");
+        int firstName = columns.indexOf("firstname");
+        int surname = columns.indexOf("surname");
+        int username = columns.indexOf("username");
+        int password = columns.indexOf("password_hash");
+        int role = columns.indexOf("role");
+        return set -> new User(
+                ColumnIndex.getLong(set, id),
+                ColumnIndex.getString(set, firstName),
+                ColumnIndex.getString(set, surname),
+                ColumnIndex.getString(set, username),
+                ColumnIndex.getString(set, password),
+                ColumnIndex.getString(set, role));
+    };
 
     /**
-     * Maps a {@link ResultSet} row to a {@link User} object.
+     * Constructs a {@code UserDao} with the given database connection.
      *
-     * @param set A {@link ResultSet} pointing to a single row.
-     * @return A populated {@link User} object.
-     * @throws SQLException If a database access error occurs.
+     * @param connectionPool The connection pool to be used for SQL operations.
      */
-    @Override
-    protected User getInstanceFromResultSet(ResultSet set) throws SQLException {
-        long id = set.getLong("id");
-        String firstName = set.getString("firstname");
-        String surname = set.getString("surname");
-        String username = set.getString("username");
-        String password = set.getString("password_hash");
-        String role = set.getString("role");
-        return new User(id, firstName, surname, username, password, role);
+    public UserDao(ConnectionPool connectionPool) {
+        super(connectionPool);
     }
 
     /**
-     * Maps a {@link ResultSet} to a list of {@link User} objects.
+     * Returns the factory of the row mappers of the columns of the table {@code user}.
      *
-     * @param set The {@link ResultSet} containing multiple user records.
-     * @return An {@link ArrayList} of {@link User} objects.
-     * @throws SQLException If a database access error occurs.
+     * @return The factory mapping rows to {@link User} objects.
      */
     @Override
-    protected ArrayList<User> getListFromResultSet(ResultSet set) throws SQLException {
-        ArrayList<User> list = new ArrayList<>();
-        while (set.next()) {
-            list.add(getInstanceFromResultSet(set));
-        }
-        return list;
+    protected RowMapper.Factory<User> getRowMapperFactory() {
+        return USER_MAPPER;
     }
 
     /**
      * Creates a {@link PreparedStatement} for inserting a new user into the database.
      *
+     * @param connection The connection to prepare the statement on.
      * @param user The {@link User} object to be persisted.
      * @return A {@link PreparedStatement} for executing the insert query.
      */
     @Override
-    protected PreparedStatement getCreateStatement(User user) {
+    protected PreparedStatement getCreateStatement(Connection connection, User user) {
         try {
-            PreparedStatement stmt = connection.prepareStatement(
-
-                    //             "INSERT INTO user (firstname, surname, username, password_hash,role) VALUES (?, ?,
-                    //             ?,?,?)",
-                    "INSERT INTO user (firstName, surname, username, password_hash, role) VALUES (?, ?,?,?,?)",
-
-                    Statement.RETURN_GENERATED_KEYS);
+            PreparedStatement stmt = prepareCachedStatement(connection,
+                    "INSERT INTO user (firstName, surname, username, password_hash, role) VALUES (?, ?,?,?,?)");
             stmt.setString(1, user.getFirstName());
             stmt.setString(2, user.getSurname());
             stmt.setString(3, user.getUsername());
@@ -81,17 +71,29 @@ public class UserDao extends DaoImp<User> {
         }
     }
 
+    /**
+     * Sets the user id generated for a newly created user.
+     *
+     * @param user User that has been created.
+     * @param id Generated user id.
+     */
+    @Override
+    protected void setKey(User user, long id) {
+        user.setId(id);
+    }
+
 
     /**
      * Creates a {@link PreparedStatement} for querying a user by ID.
      *
+     * @param connection The connection to prepare the statement on.
      * @param key The unique user ID.
      * @return A {@link PreparedStatement} for the read operation.
      */
     @Override
-    protected PreparedStatement getReadByIDStatement(long key) {
+    protected PreparedStatement getReadByIDStatement(Connection connection, long key) {
         try {
-            PreparedStatement stmt = connection.prepareStatement("SELECT * FROM user WHERE id = ?");
+            PreparedStatement stmt = prepareCachedStatement(connection, "SELECT * FROM user WHERE id = ?");
             stmt.setLong(1, key);
             return stmt;
         } catch (SQLException e) {
@@ -102,12 +104,48 @@ public class UserDao extends DaoImp<User> {
     /**
      * Creates a {@link PreparedStatement} to read all users from the database.
      *
+     * @param connection The connection to prepare the statement on.
      * @return A {@link PreparedStatement} for the read-all operation.
      */
     @Override
-    protected PreparedStatement getReadAllStatement() {
+    protected PreparedStatement getReadAllStatement(Connection connection) {
+        try {
+            return prepareCachedStatement(connection, "SELECT * FROM user");
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Creates a new {@link PreparedStatement} to stream all users, which is closed with the stream.
+     *
+     * @param connection The connection to prepare the statement on.
+     * @return A {@link PreparedStatement} for the stream.
+     */
+    @Override
+    protected PreparedStatement getStreamAllStatement(Connection connection) throws SQLException {
+        return connection.prepareStatement("SELECT * FROM user");
+    }
+
+    /**
+     * Creates a {@link PreparedStatement} to read one page of users, ordered by their id.
+     *
+     * @param connection The connection to prepare the statement on.
+     * @param afterKey The id of the last user of the previous page, or {@code null} for the first page.
+     * @param pageSize The maximum number of users in the page.
+     * @param sortOrder The order of the ids.
+     * @return A {@link PreparedStatement} for the read-page operation.
+     */
+    @Override
+    protected PreparedStatement getReadPageStatement(Connection connection, Long afterKey, int pageSize,
+                                                     SortOrder sortOrder) {
         try {
-            return connection.prepareStatement("SELECT * FROM user");
+            PreparedStatement stmt = prepareCachedStatement(connection,
+                    "SELECT * FROM user WHERE id " + sortOrder.getComparator() + " ? ORDER BY id " +
+                            sortOrder.getKeyword() + " LIMIT ?");
+            stmt.setLong(1, sortOrder.seekFrom(afterKey));
+            stmt.setInt(2, pageSize);
+            return stmt;
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
@@ -116,13 +154,14 @@ public class UserDao extends DaoImp<User> {
     /**
      * Creates a {@link PreparedStatement} to update an existing user.
      *
+     * @param connection The connection to prepare the statement on.
      * @param user The {@link User} object with updated data.
      * @return A {@link PreparedStatement} for the update operation.
      */
     @Override
-    protected PreparedStatement getUpdateStatement(User user) {
+    protected PreparedStatement getUpdateStatement(Connection connection, User user) {
         try {
-            PreparedStatement stmt = connection.prepareStatement(
+            PreparedStatement stmt = prepareCachedStatement(connection,
                     "UPDATE user SET firstname = ?, surname= ?, username = ?, password_hash = ?, role = ? WHERE id = " +
                             "?");
             stmt.setString(1, user.getFirstName());
@@ -141,13 +180,14 @@ public class UserDao extends DaoImp<User> {
     /**
      * Creates a {@link PreparedStatement} to delete a user by ID.
      *
+     * @param connection The connection to prepare the statement on.
      * @param key The unique ID of the user to delete.
      * @return A {@link PreparedStatement} for the delete operation.
      */
     @Override
-    protected PreparedStatement getDeleteStatement(long key) {
+    protected PreparedStatement getDeleteStatement(Connection connection, long key) {
         try {
-            PreparedStatement stmt = connection.prepareStatement("DELETE FROM user WHERE id = ?");
+            PreparedStatement stmt = prepareCachedStatement(connection, "DELETE FROM user WHERE id = ?");
             stmt.setLong(1, key);
             return stmt;
         } catch (SQLException e) {
@@ -161,7 +201,7 @@ public class UserDao extends DaoImp<User> {
      * @throws UnsupportedOperationException Always thrown when called.
      */
     @Override
-    protected PreparedStatement getDeactivateStatement(long key) {
+    protected PreparedStatement getDeactivateStatement(Connection connection, long key) {
         throw new UnsupportedOperationException("Users cannot be deactivated.");
     }
 
@@ -171,7 +211,7 @@ public class UserDao extends DaoImp<User> {
      * @throws UnsupportedOperationException Always thrown when called.
      */
     @Override
-    protected PreparedStatement setDeleteDateStatement(long key) {
+    protected PreparedStatement setDeleteDateStatement(Connection connection, long key) {
         throw new UnsupportedOperationException("Users cannot be deactivated.");
     }
 
@@ -183,12 +223,15 @@ public class UserDao extends DaoImp<User> {
      * @throws SQLException If a database access error occurs.
      */
     public User findByUsername(String username) throws SQLException {
-        PreparedStatement stmt = connection.prepareStatement("SELECT * FROM user WHERE username = ?");
-        stmt.setString(1, username);
-        ResultSet rs = stmt.executeQuery();
-        if (rs.next()) {
-            return getInstanceFromResultSet(rs);
-        }
-        return null;
+        return withReadConnection("findByUsername", connection -> {
+            PreparedStatement stmt = prepareCachedStatement(connection, "SELECT * FROM user WHERE username = ?");
+            stmt.setString(1, username);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return getInstanceFromResultSet(rs);
+                }
+                return null;
+            }
+        });
     }
 }
\ No newline at end of file
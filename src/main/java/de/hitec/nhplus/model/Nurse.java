@@ -1,27 +1,46 @@
 package de.hitec.nhplus.model;
 
-import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleLongProperty;
-import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleStringProperty;
 
 import java.time.LocalDate;
 import java.util.Date;
+import java.util.EnumSet;
+import java.util.Set;
 
 /**
  * Nurses work in a Nursing home and treat patients.
+ * <p>
+ * Like the names of the {@link Person}, the values are kept in plain fields; the JavaFX property of a value is created
+ * when it is first requested and holds the value from then on.
+ * <p>
+ * The nurse records which of its fields have been changed since it has been read or written, so that only their
+ * columns have to be updated.
  */
 public class Nurse extends Person {
 
-    private SimpleLongProperty nid;
-    private final SimpleStringProperty phoneNumber;
-    private SimpleStringProperty status;
+    /**
+     * The fields of a nurse that are written by an update.
+     */
+    public enum Field {
+        FIRST_NAME, SURNAME, PHONE_NUMBER, STATUS, DELETION_DATE, ARCHIVE_DATE, CHANGED_BY, DELETED_BY
+    }
+
+    private long nid;
+    private String phoneNumber;
+    private String status;
     public static final String STATUS_ACTIVE = "a";
     public static final String STATUS_INACTIVE = "i";
-    private final ObjectProperty<LocalDate> deletionDate = new SimpleObjectProperty<>(null);
-    private final ObjectProperty<LocalDate> archiveDate = new SimpleObjectProperty<>(null);
-    private final SimpleStringProperty changedBy = new SimpleStringProperty();
-    private final SimpleStringProperty deletedBy = new SimpleStringProperty();
+    private LocalDate deletionDate;
+    private LocalDate archiveDate;
+    private String changedBy;
+    private String deletedBy;
+    private SimpleLongProperty nidProperty;
+    private SimpleStringProperty phoneNumberProperty;
+    private SimpleStringProperty changedByProperty;
+    private SimpleStringProperty deletedByProperty;
+    private EnumSet<Field> dirtyFields;
+    private EnumSet<Field> writtenFields;
 
 
     /**
@@ -37,13 +56,13 @@ public class Nurse extends Person {
                  LocalDate deletionDate, LocalDate archiveDate, String changedBy, String deletedBy) {
 
         super(firstName, surname);
-        this.nid = new SimpleLongProperty(); // leer – DB vergibt ID später
-        this.phoneNumber = new SimpleStringProperty(phoneNumber);
-        this.status = new SimpleStringProperty(status);
-        this.deletionDate.set(deletionDate);
-        this.archiveDate.set(archiveDate);
-        this.changedBy.set(changedBy);
-        this.deletedBy.set(deletedBy);
+        // keine nid – die DB vergibt die ID später
+        this.phoneNumber = phoneNumber;
+        this.status = status;
+        this.deletionDate = deletionDate;
+        this.archiveDate = archiveDate;
+        this.changedBy = changedBy;
+        this.deletedBy = deletedBy;
     }
 
     /**
@@ -60,13 +79,13 @@ public class Nurse extends Person {
                  LocalDate deletionDate, LocalDate archiveDate, String changedBy, String deletedBy) {
 
         super(firstName, surname);
-        this.nid = new SimpleLongProperty(nid);
-        this.phoneNumber = new SimpleStringProperty(phoneNumber);
-        this.status = new SimpleStringProperty(status);
-        this.deletionDate.set(deletionDate);
-        this.archiveDate.set(archiveDate);
-        this.changedBy.set(changedBy);
-        this.deletedBy.set(deletedBy);
+        this.nid = nid;
+        this.phoneNumber = phoneNumber;
+        this.status = status;
+        this.deletionDate = deletionDate;
+        this.archiveDate = archiveDate;
+        this.changedBy = changedBy;
+        this.deletedBy = deletedBy;
     }
 
     /**
@@ -74,81 +93,199 @@ public class Nurse extends Person {
      */
 
     public long getNid() {
-        return (nid != null) ? nid.get() : 0;
+        return nidProperty != null ? nidProperty.get() : nid;
+    }
+
+    public void setNid(long nid) {
+        if (nidProperty != null) {
+            nidProperty.set(nid);
+        } else {
+            this.nid = nid;
+        }
     }
 
     public SimpleLongProperty nidProperty() {
-        return nid;
+        if (nidProperty == null) {
+            nidProperty = new SimpleLongProperty(nid);
+        }
+        return nidProperty;
     }
 
     public String getPhoneNumber() {
-        return phoneNumber.get();
+        return phoneNumberProperty != null ? phoneNumberProperty.get() : phoneNumber;
     }
 
     public SimpleStringProperty phoneNumberProperty() {
-        return phoneNumber;
+        if (phoneNumberProperty == null) {
+            phoneNumberProperty = new SimpleStringProperty(phoneNumber) {
+                @Override
+                public void set(String value) {
+                    super.set(value);
+                    markDirty(Field.PHONE_NUMBER);
+                }
+            };
+        }
+        return phoneNumberProperty;
     }
 
     public void setPhoneNumber(String phoneNumber) {
-        this.phoneNumber.set(phoneNumber);
+        if (phoneNumberProperty != null) {
+            phoneNumberProperty.set(phoneNumber);
+        } else {
+            this.phoneNumber = phoneNumber;
+            markDirty(Field.PHONE_NUMBER);
+        }
     }
 
     public void setStatus(String status) {
-        this.status.set(status);
+        this.status = status;
+        markDirty(Field.STATUS);
     }
 
     public String getStatus() {
-        return status.get();
+        return status;
     }
 
     public LocalDate getDeletionDate() {
-        return deletionDate.get();
+        return deletionDate;
     }
 
     public void setDeletionDate(LocalDate deletionDate) {
-        this.deletionDate.set(deletionDate);
+        this.deletionDate = deletionDate;
+        markDirty(Field.DELETION_DATE);
     }
 
 
     public LocalDate getArchiveDate() {
-        return archiveDate.get();
+        return archiveDate;
     }
 
     public void setArchiveDate(LocalDate archiveDate) {
-        this.archiveDate.set(archiveDate);
+        this.archiveDate = archiveDate;
+        markDirty(Field.ARCHIVE_DATE);
     }
 
     public String getChangedBy() {
-        return changedBy.get();
+        return changedByProperty != null ? changedByProperty.get() : changedBy;
     }
 
     public void setChangedBy(String changedBy) {
-        this.changedBy.set(changedBy);
+        if (changedByProperty != null) {
+            changedByProperty.set(changedBy);
+        } else {
+            this.changedBy = changedBy;
+            markDirty(Field.CHANGED_BY);
+        }
     }
 
     public SimpleStringProperty changedByProperty() {
-        return changedBy;
+        if (changedByProperty == null) {
+            changedByProperty = new SimpleStringProperty(changedBy) {
+                @Override
+                public void set(String value) {
+                    super.set(value);
+                    markDirty(Field.CHANGED_BY);
+                }
+            };
+        }
+        return changedByProperty;
     }
 
     public String getDeletedBy() {
-        return deletedBy.get();
+        return deletedByProperty != null ? deletedByProperty.get() : deletedBy;
     }
 
     public void setDeletedBy(String deletedBy) {
-        this.deletedBy.set(deletedBy);
+        if (deletedByProperty != null) {
+            deletedByProperty.set(deletedBy);
+        } else {
+            this.deletedBy = deletedBy;
+            markDirty(Field.DELETED_BY);
+        }
     }
 
     public SimpleStringProperty deletedByProperty() {
-        return deletedBy;
+        if (deletedByProperty == null) {
+            deletedByProperty = new SimpleStringProperty(deletedBy) {
+                @Override
+                public void set(String value) {
+                    super.set(value);
+                    markDirty(Field.DELETED_BY);
+                }
+            };
+        }
+        return deletedByProperty;
+    }
+
+
+    /**
+     * The changed fields are recorded on the JavaFX application thread and written on the threads of the
+     * {@link de.hitec.nhplus.utils.QueryExecutor}, so they are only accessed while holding the lock of the nurse.
+     *
+     * @return the fields changed since the nurse has been read or last written, see {@link Field}
+     */
+    public synchronized Set<Field> getDirtyFields() {
+        return dirtyFields != null ? EnumSet.copyOf(dirtyFields) : EnumSet.noneOf(Field.class);
+    }
+
+    /**
+     * Returns the changed fields to write and forgets them, so that changes made while they are written are recorded
+     * again. The fields are kept until the write is confirmed by {@link #clearDirtyFields()} or has failed, see
+     * {@link #restoreDirtyFields()}.
+     *
+     * @return the fields changed since the nurse has been read or last written, see {@link Field}
+     */
+    public synchronized Set<Field> takeDirtyFields() {
+        Set<Field> fields = getDirtyFields();
+        if (writtenFields == null) {
+            writtenFields = EnumSet.noneOf(Field.class);
+        }
+        writtenFields.addAll(fields);
+        dirtyFields = null;
+        return fields;
+    }
+
+    /**
+     * Forgets the fields returned by {@link #takeDirtyFields()}, after they have been written.
+     */
+    public synchronized void clearDirtyFields() {
+        writtenFields = null;
     }
 
+    /**
+     * Records the fields returned by {@link #takeDirtyFields()} as changed again, after writing them has failed.
+     */
+    public synchronized void restoreDirtyFields() {
+        if (writtenFields != null) {
+            writtenFields.forEach(this::markDirty);
+            writtenFields = null;
+        }
+    }
+
+    @Override
+    protected void firstNameChanged() {
+        markDirty(Field.FIRST_NAME);
+    }
+
+    @Override
+    protected void surnameChanged() {
+        markDirty(Field.SURNAME);
+    }
+
+    private synchronized void markDirty(Field field) {
+        if (dirtyFields == null) {
+            dirtyFields = EnumSet.of(field);
+        } else {
+            dirtyFields.add(field);
+        }
+    }
 
     public String toString() {
-        return "Pfleger/in" + "\nNID: " + this.nid + "\nFirstname: " + this.getFirstName() + "\nSurname: " +
-                this.getSurname() + "\nPhoneNumber: " + this.phoneNumber + "\nStatus: " + this.status +
+        return "Pfleger/in" + "\nNID: " + this.getNid() + "\nFirstname: " + this.getFirstName() + "\nSurname: " +
+                this.getSurname() + "\nPhoneNumber: " + this.getPhoneNumber() + "\nStatus: " + this.status +
 
-                "\nDatum gelöscht: " + this.deletionDate +"\nDatum archiviert: " + this.archiveDate +"\n" +"\nGeändert von: " + this.changedBy +
-                "\nGelöscht von: " + this.deletedBy + "\n";
+                "\nDatum gelöscht: " + this.deletionDate +"\nDatum archiviert: " + this.archiveDate +"\n" +"\nGeändert von: " + this.getChangedBy() +
+                "\nGelöscht von: " + this.getDeletedBy() + "\n";
 
     }
 
@@ -158,9 +295,12 @@ public class Nurse extends Person {
      * This method is typically used for soft-deletion workflows.
      */
     public void markForDeletion() {
-        this.status.set(STATUS_INACTIVE); // optional
-        this.archiveDate.set(LocalDate.now());
-        this.deletionDate.set(LocalDate.now().plusYears(10));
+        this.status = STATUS_INACTIVE; // optional
+        this.archiveDate = LocalDate.now();
+        this.deletionDate = LocalDate.now().plusYears(10);
+        markDirty(Field.STATUS);
+        markDirty(Field.ARCHIVE_DATE);
+        markDirty(Field.DELETION_DATE);
 
     }
 
@@ -1,31 +1,54 @@
 package de.hitec.nhplus.model;
 
 import de.hitec.nhplus.utils.DateConverter;
-import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleLongProperty;
-import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleStringProperty;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Patients live in a NURSING home and are treated by nurses.
+ * <p>
+ * Like the names of the {@link Person}, the values are kept in plain fields; the JavaFX property of a value is created
+ * when it is first requested and holds the value from then on.
+ * <p>
+ * The patient records which of its fields have been changed since it has been read or written, so that only their
+ * columns have to be updated.
  */
 public class Patient extends Person {
-    private SimpleLongProperty pid;
-    private final SimpleStringProperty dateOfBirth;
-    private final SimpleStringProperty careLevel;
-    private final SimpleStringProperty roomNumber;
-    private final List<Treatment> allTreatments = new ArrayList<>();
-    private SimpleStringProperty status;
+
+    /**
+     * The fields of a patient that are written by an update.
+     */
+    public enum Field {
+        FIRST_NAME, SURNAME, DATE_OF_BIRTH, CARE_LEVEL, ROOM_NUMBER, STATUS, DELETION_DATE, ARCHIVE_DATE, CHANGED_BY,
+        DELETED_BY
+    }
+
+    private long pid;
+    private String dateOfBirth;
+    private String careLevel;
+    private String roomNumber;
+    private List<Treatment> allTreatments;
+    private String status;
     public static final String STATUS_ACTIVE = "a";
     public static final String STATUS_INACTIVE = "i";
-    private final ObjectProperty<LocalDate> deletionDate = new SimpleObjectProperty<>(null);
-    private final ObjectProperty<LocalDate> archiveDate = new SimpleObjectProperty<>(null);
-    private final SimpleStringProperty changedBy = new SimpleStringProperty();
-    private final SimpleStringProperty deletedBy = new SimpleStringProperty();
+    private LocalDate deletionDate;
+    private LocalDate archiveDate;
+    private String changedBy;
+    private String deletedBy;
+    private SimpleLongProperty pidProperty;
+    private SimpleStringProperty dateOfBirthProperty;
+    private SimpleStringProperty careLevelProperty;
+    private SimpleStringProperty roomNumberProperty;
+    private SimpleStringProperty changedByProperty;
+    private SimpleStringProperty deletedByProperty;
+    private EnumSet<Field> dirtyFields;
+    private EnumSet<Field> writtenFields;
 
     /**
      * Constructor to initiate an object of class <code>Patient</code> with the given parameter. Use this constructor
@@ -40,14 +63,14 @@ public class Patient extends Person {
     public Patient(String firstName, String surname, LocalDate dateOfBirth, String careLevel, String roomNumber,
                    String status, LocalDate deletionDate, LocalDate archiveDate, String changedBy, String deletedBy) {
         super(firstName, surname);
-        this.dateOfBirth = new SimpleStringProperty(DateConverter.convertLocalDateToString(dateOfBirth));
-        this.careLevel = new SimpleStringProperty(careLevel);
-        this.roomNumber = new SimpleStringProperty(roomNumber);
-        this.status = new SimpleStringProperty(status);
-        this.deletionDate.set(deletionDate);
-        this.archiveDate.set(archiveDate);
-        this.changedBy.set(changedBy);
-        this.deletedBy.set(deletedBy);
+        this.dateOfBirth = DateConverter.convertLocalDateToString(dateOfBirth);
+        this.careLevel = careLevel;
+        this.roomNumber = roomNumber;
+        this.status = status;
+        this.deletionDate = deletionDate;
+        this.archiveDate = archiveDate;
+        this.changedBy = changedBy;
+        this.deletedBy = deletedBy;
     }
 
     /**
@@ -64,15 +87,15 @@ public class Patient extends Person {
     public Patient(long pid, String firstName, String surname, LocalDate dateOfBirth, String careLevel,
                    String roomNumber, String status, LocalDate deletionDate, LocalDate archiveDate, String changedBy, String deletedBy) {
         super(firstName, surname);
-        this.pid = new SimpleLongProperty(pid);
-        this.dateOfBirth = new SimpleStringProperty(DateConverter.convertLocalDateToString(dateOfBirth));
-        this.careLevel = new SimpleStringProperty(careLevel);
-        this.roomNumber = new SimpleStringProperty(roomNumber);
-        this.status = new SimpleStringProperty(status);
-        this.deletionDate.set(deletionDate);
-        this.archiveDate.set(archiveDate);
-        this.changedBy.set(changedBy);
-        this.deletedBy.set(deletedBy);
+        this.pid = pid;
+        this.dateOfBirth = DateConverter.convertLocalDateToString(dateOfBirth);
+        this.careLevel = careLevel;
+        this.roomNumber = roomNumber;
+        this.status = status;
+        this.deletionDate = deletionDate;
+        this.archiveDate = archiveDate;
+        this.changedBy = changedBy;
+        this.deletedBy = deletedBy;
     }
 
     /**
@@ -80,19 +103,39 @@ public class Patient extends Person {
      */
 
     public long getPid() {
-        return pid.get();
+        return pidProperty != null ? pidProperty.get() : pid;
+    }
+
+    public void setPid(long pid) {
+        if (pidProperty != null) {
+            pidProperty.set(pid);
+        } else {
+            this.pid = pid;
+        }
     }
 
     public SimpleLongProperty pidProperty() {
-        return pid;
+        if (pidProperty == null) {
+            pidProperty = new SimpleLongProperty(pid);
+        }
+        return pidProperty;
     }
 
     public String getDateOfBirth() {
-        return dateOfBirth.get();
+        return dateOfBirthProperty != null ? dateOfBirthProperty.get() : dateOfBirth;
     }
 
     public SimpleStringProperty dateOfBirthProperty() {
-        return dateOfBirth;
+        if (dateOfBirthProperty == null) {
+            dateOfBirthProperty = new SimpleStringProperty(dateOfBirth) {
+                @Override
+                public void set(String value) {
+                    super.set(value);
+                    markDirty(Field.DATE_OF_BIRTH);
+                }
+            };
+        }
+        return dateOfBirthProperty;
     }
 
     /**
@@ -101,81 +144,207 @@ public class Patient extends Person {
      * @param dateOfBirth as string in the following format: YYYY-MM-DD.
      */
     public void setDateOfBirth(String dateOfBirth) {
-        this.dateOfBirth.set(dateOfBirth);
+        if (dateOfBirthProperty != null) {
+            dateOfBirthProperty.set(dateOfBirth);
+        } else {
+            this.dateOfBirth = dateOfBirth;
+            markDirty(Field.DATE_OF_BIRTH);
+        }
     }
 
     public String getCareLevel() {
-        return careLevel.get();
+        return careLevelProperty != null ? careLevelProperty.get() : careLevel;
     }
 
     public SimpleStringProperty careLevelProperty() {
-        return careLevel;
+        if (careLevelProperty == null) {
+            careLevelProperty = new SimpleStringProperty(careLevel) {
+                @Override
+                public void set(String value) {
+                    super.set(value);
+                    markDirty(Field.CARE_LEVEL);
+                }
+            };
+        }
+        return careLevelProperty;
     }
 
     public void setCareLevel(String careLevel) {
-        this.careLevel.set(careLevel);
+        if (careLevelProperty != null) {
+            careLevelProperty.set(careLevel);
+        } else {
+            this.careLevel = careLevel;
+            markDirty(Field.CARE_LEVEL);
+        }
     }
 
     public String getRoomNumber() {
-        return roomNumber.get();
+        return roomNumberProperty != null ? roomNumberProperty.get() : roomNumber;
     }
 
     public SimpleStringProperty roomNumberProperty() {
-        return roomNumber;
+        if (roomNumberProperty == null) {
+            roomNumberProperty = new SimpleStringProperty(roomNumber) {
+                @Override
+                public void set(String value) {
+                    super.set(value);
+                    markDirty(Field.ROOM_NUMBER);
+                }
+            };
+        }
+        return roomNumberProperty;
     }
 
 
     public void setRoomNumber(String roomNumber) {
-        this.roomNumber.set(roomNumber);
+        if (roomNumberProperty != null) {
+            roomNumberProperty.set(roomNumber);
+        } else {
+            this.roomNumber = roomNumber;
+            markDirty(Field.ROOM_NUMBER);
+        }
     }
 
     public void setStatus(String status) {
-        this.status.set(status);
+        this.status = status;
+        markDirty(Field.STATUS);
     }
 
     public String getStatus() {
-        return status.get();
+        return status;
     }
 
     public LocalDate getDeletionDate() {
-        return deletionDate.get();
+        return deletionDate;
     }
 
     public void setDeletionDate(LocalDate deletionDate) {
-        this.deletionDate.set(deletionDate);
+        this.deletionDate = deletionDate;
+        markDirty(Field.DELETION_DATE);
     }
 
 
     public LocalDate getArchiveDate() {
-        return archiveDate.get();
+        return archiveDate;
     }
 
     public void setArchiveDate(LocalDate archiveDate) {
-        this.archiveDate.set(archiveDate);
+        this.archiveDate = archiveDate;
+        markDirty(Field.ARCHIVE_DATE);
 
     }
     public String getChangedBy() {
-        return changedBy.get();
+        return changedByProperty != null ? changedByProperty.get() : changedBy;
     }
 
     public void setChangedBy(String changedBy) {
-        this.changedBy.set(changedBy);
+        if (changedByProperty != null) {
+            changedByProperty.set(changedBy);
+        } else {
+            this.changedBy = changedBy;
+            markDirty(Field.CHANGED_BY);
+        }
     }
 
     public SimpleStringProperty changedByProperty() {
-        return changedBy;
+        if (changedByProperty == null) {
+            changedByProperty = new SimpleStringProperty(changedBy) {
+                @Override
+                public void set(String value) {
+                    super.set(value);
+                    markDirty(Field.CHANGED_BY);
+                }
+            };
+        }
+        return changedByProperty;
     }
 
     public String getDeletedBy() {
-        return deletedBy.get();
+        return deletedByProperty != null ? deletedByProperty.get() : deletedBy;
     }
 
     public void setDeletedBy(String deletedBy) {
-        this.deletedBy.set(deletedBy);
+        if (deletedByProperty != null) {
+            deletedByProperty.set(deletedBy);
+        } else {
+            this.deletedBy = deletedBy;
+            markDirty(Field.DELETED_BY);
+        }
     }
 
     public SimpleStringProperty deletedByProperty() {
-        return deletedBy;
+        if (deletedByProperty == null) {
+            deletedByProperty = new SimpleStringProperty(deletedBy) {
+                @Override
+                public void set(String value) {
+                    super.set(value);
+                    markDirty(Field.DELETED_BY);
+                }
+            };
+        }
+        return deletedByProperty;
+    }
+
+    /**
+     * The changed fields are recorded on the JavaFX application thread and written on the threads of the
+     * {@link de.hitec.nhplus.utils.QueryExecutor}, so they are only accessed while holding the lock of the patient.
+     *
+     * @return the fields changed since the patient has been read or last written, see {@link Field}
+     */
+    public synchronized Set<Field> getDirtyFields() {
+        return dirtyFields != null ? EnumSet.copyOf(dirtyFields) : EnumSet.noneOf(Field.class);
+    }
+
+    /**
+     * Returns the changed fields to write and forgets them, so that changes made while they are written are recorded
+     * again. The fields are kept until the write is confirmed by {@link #clearDirtyFields()} or has failed, see
+     * {@link #restoreDirtyFields()}.
+     *
+     * @return the fields changed since the patient has been read or last written, see {@link Field}
+     */
+    public synchronized Set<Field> takeDirtyFields() {
+        Set<Field> fields = getDirtyFields();
+        if (writtenFields == null) {
+            writtenFields = EnumSet.noneOf(Field.class);
+        }
+        writtenFields.addAll(fields);
+        dirtyFields = null;
+        return fields;
+    }
+
+    /**
+     * Forgets the fields returned by {@link #takeDirtyFields()}, after they have been written.
+     */
+    public synchronized void clearDirtyFields() {
+        writtenFields = null;
+    }
+
+    /**
+     * Records the fields returned by {@link #takeDirtyFields()} as changed again, after writing them has failed.
+     */
+    public synchronized void restoreDirtyFields() {
+        if (writtenFields != null) {
+            writtenFields.forEach(this::markDirty);
+            writtenFields = null;
+        }
+    }
+
+    @Override
+    protected void firstNameChanged() {
+        markDirty(Field.FIRST_NAME);
+    }
+
+    @Override
+    protected void surnameChanged() {
+        markDirty(Field.SURNAME);
+    }
+
+    private synchronized void markDirty(Field field) {
+        if (dirtyFields == null) {
+            dirtyFields = EnumSet.of(field);
+        } else {
+            dirtyFields.add(field);
+        }
     }
 
     /**
@@ -185,7 +354,9 @@ public class Patient extends Person {
      * @return False, if the treatment was already part of the list, else true.
      */
     public boolean add(Treatment treatment) {
-        if (this.allTreatments.contains(treatment)) {
+        if (this.allTreatments == null) {
+            this.allTreatments = new ArrayList<>();
+        } else if (this.allTreatments.contains(treatment)) {
             return false;
         }
         this.allTreatments.add(treatment);
@@ -193,11 +364,11 @@ public class Patient extends Person {
     }
 
     public String toString() {
-        return "Patient" + "\nMNID: " + this.pid + "\nFirstname: " + this.getFirstName() + "\nSurname: " +
-                this.getSurname() + "\nBirthday: " + this.dateOfBirth + "\nCarelevel: " + this.careLevel +
-                "\nRoomnumber: " + this.roomNumber + "\nStatus: " + this.status + "\nDatum gelöscht: " +
-                this.deletionDate + "\nDatum archiviert: " + this.archiveDate + "\n"  + this.changedBy +
-                "\nGelöscht von: " + this.deletedBy + "\n";
+        return "Patient" + "\nMNID: " + this.getPid() + "\nFirstname: " + this.getFirstName() + "\nSurname: " +
+                this.getSurname() + "\nBirthday: " + this.getDateOfBirth() + "\nCarelevel: " + this.getCareLevel() +
+                "\nRoomnumber: " + this.getRoomNumber() + "\nStatus: " + this.status + "\nDatum gelöscht: " +
+                this.deletionDate + "\nDatum archiviert: " + this.archiveDate + "\n"  + this.getChangedBy() +
+                "\nGelöscht von: " + this.getDeletedBy() + "\n";
     }
     /**
      * Marks the patient for future deletion by setting the archive date to the current date
@@ -205,12 +376,12 @@ public class Patient extends Person {
      * This method is typically used for soft-deletion workflows.
      */
     public void markForDeletion() {
-        this.status.set(STATUS_INACTIVE); // optional
-        System.out.println(status);
-        this.archiveDate.set(LocalDate.now());
-        System.out.println(archiveDate);
-        this.deletionDate.set(LocalDate.now().plusYears(10));
-        System.out.println(deletionDate);
+        this.status = STATUS_INACTIVE; // optional
+        this.archiveDate = LocalDate.now();
+        this.deletionDate = LocalDate.now().plusYears(10);
+        markDirty(Field.STATUS);
+        markDirty(Field.ARCHIVE_DATE);
+        markDirty(Field.DELETION_DATE);
 
 
 
@@ -4,13 +4,20 @@ import javafx.beans.property.SimpleStringProperty;
 
 /**
  * Abstract base class representing a person with a first name and surname.
- * This class uses JavaFX properties for data binding in UI applications.
+ * This class uses JavaFX properties for data binding in UI applications. The values are kept in plain fields and the
+ * properties are only created when they are requested, e.g. by a table column or an edit form, so that persons held in
+ * lists and caches do not carry them.
+ * <p>
+ * Every change of a name, through a setter or a property, is reported to {@link #firstNameChanged()} or
+ * {@link #surnameChanged()}, so that subclasses can track which of their fields have to be written.
  */
 
 public abstract class Person {
 
-    private final SimpleStringProperty firstName;
-    private final SimpleStringProperty surname;
+    private String firstName;
+    private String surname;
+    private SimpleStringProperty firstNameProperty;
+    private SimpleStringProperty surnameProperty;
 
     /**
      * Constructor initializing the person's first name and surname.
@@ -18,39 +25,79 @@ public abstract class Person {
      * @param surname   The person's surname
      */
     public Person(String firstName, String surname) {
-        this.firstName = new SimpleStringProperty(firstName);
-        this.surname = new SimpleStringProperty(surname);
+        this.firstName = firstName;
+        this.surname = surname;
     }
     /**
      * Getter and Setter Methods
      */
 
     public String getFirstName() {
-        return firstName.get();
+        return firstNameProperty != null ? firstNameProperty.get() : firstName;
     }
 
 
     public SimpleStringProperty firstNameProperty() {
-        return firstName;
+        if (firstNameProperty == null) {
+            firstNameProperty = new SimpleStringProperty(firstName) {
+                @Override
+                public void set(String value) {
+                    super.set(value);
+                    firstNameChanged();
+                }
+            };
+        }
+        return firstNameProperty;
     }
 
 
     public void setFirstName(String firstName) {
-        this.firstName.set(firstName);
+        if (firstNameProperty != null) {
+            firstNameProperty.set(firstName);
+        } else {
+            this.firstName = firstName;
+            firstNameChanged();
+        }
     }
 
 
     public String getSurname() {
-        return surname.get();
+        return surnameProperty != null ? surnameProperty.get() : surname;
     }
 
 
     public SimpleStringProperty surnameProperty() {
-        return surname;
+        if (surnameProperty == null) {
+            surnameProperty = new SimpleStringProperty(surname) {
+                @Override
+                public void set(String value) {
+                    super.set(value);
+                    surnameChanged();
+                }
+            };
+        }
+        return surnameProperty;
     }
 
 
     public void setSurname(String surname) {
-        this.surname.set(surname);
+        if (surnameProperty != null) {
+            surnameProperty.set(surname);
+        } else {
+            this.surname = surname;
+            surnameChanged();
+        }
+    }
+
+    /**
+     * Called after the first name has been set.
+     */
+    protected void firstNameChanged() {
+    }
+
+    /**
+     * Called after the surname has been set.
+     */
+    protected void surnameChanged() {
     }
 }
@@ -1,15 +1,27 @@
 package de.hitec.nhplus.model;
 
 import de.hitec.nhplus.utils.DateConverter;
-import javafx.beans.property.ObjectProperty;
-import javafx.beans.property.SimpleObjectProperty;
-import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.ReadOnlyLongProperty;
+import javafx.beans.property.ReadOnlyLongWrapper;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
 
 import java.nio.channels.ClosedChannelException;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.util.EnumSet;
+import java.util.Set;
 
 public class Treatment {
+
+    /**
+     * The fields of a treatment that are written by an update. A treatment records which of them have been changed
+     * since it has been read or written, so that only their columns have to be updated.
+     */
+    public enum Field {
+        DATE, BEGIN, END, DESCRIPTION, REMARKS, NID, STATUS, DELETION_DATE, ARCHIVE_DATE, CHANGED_BY, DELETED_BY
+    }
+
     private long tid;
     private final long pid;
     private LocalDate date;
@@ -17,15 +29,19 @@ public class Treatment {
     private LocalTime end;
     private String description;
     private String remarks;
+    private boolean remarksLoaded = true;
     private long nid;
     private String nurseName;
-    private SimpleStringProperty status;
+    private String status;
     public static final String STATUS_ACTIVE = "a";
     public static final String STATUS_INACTIVE = "i";
-    private final ObjectProperty<LocalDate> deletionDate = new SimpleObjectProperty<>(null);
-    private final ObjectProperty<LocalDate> archiveDate = new SimpleObjectProperty<>(null);
-    private final SimpleStringProperty changedBy = new SimpleStringProperty();
-    private final SimpleStringProperty deletedBy = new SimpleStringProperty();
+    private LocalDate deletionDate;
+    private LocalDate archiveDate;
+    private String changedBy;
+    private String deletedBy;
+    private ColumnProperties columnProperties;
+    private EnumSet<Field> dirtyFields;
+    private EnumSet<Field> writtenFields;
 
     public String getNurseName() {
         return nurseName;
@@ -33,6 +49,9 @@ public class Treatment {
 
     public void setNurseName(String nurseName) {
         this.nurseName = nurseName;
+        if (this.columnProperties != null) {
+            this.columnProperties.nurseName.set(nurseName);
+        }
     }
     /**
      * Constructor to initiate an object of class <code>Treatment</code> with the given parameter. Use this constructor
@@ -55,11 +74,11 @@ public class Treatment {
         this.description = description;
         this.remarks = remarks;
         this.nid = nid;
-        this.status = new SimpleStringProperty(status);
-        this.deletionDate.set(deletionDate);
-        this.archiveDate.set(archiveDate);
-        this.changedBy.set(changedBy);
-        this.deletedBy.set(deletedBy);
+        this.status = status;
+        this.deletionDate = deletionDate;
+        this.archiveDate = archiveDate;
+        this.changedBy = changedBy;
+        this.deletedBy = deletedBy;
     }
 
     /**
@@ -85,11 +104,11 @@ public class Treatment {
         this.description = description;
         this.remarks = remarks;
         this.nid = nid;
-        this.status = new SimpleStringProperty(status);
-        this.changedBy.set(changedBy);
-        this.deletedBy.set(deletedBy);
-        this.deletionDate.set(deletionDate);
-        this.archiveDate.set(archiveDate);
+        this.status = status;
+        this.changedBy = changedBy;
+        this.deletedBy = deletedBy;
+        this.deletionDate = deletionDate;
+        this.archiveDate = archiveDate;
     }
 
     /**
@@ -100,6 +119,13 @@ public class Treatment {
         return tid;
     }
 
+    public void setTid(long tid) {
+        this.tid = tid;
+        if (this.columnProperties != null) {
+            this.columnProperties.tid.set(tid);
+        }
+    }
+
     public long getPid() {
         return this.pid;
     }
@@ -122,16 +148,26 @@ public class Treatment {
 
     public void setDate(String date) {
         this.date = DateConverter.convertStringToLocalDate(date);
+        if (this.columnProperties != null) {
+            this.columnProperties.date.set(getDate());
+        }
+        markDirty(Field.DATE);
     }
 
     public void setBegin(String begin) {
         this.begin = DateConverter.convertStringToLocalTime(begin);
-
+        if (this.columnProperties != null) {
+            this.columnProperties.begin.set(getBegin());
+        }
+        markDirty(Field.BEGIN);
     }
 
     public void setEnd(String end) {
         this.end = DateConverter.convertStringToLocalTime(end);
-        ;
+        if (this.columnProperties != null) {
+            this.columnProperties.end.set(getEnd());
+        }
+        markDirty(Field.END);
     }
 
     public String getDescription() {
@@ -140,52 +176,147 @@ public class Treatment {
 
     public void setDescription(String description) {
         this.description = description;
+        if (this.columnProperties != null) {
+            this.columnProperties.description.set(description);
+        }
+        markDirty(Field.DESCRIPTION);
     }
 
+    /**
+     * @return the remarks, or <code>null</code> if they have not been loaded, see {@link #isRemarksLoaded()}
+     */
     public String getRemarks() {
         return remarks;
     }
 
     public void setRemarks(String remarks) {
         this.remarks = remarks;
+        this.remarksLoaded = true;
+        markDirty(Field.REMARKS);
+    }
+
+    /**
+     * @return false if the treatment has been read by a list query without its remarks, which are then loaded by
+     * {@link de.hitec.nhplus.datastorage.TreatmentDao#loadRemarks(Treatment)} when the treatment is opened
+     */
+    public boolean isRemarksLoaded() {
+        return remarksLoaded;
+    }
+
+    /**
+     * Sets the remarks read from the database for a treatment read without them. Unlike {@link #setRemarks(String)},
+     * this is not a change of the treatment.
+     *
+     * @param remarks the remarks as stored in the database
+     */
+    public void setLoadedRemarks(String remarks) {
+        this.remarks = remarks;
+        this.remarksLoaded = true;
+    }
+
+    /**
+     * Drops the remarks, e.g. of a treatment read for a list, so that they do not take up memory until
+     * {@link #setRemarks(String)} is called again. Updates of the treatment leave the remarks of the database unchanged
+     * as long as they are not loaded.
+     */
+    public void unloadRemarks() {
+        this.remarks = null;
+        this.remarksLoaded = false;
     }
 
     public String getStatus(){
-        return status.get();
+        return status;
     }
 
     public void setStatus(String status){
-        this.status.set(status);
+        this.status = status;
+        markDirty(Field.STATUS);
     }
 
     public LocalDate getDeletionDate(){
-        return deletionDate.get();
+        return deletionDate;
     }
 
     public void setDeletionDate(LocalDate deletionDate){
-        this.deletionDate.set(deletionDate);
+        this.deletionDate = deletionDate;
+        markDirty(Field.DELETION_DATE);
     }
 
     public LocalDate getArchiveDate(){
-        return archiveDate.get();
+        return archiveDate;
     }
     public void setArchiveDate(LocalDate archiveDate) {
-        this.archiveDate.set(archiveDate);
+        this.archiveDate = archiveDate;
+        markDirty(Field.ARCHIVE_DATE);
     }
     public String getDeletedBy() {
-        return deletedBy.get();
+        return deletedBy;
     }
     public void setDeletedBy(String deletedBy) {
-        this.deletedBy.set(deletedBy);
+        this.deletedBy = deletedBy;
+        markDirty(Field.DELETED_BY);
     }
     public String getChangedBy() {
-        return changedBy.get();
+        return changedBy;
     }
     public void setChangedBy(String changedBy) {
-        this.changedBy.set(changedBy);
+        this.changedBy = changedBy;
+        markDirty(Field.CHANGED_BY);
     }
 
 
+    /**
+     * The changed fields are recorded on the JavaFX application thread and written on the threads of the
+     * {@link de.hitec.nhplus.utils.QueryExecutor}, so they are only accessed while holding the lock of the treatment.
+     *
+     * @return the fields changed since the treatment has been read or last written, see {@link Field}
+     */
+    public synchronized Set<Field> getDirtyFields() {
+        return dirtyFields != null ? EnumSet.copyOf(dirtyFields) : EnumSet.noneOf(Field.class);
+    }
+
+    /**
+     * Returns the changed fields to write and forgets them, so that changes made while they are written are recorded
+     * again. The fields are kept until the write is confirmed by {@link #clearDirtyFields()} or has failed, see
+     * {@link #restoreDirtyFields()}.
+     *
+     * @return the fields changed since the treatment has been read or last written, see {@link Field}
+     */
+    public synchronized Set<Field> takeDirtyFields() {
+        Set<Field> fields = getDirtyFields();
+        if (writtenFields == null) {
+            writtenFields = EnumSet.noneOf(Field.class);
+        }
+        writtenFields.addAll(fields);
+        dirtyFields = null;
+        return fields;
+    }
+
+    /**
+     * Forgets the fields returned by {@link #takeDirtyFields()}, after they have been written.
+     */
+    public synchronized void clearDirtyFields() {
+        writtenFields = null;
+    }
+
+    /**
+     * Records the fields returned by {@link #takeDirtyFields()} as changed again, after writing them has failed.
+     */
+    public synchronized void restoreDirtyFields() {
+        if (writtenFields != null) {
+            writtenFields.forEach(this::markDirty);
+            writtenFields = null;
+        }
+    }
+
+    private synchronized void markDirty(Field field) {
+        if (dirtyFields == null) {
+            dirtyFields = EnumSet.of(field);
+        } else {
+            dirtyFields.add(field);
+        }
+    }
+
     public String toString() {
         return "\nBehandlung" + "\nTID: " + this.tid + "\nPID: " + this.pid + "\nDate: " + this.date + "\nBegin: " +
                 this.begin + "\nEnd: " + this.end + "\nDescription: " + this.description + "\nRemarks: " +
@@ -199,11 +330,76 @@ public class Treatment {
      */
     public void setNid(long nid) {
         this.nid = nid;
+        markDirty(Field.NID);
+    }
+
+    /**
+     * Read-only properties of the values shown in the columns of the treatment table, so that the columns can be
+     * bound to them. They are created together on first use, so treatments that are never shown in a table do not
+     * carry them, and are kept up to date by the setters.
+     */
+
+    public ReadOnlyLongProperty tidProperty() {
+        return getColumnProperties().tid.getReadOnlyProperty();
+    }
+
+    public ReadOnlyLongProperty pidProperty() {
+        return getColumnProperties().pid.getReadOnlyProperty();
+    }
+
+    public ReadOnlyStringProperty dateProperty() {
+        return getColumnProperties().date.getReadOnlyProperty();
+    }
+
+    public ReadOnlyStringProperty beginProperty() {
+        return getColumnProperties().begin.getReadOnlyProperty();
+    }
+
+    public ReadOnlyStringProperty endProperty() {
+        return getColumnProperties().end.getReadOnlyProperty();
+    }
+
+    public ReadOnlyStringProperty descriptionProperty() {
+        return getColumnProperties().description.getReadOnlyProperty();
+    }
+
+    public ReadOnlyStringProperty nurseNameProperty() {
+        return getColumnProperties().nurseName.getReadOnlyProperty();
+    }
+
+    private ColumnProperties getColumnProperties() {
+        if (this.columnProperties == null) {
+            this.columnProperties = new ColumnProperties(this);
+        }
+        return this.columnProperties;
+    }
+
+    private static final class ColumnProperties {
+        private final ReadOnlyLongWrapper tid;
+        private final ReadOnlyLongWrapper pid;
+        private final ReadOnlyStringWrapper date;
+        private final ReadOnlyStringWrapper begin;
+        private final ReadOnlyStringWrapper end;
+        private final ReadOnlyStringWrapper description;
+        private final ReadOnlyStringWrapper nurseName;
+
+        ColumnProperties(Treatment treatment) {
+            this.tid = new ReadOnlyLongWrapper(treatment.tid);
+            this.pid = new ReadOnlyLongWrapper(treatment.pid);
+            this.date = new ReadOnlyStringWrapper(treatment.getDate());
+            this.begin = new ReadOnlyStringWrapper(treatment.getBegin());
+            this.end = new ReadOnlyStringWrapper(treatment.getEnd());
+            this.description = new ReadOnlyStringWrapper(treatment.description);
+            this.nurseName = new ReadOnlyStringWrapper(treatment.nurseName);
+        }
     }
     public void markForDeletion() {
-        this.status.set(STATUS_INACTIVE); // optional
-        this.archiveDate.set(LocalDate.now());
-        this.deletionDate.set(LocalDate.now().plusYears(10));
+        this.status = STATUS_INACTIVE; // optional
+        this.archiveDate = LocalDate.now();
+        this.deletionDate = LocalDate.now().plusYears(10);
+        markDirty(Field.STATUS);
+        markDirty(Field.ARCHIVE_DATE);
+        markDirty(Field.DELETION_DATE);
 
     }
 
@@ -112,7 +112,7 @@ public class User extends Person {
      * @return <code>true</code> if the password matches, otherwise <code>false</code>.
      */
     public boolean checkPassword(String plainPassword) {
-        return PasswordUtil.hashPassword(plainPassword).equals(getPassword());
+        return PasswordUtil.verifyPassword(plainPassword, getPassword());
     }
 
 
@@ -0,0 +1,33 @@
+package de.hitec.nhplus.utils;
+
+import javafx.beans.value.ObservableValue;
+import javafx.scene.control.TableColumn;
+
+import java.util.function.Function;
+
+/**
+ * Binds the columns of a {@link javafx.scene.control.TableView} to the properties of its rows without reflection.
+ * <p>
+ * {@link javafx.scene.control.cell.PropertyValueFactory} looks up the accessor of a column by its name through
+ * reflection, and for getters that do not return a property it wraps the value in a new wrapper every time a cell is
+ * updated. A binding calls the given property accessor of the model directly instead. The models return the same
+ * property object for a row every time, so scrolling does not allocate anything per cell. As with
+ * <code>PropertyValueFactory</code>, edits committed in a column are written to the property if it is writable.
+ */
+public class ColumnBinding {
+
+    private ColumnBinding() {
+    }
+
+    /**
+     * Shows the given property of every row in the column.
+     *
+     * @param column   the column to bind
+     * @param property returns the property of a row, e.g. <code>Patient::careLevelProperty</code>
+     * @param <S>      the type of the rows of the table
+     * @param <T>      the type of the values of the column
+     */
+    public static <S, T> void bind(TableColumn<S, T> column, Function<? super S, ObservableValue<T>> property) {
+        column.setCellValueFactory(cell -> property.apply(cell.getValue()));
+    }
+}
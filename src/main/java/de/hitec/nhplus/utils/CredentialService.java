@@ -0,0 +1,43 @@
+package de.hitec.nhplus.utils;
+
+import de.hitec.nhplus.datastorage.UserDao;
+import de.hitec.nhplus.model.User;
+
+import java.sql.SQLException;
+
+/**
+ * Verifies the credentials of a login.
+ * <p>
+ * The user is looked up by the unique index on its username instead of reading all users. If no user has the given
+ * username, the password is still hashed and compared against a dummy hash, so that an unknown username takes as long
+ * as a wrong password and the login does not reveal which usernames exist.
+ */
+
+public class CredentialService {
+
+    /** Hash compared against if the username is unknown; no password hashes to it. */
+    private static final String DUMMY_HASH = "0".repeat(64);
+
+    private final UserDao userDao;
+
+    public CredentialService(UserDao userDao) {
+        this.userDao = userDao;
+    }
+
+    /**
+     * Checks the given credentials.
+     *
+     * @param username the entered username
+     * @param password the entered plain text password
+     * @return the authenticated {@link User}, or {@code null} if the username is unknown or the password is wrong
+     * @throws SQLException if the user could not be read
+     */
+    public User authenticate(String username, String password) throws SQLException {
+        User user = userDao.findByUsername(username);
+        if (user == null) {
+            PasswordUtil.verifyPassword(password, DUMMY_HASH);
+            return null;
+        }
+        return user.checkPassword(password) ? user : null;
+    }
+}
@@ -2,11 +2,23 @@ package de.hitec.nhplus.utils;
 
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.time.Month;
+import java.time.Year;
 import java.time.format.DateTimeFormatter;
 
 /**
  * Utility class for converting between {@link String}, {@link LocalDate} and {@link LocalTime}
  * using fixed date and time formats.
+ * <p>
+ * Dates and times are read for every treatment row, so the common case of a well-formed value is handled by a
+ * hand-written fixed-width codec that does not go through the generic {@link DateTimeFormatter} machinery. Every
+ * value the fast path does not accept is handed to the cached formatters, so the results and exceptions are exactly
+ * those of the formatters. This is checked by <code>DateConverterCheck</code> of the benchmarks module, which compares
+ * both for the edge cases of the fast path; run it after changing the codec.
+ * <p>
+ * The values the fast path parses are shared: every minute of the day has one {@link LocalTime} instance, and recently
+ * parsed dates are kept in a small direct-mapped cache, so that the many rows of a list hold references to the same
+ * few objects instead of one copy per row.
  */
 
 public class DateConverter {
@@ -14,6 +26,19 @@ public class DateConverter {
     private static final String DATE_FORMAT = "yyyy-MM-dd";
     private static final String TIME_FORMAT = "HH:mm";
 
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern(DATE_FORMAT);
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern(TIME_FORMAT);
+
+    private static final LocalTime[] TIMES = new LocalTime[24 * 60];
+    private static final int DATE_CACHE_SIZE = 4096;
+    private static final LocalDate[] DATES = new LocalDate[DATE_CACHE_SIZE];
+
+    static {
+        for (int minute = 0; minute < TIMES.length; minute++) {
+            TIMES[minute] = LocalTime.of(minute / 60, minute % 60);
+        }
+    }
+
     /**
      * Converts a date string into a {@link LocalDate} object.
      *
@@ -22,7 +47,8 @@ public class DateConverter {
      */
 
     public static LocalDate convertStringToLocalDate(String date) {
-        return LocalDate.parse(date, DateTimeFormatter.ofPattern(DATE_FORMAT));
+        LocalDate parsed = parseFixedWidthDate(date);
+        return parsed != null ? parsed : LocalDate.parse(date, DATE_FORMATTER);
     }
 
     /**
@@ -33,7 +59,8 @@ public class DateConverter {
      */
 
     public static LocalTime convertStringToLocalTime(String time) {
-        return LocalTime.parse(time, DateTimeFormatter.ofPattern(TIME_FORMAT));
+        LocalTime parsed = parseFixedWidthTime(time);
+        return parsed != null ? parsed : LocalTime.parse(time, TIME_FORMATTER);
     }
 
     /**
@@ -44,11 +71,108 @@ public class DateConverter {
      */
 
     public static String convertLocalDateToString(LocalDate date) {
-        return date.format(DateTimeFormatter.ofPattern(DATE_FORMAT));
+        int year = date.getYear();
+        if (year < 1 || year > 9999) {
+            return date.format(DATE_FORMATTER);
+        }
+        char[] chars = new char[10];
+        writeDigits(chars, 0, year, 4);
+        chars[4] = '-';
+        writeDigits(chars, 5, date.getMonthValue(), 2);
+        chars[7] = '-';
+        writeDigits(chars, 8, date.getDayOfMonth(), 2);
+        return new String(chars);
     }
 
+    /**
+     * Converts a {@link LocalTime} into a formatted string.
+     *
+     * @param time the {@link LocalTime} to convert
+     * @return the time as a string in the format HH:mm
+     */
+
     public static String convertLocalTimeToString(LocalTime time) {
-        return time.format(DateTimeFormatter.ofPattern(TIME_FORMAT));
+        char[] chars = new char[5];
+        writeDigits(chars, 0, time.getHour(), 2);
+        chars[2] = ':';
+        writeDigits(chars, 3, time.getMinute(), 2);
+        return new String(chars);
     }
 
+    /**
+     * Parses a date of exactly the form yyyy-MM-dd with a year from 1 to 9999 and a day that exists in its month.
+     *
+     * @return the date, or null if the fast path does not apply and the formatter has to decide
+     */
+    private static LocalDate parseFixedWidthDate(String date) {
+        if (date == null || date.length() != 10 || date.charAt(4) != '-' || date.charAt(7) != '-') {
+            return null;
+        }
+        int year = readDigits(date, 0, 4);
+        int month = readDigits(date, 5, 2);
+        int day = readDigits(date, 8, 2);
+        if (year < 1 || month < 1 || month > 12 || day < 1) {
+            return null;
+        }
+        // days beyond the end of the month are resolved by the formatter
+        if (day > 28 && day > Month.of(month).length(Year.isLeap(year))) {
+            return null;
+        }
+        return sharedDate(year, month, day);
+    }
+
+    /**
+     * Returns the cached instance of the date, replacing the entry of its slot if it holds another date. Races between
+     * threads only cost an allocation, as dates are immutable.
+     */
+    private static LocalDate sharedDate(int year, int month, int day) {
+        int slot = (year * 372 + month * 31 + day) & (DATE_CACHE_SIZE - 1);
+        LocalDate cached = DATES[slot];
+        if (cached != null && cached.getDayOfMonth() == day && cached.getMonthValue() == month
+                && cached.getYear() == year) {
+            return cached;
+        }
+        LocalDate date = LocalDate.of(year, month, day);
+        DATES[slot] = date;
+        return date;
+    }
+
+    /**
+     * Parses a time of exactly the form HH:mm.
+     *
+     * @return the time, or null if the fast path does not apply and the formatter has to decide
+     */
+    private static LocalTime parseFixedWidthTime(String time) {
+        if (time == null || time.length() != 5 || time.charAt(2) != ':') {
+            return null;
+        }
+        int hour = readDigits(time, 0, 2);
+        int minute = readDigits(time, 3, 2);
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+            return null;
+        }
+        return TIMES[hour * 60 + minute];
+    }
+
+    /**
+     * @return the value of the decimal digits, or -1 if one of the characters is not an ASCII digit
+     */
+    private static int readDigits(String text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static void writeDigits(char[] chars, int start, int value, int count) {
+        for (int i = start + count - 1; i >= start; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
 }
@@ -1,5 +1,6 @@
 package de.hitec.nhplus.utils;
 
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
@@ -30,4 +31,22 @@ public class PasswordUtil {
             throw new RuntimeException("SHA-256 not supported", e);
         }
     }
+
+    /**
+     * Checks whether a plain text password matches a stored password hash. The hashes are compared exactly, as
+     * {@link String#equals(Object)} would, but in constant time, so the duration of the check does not reveal how many
+     * leading characters of the hash match.
+     *
+     * @param password     the plain text password to check
+     * @param passwordHash the stored SHA-256 hash in hexadecimal format, may be null
+     * @return true if the password matches the hash, false otherwise
+     */
+
+    public static boolean verifyPassword(String password, String passwordHash) {
+        byte[] actual = hashPassword(password).getBytes(StandardCharsets.UTF_8);
+        if (passwordHash == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(actual, passwordHash.getBytes(StandardCharsets.UTF_8));
+    }
 }
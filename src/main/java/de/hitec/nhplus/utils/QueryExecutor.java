@@ -0,0 +1,165 @@
+package de.hitec.nhplus.utils;
+
+import de.hitec.nhplus.datastorage.QueryMetrics;
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs database work off the JavaFX application thread.
+ * <p>
+ * Queries are executed by a small pool of daemon threads, so that the user interface keeps responding while SQLite
+ * works. The results are handed back as {@link CompletableFuture}s; continuations that touch the user interface have
+ * to run on {@link #FX_THREAD}. Failures are logged here, so callers only need to handle them if they want to show
+ * them to the user. The number of threads can be configured with the system property
+ * <code>nhplus.query.threads</code> and should not exceed the number of read connections of the pool.
+ */
+public class QueryExecutor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueryExecutor.class);
+
+    private static final int THREADS = Integer.getInteger("nhplus.query.threads", 4);
+
+    /**
+     * Number of rows added to an <code>ObservableList</code> per pulse of the JavaFX application thread, configurable
+     * with the system property <code>nhplus.query.batchSize</code>.
+     */
+    public static final int BATCH_SIZE = Integer.getInteger("nhplus.query.batchSize", 250);
+
+    /**
+     * Executor running its tasks on the JavaFX application thread.
+     */
+    public static final Executor FX_THREAD = Platform::runLater;
+
+    private static ExecutorService executor;
+
+    /**
+     * Runs the given query on a background thread. Its statements are attributed by {@link QueryMetrics} to the
+     * screen that was shown when the query was submitted.
+     *
+     * @param query the query to run
+     * @param <R>   the type of the result of the query
+     * @return a future completed with the result of the query, or exceptionally if the query failed
+     */
+    public static <R> CompletableFuture<R> submit(Query<R> query) {
+        String screen = QueryMetrics.getScreen();
+        CompletableFuture<R> future = CompletableFuture.supplyAsync(() -> {
+            try {
+                return QueryMetrics.withScreen(screen, query::call);
+            } catch (SQLException exception) {
+                throw new CompletionException(exception);
+            }
+        }, getExecutor());
+        future.whenComplete((result, failure) -> {
+            if (failure != null) {
+                LOGGER.error("Datenbankzugriff im Hintergrund ist fehlgeschlagen", failure);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Runs the given command, e.g. an update, on a background thread.
+     *
+     * @param command the command to run
+     * @return a future completed when the command has finished, or exceptionally if the command failed
+     */
+    public static CompletableFuture<Void> execute(Command command) {
+        return submit(() -> {
+            command.run();
+            return null;
+        });
+    }
+
+    /**
+     * Appends rows to a list shown by the user interface in batches of {@link #BATCH_SIZE}, one batch per pulse, so
+     * that large results do not block the JavaFX application thread at once. Must be called on the JavaFX application
+     * thread.
+     *
+     * @param target  the list to append the rows to
+     * @param rows    the rows to append
+     * @param current checked before every batch; once it returns false, the remaining rows are dropped, e.g. because
+     *                a newer load has replaced the list in the meantime
+     * @param <T>     the type of the rows
+     * @return a future completed on the JavaFX application thread when all rows have been appended or dropped
+     */
+    public static <T> CompletableFuture<Void> appendInBatches(ObservableList<T> target, List<T> rows,
+                                                              BooleanSupplier current) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        appendBatch(target, rows, 0, current, done);
+        return done;
+    }
+
+    private static <T> void appendBatch(ObservableList<T> target, List<T> rows, int from, BooleanSupplier current,
+                                        CompletableFuture<Void> done) {
+        if (!current.getAsBoolean()) {
+            done.complete(null);
+            return;
+        }
+        int to = Math.min(rows.size(), from + BATCH_SIZE);
+        target.addAll(rows.subList(from, to));
+        if (to < rows.size()) {
+            Platform.runLater(() -> appendBatch(target, rows, to, current, done));
+        } else {
+            done.complete(null);
+        }
+    }
+
+    /**
+     * Stops the background threads. Queries that have not started yet are dropped.
+     */
+    synchronized public static void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    synchronized private static ExecutorService getExecutor() {
+        if (executor == null) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(THREADS, runnable -> {
+                Thread thread = new Thread(runnable, "nhplus-query-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Database work returning a result.
+     *
+     * @param <R> the type of the result
+     */
+    @FunctionalInterface
+    public interface Query<R> {
+        /**
+         * @return the result of the query
+         * @throws SQLException if a database access error occurs
+         */
+        R call() throws SQLException;
+    }
+
+    /**
+     * Database work without a result.
+     */
+    @FunctionalInterface
+    public interface Command {
+        /**
+         * @throws SQLException if a database access error occurs
+         */
+        void run() throws SQLException;
+    }
+}
@@ -7,8 +7,11 @@ import de.hitec.nhplus.model.Treatment;
 import de.hitec.nhplus.model.User;
 
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 
 import static de.hitec.nhplus.utils.DateConverter.convertStringToLocalDate;
 import static de.hitec.nhplus.utils.DateConverter.convertStringToLocalTime;
@@ -16,118 +19,72 @@ import static de.hitec.nhplus.utils.DateConverter.convertStringToLocalTime;
 /**
  * Call static class provides to static methods to set up and wipe the database. It uses the class ConnectionBuilder
  * and its path to build up the connection to the database. The class is executable. Executing the class will build
- * up a connection to the database and calls setUpDb() to wipe the database, build up a clean database and fill the
- * database with some test data.
+ * up a connection to the database, bring its schema up to date with the {@link MigrationRunner} and fill an empty
+ * database with some test data. Existing data is only wiped if the argument <code>--wipe</code> is given.
  */
 public class SetUpDB {
 
+    private static final String WIPE_ARGUMENT = "--wipe";
+
     /**
-     * This method wipes the database by dropping the tables. Then the method calls DDL statements to build it up from
-     * scratch and DML statements to fill the database with hard coded test data.
+     * This method brings the schema of the database up to date and, if the database does not contain any data yet,
+     * fills it with hard coded test data. Existing data is kept.
      */
     public static void setUpDb() {
+        setUpDb(false);
+    }
+
+    /**
+     * This method brings the schema of the database up to date and, if the database does not contain any data yet,
+     * fills it with hard coded test data.
+     *
+     * @param wipe true to drop all tables first, which deletes all data
+     */
+    public static void setUpDb(boolean wipe) {
         Connection connection = ConnectionBuilder.getConnection();
-        SetUpDB.wipeDb(connection);
-        SetUpDB.setUpTablePatient(connection);
-        SetUpDB.setUpTableNurse(connection);
-        SetUpDB.setUpTableUser(connection);
-        SetUpDB.setUpTableTreatment(connection);
+        if (wipe) {
+            SetUpDB.wipeDb(connection);
+        }
+        try {
+            MigrationRunner.migrate(ConnectionBuilder.getConnectionPool());
+            if (!SetUpDB.isEmpty(connection)) {
+                System.out.println("Die Datenbank enthält bereits Daten, es werden keine Testdaten angelegt.");
+                return;
+            }
+        } catch (SQLException exception) {
+            exception.printStackTrace();
+            return;
+        }
         SetUpDB.setUpNurse();
         SetUpDB.setUpUsers();
         SetUpDB.setUpPatients();
         SetUpDB.setUpTreatments();
-
-
     }
 
     /**
-     * This method wipes the database by dropping the tables.
+     * This method wipes the database by dropping the tables, including the recorded schema version.
      */
     public static void wipeDb(Connection connection) {
         try (Statement statement = connection.createStatement()) {
-            statement.execute("DROP TABLE treatment");
-            statement.execute("DROP TABLE patient");
-            statement.execute("DROP TABLE nurse");
-            statement.execute("DROP TABLE user");
-        } catch (SQLException exception) {
-            System.out.println(exception.getMessage());
-        }
-    }
-
-    private static void setUpTablePatient(Connection connection) {
-
-        final String SQL = "CREATE TABLE IF NOT EXISTS patient (" + "   pid INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                "   firstname TEXT NOT NULL, " + "   surname TEXT NOT NULL, " + "   dateOfBirth TEXT NOT NULL, " +
-                "   carelevel TEXT NOT NULL, " + "   roomnumber TEXT NOT NULL, " + "status TEXT NOT NULL," +
-                "deletionDate DATE," + "archiveDate DATE," + "changedBy TEXT," +
-                "            deletedBy TEXT);";
-
-        try (Statement statement = connection.createStatement()) {
-            statement.execute(SQL);
-        } catch (SQLException exception) {
-            System.out.println(exception.getMessage());
-        }
-    }
-
-    private static void setUpTableNurse(Connection connection) {
-        final String SQL = "CREATE TABLE IF NOT EXISTS nurse (" + "   nid INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                "   firstname TEXT NOT NULL, " + "   surname TEXT NOT NULL, " + "  phonenumber TEXT NOT NULL, " +
-                "status TEXT NOT NULL,"+"deletionDate DATE, "+"archiveDate DATE,"+"changedBy TEXT," +
-                "            deletedBy TEXT);";
-        try (Statement statement = connection.createStatement()) {
-            statement.execute(SQL);
-
+            statement.execute("DROP TABLE IF EXISTS treatment_fts");
+            statement.execute("DROP TABLE IF EXISTS treatment");
+            statement.execute("DROP TABLE IF EXISTS patient");
+            statement.execute("DROP TABLE IF EXISTS nurse");
+            statement.execute("DROP TABLE IF EXISTS user");
+            statement.execute("DROP TABLE IF EXISTS change_counter");
+            statement.execute("DROP TABLE IF EXISTS change_tombstone");
+            statement.execute("DROP TABLE IF EXISTS schema_version");
         } catch (SQLException exception) {
             System.out.println(exception.getMessage());
         }
+        DaoFactory.getDaoFactory().clearCaches();
     }
 
-
-    private static void setUpTableTreatment(Connection connection) {
-        final String SQL = """
-    CREATE TABLE IF NOT EXISTS treatment (
-        tid INTEGER PRIMARY KEY AUTOINCREMENT,
-        pid INTEGER NOT NULL,
-        treatment_date TEXT NOT NULL,
-        begin TEXT NOT NULL,
-        end TEXT NOT NULL,
-        description TEXT NOT NULL,
-        remark TEXT NOT NULL,
-        nid INTEGER NOT NULL,
-        status TEXT NOT NULL,
-        deletionDate DATE,
-        archiveDate DATE,
-        changedBy TEXT,
-        deletedBy TEXT,
-        FOREIGN KEY (pid) REFERENCES patient (pid) ON DELETE CASCADE,
-        FOREIGN KEY (nid) REFERENCES nurse (nid) ON DELETE CASCADE
-    );
-""";
-
-
-        try (Statement statement = connection.createStatement()) {
-            statement.execute(SQL);
-
-        } catch (SQLException exception) {
-
-        }
-    }
-
-    private static void setUpTableUser(Connection connection) {
-        final String SQL = "CREATE TABLE IF NOT EXISTS user (" +
-
-                "   firstname TEXT NOT NULL, " +
-                "   surname TEXT NOT NULL, " +
-                "   id INTEGER PRIMARY KEY AUTOINCREMENT, "+
-                "   username TEXT UNIQUE NOT NULL, " +
-                "   password_hash TEXT NOT NULL," +
-                "   role TEXT NOT NULL" +
-                ");";
-
-        try (Statement statement = connection.createStatement()) {
-            statement.execute(SQL);
-        } catch (SQLException exception) {
-
+    private static boolean isEmpty(Connection connection) throws SQLException {
+        final String SQL = "SELECT EXISTS (SELECT 1 FROM patient) OR EXISTS (SELECT 1 FROM nurse) OR " +
+                "EXISTS (SELECT 1 FROM user) OR EXISTS (SELECT 1 FROM treatment)";
+        try (Statement statement = connection.createStatement(); ResultSet result = statement.executeQuery(SQL)) {
+            return result.next() && result.getInt(1) == 0;
         }
     }
 
@@ -170,40 +127,42 @@ public class SetUpDB {
     private static void setUpTreatments() {
         try {
             TreatmentDao dao = DaoFactory.getDaoFactory().createTreatmentDao();
-            dao.create(new Treatment(1, 1, convertStringToLocalDate("2023-06-03"), convertStringToLocalTime("11:00"),
+            List<Treatment> treatments = new ArrayList<>();
+            treatments.add(new Treatment(1, 1, convertStringToLocalDate("2023-06-03"), convertStringToLocalTime("11:00"),
                     convertStringToLocalTime("15:00"), "Gespräch",
                     "Der Patient hat enorme Angstgefühle und glaubt, er sei überfallen worden. Ihm seien alle " +
                             "Wertsachen gestohlen worden.\nPatient beruhigt sich erst, als alle Wertsachen im Zimmer " +
                             "gefunden worden sind.", 1,Treatment.STATUS_ACTIVE,null,null,null,null));
-            dao.create(new Treatment(2, 1, convertStringToLocalDate("2023-06-05"), convertStringToLocalTime("11:00"),
+            treatments.add(new Treatment(2, 1, convertStringToLocalDate("2023-06-05"), convertStringToLocalTime("11:00"),
                     convertStringToLocalTime("12:30"), "Gespräch",
                     "Patient irrt auf der Suche nach gestohlenen Wertsachen durch die Etage und bezichtigt andere " +
                             "Bewohner des Diebstahls.\nPatient wird in seinen Raum zurückbegleitet und erhält " +
                             "Beruhigungsmittel.", 2,Treatment.STATUS_ACTIVE,null,null,null,null));
-            dao.create(new Treatment(3, 2, convertStringToLocalDate("2023-06-04"), convertStringToLocalTime("07:30"),
+            treatments.add(new Treatment(3, 2, convertStringToLocalDate("2023-06-04"), convertStringToLocalTime("07:30"),
                     convertStringToLocalTime("08:00"), "Waschen",
                     "Patient mit Waschlappen gewaschen und frisch angezogen. Patient gewendet.", 1,Treatment.STATUS_ACTIVE,null,null,null,null));
-            dao.create(new Treatment(4, 1, convertStringToLocalDate("2023-06-06"), convertStringToLocalTime("15:10"),
+            treatments.add(new Treatment(4, 1, convertStringToLocalDate("2023-06-06"), convertStringToLocalTime("15:10"),
                     convertStringToLocalTime("16:00"), "Spaziergang",
                     "Spaziergang im Park, Patient döst  im Rollstuhl ein", 2,Treatment.STATUS_ACTIVE,null,null,null,null));
-            dao.create(new Treatment(8, 1, convertStringToLocalDate("2023-06-08"), convertStringToLocalTime("15:00"),
+            treatments.add(new Treatment(8, 1, convertStringToLocalDate("2023-06-08"), convertStringToLocalTime("15:00"),
                     convertStringToLocalTime("16:00"), "Spaziergang",
                     "Parkspaziergang; Patient ist heute lebhafter und hat klare Momente; erzählt von seiner Tochter",
                     2,Treatment.STATUS_ACTIVE,null,null,null,null));
-            dao.create(new Treatment(9, 2, convertStringToLocalDate("2023-06-07"), convertStringToLocalTime("11:00"),
+            treatments.add(new Treatment(9, 2, convertStringToLocalDate("2023-06-07"), convertStringToLocalTime("11:00"),
                     convertStringToLocalTime("11:30"), "Waschen",
                     "Waschen per Dusche auf einem Stuhl; Patientin gewendet;", 4,Treatment.STATUS_ACTIVE,null,null,null,null));
-            dao.create(new Treatment(12, 5, convertStringToLocalDate("2023-06-08"), convertStringToLocalTime("15:00"),
+            treatments.add(new Treatment(12, 5, convertStringToLocalDate("2023-06-08"), convertStringToLocalTime("15:00"),
                     convertStringToLocalTime("15:30"), "Physiotherapie",
                     "Übungen zur Stabilisation und Mobilisierung der Rückenmuskulatur", 1,Treatment.STATUS_ACTIVE,null,null,null,null));
-            dao.create(new Treatment(14, 4, convertStringToLocalDate("2023-08-24"), convertStringToLocalTime("09:30"),
+            treatments.add(new Treatment(14, 4, convertStringToLocalDate("2023-08-24"), convertStringToLocalTime("09:30"),
                     convertStringToLocalTime("10:15"), "KG", "Lympfdrainage", 2,Treatment.STATUS_ACTIVE,null,null,null,null));
-            dao.create(new Treatment(16, 6, convertStringToLocalDate("2023-08-31"), convertStringToLocalTime("13:30"),
+            treatments.add(new Treatment(16, 6, convertStringToLocalDate("2023-08-31"), convertStringToLocalTime("13:30"),
                     convertStringToLocalTime("13:45"), "Toilettengang",
                     "Hilfe beim Toilettengang; Patientin klagt über Schmerzen beim Stuhlgang. Gabe von Iberogast", 1,Treatment.STATUS_ACTIVE,null,null,null,null));
-            dao.create(new Treatment(17, 6, convertStringToLocalDate("2023-09-01"), convertStringToLocalTime("16:00"),
+            treatments.add(new Treatment(17, 6, convertStringToLocalDate("2023-09-01"), convertStringToLocalTime("16:00"),
                     convertStringToLocalTime("17:00"), "KG",
                     "Massage der Extremitäten zur Verbesserung der Durchblutung", 2,Treatment.STATUS_ACTIVE,null,null,null,null));
+            dao.createAll(treatments);
         } catch (SQLException exception) {
             exception.printStackTrace();
         }
@@ -222,7 +181,7 @@ public class SetUpDB {
     }
 
     public static void main(String[] args) {
-        SetUpDB.setUpDb();
+        SetUpDB.setUpDb(args.length > 0 && WIPE_ARGUMENT.equals(args[0]));
 
     }
 }
@@ -0,0 +1,363 @@
+package de.hitec.nhplus.utils;
+
+import de.hitec.nhplus.datastorage.ConnectionBuilder;
+import de.hitec.nhplus.datastorage.DaoFactory;
+import de.hitec.nhplus.datastorage.DatabaseProfile;
+import de.hitec.nhplus.datastorage.NurseDao;
+import de.hitec.nhplus.datastorage.PatientDao;
+import de.hitec.nhplus.datastorage.TreatmentDao;
+import de.hitec.nhplus.model.Nurse;
+import de.hitec.nhplus.model.Patient;
+import de.hitec.nhplus.model.Treatment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Generates a realistic population of nurses, patients and treatments of a configurable size, e.g. for load tests and
+ * benchmarks.
+ * <p>
+ * The data only depends on the seed and the sizes, so the same arguments always generate the same rows. Every
+ * patient gets the same number of treatments; the treatments are spread evenly over the given number of years up to
+ * a fixed date and are created in chronological order, as they would have been entered. Remarks vary in length from a
+ * few words to long notes, and a small share of the treatments is marked for deletion.
+ * <p>
+ * The rows are written through {@link de.hitec.nhplus.datastorage.Dao#createAll(Collection)}, one transaction per
+ * table, and are generated while they are written, so that even millions of treatments do not have to fit into
+ * memory at once. The class is executable; see {@link #main(String[])} for its arguments.
+ */
+public class SyntheticDataGenerator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SyntheticDataGenerator.class);
+
+    private static final String[] FIRST_NAMES = {"Anna", "Maria", "Ursula", "Monika", "Elisabeth", "Gertrud",
+            "Helga", "Renate", "Peter", "Michael", "Thomas", "Hans", "Klaus", "Jürgen", "Wolfgang", "Günter", "Heinz",
+            "Karin", "Sabine", "Petra", "Stefan", "Frank", "Ahmet", "Fatma", "Olga", "Piotr"};
+    private static final String[] SURNAMES = {"Müller", "Schmidt", "Schneider", "Fischer", "Weber", "Meyer",
+            "Wagner", "Becker", "Schulz", "Hoffmann", "Schäfer", "Koch", "Bauer", "Richter", "Klein", "Wolf",
+            "Schröder", "Neumann", "Schwarz", "Zimmermann", "Braun", "Krüger", "Yilmaz", "Kaya", "Nowak", "Kowalski"};
+    private static final String[] DESCRIPTIONS = {"Waschen", "Verbandswechsel", "Medikamentengabe", "Mobilisation",
+            "Blutdruckmessung", "Blutzuckermessung", "Lagerung", "Essen reichen", "Gespräch", "Wundversorgung",
+            "Insulingabe", "Kompressionsstrümpfe anziehen", "Katheterpflege", "Sturzprophylaxe", "Arztvisite"};
+    private static final String[] REMARK_PHRASES = {"Patient/in war gut gelaunt.", "Keine Auffälligkeiten.",
+            "Hat über Schmerzen im Rücken geklagt.", "Blutdruck leicht erhöht, Arzt informiert.",
+            "Wunde heilt gut, keine Rötung.", "Hat wenig gegessen und getrunken.", "Angehörige waren zu Besuch.",
+            "Schlief unruhig in der Nacht.", "Mobilisation mit Rollator bis zum Aufenthaltsraum.",
+            "Medikamente vollständig eingenommen.", "Haut an der Ferse gerötet, Lagerung angepasst.",
+            "War zeitlich nicht orientiert.", "Hat an der Gruppenaktivität teilgenommen."};
+
+    /**
+     * Median length of a remark in characters. The lengths are log-normally distributed around it; a remark ends with
+     * the first phrase that reaches its length, but stops at about {@link #MAX_REMARK_LENGTH}.
+     */
+    private static final int MEDIAN_REMARK_LENGTH = 120;
+    private static final int MAX_REMARK_LENGTH = 2000;
+    private static final double DELETED_SHARE = 0.02;
+
+    private final long seed;
+    private final int patients;
+    private final int nurses;
+    private final int treatmentsPerPatient;
+    private final int years;
+    private final LocalDate until;
+
+    /**
+     * Creates a generator. Nothing is generated before {@link #generate(NurseDao, PatientDao, TreatmentDao)} is
+     * called.
+     *
+     * @param seed                 the seed all data is derived from
+     * @param patients             the number of patients
+     * @param nurses               the number of nurses
+     * @param treatmentsPerPatient the number of treatments of every patient
+     * @param years                the number of years the treatments are spread over
+     * @param until                the date of the last treatments
+     */
+    public SyntheticDataGenerator(long seed, int patients, int nurses, int treatmentsPerPatient, int years,
+                                  LocalDate until) {
+        if (patients < 1 || nurses < 1 || treatmentsPerPatient < 0 || years < 1) {
+            throw new IllegalArgumentException("patients, nurses and years must be at least 1, " +
+                    "treatmentsPerPatient must not be negative");
+        }
+        if ((long) patients * treatmentsPerPatient > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("patients * treatmentsPerPatient must not exceed Integer.MAX_VALUE");
+        }
+        this.seed = seed;
+        this.patients = patients;
+        this.nurses = nurses;
+        this.treatmentsPerPatient = treatmentsPerPatient;
+        this.years = years;
+        this.until = until;
+    }
+
+    /**
+     * Generates the nurses, the patients and their treatments and writes them through the given DAOs.
+     *
+     * @param nurseDao     the DAO the nurses are created with
+     * @param patientDao   the DAO the patients are created with
+     * @param treatmentDao the DAO the treatments are created with
+     * @return the numbers of created rows
+     * @throws SQLException if the rows could not be created; the tables that were completed before stay filled
+     */
+    public Report generate(NurseDao nurseDao, PatientDao patientDao, TreatmentDao treatmentDao) throws SQLException {
+        long start = System.nanoTime();
+        List<Long> nids = nurseDao.createAll(generated(this.nurses, this.seed, () -> this::nextNurse));
+        List<Long> pids = patientDao.createAll(generated(this.patients, this.seed + 1, () -> this::nextPatient));
+        List<Long> tids = treatmentDao.createAll(generated(this.patients * this.treatmentsPerPatient, this.seed + 2,
+                () -> new TreatmentSource(nids, pids)::next));
+        return new Report(nids.size(), pids.size(), tids.size(), Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private Nurse nextNurse(Random random) {
+        return new Nurse(pick(FIRST_NAMES, random), pick(SURNAMES, random),
+                String.format("0%d-%07d", 151 + random.nextInt(30), random.nextInt(10_000_000)),
+                Nurse.STATUS_ACTIVE, null, null, null, null);
+    }
+
+    private Patient nextPatient(Random random) {
+        LocalDate dateOfBirth = LocalDate.of(1920 + random.nextInt(40), 1 + random.nextInt(12), 1 + random.nextInt(28));
+        String roomNumber = String.format("%d%02d", random.nextInt(4), 1 + random.nextInt(40));
+        return new Patient(pick(FIRST_NAMES, random), pick(SURNAMES, random), dateOfBirth,
+                String.valueOf(1 + random.nextInt(5)), roomNumber, Patient.STATUS_ACTIVE, null, null, null, null);
+    }
+
+    /**
+     * Builds a remark of log-normally distributed length from the remark phrases.
+     */
+    private static String nextRemark(Random random) {
+        int length = (int) Math.min(MAX_REMARK_LENGTH,
+                Math.round(MEDIAN_REMARK_LENGTH * Math.exp(0.8 * random.nextGaussian())));
+        StringBuilder remark = new StringBuilder(length + 64);
+        while (remark.length() < length) {
+            if (!remark.isEmpty()) {
+                remark.append(' ');
+            }
+            remark.append(pick(REMARK_PHRASES, random));
+        }
+        return remark.toString();
+    }
+
+    private static String pick(String[] values, Random random) {
+        return values[random.nextInt(values.length)];
+    }
+
+    /**
+     * Returns a collection of the given size whose elements are generated while it is iterated. Every iteration
+     * starts over with a new generator and a random number generator with the given seed, so it returns the same
+     * elements.
+     */
+    private static <T> Collection<T> generated(int size, long seed, Supplier<Function<Random, T>> generators) {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<T> iterator() {
+                Random iterationRandom = new Random(seed);
+                Function<Random, T> generator = generators.get();
+                return new Iterator<>() {
+                    private int index;
+
+                    @Override
+                    public boolean hasNext() {
+                        return this.index < size;
+                    }
+
+                    @Override
+                    public T next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        this.index++;
+                        return generator.apply(iterationRandom);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Hands out the treatments of one iteration in chronological order. Each round of as many treatments as there are
+     * patients visits every patient once, in a random order, so that every patient ends up with the same number of
+     * treatments.
+     */
+    private final class TreatmentSource {
+        private final List<Long> nids;
+        private final List<Long> pids;
+        private final LocalDate first;
+        private final long days;
+        private final long total;
+        private final int[] order;
+        private long index;
+
+        TreatmentSource(List<Long> nids, List<Long> pids) {
+            this.nids = nids;
+            this.pids = pids;
+            this.first = until.minusYears(years).plusDays(1);
+            this.days = ChronoUnit.DAYS.between(this.first, until) + 1;
+            this.total = (long) pids.size() * treatmentsPerPatient;
+            this.order = new int[pids.size()];
+        }
+
+        Treatment next(Random random) {
+            int slot = (int) (this.index % this.order.length);
+            if (slot == 0) {
+                shuffle(random);
+            }
+            LocalDate date = this.first.plusDays(this.index * this.days / this.total);
+            this.index++;
+            LocalTime begin = LocalTime.of(6 + random.nextInt(14), 15 * random.nextInt(4));
+            LocalTime end = begin.plusMinutes(15L * (1 + random.nextInt(6)));
+            Treatment treatment = new Treatment(this.pids.get(this.order[slot]), date, begin, end,
+                    pick(DESCRIPTIONS, random), nextRemark(random), this.nids.get(random.nextInt(this.nids.size())),
+                    Treatment.STATUS_ACTIVE, null, null, null, null);
+            if (random.nextDouble() < DELETED_SHARE) {
+                treatment.setStatus(Treatment.STATUS_INACTIVE);
+                treatment.setArchiveDate(date);
+                treatment.setDeletionDate(date.plusYears(10));
+            }
+            return treatment;
+        }
+
+        private void shuffle(Random random) {
+            for (int i = 0; i < this.order.length; i++) {
+                int j = random.nextInt(i + 1);
+                this.order[i] = this.order[j];
+                this.order[j] = i;
+            }
+        }
+    }
+
+    /**
+     * Generates data into the database of the application. Unless another profile is chosen with the system property
+     * <code>nhplus.db.profile</code>, the bulk import profile is used. The schema and the test data of
+     * {@link SetUpDB} are set up first. Arguments, all optional:
+     * <ul>
+     *     <li><code>--patients=N</code>, default 10000</li>
+     *     <li><code>--nurses=M</code>, default 200</li>
+     *     <li><code>--treatments-per-patient=K</code>, default 100</li>
+     *     <li><code>--years=Y</code>, the period the treatments are spread over, default 3</li>
+     *     <li><code>--until=yyyy-MM-dd</code>, the date of the last treatments, default 2024-12-31</li>
+     *     <li><code>--seed=S</code>, default 42</li>
+     *     <li><code>--wipe</code>, drops all data first</li>
+     * </ul>
+     * The process exits with status 2 if the arguments are invalid and with status 1 if the data could not be
+     * generated.
+     *
+     * @param args the arguments
+     */
+    public static void main(String[] args) {
+        long seed = 42;
+        int patients = 10_000;
+        int nurses = 200;
+        int treatmentsPerPatient = 100;
+        int years = 3;
+        LocalDate until = LocalDate.of(2024, 12, 31);
+        boolean wipe = false;
+        try {
+            for (String arg : args) {
+                String value = arg.substring(arg.indexOf('=') + 1);
+                if (arg.equals("--wipe")) {
+                    wipe = true;
+                } else if (arg.startsWith("--patients=")) {
+                    patients = Integer.parseInt(value);
+                } else if (arg.startsWith("--nurses=")) {
+                    nurses = Integer.parseInt(value);
+                } else if (arg.startsWith("--treatments-per-patient=")) {
+                    treatmentsPerPatient = Integer.parseInt(value);
+                } else if (arg.startsWith("--years=")) {
+                    years = Integer.parseInt(value);
+                } else if (arg.startsWith("--until=")) {
+                    until = DateConverter.convertStringToLocalDate(value);
+                } else if (arg.startsWith("--seed=")) {
+                    seed = Long.parseLong(value);
+                } else {
+                    throw new IllegalArgumentException("Unbekanntes Argument: " + arg);
+                }
+            }
+        } catch (RuntimeException exception) {
+            System.err.println(exception.getMessage());
+            System.err.println("Aufruf: SyntheticDataGenerator [--patients=N] [--nurses=M] " +
+                    "[--treatments-per-patient=K] [--years=Y] [--until=yyyy-MM-dd] [--seed=S] [--wipe]");
+            System.exit(2);
+            return;
+        }
+
+        if (System.getProperty("nhplus.db.profile") == null) {
+            ConnectionBuilder.setProfile(DatabaseProfile.BULK_IMPORT);
+        }
+        SetUpDB.setUpDb(wipe);
+        DaoFactory daoFactory = DaoFactory.getDaoFactory();
+        SyntheticDataGenerator generator =
+                new SyntheticDataGenerator(seed, patients, nurses, treatmentsPerPatient, years, until);
+        boolean failed = false;
+        try {
+            System.out.println(generator.generate(daoFactory.createNurseDAO(), daoFactory.createPatientDAO(),
+                    daoFactory.createTreatmentDao()));
+        } catch (SQLException | RuntimeException exception) {
+            LOGGER.error("Testdaten konnten nicht erzeugt werden", exception);
+            failed = true;
+        } finally {
+            ConnectionBuilder.closeConnection();
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Immutable result of {@link #generate(NurseDao, PatientDao, TreatmentDao)}.
+     */
+    public static final class Report {
+        private final int nurses;
+        private final int patients;
+        private final int treatments;
+        private final Duration duration;
+
+        Report(int nurses, int patients, int treatments, Duration duration) {
+            this.nurses = nurses;
+            this.patients = patients;
+            this.treatments = treatments;
+            this.duration = duration;
+        }
+
+        /**
+         * Getter Methods
+         */
+
+        public int getNurses() {
+            return nurses;
+        }
+
+        public int getPatients() {
+            return patients;
+        }
+
+        public int getTreatments() {
+            return treatments;
+        }
+
+        public Duration getDuration() {
+            return duration;
+        }
+
+        public String toString() {
+            return "Erzeugt: " + this.nurses + " Pflegekräfte, " + this.patients + " Patienten, " + this.treatments +
+                    " Behandlungen in " + this.duration.toMillis() + " ms";
+        }
+    }
+}
@@ -0,0 +1,399 @@
+package de.hitec.nhplus.utils;
+
+import de.hitec.nhplus.datastorage.ChangeTracked;
+import javafx.collections.ObservableList;
+import javafx.geometry.Orientation;
+import javafx.scene.Node;
+import javafx.scene.control.ProgressIndicator;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.control.TableView;
+import javafx.scene.input.ScrollEvent;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * Fills the items of a {@link TableView} page by page while the user scrolls.
+ * <p>
+ * Only the first page is read when the table is shown. The next page is read when the vertical scroll bar of the
+ * table reaches its end, when the user scrolls down with the mouse wheel while all rows fit into the table, or when
+ * the last row is selected with the keyboard. Pages are read by keyset pagination: every page starts after the key of
+ * the last row that is already shown.
+ * <p>
+ * Pages are read in the background by the {@link QueryExecutor} and appended in batches. While the first page is
+ * read, the table shows a progress indicator. Showing another source supersedes all loads of the previous one: their
+ * results are dropped, even if they arrive later.
+ * <p>
+ * If the source is shown together with a {@link ChangeTracked} DAO, the pager remembers the change version of the
+ * table before the first page is read. After writes, {@link #refresh()} reads only the rows changed since that version
+ * and patches the rows that are shown in place, instead of reading all pages again. Patching relies on the rows being
+ * shown in ascending order of their keys. If the changes since that version cannot be read anymore, because their
+ * tombstones have been pruned, the pages are read again.
+ *
+ * @param <T> the type of the rows of the table
+ */
+public class TablePager<T> {
+
+    /**
+     * Number of rows per page, configurable with the system property <code>nhplus.table.pageSize</code>.
+     */
+    public static final int DEFAULT_PAGE_SIZE = Integer.getInteger("nhplus.table.pageSize", 100);
+
+    private final TableView<T> tableView;
+    private final ObservableList<T> items;
+    private final ToLongFunction<T> keyExtractor;
+    private final int pageSize;
+    private PageLoader<T> pageLoader;
+    private Long lastKey;
+    private boolean lastPageLoaded = true;
+    private boolean loading;
+    private ChangeTracked<T> changeSource;
+    private Predicate<? super T> visible;
+    private Long changeVersion;
+    private boolean refreshing;
+    private boolean refreshRequested;
+    private Runnable pendingChanges;
+    private volatile int generation;
+    private ScrollBar verticalScrollBar;
+    private final Node placeholder;
+
+    /**
+     * Creates a pager for the given table.
+     *
+     * @param tableView    The table whose scrolling triggers reading the next page.
+     * @param items        The list the rows are added to, usually the items of the table.
+     * @param keyExtractor Returns the key a row is paged by, e.g. its primary key.
+     * @param pageSize     The maximum number of rows read at once.
+     */
+    public TablePager(TableView<T> tableView, ObservableList<T> items, ToLongFunction<T> keyExtractor, int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("pageSize must be at least 1");
+        }
+        this.tableView = tableView;
+        this.items = items;
+        this.keyExtractor = keyExtractor;
+        this.pageSize = pageSize;
+        this.placeholder = tableView.getPlaceholder();
+
+        this.tableView.skinProperty().addListener((observable, oldSkin, newSkin) -> attachScrollBar());
+        if (this.tableView.getSkin() != null) {
+            attachScrollBar();
+        }
+        this.tableView.addEventFilter(ScrollEvent.SCROLL, event -> {
+            if (event.getDeltaY() < 0 && (this.verticalScrollBar == null || !this.verticalScrollBar.isVisible())) {
+                loadNextPage();
+            }
+        });
+        this.tableView.getSelectionModel().selectedIndexProperty().addListener((observable, oldIndex, newIndex) -> {
+            if (newIndex.intValue() >= 0 && newIndex.intValue() == this.items.size() - 1) {
+                loadNextPage();
+            }
+        });
+    }
+
+    /**
+     * Removes all rows and shows the first page of the given source. Further pages are read from the same source
+     * while the user scrolls.
+     *
+     * @param pageLoader The source of the pages.
+     */
+    public void show(PageLoader<T> pageLoader) {
+        reset(pageLoader);
+        loadNextPage();
+    }
+
+    /**
+     * Removes all rows and shows the first page of the given source, like {@link #show(PageLoader)}. The change
+     * version of the table is read before the first page, so that {@link #refresh()} can patch the rows later.
+     *
+     * @param pageLoader   The source of the pages.
+     * @param changeSource The DAO of the table the pages are read from.
+     * @param visible      Decides whether a changed row belongs to the rows of the source, e.g. whether it matches
+     *                     the conditions of the page loader.
+     */
+    public void show(PageLoader<T> pageLoader, ChangeTracked<T> changeSource, Predicate<? super T> visible) {
+        reset(pageLoader);
+        this.changeSource = changeSource;
+        this.visible = visible;
+        this.loading = true;
+        int loadGeneration = this.generation;
+        QueryExecutor.submit(changeSource::getChangeVersion).whenCompleteAsync((version, failure) -> {
+            if (!isCurrent(loadGeneration)) {
+                return;
+            }
+            this.loading = false;
+            if (failure != null) {
+                // the pages are read from scratch anyway; without a version, refreshing falls back to reading them
+                this.changeSource = null;
+                this.refreshRequested = false;
+            } else {
+                this.changeVersion = version;
+            }
+            loadNextPage();
+            if (this.refreshRequested) {
+                this.refreshRequested = false;
+                refresh();
+            }
+        }, QueryExecutor.FX_THREAD);
+    }
+
+    /**
+     * Reads the rows changed since the rows that are shown have been read and patches them in place, see
+     * {@link #applyChanges(Collection, Collection, Predicate)}. Call it after writes to the table. Refreshes run one
+     * after the other; calling it while a refresh is running refreshes once more afterwards. Without a change source,
+     * all rows are read again. Must be called on the JavaFX application thread.
+     */
+    public void refresh() {
+        if (this.pageLoader == null) {
+            return;
+        }
+        if (this.changeSource == null) {
+            show(this.pageLoader);
+            return;
+        }
+        if (this.refreshing || this.changeVersion == null) {
+            this.refreshRequested = true;
+            return;
+        }
+        this.refreshing = true;
+        int refreshGeneration = this.generation;
+        ChangeTracked<T> source = this.changeSource;
+        long since = this.changeVersion;
+        QueryExecutor.submit(() -> source.readChangesSince(since)).whenCompleteAsync((changes, failure) -> {
+            if (!isCurrent(refreshGeneration)) {
+                return;
+            }
+            this.refreshing = false;
+            if (failure == null && changes.isExpired()) {
+                show(this.pageLoader, source, this.visible);
+                return;
+            }
+            if (failure == null) {
+                this.changeVersion = changes.getVersion();
+                applyChanges(changes.getChanged(), changes.getDeletedKeys(), this.visible);
+            }
+            if (this.refreshRequested) {
+                this.refreshRequested = false;
+                refresh();
+            }
+        }, QueryExecutor.FX_THREAD);
+    }
+
+    /**
+     * Shows a row that has just been created through the DAO of the table, without reading anything. Like a changed
+     * row, it is inserted at the position of its key if it is visible and its key lies within the pages that have
+     * already been read; otherwise a later page contains it. Without a change source, e.g. while search results are
+     * shown, the rows are read again as by {@link #refresh()}. Must be called on the JavaFX application thread.
+     *
+     * @param row The created row, with its key set.
+     */
+    public void insert(T row) {
+        if (this.changeSource == null) {
+            refresh();
+            return;
+        }
+        applyChanges(List.of(row), List.of(), this.visible);
+    }
+
+    /**
+     * Removes all rows. No pages are read until {@link #show(PageLoader)} is called again.
+     */
+    public void clear() {
+        reset(null);
+        this.lastPageLoaded = true;
+    }
+
+    /**
+     * Starts reading the next page in the background, unless a page is already being read or the last page has
+     * already been read. The page is appended to the rows on the JavaFX application thread.
+     *
+     * @return true if a page is being read, false otherwise
+     */
+    public boolean loadNextPage() {
+        if (this.pageLoader == null || this.lastPageLoaded || this.loading) {
+            return false;
+        }
+        this.loading = true;
+        int loadGeneration = this.generation;
+        PageLoader<T> loader = this.pageLoader;
+        Long afterKey = this.lastKey;
+        if (this.items.isEmpty()) {
+            this.tableView.setPlaceholder(new ProgressIndicator());
+        }
+        QueryExecutor.submit(() -> isCurrent(loadGeneration) ? loader.loadPage(afterKey, this.pageSize) : List.<T>of())
+                .whenCompleteAsync((page, failure) -> {
+                    if (!isCurrent(loadGeneration)) {
+                        return;
+                    }
+                    this.tableView.setPlaceholder(this.placeholder);
+                    if (failure != null) {
+                        this.loading = false;
+                        applyPendingChanges();
+                        return;
+                    }
+                    if (page.size() < this.pageSize) {
+                        this.lastPageLoaded = true;
+                    }
+                    if (page.isEmpty()) {
+                        this.loading = false;
+                        applyPendingChanges();
+                        return;
+                    }
+                    this.lastKey = this.keyExtractor.applyAsLong(page.get(page.size() - 1));
+                    QueryExecutor.appendInBatches(this.items, page, () -> isCurrent(loadGeneration))
+                            .thenRun(() -> {
+                                if (isCurrent(loadGeneration)) {
+                                    this.loading = false;
+                                    applyPendingChanges();
+                                }
+                            });
+                }, QueryExecutor.FX_THREAD);
+        return true;
+    }
+
+    /**
+     * Patches the rows that are shown with rows that have been inserted, updated or deleted since they were read, so
+     * that the table does not have to be read again. Changed rows that are shown are replaced, and removed if they are
+     * no longer visible. Changed rows that are not shown yet are inserted at the position of their key if they are
+     * visible and their key lies within the pages that have already been read; later pages contain them anyway. Must
+     * be called on the JavaFX application thread. While a page is being appended, the changes are applied afterwards.
+     *
+     * @param changed     The inserted or updated rows, in their current state.
+     * @param deletedKeys The keys of the deleted rows.
+     * @param visible     Decides whether a changed row belongs to the rows of the current source, e.g. whether it
+     *                    still matches a filter.
+     */
+    public void applyChanges(Collection<T> changed, Collection<Long> deletedKeys, Predicate<? super T> visible) {
+        if (this.pageLoader == null) {
+            return;
+        }
+        if (this.loading) {
+            Runnable previous = this.pendingChanges;
+            this.pendingChanges = () -> {
+                if (previous != null) {
+                    previous.run();
+                }
+                applyChanges(changed, deletedKeys, visible);
+            };
+            return;
+        }
+        for (long key : deletedKeys) {
+            int index = indexOfKey(key);
+            if (index >= 0) {
+                this.items.remove(index);
+            }
+        }
+        for (T row : changed) {
+            long key = this.keyExtractor.applyAsLong(row);
+            int index = indexOfKey(key);
+            if (index >= 0) {
+                if (visible.test(row)) {
+                    this.items.set(index, row);
+                } else {
+                    this.items.remove(index);
+                }
+            } else if (visible.test(row) && (this.lastPageLoaded || this.lastKey != null && key < this.lastKey)) {
+                this.items.add(-index - 1, row);
+            }
+        }
+    }
+
+    /**
+     * @return true if all pages of the current source have been read
+     */
+    public boolean isLastPageLoaded() {
+        return lastPageLoaded;
+    }
+
+    /**
+     * Drops all rows and supersedes all loads that are still running.
+     */
+    private void reset(PageLoader<T> pageLoader) {
+        this.generation++;
+        this.pageLoader = pageLoader;
+        this.lastKey = null;
+        this.lastPageLoaded = false;
+        this.loading = false;
+        this.changeSource = null;
+        this.visible = null;
+        this.changeVersion = null;
+        this.refreshing = false;
+        this.refreshRequested = false;
+        this.pendingChanges = null;
+        this.tableView.setPlaceholder(this.placeholder);
+        this.items.clear();
+    }
+
+    private void applyPendingChanges() {
+        Runnable changes = this.pendingChanges;
+        this.pendingChanges = null;
+        if (changes != null) {
+            changes.run();
+        }
+    }
+
+    /**
+     * Searches the rows that are shown for the given key by binary search.
+     *
+     * @return the index of the row with the key, or <code>(-(insertion point) - 1)</code> if no row has the key
+     */
+    private int indexOfKey(long key) {
+        int low = 0;
+        int high = this.items.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleKey = this.keyExtractor.applyAsLong(this.items.get(middle));
+            if (middleKey < key) {
+                low = middle + 1;
+            } else if (middleKey > key) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private boolean isCurrent(int loadGeneration) {
+        return this.generation == loadGeneration;
+    }
+
+    /**
+     * Looks up the vertical scroll bar the skin of the table has created and reads the next page whenever it is
+     * scrolled to its end.
+     */
+    private void attachScrollBar() {
+        for (Node node : this.tableView.lookupAll(".scroll-bar")) {
+            if (node instanceof ScrollBar scrollBar && scrollBar.getOrientation() == Orientation.VERTICAL) {
+                this.verticalScrollBar = scrollBar;
+                scrollBar.valueProperty().addListener((observable, oldValue, newValue) -> {
+                    if (newValue.doubleValue() >= scrollBar.getMax()) {
+                        loadNextPage();
+                    }
+                });
+                return;
+            }
+        }
+    }
+
+    /**
+     * Source of the pages of a table.
+     *
+     * @param <T> the type of the rows of the table
+     */
+    @FunctionalInterface
+    public interface PageLoader<T> {
+        /**
+         * Reads one page.
+         *
+         * @param afterKey The key of the last row of the previous page, or <code>null</code> for the first page.
+         * @param pageSize The maximum number of rows of the page.
+         * @return The rows of the page.
+         * @throws SQLException If the page could not be read.
+         */
+        List<T> loadPage(Long afterKey, int pageSize) throws SQLException;
+    }
+}